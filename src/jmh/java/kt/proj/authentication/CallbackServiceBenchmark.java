@@ -0,0 +1,146 @@
+package kt.proj.authentication;
+
+import com.nimbusds.oauth2.sdk.http.HTTPResponse;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.core.Vertx;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import kt.proj.common.AsyncHTTPClient;
+import kt.proj.common.BlockingExecutor;
+import kt.proj.common.UserTokenManager;
+import kt.proj.config.AuthServiceConfig;
+import kt.proj.config.BenchmarkFixtures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Load test of the code callback against a local token endpoint with the latency of a slow
+ * provider. Each invocation handles a burst of {@code concurrency} callbacks, so the number of
+ * callbacks per second is the score multiplied by {@code concurrency}.
+ *
+ * <p>The blocking variant sends the token requests with the OAuth 2.0 SDK from a pool sized like
+ * the default Quarkus worker pool, which caps the callbacks in flight at the pool size. The
+ * non-blocking variant waits on the event loop, so the callbacks in flight are only bound by the
+ * connections to the provider. The virtual thread variant sends the same blocking requests from a
+ * virtual thread per callback, and needs a Java 21 runtime: it only runs with {@code ./gradlew jmh
+ * -PvirtualThreads}, which also runs this benchmark in sample mode to report the p99 latency of
+ * the bursts of each variant.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CallbackServiceBenchmark {
+  /* Default maximum size of the Quarkus worker pool on machines with up to 25 cores. */
+  private static final int WORKER_THREADS = 200;
+
+  @Param({"50", "500"})
+  public long latencyMillis;
+
+  @Param({"100", "1000"})
+  public int concurrency;
+
+  private HttpServer tokenEndpoint;
+  private Vertx vertx;
+  private ExecutorService workers;
+  private BlockingExecutor virtualThreads;
+  private CallbackService callbackService;
+  private URI callbackURI;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    tokenEndpoint = BenchmarkFixtures.startTokenEndpoint(latencyMillis);
+    AuthServiceConfig config = BenchmarkFixtures.authServiceConfig("ES256", 2048, 600, 1);
+    vertx = Vertx.vertx();
+    workers = Executors.newFixedThreadPool(WORKER_THREADS);
+    virtualThreads = new BlockingExecutor(true, null);
+
+    callbackService = new CallbackService();
+    callbackService.oidcProviders =
+        BenchmarkFixtures.providers(config, null, BenchmarkFixtures.tokenEndpoint(tokenEndpoint));
+    callbackService.tokenManager = new UserTokenManager(config, callbackService.oidcProviders);
+    callbackService.httpClient = new AsyncHTTPClient(vertx, config);
+    callbackService.idTokenVerifier = new IDTokenVerifier();
+    callbackService.idTokenVerifier.oidcProviders = callbackService.oidcProviders;
+    callbackService.registerMetrics(new SimpleMeterRegistry());
+    callbackService.executor = workers;
+    callbackURI = URI.create("http://localhost:8080/oauth/callback?code=code&state=state");
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    workers.shutdownNow();
+    virtualThreads.close();
+    vertx.closeAndAwait();
+    tokenEndpoint.stop(0);
+  }
+
+  @Benchmark
+  public List<String> blockingExchange() throws Exception {
+    return blockingExchange(workers);
+  }
+
+  @Benchmark
+  public List<String> virtualThreadExchange() throws Exception {
+    if (!virtualThreads.isVirtual()) {
+      throw new UnsupportedOperationException("Virtual threads require Java 21");
+    }
+    return blockingExchange(virtualThreads);
+  }
+
+  private List<String> blockingExchange(Executor executor) throws Exception {
+    List<CompletableFuture<String>> callbacks = new ArrayList<>(concurrency);
+    for (int i = 0; i < concurrency; i++) {
+      CompletableFuture<String> callback = new CompletableFuture<>();
+      executor.execute(
+          () -> {
+            try {
+              HTTPResponse response =
+                  callbackService
+                      .getTokenRequest(callbackURI, BenchmarkFixtures.PROVIDER, "state")
+                      .toHTTPRequest()
+                      .send();
+              callback.complete(
+                  callbackService
+                      .getUserToken(response, BenchmarkFixtures.PROVIDER, BenchmarkFixtures.NONCE)
+                      .await()
+                      .indefinitely());
+            } catch (Exception e) {
+              callback.completeExceptionally(e);
+            }
+          });
+      callbacks.add(callback);
+    }
+    List<String> userTokens = new ArrayList<>(concurrency);
+    for (CompletableFuture<String> callback : callbacks) {
+      userTokens.add(callback.get());
+    }
+    return userTokens;
+  }
+
+  @Benchmark
+  public List<String> nonBlockingExchange() {
+    List<Uni<String>> callbacks = new ArrayList<>(concurrency);
+    for (int i = 0; i < concurrency; i++) {
+      callbacks.add(
+          callbackService.handleCallback(
+              callbackURI, BenchmarkFixtures.PROVIDER, "state", BenchmarkFixtures.NONCE));
+    }
+    return Uni.join().all(callbacks).andFailFast().await().indefinitely();
+  }
+}
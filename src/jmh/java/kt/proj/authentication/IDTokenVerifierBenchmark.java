@@ -0,0 +1,89 @@
+package kt.proj.authentication;
+
+import com.nimbusds.jose.crypto.RSASSAVerifier;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.nimbusds.oauth2.sdk.http.HTTPRequest;
+import com.sun.net.httpserver.HttpServer;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import kt.proj.config.AuthServiceConfig;
+import kt.proj.config.BenchmarkFixtures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Compares the cost added to a login by verifying its ID token with the cached keys of the
+ * provider, against fetching the JWK set of the provider for every login, here from a local
+ * endpoint without any network latency.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class IDTokenVerifierBenchmark {
+  private HttpServer jwkSetEndpoint;
+  private URL jwkSetURL;
+  private IDTokenVerifier verifier;
+  private String idToken;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    byte[] jwkSet = BenchmarkFixtures.jwkSet().toString().getBytes(StandardCharsets.UTF_8);
+    jwkSetEndpoint = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    jwkSetEndpoint.createContext(
+        "/certs",
+        exchange -> {
+          exchange.getResponseHeaders().set("Content-Type", "application/json");
+          exchange.sendResponseHeaders(200, jwkSet.length);
+          try (OutputStream body = exchange.getResponseBody()) {
+            body.write(jwkSet);
+          }
+        });
+    jwkSetEndpoint.setExecutor(Executors.newFixedThreadPool(4));
+    jwkSetEndpoint.start();
+    jwkSetURL = new URL("http://127.0.0.1:" + jwkSetEndpoint.getAddress().getPort() + "/certs");
+
+    AuthServiceConfig config = BenchmarkFixtures.authServiceConfig("ES256", 2048, 600, 1);
+    verifier = new IDTokenVerifier();
+    verifier.oidcProviders = BenchmarkFixtures.providers(config, null);
+    idToken = BenchmarkFixtures.signedIDToken(0, "subject").serialize();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    jwkSetEndpoint.stop(0);
+  }
+
+  @Benchmark
+  public JWTClaimsSet cachedKeys() throws Exception {
+    return verifier
+        .verify(SignedJWT.parse(idToken), BenchmarkFixtures.PROVIDER, BenchmarkFixtures.NONCE)
+        .await()
+        .indefinitely();
+  }
+
+  @Benchmark
+  public JWTClaimsSet jwkSetPerLogin() throws Exception {
+    HTTPRequest request = new HTTPRequest(HTTPRequest.Method.GET, jwkSetURL);
+    JWKSet jwkSet = JWKSet.parse(request.send().getContent());
+    SignedJWT signedToken = SignedJWT.parse(idToken);
+    RSAKey key = (RSAKey) jwkSet.getKeyByKeyId(signedToken.getHeader().getKeyID());
+    if (!signedToken.verify(new RSASSAVerifier(key))) {
+      throw new IllegalStateException("Invalid signature");
+    }
+    return signedToken.getJWTClaimsSet();
+  }
+}
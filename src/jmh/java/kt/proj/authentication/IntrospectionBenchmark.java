@@ -0,0 +1,191 @@
+package kt.proj.authentication;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nimbusds.oauth2.sdk.token.BearerAccessToken;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import kt.proj.common.UserTokenManager;
+import kt.proj.config.AuthServiceConfig;
+import kt.proj.config.BenchmarkFixtures;
+import kt.proj.models.IntrospectionBatchModel;
+import kt.proj.models.IntrospectionModel;
+import org.jboss.resteasy.reactive.RestResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Compares the throughput of introspecting tokens one request at a time with batches of tokens,
+ * calling {@link IntrospectionResource} in process and over HTTP on the loopback interface. Over
+ * HTTP, the JDK HTTP server & Jackson stand in for the Quarkus HTTP layer: their handlers call the
+ * resource, so that the per-request cost of a transport & JSON serialization is measured, but not
+ * that of Vert.x & RESTEasy Reactive. Scores are in tokens per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class IntrospectionBenchmark {
+  private static final int BATCH_SIZE = 100;
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private static final String AUTHORIZATION = "Bearer " + BenchmarkFixtures.INTROSPECTION_TOKEN;
+
+  @Param({"ES256", "EdDSA"})
+  public String algorithm;
+
+  private HttpServer server;
+  private ExecutorService serverExecutor;
+  private ExecutorService introspectionExecutor;
+  private HttpClient client;
+  private URI singleURI;
+  private URI batchURI;
+  private IntrospectionResource introspectionResource;
+  private List<String> userTokens;
+  private IntrospectionBatchModel batch;
+  private byte[] batchBody;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    AuthServiceConfig config = BenchmarkFixtures.authServiceConfig(algorithm, 2048, 600, 1);
+    UserTokenManager tokenManager =
+        new UserTokenManager(config, BenchmarkFixtures.providers(config, null));
+    introspectionExecutor = Executors.newFixedThreadPool(4);
+    IntrospectionService introspectionService = new IntrospectionService();
+    introspectionService.tokenManager = tokenManager;
+    introspectionService.executor = introspectionExecutor;
+    introspectionResource = new IntrospectionResource(config);
+    introspectionResource.introspectionService = introspectionService;
+
+    userTokens = new ArrayList<>();
+    for (int i = 0; i < BATCH_SIZE; i++) {
+      userTokens.add(
+          tokenManager.issueToken(
+              BenchmarkFixtures.idToken(BenchmarkFixtures.issuer(0), "subject" + i),
+              new BearerAccessToken()));
+    }
+    batch = new IntrospectionBatchModel();
+    batch.setTokens(userTokens);
+    batchBody = MAPPER.writeValueAsBytes(batch);
+
+    /* Without it, responses written in two segments wait for the delayed ACK of the client. */
+    System.setProperty("sun.net.httpserver.nodelay", "true");
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext(
+        "/introspect",
+        exchange -> {
+          String token = readBody(exchange.getRequestBody());
+          token = URLDecoder.decode(token.substring("token=".length()), StandardCharsets.UTF_8);
+          respond(exchange, introspectionResource.introspect(authorization(exchange), token));
+        });
+    server.createContext(
+        "/introspect/batch",
+        exchange -> {
+          IntrospectionBatchModel tokens =
+              MAPPER.readValue(exchange.getRequestBody(), IntrospectionBatchModel.class);
+          respond(exchange, introspectionResource.introspectBatch(authorization(exchange), tokens));
+        });
+    serverExecutor = Executors.newFixedThreadPool(4);
+    server.setExecutor(serverExecutor);
+    server.start();
+    String baseURI = "http://127.0.0.1:" + server.getAddress().getPort();
+    singleURI = URI.create(baseURI + "/introspect");
+    batchURI = URI.create(baseURI + "/introspect/batch");
+    client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    server.stop(0);
+    serverExecutor.shutdownNow();
+    introspectionExecutor.shutdownNow();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH_SIZE)
+  public int singleTokenCalls() {
+    int active = 0;
+    for (String userToken : userTokens) {
+      RestResponse<?> response = introspectionResource.introspect(AUTHORIZATION, userToken);
+      active += ((IntrospectionModel) response.getEntity()).isActive() ? 1 : 0;
+    }
+    return active;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH_SIZE)
+  public Object batchCall() {
+    return introspectionResource.introspectBatch(AUTHORIZATION, batch).getEntity();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH_SIZE)
+  public int singleTokenRequests() throws Exception {
+    int length = 0;
+    for (String userToken : userTokens) {
+      HttpRequest request =
+          HttpRequest.newBuilder(singleURI)
+              .header("Content-Type", "application/x-www-form-urlencoded")
+              .header("Authorization", AUTHORIZATION)
+              .POST(
+                  HttpRequest.BodyPublishers.ofString(
+                      "token=" + URLEncoder.encode(userToken, StandardCharsets.UTF_8)))
+              .build();
+      length += client.send(request, HttpResponse.BodyHandlers.ofByteArray()).body().length;
+    }
+    return length;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH_SIZE)
+  public int batchRequest() throws Exception {
+    HttpRequest request =
+        HttpRequest.newBuilder(batchURI)
+            .header("Content-Type", "application/json")
+            .header("Authorization", AUTHORIZATION)
+            .POST(HttpRequest.BodyPublishers.ofByteArray(batchBody))
+            .build();
+    return client.send(request, HttpResponse.BodyHandlers.ofByteArray()).body().length;
+  }
+
+  private static String readBody(InputStream body) throws IOException {
+    try (body) {
+      return new String(body.readAllBytes(), StandardCharsets.UTF_8);
+    }
+  }
+
+  private static String authorization(HttpExchange exchange) {
+    return exchange.getRequestHeaders().getFirst("Authorization");
+  }
+
+  private static void respond(HttpExchange exchange, RestResponse<?> response) throws IOException {
+    byte[] entity = MAPPER.writeValueAsBytes(response.getEntity());
+    exchange.getResponseHeaders().set("Content-Type", "application/json");
+    exchange.sendResponseHeaders(response.getStatus(), entity.length);
+    try (OutputStream body = exchange.getResponseBody()) {
+      body.write(entity);
+    }
+  }
+}
@@ -0,0 +1,112 @@
+package kt.proj.authentication.filter;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import com.nimbusds.oauth2.sdk.token.BearerAccessToken;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+import javax.ws.rs.core.UriInfo;
+import kt.proj.common.BlockingExecutor;
+import kt.proj.common.UserTokenManager;
+import kt.proj.config.AuthServiceConfig;
+import kt.proj.config.BenchmarkFixtures;
+import kt.proj.config.OIDCProviders;
+import org.jboss.resteasy.reactive.server.spi.ResteasyReactiveContainerRequestContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks the authentication filter for accepted, rejected & public requests. Requests without
+ * a token are rejected without allocating.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SecurityFilterBenchmark {
+  @Param({"RS256", "ES256", "EdDSA"})
+  public String algorithm;
+
+  @Param({"2048"})
+  public int keySize;
+
+  @Param({"100", "10000"})
+  public int sessions;
+
+  private SecurityFilter securityFilter;
+  private ResteasyReactiveContainerRequestContext[] authenticatedRequests;
+  private ResteasyReactiveContainerRequestContext rejectedRequest;
+  private ResteasyReactiveContainerRequestContext missingTokenRequest;
+  private ResteasyReactiveContainerRequestContext publicRequest;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    AuthServiceConfig config = BenchmarkFixtures.authServiceConfig(algorithm, keySize, 600, 1);
+    OIDCProviders providers =
+        BenchmarkFixtures.providers(config, URI.create("https://idp0.example.com/userinfo"));
+    UserTokenManager tokenManager = new UserTokenManager(config, providers);
+    securityFilter =
+        new SecurityFilter(
+            config, tokenManager, new BlockingExecutor(false, null), new SimpleMeterRegistry());
+
+    authenticatedRequests = new ResteasyReactiveContainerRequestContext[sessions];
+    for (int i = 0; i < sessions; i++) {
+      String userToken =
+          tokenManager.issueToken(
+              BenchmarkFixtures.idToken(BenchmarkFixtures.issuer(0), "subject" + i),
+              new BearerAccessToken());
+      authenticatedRequests[i] = request("/myprofile", "Bearer " + userToken);
+    }
+    rejectedRequest = request("/myprofile", "Bearer invalid.user.token");
+    missingTokenRequest = request("/myprofile", null);
+    publicRequest = request("/authenticate", null);
+  }
+
+  @Benchmark
+  public ResteasyReactiveContainerRequestContext filterAuthenticated() {
+    ResteasyReactiveContainerRequestContext requestContext = authenticatedRequests[next];
+    next = next + 1 == authenticatedRequests.length ? 0 : next + 1;
+    securityFilter.filter(requestContext);
+    return requestContext;
+  }
+
+  @Benchmark
+  public ResteasyReactiveContainerRequestContext filterRejected() {
+    securityFilter.filter(rejectedRequest);
+    return rejectedRequest;
+  }
+
+  @Benchmark
+  public ResteasyReactiveContainerRequestContext filterMissingToken() {
+    securityFilter.filter(missingTokenRequest);
+    return missingTokenRequest;
+  }
+
+  @Benchmark
+  public ResteasyReactiveContainerRequestContext filterPublic() {
+    securityFilter.filter(publicRequest);
+    return publicRequest;
+  }
+
+  /* Stub-only mocks do not record invocations, which keeps them out of the allocation profile. */
+  private static ResteasyReactiveContainerRequestContext request(
+      String path, String authorization) {
+    UriInfo uriInfo = mock(UriInfo.class, withSettings().stubOnly());
+    when(uriInfo.getPath()).thenReturn(path);
+    ResteasyReactiveContainerRequestContext requestContext =
+        mock(ResteasyReactiveContainerRequestContext.class, withSettings().stubOnly());
+    when(requestContext.getUriInfo()).thenReturn(uriInfo);
+    when(requestContext.getHeaderString("Authorization")).thenReturn(authorization);
+    return requestContext;
+  }
+}
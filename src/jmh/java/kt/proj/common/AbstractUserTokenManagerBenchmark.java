@@ -0,0 +1,109 @@
+package kt.proj.common;
+
+import com.nimbusds.jwt.JWT;
+import com.nimbusds.oauth2.sdk.token.BearerAccessToken;
+import java.net.URI;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import kt.proj.config.AuthServiceConfig;
+import kt.proj.config.BenchmarkFixtures;
+import kt.proj.config.OIDCProviders;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks issuance & validation of user tokens signed with the algorithm & key size of the
+ * subclass, so that RSA key sizes don't multiply the runs of the other algorithms.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public abstract class AbstractUserTokenManagerBenchmark {
+  @Param({"100", "10000"})
+  public int sessions;
+
+  private UserTokenManager tokenManager;
+  private UserTokenManager expiringTokenManager;
+  private JWT idToken;
+  private BearerAccessToken accessToken;
+  private String[] validTokens;
+  private String expiredToken;
+  private String revokedToken;
+  private int next;
+
+  /** Returns the signature algorithm of the user tokens. */
+  protected abstract String algorithm();
+
+  /** Returns the size of RSA keys in bits. */
+  protected abstract int keySize();
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    AuthServiceConfig config = BenchmarkFixtures.authServiceConfig(algorithm(), keySize(), 600, 1);
+    OIDCProviders providers =
+        BenchmarkFixtures.providers(config, URI.create("https://idp0.example.com/userinfo"));
+    tokenManager = new UserTokenManager(config, providers);
+    idToken = BenchmarkFixtures.idToken(BenchmarkFixtures.issuer(0), "subject");
+    accessToken = new BearerAccessToken();
+
+    validTokens = new String[sessions];
+    for (int i = 0; i < sessions; i++) {
+      validTokens[i] = tokenManager.issueToken(idToken, accessToken);
+    }
+
+    revokedToken = tokenManager.issueToken(idToken, accessToken);
+    tokenManager.invalidateToken(tokenManager.getValidatedUserToken(revokedToken).orElseThrow());
+
+    /* Tokens issued with 1 second expiry are validated by the same manager once expired. */
+    AuthServiceConfig expiringConfig =
+        BenchmarkFixtures.authServiceConfig(algorithm(), keySize(), 1, 1);
+    expiringTokenManager = new UserTokenManager(expiringConfig, providers);
+    expiredToken = expiringTokenManager.issueToken(idToken, accessToken);
+    TimeUnit.MILLISECONDS.sleep(1100);
+  }
+
+  @Benchmark
+  public String issueToken() {
+    return tokenManager.issueToken(idToken, accessToken);
+  }
+
+  @Benchmark
+  public Optional<UserPrincipal> validateValidToken() {
+    String userToken = validTokens[next];
+    next = next + 1 == validTokens.length ? 0 : next + 1;
+    return tokenManager.getValidatedUserToken(userToken);
+  }
+
+  /*
+   * The token work of a profile request: the filter validates the token & the profile service
+   * reads the claims & session of its principal. Compare gc.alloc.rate.norm across revisions for
+   * the allocations per request.
+   */
+  @Benchmark
+  public void authenticateProfileRequest(Blackhole blackhole) {
+    String userToken = validTokens[next];
+    next = next + 1 == validTokens.length ? 0 : next + 1;
+    UserPrincipal principal = tokenManager.getValidatedUserToken(userToken).orElseThrow();
+    blackhole.consume(principal.getName());
+    blackhole.consume(principal.getProvider());
+    blackhole.consume(tokenManager.getAccessToken(principal).orElseThrow());
+  }
+
+  @Benchmark
+  public Optional<UserPrincipal> validateExpiredToken() {
+    return expiringTokenManager.getValidatedUserToken(expiredToken);
+  }
+
+  @Benchmark
+  public Optional<UserPrincipal> validateRevokedToken() {
+    return tokenManager.getValidatedUserToken(revokedToken);
+  }
+}
@@ -0,0 +1,221 @@
+package kt.proj.common;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import com.nimbusds.oauth2.sdk.http.HTTPRequest;
+import com.nimbusds.oauth2.sdk.http.HTTPResponse;
+import com.nimbusds.oauth2.sdk.token.BearerAccessToken;
+import com.nimbusds.openid.connect.sdk.UserInfoRequest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.http.HttpVersion;
+import io.vertx.core.net.PfxOptions;
+import io.vertx.ext.web.client.WebClientOptions;
+import io.vertx.mutiny.core.Vertx;
+import io.vertx.mutiny.core.http.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManagerFactory;
+import kt.proj.config.AuthServiceConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Compares the latency of userinfo requests to a local TLS provider through {@link
+ * HTTPRequest#send()}, with & without connection reuse, and through the pooled HTTP/1.1 & HTTP/2
+ * transport of {@link AsyncHTTPClient}. Requests are sent one at a time, or in bursts of
+ * concurrent requests as on a login spike. Scores are in microseconds per request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ProviderTransportBenchmark {
+  private static final int BURST_SIZE = 64;
+  private static final String PASSWORD = "benchmark";
+  private static final String PROVIDER = "local";
+  private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+  @Param({"url-connection", "url-connection-close", "pooled-http1", "pooled-http2"})
+  public String transport;
+
+  private Path keyStore;
+  private Vertx vertx;
+  private HttpServer server;
+  private AsyncHTTPClient httpClient;
+  private SSLSocketFactory socketFactory;
+  private ExecutorService burstExecutor;
+  private URI userInfoEndpoint;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    keyStore = generateKeyStore();
+    vertx = Vertx.vertx();
+    server =
+        vertx
+            .createHttpServer(
+                new HttpServerOptions()
+                    .setSsl(true)
+                    .setUseAlpn(true)
+                    .setAlpnVersions(List.of(HttpVersion.HTTP_2, HttpVersion.HTTP_1_1))
+                    .setPfxKeyCertOptions(
+                        new PfxOptions().setPath(keyStore.toString()).setPassword(PASSWORD)))
+            .requestHandler(
+                request ->
+                    request
+                        .response()
+                        .putHeader("Content-Type", "application/json")
+                        .endAndForget("{\"sub\":\"subject\",\"name\":\"Jane Doe\"}"))
+            .listenAndAwait(0, "127.0.0.1");
+    String issuer = "https://127.0.0.1:" + server.actualPort();
+    userInfoEndpoint = URI.create(issuer + "/userinfo");
+
+    String yaml =
+        "oidc_clients:\n"
+            + "  - provider_name: "
+            + PROVIDER
+            + "\n    discovery_url: "
+            + issuer
+            + "\n    client_id: client\n"
+            + "    client_secret: secret\n"
+            + "    request_scopes: [openid]\n"
+            + "    http2: "
+            + "pooled-http2".equals(transport)
+            + "\n";
+    AuthServiceConfig config =
+        new ObjectMapper(new YAMLFactory()).readValue(yaml, AuthServiceConfig.class);
+    httpClient =
+        new AsyncHTTPClient(
+            vertx,
+            config.getOidcClients(),
+            new WebClientOptions()
+                .setPfxTrustOptions(
+                    new PfxOptions().setPath(keyStore.toString()).setPassword(PASSWORD)),
+            new SimpleMeterRegistry());
+    socketFactory = socketFactory(keyStore);
+    burstExecutor = Executors.newFixedThreadPool(BURST_SIZE);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    burstExecutor.shutdownNow();
+    httpClient.close();
+    server.closeAndAwait();
+    vertx.closeAndAwait();
+    Files.deleteIfExists(keyStore);
+  }
+
+  @Benchmark
+  public HTTPResponse sequentialRequest() throws Exception {
+    return send().await().indefinitely();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BURST_SIZE)
+  public List<HTTPResponse> burstOfRequests() throws Exception {
+    if (transport.startsWith("url-connection")) {
+      /* Blocking requests each hold a thread, as they did on the discovery & worker threads. */
+      List<Future<HTTPResponse>> pending = new ArrayList<>();
+      for (int i = 0; i < BURST_SIZE; i++) {
+        pending.add(burstExecutor.submit(() -> send().await().indefinitely()));
+      }
+      List<HTTPResponse> responses = new ArrayList<>();
+      for (Future<HTTPResponse> response : pending) {
+        responses.add(response.get());
+      }
+      return responses;
+    }
+    List<Uni<HTTPResponse>> pending = new ArrayList<>();
+    for (int i = 0; i < BURST_SIZE; i++) {
+      pending.add(send());
+    }
+    return Uni.join().all(pending).andFailFast().await().indefinitely();
+  }
+
+  private Uni<HTTPResponse> send() throws IOException {
+    HTTPRequest request =
+        new UserInfoRequest(userInfoEndpoint, new BearerAccessToken("access-token"))
+            .toHTTPRequest();
+    switch (transport) {
+      case "url-connection-close":
+        request.setHeader("Connection", "close");
+        /* fall through */
+      case "url-connection":
+        request.setSSLSocketFactory(socketFactory);
+        request.setConnectTimeout((int) TIMEOUT.toMillis());
+        request.setReadTimeout((int) TIMEOUT.toMillis());
+        return Uni.createFrom().item(request.send());
+      default:
+        return httpClient.send(PROVIDER, request, TIMEOUT);
+    }
+  }
+
+  /* Generates a self-signed certificate for the loopback address with the JDK keytool. */
+  private static Path generateKeyStore() throws Exception {
+    Path keyStore = Files.createTempFile("provider", ".p12");
+    Files.delete(keyStore);
+    Process keytool =
+        new ProcessBuilder(
+                Path.of(System.getProperty("java.home"), "bin", "keytool").toString(),
+                "-genkeypair",
+                "-alias",
+                "provider",
+                "-keyalg",
+                "EC",
+                "-groupname",
+                "secp256r1",
+                "-dname",
+                "CN=127.0.0.1",
+                "-ext",
+                "SAN=ip:127.0.0.1",
+                "-validity",
+                "1",
+                "-storetype",
+                "PKCS12",
+                "-keystore",
+                keyStore.toString(),
+                "-storepass",
+                PASSWORD)
+            .inheritIO()
+            .start();
+    if (keytool.waitFor() != 0) {
+      throw new IllegalStateException("Could not generate the provider certificate");
+    }
+    return keyStore;
+  }
+
+  private static SSLSocketFactory socketFactory(Path keyStore) throws Exception {
+    KeyStore trustStore = KeyStore.getInstance("PKCS12");
+    try (InputStream in = Files.newInputStream(keyStore)) {
+      trustStore.load(in, PASSWORD.toCharArray());
+    }
+    TrustManagerFactory trustManagers =
+        TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+    trustManagers.init(trustStore);
+    SSLContext context = SSLContext.getInstance("TLS");
+    context.init(null, trustManagers.getTrustManagers(), null);
+    return context.getSocketFactory();
+  }
+}
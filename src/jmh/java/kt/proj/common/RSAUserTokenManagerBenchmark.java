@@ -0,0 +1,19 @@
+package kt.proj.common;
+
+import org.openjdk.jmh.annotations.Param;
+
+/** Benchmarks issuance & validation of RS256 user tokens for each RSA key size. */
+public class RSAUserTokenManagerBenchmark extends AbstractUserTokenManagerBenchmark {
+  @Param({"2048", "3072"})
+  public int keySize;
+
+  @Override
+  protected String algorithm() {
+    return "RS256";
+  }
+
+  @Override
+  protected int keySize() {
+    return keySize;
+  }
+}
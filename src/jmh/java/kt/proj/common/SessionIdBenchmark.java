@@ -0,0 +1,56 @@
+package kt.proj.common;
+
+import java.security.SecureRandom;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Benchmarks drawing session IDs from every processor at once: the DRBG stripes of {@link
+ * UserTokenMinter}, {@link UUID#randomUUID()} & as many stripes of default {@link SecureRandom}s,
+ * which contend for the lock of the native generator like the single one behind randomUUID.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(Threads.MAX)
+public class SessionIdBenchmark {
+  private UserTokenMinter minter;
+  private SecureRandom[] defaultRandoms;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    minter = new UserTokenMinter("http://www.example.com", "http://www.example.com");
+    int stripes = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 4 - 1);
+    defaultRandoms = new SecureRandom[stripes];
+    for (int i = 0; i < stripes; i++) {
+      defaultRandoms[i] = new SecureRandom();
+    }
+  }
+
+  @Benchmark
+  public UUID newSessionId() {
+    return minter.newSessionId();
+  }
+
+  @Benchmark
+  public UUID randomUUID() {
+    return UUID.randomUUID();
+  }
+
+  @Benchmark
+  public UUID stripedDefaultRandoms() {
+    SecureRandom random =
+        defaultRandoms[ThreadLocalRandom.current().nextInt() & (defaultRandoms.length - 1)];
+    return new UUID(random.nextLong(), random.nextLong());
+  }
+}
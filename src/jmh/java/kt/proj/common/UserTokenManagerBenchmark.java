@@ -0,0 +1,20 @@
+package kt.proj.common;
+
+import org.openjdk.jmh.annotations.Param;
+
+/** Benchmarks issuance & validation of user tokens for each family of algorithms. */
+public class UserTokenManagerBenchmark extends AbstractUserTokenManagerBenchmark {
+  @Param({"RS256", "ES256", "EdDSA"})
+  public String algorithm;
+
+  @Override
+  protected String algorithm() {
+    return algorithm;
+  }
+
+  /* RSA key sizes are compared by RSAUserTokenManagerBenchmark. */
+  @Override
+  protected int keySize() {
+    return 2048;
+  }
+}
@@ -0,0 +1,83 @@
+package kt.proj.common.session;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks the revocation check of user tokens with millions of revoked tokens, for tokens that
+ * weren't revoked (the common case) and ones that were, against a concurrent map of the jtis.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class RevocationListBenchmark {
+  private static final int TOKENS = 1 << 16;
+  private static final long HOUR = 3_600_000;
+
+  @Param({"1000000", "4000000"})
+  public int revocations;
+
+  private RevocationList revokedTokens;
+  private Map<UUID, Long> revokedTokenMap;
+  private UUID[] activeTokens;
+  private UUID[] revokedSample;
+  private long[] expiresAt;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    long now = System.currentTimeMillis();
+    revokedTokens = new RevocationList(revocations, Duration.ofHours(1));
+    revokedTokenMap = new ConcurrentHashMap<>(revocations);
+    activeTokens = new UUID[TOKENS];
+    revokedSample = new UUID[TOKENS];
+    expiresAt = new long[TOKENS];
+    for (int i = 0; i < revocations; i++) {
+      UUID sessionId = UUID.randomUUID();
+      long expiry = now + HOUR / 2 + i % (HOUR / 2);
+      revokedTokens.revoke(sessionId, expiry);
+      revokedTokenMap.put(sessionId, expiry);
+      if (i < TOKENS) {
+        revokedSample[i] = sessionId;
+        expiresAt[i] = expiry;
+      }
+    }
+    for (int i = 0; i < TOKENS; i++) {
+      activeTokens[i] = UUID.randomUUID();
+    }
+  }
+
+  @Benchmark
+  public boolean activeToken() {
+    int i = next++ & (TOKENS - 1);
+    return revokedTokens.isRevoked(activeTokens[i], expiresAt[i]);
+  }
+
+  @Benchmark
+  public boolean revokedToken() {
+    int i = next++ & (TOKENS - 1);
+    return revokedTokens.isRevoked(revokedSample[i], expiresAt[i]);
+  }
+
+  @Benchmark
+  public boolean activeTokenInMap() {
+    return revokedTokenMap.containsKey(activeTokens[next++ & (TOKENS - 1)]);
+  }
+
+  @Benchmark
+  public boolean revokedTokenInMap() {
+    return revokedTokenMap.containsKey(revokedSample[next++ & (TOKENS - 1)]);
+  }
+}
@@ -0,0 +1,249 @@
+package kt.proj.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWT;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.PlainJWT;
+import com.nimbusds.jwt.SignedJWT;
+import com.nimbusds.oauth2.sdk.id.Issuer;
+import com.nimbusds.openid.connect.sdk.SubjectType;
+import com.nimbusds.openid.connect.sdk.op.OIDCProviderMetadata;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+/** Shared fixtures to build the Auth service components in benchmarks without a running IdP. */
+public final class BenchmarkFixtures {
+  public static final String PROVIDER = "provider0";
+  /* Bearer token of API gateways calling the introspection endpoint. */
+  public static final String INTROSPECTION_TOKEN = "introspection-token";
+  /* Nonce of the ID tokens returned by the token endpoint. */
+  public static final String NONCE = "nonce";
+  /* Key of every provider, signing the ID tokens returned by the token endpoint. */
+  private static final RSAKey ID_TOKEN_KEY;
+
+  static {
+    try {
+      ID_TOKEN_KEY = new RSAKeyGenerator(2048).keyID("provider-key").generate();
+    } catch (JOSEException e) {
+      throw new IllegalStateException(e);
+    }
+    /*
+     * The JDK server closes idle connections beyond the first 200, which a client pooling more
+     * connections than that may already be reusing.
+     */
+    System.setProperty("sun.net.httpserver.maxIdleConnections", "4096");
+  }
+
+  private BenchmarkFixtures() {}
+
+  /**
+   * Builds the Auth service configuration for the specified number of providers.
+   *
+   * @param algorithm Signature algorithm of user tokens.
+   * @param keySize Key size of user tokens signed with RSA.
+   * @param expiry Expiry of user tokens in seconds.
+   * @param providers Number of configured providers, named provider0 to providerN-1.
+   * @return parsed Auth service configuration.
+   */
+  public static AuthServiceConfig authServiceConfig(
+      String algorithm, int keySize, long expiry, int providers) throws IOException {
+    StringBuilder yaml = new StringBuilder("oidc_clients:\n");
+    for (int i = 0; i < providers; i++) {
+      yaml.append("  - provider_name: provider")
+          .append(i)
+          .append("\n    discovery_url: https://idp")
+          .append(i)
+          .append(".example.com\n    client_id: client")
+          .append(i)
+          .append("\n    client_secret: secret")
+          .append(i)
+          .append("\n    request_scopes: [openid, profile, email]\n")
+          /* Bursts of the load tests exceed the default bulkhead & slow call threshold. */
+          .append("    max_concurrent_requests: 10000\n")
+          .append("    slow_call_threshold: 60000\n");
+    }
+    yaml.append("user_token:\n")
+        .append("  issuer: http://www.example.com\n")
+        .append("  audience: http://www.example.com\n")
+        .append("  signature_algorithm: ")
+        .append(algorithm)
+        .append("\n  key_size: ")
+        .append(keySize)
+        .append("\n  expiry: ")
+        .append(expiry)
+        .append("\n  verified_token_cache_size: 10000\n")
+        .append("introspection:\n  bearer_token: ")
+        .append(INTROSPECTION_TOKEN)
+        .append('\n');
+    return new ObjectMapper(new YAMLFactory()).readValue(yaml.toString(), AuthServiceConfig.class);
+  }
+
+  /**
+   * Builds OIDC providers from static metadata whose userinfo endpoint is the specified URI.
+   *
+   * @param authServiceConfig Auth service configuration with the registered OIDC clients.
+   * @param userInfoEndpoint Userinfo endpoint of every provider.
+   * @return OIDC providers that never use the discovery endpoints.
+   */
+  public static OIDCProviders providers(AuthServiceConfig authServiceConfig, URI userInfoEndpoint) {
+    return providers(authServiceConfig, userInfoEndpoint, null);
+  }
+
+  /**
+   * Builds OIDC providers from static metadata whose userinfo & token endpoints are the specified
+   * URIs.
+   *
+   * @param authServiceConfig Auth service configuration with the registered OIDC clients.
+   * @param userInfoEndpoint Userinfo endpoint of every provider.
+   * @param tokenEndpoint Token endpoint of every provider, or null for an unreachable one.
+   * @return OIDC providers that never use the discovery endpoints.
+   */
+  public static OIDCProviders providers(
+      AuthServiceConfig authServiceConfig, URI userInfoEndpoint, URI tokenEndpoint) {
+    Map<String, ProviderSnapshot> snapshots = new HashMap<>();
+    for (OIDCClientConfig client : authServiceConfig.getOidcClients()) {
+      URI issuer = client.getDiscoveryURI();
+      OIDCProviderMetadata providerMetadata =
+          new OIDCProviderMetadata(
+              new Issuer(issuer),
+              List.of(SubjectType.PUBLIC),
+              issuer.resolve("/oauth2/v3/certs"));
+      providerMetadata.setAuthorizationEndpointURI(issuer.resolve("/o/oauth2/v2/auth"));
+      providerMetadata.setTokenEndpointURI(
+          tokenEndpoint != null ? tokenEndpoint : issuer.resolve("/token"));
+      providerMetadata.setUserInfoEndpointURI(userInfoEndpoint);
+      providerMetadata.setIDTokenJWSAlgs(List.of(JWSAlgorithm.RS256));
+      snapshots.put(
+          client.getProviderName().toLowerCase(),
+          ProviderSnapshot.of(providerMetadata, jwkSet()));
+    }
+    return new OIDCProviders(authServiceConfig, snapshots);
+  }
+
+  /** Returns the issuer of the provider with the specified index. */
+  public static String issuer(int provider) {
+    return "https://idp" + provider + ".example.com";
+  }
+
+  /** Builds an unsigned identity token; user token issuance only reads its claims. */
+  public static JWT idToken(String issuer, String subject) {
+    return new PlainJWT(new JWTClaimsSet.Builder().issuer(issuer).subject(subject).build());
+  }
+
+  /** Returns the public keys of every provider. */
+  public static JWKSet jwkSet() {
+    return new JWKSet(ID_TOKEN_KEY.toPublicJWK());
+  }
+
+  /**
+   * Builds an ID token signed with the key of the providers, as returned by their token endpoint.
+   *
+   * @param provider Index of the issuing provider.
+   * @param subject Subject of the token.
+   * @return signed ID token, valid for an hour with the {@link #NONCE} nonce.
+   */
+  public static JWT signedIDToken(int provider, String subject) throws JOSEException {
+    Date now = new Date();
+    SignedJWT idToken =
+        new SignedJWT(
+            new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(ID_TOKEN_KEY.getKeyID()).build(),
+            new JWTClaimsSet.Builder()
+                .issuer(issuer(provider))
+                .subject(subject)
+                .audience("client" + provider)
+                .issueTime(now)
+                .expirationTime(new Date(now.getTime() + 3_600_000))
+                .claim("nonce", NONCE)
+                .build());
+    idToken.sign(new RSASSASigner(ID_TOKEN_KEY));
+    return idToken;
+  }
+
+  /**
+   * Starts a local userinfo endpoint that returns a fixed profile for any access token.
+   *
+   * @return started server, listening on an ephemeral port on the loopback address.
+   */
+  public static HttpServer startUserInfoEndpoint() throws IOException {
+    byte[] profile =
+        "{\"sub\":\"subject\",\"name\":\"Jane Doe\",\"email\":\"jane@example.com\"}"
+            .getBytes(StandardCharsets.UTF_8);
+    HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext(
+        "/userinfo",
+        exchange -> {
+          exchange.getResponseHeaders().set("Content-Type", "application/json");
+          exchange.sendResponseHeaders(200, profile.length);
+          try (OutputStream body = exchange.getResponseBody()) {
+            body.write(profile);
+          }
+        });
+    server.setExecutor(Executors.newFixedThreadPool(4));
+    server.start();
+    return server;
+  }
+
+  /**
+   * Starts a local token endpoint that answers every request with the same OIDC tokens after the
+   * specified latency, like a slow provider.
+   *
+   * @param latencyMillis Delay before each response in milliseconds.
+   * @return started server, listening on an ephemeral port on the loopback address.
+   */
+  public static HttpServer startTokenEndpoint(long latencyMillis)
+      throws IOException, JOSEException {
+    byte[] tokens =
+        ("{\"access_token\":\"access-token\",\"token_type\":\"Bearer\",\"expires_in\":3600,"
+                + "\"id_token\":\""
+                + signedIDToken(0, "subject").serialize()
+                + "\"}")
+            .getBytes(StandardCharsets.UTF_8);
+    HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+    server.createContext(
+        "/token",
+        exchange -> {
+          exchange.getRequestBody().readAllBytes();
+          try {
+            Thread.sleep(latencyMillis);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          exchange.getResponseHeaders().set("Content-Type", "application/json");
+          exchange.sendResponseHeaders(200, tokens.length);
+          try (OutputStream body = exchange.getResponseBody()) {
+            body.write(tokens);
+          }
+        });
+    /* One thread per request in flight, so that the endpoint itself never queues requests. */
+    server.setExecutor(Executors.newCachedThreadPool());
+    server.start();
+    return server;
+  }
+
+  /** Returns the token endpoint URI served by the specified server. */
+  public static URI tokenEndpoint(HttpServer server) {
+    return URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/token");
+  }
+
+  /** Returns the userinfo endpoint URI served by the specified server. */
+  public static URI userInfoEndpoint(HttpServer server) {
+    return URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/userinfo");
+  }
+}
@@ -0,0 +1,58 @@
+package kt.proj.config;
+
+import com.nimbusds.openid.connect.sdk.Nonce;
+import java.net.URI;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks the issuer to provider name lookup performed for every issued user token, and the
+ * authentication request URI built for every login.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class OIDCProvidersBenchmark {
+  @Param({"3", "100", "500"})
+  public int providers;
+
+  private OIDCProviders oidcProviders;
+  private String firstIssuer;
+  private String lastIssuer;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    AuthServiceConfig config = BenchmarkFixtures.authServiceConfig("RS256", 2048, 600, providers);
+    oidcProviders =
+        BenchmarkFixtures.providers(config, URI.create("https://idp.example.com/userinfo"));
+    firstIssuer = BenchmarkFixtures.issuer(0);
+    lastIssuer = BenchmarkFixtures.issuer(providers - 1);
+  }
+
+  @Benchmark
+  public Optional<String> getProviderNameFirst() {
+    return oidcProviders.getProviderName(firstIssuer);
+  }
+
+  @Benchmark
+  public Optional<String> getProviderNameLast() {
+    return oidcProviders.getProviderName(lastIssuer);
+  }
+
+  @Benchmark
+  public URI getAuthorizationURI() {
+    return oidcProviders
+        .getContext(BenchmarkFixtures.PROVIDER)
+        .orElseThrow()
+        .getAuthorizationURI(new com.nimbusds.oauth2.sdk.id.State(), new Nonce());
+  }
+}
@@ -0,0 +1,81 @@
+package kt.proj.profile;
+
+import com.nimbusds.oauth2.sdk.token.BearerAccessToken;
+import com.nimbusds.openid.connect.sdk.claims.UserInfo;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.vertx.mutiny.core.Vertx;
+import java.util.concurrent.TimeUnit;
+import kt.proj.common.AsyncHTTPClient;
+import kt.proj.common.UserPrincipal;
+import kt.proj.common.UserTokenManager;
+import kt.proj.config.AuthServiceConfig;
+import kt.proj.config.BenchmarkFixtures;
+import kt.proj.config.OIDCProviders;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/** Benchmarks profile lookups served from a warm userinfo cache. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class UserProfileServiceBenchmark {
+  @Param({"RS256", "ES256", "EdDSA"})
+  public String algorithm;
+
+  @Param({"2048"})
+  public int keySize;
+
+  @Param({"100", "10000"})
+  public int sessions;
+
+  private HttpServer userInfoEndpoint;
+  private Vertx vertx;
+  private UserProfileService profileService;
+  private UserPrincipal[] userTokens;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    userInfoEndpoint = BenchmarkFixtures.startUserInfoEndpoint();
+    AuthServiceConfig config = BenchmarkFixtures.authServiceConfig(algorithm, keySize, 600, 1);
+    OIDCProviders providers =
+        BenchmarkFixtures.providers(config, BenchmarkFixtures.userInfoEndpoint(userInfoEndpoint));
+    UserTokenManager tokenManager = new UserTokenManager(config, providers);
+    vertx = Vertx.vertx();
+    profileService =
+        new UserProfileService(
+            providers, tokenManager, new AsyncHTTPClient(vertx, config), new SimpleMeterRegistry());
+
+    userTokens = new UserPrincipal[sessions];
+    for (int i = 0; i < sessions; i++) {
+      String userToken =
+          tokenManager.issueToken(
+              BenchmarkFixtures.idToken(BenchmarkFixtures.issuer(0), "subject" + i),
+              new BearerAccessToken());
+      userTokens[i] = tokenManager.getValidatedUserToken(userToken).orElseThrow();
+      profileService.getMyProfile(userTokens[i]).await().indefinitely();
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    vertx.closeAndAwait();
+    userInfoEndpoint.stop(0);
+  }
+
+  @Benchmark
+  public UserInfo getMyProfile() {
+    UserPrincipal userToken = userTokens[next];
+    next = next + 1 == userTokens.length ? 0 : next + 1;
+    return profileService.getMyProfile(userToken).await().indefinitely();
+  }
+}
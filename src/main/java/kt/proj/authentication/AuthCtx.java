@@ -6,6 +6,7 @@ public class AuthCtx {
     public static final String COOKIE_VALUE_SEPARATOR = ":";
     private URI redirectUrl;
     private String state;
+    private String nonce;
     private String provider;
 
     public URI getRedirectUrl() {
@@ -23,6 +24,14 @@ public class AuthCtx {
         this.state = state;
     }
 
+    public String getNonce() {
+        return nonce;
+    }
+
+    public void setNonce(String nonce) {
+        this.nonce = nonce;
+    }
+
     public String getProvider() {
         return provider;
     }
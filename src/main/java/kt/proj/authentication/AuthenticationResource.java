@@ -25,12 +25,17 @@ public class AuthenticationResource {
   public RestResponse authenticate(@RestQuery String provider) {
     LOGGER.info("Authentication request received for provider: " + provider);
     AuthCtx authCtx = authnService.getAuthnCtx(provider);
-    // State for CSRF protection
+    // State for CSRF protection & nonce to verify the ID token with
     NewCookie cookie =
         new NewCookie(
             COOKIE_NAME,
             String.format(
-                "%s%s%s", authCtx.getProvider(), COOKIE_VALUE_SEPARATOR, authCtx.getState()));
+                "%s%s%s%s%s",
+                authCtx.getProvider(),
+                COOKIE_VALUE_SEPARATOR,
+                authCtx.getState(),
+                COOKIE_VALUE_SEPARATOR,
+                authCtx.getNonce()));
 
     return RestResponse.ResponseBuilder.create(RestResponse.Status.FOUND)
         .location(authCtx.getRedirectUrl())
@@ -1,19 +1,14 @@
 package kt.proj.authentication;
 
-import com.nimbusds.oauth2.sdk.AuthorizationRequest;
-import com.nimbusds.oauth2.sdk.ResponseType;
-import com.nimbusds.oauth2.sdk.Scope;
-import com.nimbusds.oauth2.sdk.id.ClientID;
 import com.nimbusds.oauth2.sdk.id.State;
+import com.nimbusds.openid.connect.sdk.Nonce;
 import java.net.URI;
-import java.net.URISyntaxException;
 import java.util.logging.Logger;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
-import kt.proj.common.AppConfig;
 import kt.proj.common.AuthServiceException;
-import kt.proj.config.OIDCClientConfig;
 import kt.proj.config.OIDCProviders;
+import kt.proj.config.ProviderContext;
 
 @ApplicationScoped
 public class AuthenticationService {
@@ -42,44 +37,23 @@ public class AuthenticationService {
    * @return
    */
   private URI getRedirectUrl(String provider, AuthCtx authCtx) {
-    URI authzEndpoint =
+    ProviderContext context =
         oidcProviders
-            .getAuthorizationEndpoint(provider)
+            .getContext(provider)
             .orElseThrow(
                 () ->
                     new AuthServiceException(
                         "Authz endpoint info not available for provider " + provider));
 
-    OIDCClientConfig clientConfig =
-        oidcProviders
-            .getOIDCClient(provider)
-            .orElseThrow(
-                () ->
-                    new AuthServiceException(
-                        "No client config available for provider " + provider));
-
-    ClientID clientID = new ClientID(clientConfig.getClientId());
-    Scope scope = new Scope();
-    for (String scopeValue : clientConfig.getScopes()) {
-      scope.add(scopeValue);
-    }
-
-    URI callback = null;
-    try {
-      callback = new URI(AppConfig.CALLBACK_URL);
-    } catch (URISyntaxException e) {
-      LOGGER.info("Invalid callback url config");
-      return null;
-    }
     State state = new State();
     authCtx.setState(state.getValue());
-    AuthorizationRequest request =
-        new AuthorizationRequest.Builder(new ResponseType(ResponseType.Value.CODE), clientID)
-            .scope(scope)
-            .state(state)
-            .redirectionURI(callback)
-            .endpointURI(authzEndpoint)
-            .build();
-    return request.toURI();
+    // Nonce binding the ID token to this authentication request
+    Nonce nonce = new Nonce();
+    authCtx.setNonce(nonce.getValue());
+    URI redirectUrl = context.getAuthorizationURI(state, nonce);
+    if (redirectUrl == null) {
+      throw new AuthServiceException("Authz endpoint info not available for provider " + provider);
+    }
+    return redirectUrl;
   }
 }
@@ -2,6 +2,7 @@ package kt.proj.authentication;
 
 import static kt.proj.authentication.AuthCtx.COOKIE_VALUE_SEPARATOR;
 
+import io.smallrye.mutiny.Uni;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.logging.Logger;
@@ -14,6 +15,7 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.UriInfo;
 import kt.proj.common.ErrorCode;
 import kt.proj.common.ErrorResponseHandler;
+import kt.proj.common.ProviderUnavailableException;
 import kt.proj.models.UserTokenModel;
 import org.jboss.resteasy.reactive.RestCookie;
 import org.jboss.resteasy.reactive.RestResponse;
@@ -25,29 +27,41 @@ public class CallbackResource {
   @Inject CallbackService socialAuthCallbackService;
   private static final String PROVIDER_KEY = "provider";
   private static final String STATE_KEY = "state";
+  private static final String NONCE_KEY = "nonce";
 
   @GET
   @Produces(MediaType.APPLICATION_JSON)
-  public RestResponse handleCallback(@Context UriInfo uriInfo, @RestCookie String socialCookie)
+  public Uni<RestResponse> handleCallback(@Context UriInfo uriInfo, @RestCookie String socialCookie)
       throws Exception {
     Map<String, String> cookieInfo = getCookieInfo(socialCookie);
     String provider = cookieInfo.get(PROVIDER_KEY);
     LOGGER.info("Processing callback from provider: " + provider);
-    String userToken = null;
-    try {
-      userToken =
-          socialAuthCallbackService.handleCallback(
-              uriInfo.getRequestUri(), provider, cookieInfo.get(STATE_KEY));
-    } catch (Exception e) {
-      LOGGER.fine("Code call back failed");
-      return ErrorResponseHandler.buildErrorResponse(
-          RestResponse.Status.BAD_REQUEST,
-          ErrorCode.INVALID_INPUT,
-          "Unsuccessful processing code callback from provider " + provider);
-    }
-    return RestResponse.ResponseBuilder.create(RestResponse.Status.OK)
-        .entity(createUserTokenModel(userToken))
-        .build();
+    return socialAuthCallbackService
+        .handleCallback(
+            uriInfo.getRequestUri(),
+            provider,
+            cookieInfo.get(STATE_KEY),
+            cookieInfo.get(NONCE_KEY))
+        .map(
+            userToken ->
+                RestResponse.ResponseBuilder.create(RestResponse.Status.OK)
+                    .entity(createUserTokenModel(userToken))
+                    .build())
+        .onFailure()
+        .recoverWithItem(
+            e -> {
+              LOGGER.fine("Code call back failed");
+              if (e instanceof ProviderUnavailableException) {
+                return ErrorResponseHandler.buildErrorResponse(
+                    RestResponse.Status.SERVICE_UNAVAILABLE,
+                    ErrorCode.PROVIDER_UNAVAILABLE,
+                    "Provider " + provider + " is unavailable, try again later");
+              }
+              return ErrorResponseHandler.buildErrorResponse(
+                  RestResponse.Status.BAD_REQUEST,
+                  ErrorCode.INVALID_INPUT,
+                  "Unsuccessful processing code callback from provider " + provider);
+            });
   }
 
   private Map<String, String> getCookieInfo(String socialCookie) {
@@ -58,6 +72,9 @@ public class CallbackResource {
     String[] cvalues = socialCookie.split(COOKIE_VALUE_SEPARATOR);
     cookieInfo.put(PROVIDER_KEY, cvalues[0]);
     cookieInfo.put(STATE_KEY, cvalues[1]);
+    if (cvalues.length > 2) {
+      cookieInfo.put(NONCE_KEY, cvalues[2]);
+    }
     return cookieInfo;
   }
 
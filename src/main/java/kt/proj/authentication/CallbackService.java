@@ -2,24 +2,24 @@ package kt.proj.authentication;
 
 import com.nimbusds.jwt.JWT;
 import com.nimbusds.oauth2.sdk.*;
-import com.nimbusds.oauth2.sdk.auth.ClientAuthentication;
-import com.nimbusds.oauth2.sdk.auth.ClientSecretBasic;
-import com.nimbusds.oauth2.sdk.auth.Secret;
-import com.nimbusds.oauth2.sdk.id.ClientID;
+import com.nimbusds.oauth2.sdk.http.HTTPResponse;
 import com.nimbusds.oauth2.sdk.id.State;
-import com.nimbusds.oauth2.sdk.token.AccessToken;
 import com.nimbusds.openid.connect.sdk.*;
-import java.io.IOException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
 import java.net.URI;
-import java.net.URISyntaxException;
+import java.util.concurrent.Executor;
 import java.util.logging.Logger;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
-import kt.proj.common.AppConfig;
+import kt.proj.common.AsyncHTTPClient;
 import kt.proj.common.AuthServiceException;
+import kt.proj.common.BlockingExecutor;
+import kt.proj.common.ProviderTimers;
 import kt.proj.common.UserTokenManager;
-import kt.proj.config.OIDCClientConfig;
 import kt.proj.config.OIDCProviders;
+import kt.proj.config.ProviderContext;
 
 @ApplicationScoped
 public class CallbackService {
@@ -27,16 +27,82 @@ public class CallbackService {
 
   @Inject OIDCProviders oidcProviders;
   @Inject UserTokenManager tokenManager;
+  @Inject AsyncHTTPClient httpClient;
+  @Inject IDTokenVerifier idTokenVerifier;
 
-  public String handleCallback(URI requestURI, String provider, String storedState)
-      throws AuthServiceException {
+  /* Time spent on token requests, including failed ones, per provider. */
+  private ProviderTimers tokenRequestTimers;
+  /* Runs signing & session store writes, on the worker pool or on virtual threads. */
+  Executor executor = Infrastructure.getDefaultWorkerPool();
+
+  @Inject
+  void setExecutor(BlockingExecutor blockingExecutor) {
+    executor = blockingExecutor;
+  }
+
+  @Inject
+  void registerMetrics(MeterRegistry meterRegistry) {
+    tokenRequestTimers =
+        ProviderTimers.remote(
+            meterRegistry, "oidc.token_request", "Time to exchange an authorization code");
+  }
+
+  /**
+   * Exchanges the authorization code of the callback for a user token, without blocking the
+   * calling thread while waiting for the provider.
+   *
+   * @param requestURI URI of the callback request, with the authorization code & state.
+   * @param provider Name of the provider redirecting to the callback.
+   * @param storedState State sent with the authentication request.
+   * @param storedNonce Nonce sent with the authentication request.
+   * @return signed user token, or a failure with an {@link AuthServiceException} if the code
+   *     couldn't be exchanged or the returned ID token is invalid.
+   */
+  public Uni<String> handleCallback(
+      URI requestURI, String provider, String storedState, String storedNonce) {
     LOGGER.info("Processing callback from provider " + provider);
+    return Uni.createFrom()
+        .item(() -> getTokenRequest(requestURI, provider, storedState))
+        .onItem()
+        .transformToUni(
+            request -> {
+              /* Only requests to a known provider are built, so the tag is bounded. */
+              long start = System.nanoTime();
+              return httpClient
+                  .send(
+                      provider,
+                      request.toHTTPRequest(),
+                      oidcProviders.getRequestTimeout(provider))
+                  .onTermination()
+                  .invoke(() -> tokenRequestTimers.record(provider, start))
+                  .onFailure(e -> !(e instanceof AuthServiceException))
+                  .transform(
+                      e ->
+                          new AuthServiceException(
+                              "Token request to provider " + provider + " failed", e));
+            })
+        /* Signing & session store writes may block, so they don't run on the event loop. */
+        .emitOn(executor)
+        .flatMap(response -> getUserToken(response, provider, storedNonce));
+  }
+
+  /**
+   * Builds the token request exchanging the authorization code of the callback.
+   *
+   * @param requestURI URI of the callback request, with the authorization code & state.
+   * @param provider Name of the provider redirecting to the callback.
+   * @param storedState State sent with the authentication request.
+   * @return token request to send to the token endpoint of the provider.
+   * @throws AuthServiceException if the callback is invalid or the provider unknown.
+   */
+  TokenRequest getTokenRequest(URI requestURI, String provider, String storedState)
+      throws AuthServiceException {
     if (requestURI == null || provider == null) {
       LOGGER.fine("Invalid inputs");
       throw new AuthServiceException("Require nun-null URI and provider ");
     }
     AuthorizationCode code = getAuthzCode(requestURI, storedState);
-    return getUserToken(code, provider);
+    return getTokenRequest(code, provider);
   }
 
   private AuthorizationCode getAuthzCode(URI requestURI, String storedState) {
@@ -70,57 +136,55 @@ public class CallbackService {
     return state.getValue().equals(storedState);
   }
 
-  private String getUserToken(AuthorizationCode authCode, String provider)
+  private TokenRequest getTokenRequest(AuthorizationCode authCode, String provider)
       throws AuthServiceException {
-    URI callback = null;
-    try {
-      callback = new URI(AppConfig.CALLBACK_URL);
-    } catch (URISyntaxException e) {
-      throw new AuthServiceException("Invalid callback uri configured");
-    }
-    AuthorizationGrant codeGrant = new AuthorizationCodeGrant(authCode, callback);
-
-    OIDCClientConfig clientConfig =
+    ProviderContext context =
         oidcProviders
-            .getOIDCClient(provider)
-            .orElseThrow(
-                () ->
-                    new AuthServiceException(
-                        "No client config available for provider " + provider));
-
-    // The credentials to authenticate the client at the token endpoint
-    ClientID clientID = new ClientID(clientConfig.getClientId());
-    Secret clientSecret = new Secret(clientConfig.getClientSecret());
-    ClientAuthentication clientAuth = new ClientSecretBasic(clientID, clientSecret);
-
-    // The token endpoint
-    URI tokenEndpoint =
-        oidcProviders
-            .getTokenEndpoint(provider)
+            .getContext(provider)
             .orElseThrow(
                 () ->
                     new AuthServiceException(
                         "Token endpoint info not available for provider " + provider));
+    URI tokenEndpoint = context.getMetadata().getTokenEndpointURI();
+    if (tokenEndpoint == null) {
+      throw new AuthServiceException("Token endpoint info not available for provider " + provider);
+    }
+    AuthorizationGrant codeGrant = new AuthorizationCodeGrant(authCode, context.getCallbackURI());
+    return new TokenRequest(tokenEndpoint, context.getClientAuthentication(), codeGrant);
+  }
 
-    TokenRequest request = new TokenRequest(tokenEndpoint, clientAuth, codeGrant);
+  /**
+   * Issues a user token for the tokens returned by the token endpoint of the provider, once their
+   * ID token is verified.
+   *
+   * @param httpResponse Response of the token endpoint.
+   * @param provider Name of the provider.
+   * @param storedNonce Nonce sent with the authentication request.
+   * @return signed user token.
+   * @throws AuthServiceException if the response isn't a successful OIDC token response.
+   */
+  Uni<String> getUserToken(HTTPResponse httpResponse, String provider, String storedNonce)
+      throws AuthServiceException {
     TokenResponse tokenResponse = null;
     try {
-      tokenResponse = OIDCTokenResponseParser.parse(request.toHTTPRequest().send());
-    } catch (ParseException | IOException e) {
+      tokenResponse = OIDCTokenResponseParser.parse(httpResponse);
+    } catch (ParseException e) {
       throw new AuthServiceException("Parsing error", e);
     }
 
     if (!tokenResponse.indicatesSuccess()) {
       TokenErrorResponse errorResponse = tokenResponse.toErrorResponse();
-      LOGGER.fine("Error response from token endpoint  " + tokenEndpoint.toString());
+      LOGGER.fine("Error response from token endpoint of provider " + provider);
       throw new AuthServiceException("Couldn't get access token from provider");
     }
 
     OIDCTokenResponse successResponse = (OIDCTokenResponse) tokenResponse.toSuccessResponse();
 
-    // Get the ID and access token
-    JWT idToken = successResponse.getOIDCTokens().getIDToken();
-    AccessToken accessToken = successResponse.getOIDCTokens().getAccessToken();
-    return tokenManager.issueToken(idToken, accessToken);
+    // Get the ID token, and the access & refresh tokens kept with the session
+    OIDCTokens tokens = successResponse.getOIDCTokens();
+    JWT idToken = tokens.getIDToken();
+    return idTokenVerifier
+        .verify(idToken, provider, storedNonce)
+        .map(claims -> tokenManager.issueToken(idToken, tokens));
   }
 }
@@ -0,0 +1,125 @@
+package kt.proj.authentication;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jwt.JWT;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.nimbusds.jwt.proc.BadJWTException;
+import com.nimbusds.oauth2.sdk.id.ClientID;
+import com.nimbusds.openid.connect.sdk.Nonce;
+import com.nimbusds.openid.connect.sdk.op.OIDCProviderMetadata;
+import com.nimbusds.openid.connect.sdk.validators.IDTokenClaimsVerifier;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import java.text.ParseException;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.logging.Logger;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import kt.proj.common.AuthServiceException;
+import kt.proj.common.BlockingExecutor;
+import kt.proj.config.OIDCProviders;
+import kt.proj.config.ProviderContext;
+import kt.proj.config.ProviderSnapshot;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Verifies the ID tokens returned by the token endpoint of the providers: signature, issuer,
+ * audience, expiry & nonce.
+ *
+ * <p>Signatures are verified locally with the keys of the current {@link ProviderSnapshot}, so a
+ * login never waits for the JWK set of the provider. Only a token signed with a key the provider
+ * didn't publish yet triggers a refetch of its keys, shared by concurrent logins & rate limited by
+ * {@link OIDCProviders#refetchKeys(String)}.
+ */
+@ApplicationScoped
+public class IDTokenVerifier {
+  private static final Logger LOGGER = Logger.getLogger(IDTokenVerifier.class.getName());
+  /* Tolerated clock difference with the providers when checking the token times, in seconds. */
+  private static final int MAX_CLOCK_SKEW = 60;
+
+  @Inject OIDCProviders oidcProviders;
+  Executor executor = Infrastructure.getDefaultWorkerPool();
+
+  @Inject
+  void setExecutor(BlockingExecutor blockingExecutor) {
+    executor = blockingExecutor;
+  }
+
+  /**
+   * Verifies the specified ID token.
+   *
+   * @param idToken ID token returned by the token endpoint.
+   * @param provider Name of the provider that issued the token.
+   * @param nonce Nonce sent with the authentication request.
+   * @return claims of the verified token, or a failure with an {@link AuthServiceException} if the
+   *     token is invalid.
+   */
+  public Uni<JWTClaimsSet> verify(@NotNull JWT idToken, @NotNull String provider, String nonce) {
+    if (!(idToken instanceof SignedJWT)) {
+      return Uni.createFrom().failure(new AuthServiceException("ID token isn't signed"));
+    }
+    if (nonce == null) {
+      return Uni.createFrom().failure(new AuthServiceException("No nonce to verify ID token"));
+    }
+    SignedJWT signedToken = (SignedJWT) idToken;
+    ProviderSnapshot snapshot = oidcProviders.getSnapshot(provider).orElse(null);
+    if (snapshot == null) {
+      return Uni.createFrom()
+          .failure(new AuthServiceException("OIDC provider " + provider + " is unavailable"));
+    }
+
+    String keyId = signedToken.getHeader().getKeyID();
+    if (snapshot.getVerifier(keyId) != null) {
+      return Uni.createFrom().item(() -> verify(signedToken, provider, nonce, snapshot));
+    }
+    LOGGER.fine("Unknown key " + keyId + " of provider " + provider + ", refetching keys");
+    return Uni.createFrom()
+        .completionStage(() -> oidcProviders.refetchKeys(provider))
+        /* The refetch completes on a discovery thread, which must not sign user tokens. */
+        .emitOn(executor)
+        .map(refetched -> verify(signedToken, provider, nonce, refetched));
+  }
+
+  private JWTClaimsSet verify(
+      SignedJWT idToken, String provider, String nonce, ProviderSnapshot snapshot)
+      throws AuthServiceException {
+    JWSAlgorithm algorithm = idToken.getHeader().getAlgorithm();
+    OIDCProviderMetadata metadata = snapshot.getMetadata();
+    List<JWSAlgorithm> algorithms = metadata.getIDTokenJWSAlgs();
+    if (algorithms != null && !algorithms.contains(algorithm)) {
+      throw new AuthServiceException("ID token signed with unexpected algorithm " + algorithm);
+    }
+    JWSVerifier verifier = snapshot.getVerifier(idToken.getHeader().getKeyID());
+    if (verifier == null) {
+      throw new AuthServiceException("ID token signed with unknown key");
+    }
+
+    try {
+      if (!idToken.verify(verifier)) {
+        throw new AuthServiceException("Invalid ID token signature");
+      }
+      JWTClaimsSet claims = idToken.getJWTClaimsSet();
+      new IDTokenClaimsVerifier(
+              metadata.getIssuer(),
+              getClientID(provider),
+              new Nonce(nonce),
+              MAX_CLOCK_SKEW)
+          .verify(claims, null);
+      return claims;
+    } catch (JOSEException | ParseException | BadJWTException e) {
+      throw new AuthServiceException("Invalid ID token: " + e.getMessage(), e);
+    }
+  }
+
+  private ClientID getClientID(String provider) throws AuthServiceException {
+    return oidcProviders
+        .getContext(provider)
+        .map(ProviderContext::getClientID)
+        .orElseThrow(
+            () -> new AuthServiceException("No client config available for provider " + provider));
+  }
+}
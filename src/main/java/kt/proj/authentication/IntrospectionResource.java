@@ -0,0 +1,92 @@
+package kt.proj.authentication;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.logging.Logger;
+import javax.inject.Inject;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import kt.proj.common.ErrorCode;
+import kt.proj.common.ErrorResponseHandler;
+import kt.proj.config.AuthServiceConfig;
+import kt.proj.config.IntrospectionConfig;
+import kt.proj.models.IntrospectionBatchModel;
+import org.jboss.resteasy.reactive.RestForm;
+import org.jboss.resteasy.reactive.RestResponse;
+
+/**
+ * Token introspection endpoint (RFC 7662) for API gateways, which also takes a JSON batch of
+ * tokens. Callers authenticate with the configured {@code introspection.bearer_token} instead of a
+ * user token; the endpoint rejects every request if none is configured.
+ */
+@Path(IntrospectionResource.PATH)
+@Produces(MediaType.APPLICATION_JSON)
+public class IntrospectionResource {
+  public static final String PATH = "/introspect";
+  private static final Logger LOGGER = Logger.getLogger(IntrospectionResource.class.getName());
+  private static final int DEFAULT_MAX_BATCH_SIZE = 1000;
+
+  @Inject IntrospectionService introspectionService;
+  private final byte[] authorization;
+  private final int maxBatchSize;
+
+  @Inject
+  public IntrospectionResource(AuthServiceConfig authServiceConfig) {
+    IntrospectionConfig config = authServiceConfig.getIntrospectionConfig();
+    this.authorization =
+        config.getBearerToken() != null && !config.getBearerToken().isEmpty()
+            ? ("Bearer " + config.getBearerToken()).getBytes(StandardCharsets.UTF_8)
+            : null;
+    this.maxBatchSize =
+        config.getMaxBatchSize() > 0 ? config.getMaxBatchSize() : DEFAULT_MAX_BATCH_SIZE;
+  }
+
+  @POST
+  @Consumes(MediaType.APPLICATION_FORM_URLENCODED)
+  public RestResponse introspect(
+      @HeaderParam(HttpHeaders.AUTHORIZATION) String authzHeader, @RestForm String token) {
+    if (!isAuthorized(authzHeader)) {
+      return RestResponse.ResponseBuilder.create(RestResponse.Status.UNAUTHORIZED).build();
+    } else if (token == null) {
+      return ErrorResponseHandler.buildErrorResponse(
+          RestResponse.Status.BAD_REQUEST, ErrorCode.INVALID_INPUT, "No token to introspect");
+    }
+    return RestResponse.ResponseBuilder.create(RestResponse.Status.OK)
+        .entity(introspectionService.introspect(token))
+        .build();
+  }
+
+  @POST
+  @Consumes(MediaType.APPLICATION_JSON)
+  public RestResponse introspectBatch(
+      @HeaderParam(HttpHeaders.AUTHORIZATION) String authzHeader, IntrospectionBatchModel batch) {
+    if (!isAuthorized(authzHeader)) {
+      return RestResponse.ResponseBuilder.create(RestResponse.Status.UNAUTHORIZED).build();
+    } else if (batch == null || batch.getTokens() == null) {
+      return ErrorResponseHandler.buildErrorResponse(
+          RestResponse.Status.BAD_REQUEST, ErrorCode.INVALID_INPUT, "No tokens to introspect");
+    } else if (batch.getTokens().size() > maxBatchSize) {
+      LOGGER.fine("Rejected introspection of " + batch.getTokens().size() + " tokens");
+      return ErrorResponseHandler.buildErrorResponse(
+          RestResponse.Status.BAD_REQUEST,
+          ErrorCode.INVALID_INPUT,
+          "At most " + maxBatchSize + " tokens can be introspected at once");
+    }
+    IntrospectionBatchModel results = new IntrospectionBatchModel();
+    results.setResults(Arrays.asList(introspectionService.introspect(batch.getTokens())));
+    return RestResponse.ResponseBuilder.create(RestResponse.Status.OK).entity(results).build();
+  }
+
+  /* Compares in constant time, so that response times don't reveal the configured token. */
+  private boolean isAuthorized(String authzHeader) {
+    return authorization != null
+        && authzHeader != null
+        && MessageDigest.isEqual(authorization, authzHeader.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,105 @@
+package kt.proj.authentication;
+
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import kt.proj.common.UserPrincipal;
+import kt.proj.common.UserTokenManager;
+import kt.proj.models.IntrospectionModel;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Introspects user tokens on behalf of API gateways, one at a time or in batches. Every token goes
+ * through {@link UserTokenManager#getValidatedUserToken(String)}, so introspection answers exactly
+ * as the authentication filter would, verified token cache included.
+ *
+ * <p>A batch is split into chunks validated in parallel on the worker pool. The calling thread
+ * claims chunks too and only waits for the chunks other threads already started, so a saturated
+ * pool slows a batch down but can't deadlock it.
+ */
+@ApplicationScoped
+public class IntrospectionService {
+  /* Tokens validated by a thread at a time; cache hits take a few microseconds each. */
+  static final int CHUNK_SIZE = 32;
+
+  @Inject UserTokenManager tokenManager;
+  Executor executor = Infrastructure.getDefaultWorkerPool();
+
+  /**
+   * Introspects the specified user token.
+   *
+   * @param userToken serialized user token.
+   * @return introspection response, only holding {@code active: false} for an invalid token.
+   */
+  public @NotNull IntrospectionModel introspect(@NotNull String userToken) {
+    return tokenManager
+        .getValidatedUserToken(userToken)
+        .map(IntrospectionService::toModel)
+        .orElse(IntrospectionModel.INACTIVE);
+  }
+
+  /**
+   * Introspects the specified user tokens, blocking until all of them are validated.
+   *
+   * @param userTokens serialized user tokens.
+   * @return introspection responses in the order of the tokens.
+   */
+  public @NotNull IntrospectionModel[] introspect(@NotNull List<String> userTokens) {
+    IntrospectionModel[] results = new IntrospectionModel[userTokens.size()];
+    int chunks = (userTokens.size() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+    if (chunks <= 1) {
+      introspect(userTokens, results, 0);
+      return results;
+    }
+
+    AtomicInteger nextChunk = new AtomicInteger();
+    CountDownLatch pendingChunks = new CountDownLatch(chunks);
+    Runnable worker =
+        () -> {
+          for (int chunk = nextChunk.getAndIncrement();
+              chunk < chunks;
+              chunk = nextChunk.getAndIncrement()) {
+            try {
+              introspect(userTokens, results, chunk);
+            } finally {
+              pendingChunks.countDown();
+            }
+          }
+        };
+    int helpers = Math.min(chunks, Runtime.getRuntime().availableProcessors()) - 1;
+    for (int i = 0; i < helpers; i++) {
+      try {
+        executor.execute(worker);
+      } catch (RejectedExecutionException e) {
+        /* The calling thread validates the chunks no helper claims. */
+        break;
+      }
+    }
+    worker.run();
+    try {
+      pendingChunks.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while introspecting user tokens", e);
+    }
+    return results;
+  }
+
+  private void introspect(List<String> userTokens, IntrospectionModel[] results, int chunk) {
+    int end = Math.min(userTokens.size(), (chunk + 1) * CHUNK_SIZE);
+    for (int i = chunk * CHUNK_SIZE; i < end; i++) {
+      String userToken = userTokens.get(i);
+      results[i] = userToken != null ? introspect(userToken) : IntrospectionModel.INACTIVE;
+    }
+  }
+
+  private static IntrospectionModel toModel(UserPrincipal principal) {
+    return new IntrospectionModel(
+        true, principal.getName(), principal.getProvider(), principal.getExpiresAt() / 1000);
+  }
+}
@@ -0,0 +1,48 @@
+package kt.proj.authentication;
+
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import kt.proj.common.UserTokenManager;
+import kt.proj.common.signing.SigningKeys;
+import org.jboss.resteasy.reactive.RestResponse;
+
+/**
+ * Publishes the keys verifying user tokens, so that resource servers verify user tokens locally.
+ * The JWK set is serialized once per key rotation, and revalidated by its entity tag.
+ */
+@Path(JWKSetResource.PATH)
+public class JWKSetResource {
+  public static final String PATH = "/.well-known/jwks.json";
+
+  @Inject UserTokenManager tokenManager;
+
+  @GET
+  @Produces(MediaType.APPLICATION_JSON)
+  public RestResponse<byte[]> getJWKSet(
+      @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch) {
+    SigningKeys.PublishedKeys publishedKeys = tokenManager.getPublishedKeys();
+    EntityTag eTag = new EntityTag(publishedKeys.getETag());
+    CacheControl cacheControl = new CacheControl();
+    cacheControl.setMaxAge((int) publishedKeys.getMaxAge());
+
+    if (ifNoneMatch != null
+        && (ifNoneMatch.contains('"' + publishedKeys.getETag() + '"')
+            || ifNoneMatch.trim().equals("*"))) {
+      return RestResponse.ResponseBuilder.<byte[]>create(RestResponse.Status.NOT_MODIFIED)
+          .tag(eTag)
+          .cacheControl(cacheControl)
+          .build();
+    }
+    return RestResponse.ResponseBuilder.ok(publishedKeys.getContent(), MediaType.APPLICATION_JSON)
+        .tag(eTag)
+        .cacheControl(cacheControl)
+        .build();
+  }
+}
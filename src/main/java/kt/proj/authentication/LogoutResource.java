@@ -6,7 +6,7 @@ import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.SecurityContext;
-import kt.proj.authentication.filter.SecurityFilter;
+import kt.proj.common.UserPrincipal;
 import kt.proj.common.UserTokenManager;
 import org.jboss.resteasy.reactive.RestResponse;
 
@@ -18,9 +18,7 @@ public class LogoutResource {
 
   @GET
   public RestResponse logout() {
-    SecurityFilter.UserTokenPrincipal tokenPrincipal =
-        (SecurityFilter.UserTokenPrincipal) securityContext.getUserPrincipal();
-    tokenManager.invalidateToken(tokenPrincipal.getUserToken());
+    tokenManager.invalidateToken((UserPrincipal) securityContext.getUserPrincipal());
     return RestResponse.ResponseBuilder.create(RestResponse.Status.OK)
         .entity("You are logged out")
         .build();
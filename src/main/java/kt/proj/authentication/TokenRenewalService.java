@@ -0,0 +1,311 @@
+package kt.proj.authentication;
+
+import com.nimbusds.oauth2.sdk.ErrorObject;
+import com.nimbusds.oauth2.sdk.OAuth2Error;
+import com.nimbusds.oauth2.sdk.ParseException;
+import com.nimbusds.oauth2.sdk.RefreshTokenGrant;
+import com.nimbusds.oauth2.sdk.TokenRequest;
+import com.nimbusds.oauth2.sdk.TokenResponse;
+import com.nimbusds.oauth2.sdk.http.HTTPResponse;
+import com.nimbusds.oauth2.sdk.token.AccessToken;
+import com.nimbusds.oauth2.sdk.token.RefreshToken;
+import com.nimbusds.oauth2.sdk.token.Tokens;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.runtime.Startup;
+import java.net.URI;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.logging.Logger;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import kt.proj.common.AsyncHTTPClient;
+import kt.proj.common.AuthServiceException;
+import kt.proj.common.BlockingExecutor;
+import kt.proj.common.ProviderTimers;
+import kt.proj.common.UserTokenManager;
+import kt.proj.common.session.ProviderTokens;
+import kt.proj.common.session.RenewalSchedule;
+import kt.proj.config.AuthServiceConfig;
+import kt.proj.config.OIDCProviders;
+import kt.proj.config.ProviderContext;
+import kt.proj.config.TokenRenewalConfig;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Renews the provider access tokens of user sessions with their refresh token shortly before they
+ * expire, so that profile requests never wait for an expired access token to be renewed, nor send
+ * users through the login flow again.
+ *
+ * <p>Every {@code interval}, the sessions of the {@link RenewalSchedule} that are due are taken
+ * provider by provider and their refresh requests sent together, at most {@code max_rate} per
+ * second to each provider; the others stay due until the next run. Refresh requests go through
+ * the connection pool & guard of the provider, and failed renewals are retried after {@code
+ * retry_delay}, while requests keep using the current access token. Sessions whose refresh token
+ * is rejected are no longer renewed.
+ */
+@Startup
+@Singleton
+public class TokenRenewalService {
+  private static final Logger LOGGER = Logger.getLogger(TokenRenewalService.class.getName());
+  private static final String RENEWAL_METRIC = "provider_token.renewal";
+  private static final long DEFAULT_INTERVAL = 1;
+  private static final int DEFAULT_MAX_RATE = 20;
+  private static final long DEFAULT_RETRY_DELAY = 30;
+
+  private final OIDCProviders oidcProviders;
+  private final UserTokenManager tokenManager;
+  private final AsyncHTTPClient httpClient;
+  private final MeterRegistry meterRegistry;
+  /* Runs session store writes, on the worker pool or on virtual threads. */
+  private final Executor executor;
+  private final @Nullable RenewalSchedule renewals;
+  /* Refresh requests sent to each provider per run, within its maximum rate. */
+  private final int batchSize;
+  private final long retryDelayMillis;
+  /* Current time in epoch milliseconds, which sessions are due & retried at. */
+  private final LongSupplier clock;
+  private final @Nullable ScheduledExecutorService scheduler;
+
+  /* Time spent on refresh requests, including failed ones, per provider. */
+  private final ProviderTimers refreshRequestTimers;
+  /* Renewal counters by result, registered once per provider. */
+  private final ConcurrentMap<String, RenewalCounters> renewalCounters = new ConcurrentHashMap<>();
+
+  @Inject
+  public TokenRenewalService(
+      AuthServiceConfig authServiceConfig,
+      OIDCProviders providers,
+      UserTokenManager tokenManager,
+      AsyncHTTPClient httpClient,
+      BlockingExecutor blockingExecutor,
+      MeterRegistry meterRegistry) {
+    this(
+        authServiceConfig,
+        providers,
+        tokenManager,
+        httpClient,
+        blockingExecutor,
+        meterRegistry,
+        System::currentTimeMillis);
+  }
+
+  /* Takes due sessions & schedules retries by the specified clock, which tests advance. */
+  TokenRenewalService(
+      AuthServiceConfig authServiceConfig,
+      OIDCProviders providers,
+      UserTokenManager tokenManager,
+      AsyncHTTPClient httpClient,
+      BlockingExecutor blockingExecutor,
+      MeterRegistry meterRegistry,
+      LongSupplier clock) {
+    this.oidcProviders = providers;
+    this.tokenManager = tokenManager;
+    this.httpClient = httpClient;
+    this.meterRegistry = meterRegistry;
+    this.executor = blockingExecutor;
+    this.clock = clock;
+    this.renewals = tokenManager.getRenewalSchedule();
+    this.refreshRequestTimers =
+        ProviderTimers.remote(
+            meterRegistry, "oidc.refresh_request", "Time to renew a provider access token");
+
+    TokenRenewalConfig config = authServiceConfig.getTokenRenewalConfig();
+    long interval = config.getInterval() > 0 ? config.getInterval() : DEFAULT_INTERVAL;
+    int maxRate = config.getMaxRate() > 0 ? config.getMaxRate() : DEFAULT_MAX_RATE;
+    this.batchSize = (int) Math.max(1, Math.min(maxRate * interval, Integer.MAX_VALUE));
+    this.retryDelayMillis =
+        TimeUnit.SECONDS.toMillis(
+            config.getRetryDelay() > 0 ? config.getRetryDelay() : DEFAULT_RETRY_DELAY);
+
+    if (renewals != null) {
+      this.scheduler =
+          Executors.newSingleThreadScheduledExecutor(
+              runnable -> {
+                Thread thread = new Thread(runnable, "token-renewal");
+                thread.setDaemon(true);
+                return thread;
+              });
+      scheduler.scheduleWithFixedDelay(this::renewDue, interval, interval, TimeUnit.SECONDS);
+    } else {
+      this.scheduler = null;
+    }
+  }
+
+  @PreDestroy
+  void close() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+    }
+  }
+
+  /**
+   * Sends the refresh requests of the sessions due for renewal, in one batch per provider.
+   *
+   * @return number of sessions taken from the schedule to be renewed.
+   */
+  int renewDue() {
+    int renewing = 0;
+    try {
+      long now = clock.getAsLong();
+      for (String provider : renewals.getProviders()) {
+        List<UUID> due = renewals.pollDue(provider, now, batchSize);
+        for (UUID sessionId : due) {
+          renew(sessionId, provider);
+        }
+        renewing += due.size();
+      }
+    } catch (RuntimeException e) {
+      LOGGER.warning("Could not renew provider access tokens: " + e.getMessage());
+    }
+    return renewing;
+  }
+
+  /* Sends the refresh request of a session whose renewal was taken from the schedule. */
+  private void renew(UUID sessionId, String provider) {
+    Optional<ProviderTokens> sessionTokens;
+    try {
+      sessionTokens = tokenManager.getSessionTokens(sessionId);
+    } catch (RuntimeException e) {
+      retry(sessionId, provider, e);
+      return;
+    }
+    RefreshToken refreshToken = sessionTokens.map(ProviderTokens::getRefreshToken).orElse(null);
+    if (refreshToken == null) {
+      /* The session ended since it was scheduled. */
+      renewals.drop(sessionId);
+      return;
+    }
+
+    TokenRequest request;
+    try {
+      request = getRefreshRequest(provider, refreshToken);
+    } catch (AuthServiceException e) {
+      retry(sessionId, provider, e);
+      return;
+    }
+    long start = System.nanoTime();
+    httpClient
+        .send(provider, request.toHTTPRequest(), oidcProviders.getRequestTimeout(provider))
+        .onTermination()
+        .invoke(() -> refreshRequestTimers.record(provider, start))
+        /* Session store writes may block, so they don't run on the event loop. */
+        .emitOn(executor)
+        .map(response -> getRenewedTokens(response, refreshToken))
+        .subscribe()
+        .with(
+            tokens -> {
+              if (tokens == null) {
+                LOGGER.fine("Refresh token of session " + sessionId + " was rejected");
+                renewals.drop(sessionId);
+                counters(provider).rejected.increment();
+                return;
+              }
+              try {
+                boolean active = tokenManager.renewSessionTokens(sessionId, provider, tokens);
+                RenewalCounters counters = counters(provider);
+                (active ? counters.success : counters.ended).increment();
+              } catch (AuthServiceException e) {
+                LOGGER.warning("Could not store renewed tokens: " + e.getMessage());
+                counters(provider).failure.increment();
+              }
+            },
+            e -> retry(sessionId, provider, e));
+  }
+
+  /**
+   * Builds the token request renewing an access token with the specified refresh token.
+   *
+   * @param provider Name of the provider that issued the refresh token.
+   * @param refreshToken Refresh token of the session.
+   * @return token request to send to the token endpoint of the provider.
+   * @throws AuthServiceException if the provider wasn't discovered or has no token endpoint.
+   */
+  TokenRequest getRefreshRequest(@NotNull String provider, @NotNull RefreshToken refreshToken)
+      throws AuthServiceException {
+    ProviderContext context =
+        oidcProviders
+            .getContext(provider)
+            .orElseThrow(
+                () ->
+                    new AuthServiceException(
+                        "Token endpoint info not available for provider " + provider));
+    URI tokenEndpoint = context.getMetadata().getTokenEndpointURI();
+    if (tokenEndpoint == null) {
+      throw new AuthServiceException("Token endpoint info not available for provider " + provider);
+    }
+    return new TokenRequest(
+        tokenEndpoint, context.getClientAuthentication(), new RefreshTokenGrant(refreshToken));
+  }
+
+  /**
+   * Returns the tokens renewed by the token endpoint of the provider. Providers that don't rotate
+   * refresh tokens return none, in which case the current one is kept.
+   *
+   * @param httpResponse Response of the token endpoint.
+   * @param refreshToken Refresh token sent with the request.
+   * @return renewed tokens, or null if the provider rejected the refresh token.
+   * @throws AuthServiceException if the response isn't a token response or reports another error.
+   */
+  static @Nullable ProviderTokens getRenewedTokens(
+      @NotNull HTTPResponse httpResponse, @NotNull RefreshToken refreshToken)
+      throws AuthServiceException {
+    TokenResponse tokenResponse;
+    try {
+      tokenResponse = TokenResponse.parse(httpResponse);
+    } catch (ParseException e) {
+      throw new AuthServiceException("Parsing error", e);
+    }
+
+    if (!tokenResponse.indicatesSuccess()) {
+      ErrorObject error = tokenResponse.toErrorResponse().getErrorObject();
+      if (OAuth2Error.INVALID_GRANT.equals(error)) {
+        return null;
+      }
+      throw new AuthServiceException("Couldn't renew access token. Error obj: " + error);
+    }
+
+    Tokens tokens = tokenResponse.toSuccessResponse().getTokens();
+    AccessToken accessToken = tokens.getAccessToken();
+    return new ProviderTokens(
+        accessToken,
+        tokens.getRefreshToken() != null ? tokens.getRefreshToken() : refreshToken,
+        accessToken.getLifetime() > 0
+            ? System.currentTimeMillis() + accessToken.getLifetime() * 1000
+            : 0);
+  }
+
+  private void retry(UUID sessionId, String provider, Throwable e) {
+    LOGGER.fine("Failed to renew tokens of session " + sessionId + ": " + e.getMessage());
+    renewals.retry(sessionId, provider, clock.getAsLong() + retryDelayMillis);
+    counters(provider).failure.increment();
+  }
+
+  private RenewalCounters counters(String provider) {
+    return renewalCounters.computeIfAbsent(provider, p -> new RenewalCounters(meterRegistry, p));
+  }
+
+  private static final class RenewalCounters {
+    private final Counter success;
+    private final Counter ended;
+    private final Counter rejected;
+    private final Counter failure;
+
+    RenewalCounters(MeterRegistry meterRegistry, String provider) {
+      success = meterRegistry.counter(RENEWAL_METRIC, "provider", provider, "result", "success");
+      ended = meterRegistry.counter(RENEWAL_METRIC, "provider", provider, "result", "ended");
+      rejected = meterRegistry.counter(RENEWAL_METRIC, "provider", provider, "result", "rejected");
+      failure = meterRegistry.counter(RENEWAL_METRIC, "provider", provider, "result", "failure");
+    }
+  }
+}
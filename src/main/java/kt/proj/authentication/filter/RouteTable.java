@@ -0,0 +1,188 @@
+package kt.proj.authentication.filter;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import kt.proj.common.AuthServiceException;
+import kt.proj.common.UserPrincipal;
+import kt.proj.config.RouteConfig;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Access policies of the paths of the service, compiled once from the configured routes. Routes
+ * match a path exactly, a path prefix or a regular expression; exact routes are tried first, then
+ * prefixes from the longest, then patterns in the configured order. Requests to paths no route
+ * matches must be authenticated.
+ *
+ * <p>Exact and prefix routes match a path with or without a trailing slash, and a prefix only
+ * matches whole path segments, so {@code /admin} matches {@code /admin/users} but not {@code
+ * /administrator}. Neither allocates, whereas pattern routes allocate a matcher per request.
+ */
+public final class RouteTable {
+
+  /** Policy applied to the requests matching a route. */
+  public enum Policy {
+    /** Requests are let through without a user token. */
+    PUBLIC,
+    /** Requests must carry a valid user token. */
+    AUTHENTICATED,
+    /** Requests must carry a valid user token issued for the provider of the route. */
+    PROVIDER
+  }
+
+  private static final Route DEFAULT_ROUTE =
+      new Route(Route.PATTERN, null, null, Policy.AUTHENTICATED, null);
+
+  private final Route[] routes;
+
+  private RouteTable(Route[] routes) {
+    this.routes = routes;
+  }
+
+  /**
+   * Compiles the configured routes followed by the built-in public routes, so a configured route
+   * takes precedence over a built-in one for the same path.
+   *
+   * @param configuredRoutes routes of the service configuration.
+   * @param publicPaths paths of the built-in public routes, matched exactly.
+   * @return route table of the routes.
+   * @throws AuthServiceException if a route is invalid.
+   */
+  public static @NotNull RouteTable compile(
+      @NotNull List<RouteConfig> configuredRoutes, @NotNull List<String> publicPaths)
+      throws AuthServiceException {
+    List<Route> routes = new ArrayList<>(configuredRoutes.size() + publicPaths.size());
+    for (RouteConfig route : configuredRoutes) {
+      routes.add(Route.compile(route));
+    }
+    for (String path : publicPaths) {
+      routes.add(
+          Route.compile(new RouteConfig(path, RouteConfig.EXACT, RouteConfig.PUBLIC, null)));
+    }
+    /* The sort is stable, so configured routes stay ahead of built-in ones of the same rank. */
+    routes.sort(
+        Comparator.comparingInt((Route route) -> route.kind)
+            .thenComparingInt(route -> route.kind == Route.PREFIX ? -route.path.length() : 0));
+    return new RouteTable(routes.toArray(new Route[0]));
+  }
+
+  /**
+   * Returns the route of the specified request path.
+   *
+   * @param path request path, without the query string.
+   * @return first matching route, or the authenticated route if none matches.
+   */
+  public @NotNull Route match(@NotNull String path) {
+    for (Route route : routes) {
+      if (route.matches(path)) {
+        return route;
+      }
+    }
+    return DEFAULT_ROUTE;
+  }
+
+  /** Compiled route along with its policy. */
+  public static final class Route {
+    private static final int EXACT = 0;
+    private static final int PREFIX = 1;
+    private static final int PATTERN = 2;
+
+    private final int kind;
+    private final @Nullable String path;
+    private final @Nullable Pattern pattern;
+    private final Policy policy;
+    private final @Nullable String provider;
+
+    private Route(
+        int kind,
+        @Nullable String path,
+        @Nullable Pattern pattern,
+        Policy policy,
+        @Nullable String provider) {
+      this.kind = kind;
+      this.path = path;
+      this.pattern = pattern;
+      this.policy = policy;
+      this.provider = provider;
+    }
+
+    private static Route compile(RouteConfig config) {
+      String path = config.getPath();
+      if (path == null || path.isEmpty()) {
+        throw new AuthServiceException("Route without a path: " + config);
+      }
+      Policy policy;
+      switch (String.valueOf(config.getPolicy())) {
+        case RouteConfig.PUBLIC:
+          policy = Policy.PUBLIC;
+          break;
+        case RouteConfig.AUTHENTICATED:
+          policy = Policy.AUTHENTICATED;
+          break;
+        case RouteConfig.PROVIDER:
+          if (config.getProvider() == null) {
+            throw new AuthServiceException("Route without a provider: " + config);
+          }
+          policy = Policy.PROVIDER;
+          break;
+        default:
+          throw new AuthServiceException("Unsupported route policy: " + config);
+      }
+      /* A trailing slash is matched by exact & prefix routes, so it isn't part of their path. */
+      String trimmed =
+          path.length() > 1 && path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+      switch (String.valueOf(config.getMatch())) {
+        case RouteConfig.EXACT:
+          return new Route(EXACT, trimmed, null, policy, config.getProvider());
+        case RouteConfig.PREFIX:
+          return new Route(PREFIX, trimmed, null, policy, config.getProvider());
+        case RouteConfig.PATTERN:
+          try {
+            return new Route(PATTERN, path, Pattern.compile(path), policy, config.getProvider());
+          } catch (PatternSyntaxException e) {
+            throw new AuthServiceException("Invalid route pattern: " + config, e);
+          }
+        default:
+          throw new AuthServiceException("Unsupported route match: " + config);
+      }
+    }
+
+    public Policy getPolicy() {
+      return policy;
+    }
+
+    /** Returns the provider user tokens must be issued for, or null unless required. */
+    public @Nullable String getProvider() {
+      return provider;
+    }
+
+    /**
+     * Checks whether the user of a valid user token satisfies the policy of the route.
+     *
+     * @param principal of the user token.
+     * @return true unless the route requires another provider than that of the token.
+     */
+    public boolean permits(@NotNull UserPrincipal principal) {
+      return policy != Policy.PROVIDER || provider.equalsIgnoreCase(principal.getProvider());
+    }
+
+    private boolean matches(String requestPath) {
+      if (pattern != null) {
+        return pattern.matcher(requestPath).matches();
+      }
+      int length = path.length();
+      if (!requestPath.startsWith(path)) {
+        return false;
+      }
+      if (requestPath.length() == length
+          || (requestPath.length() == length + 1 && requestPath.charAt(length) == '/')) {
+        return true;
+      }
+      /* The root prefix is the only path ending with a slash. */
+      return kind == PREFIX && (path.endsWith("/") || requestPath.charAt(length) == '/');
+    }
+  }
+}
@@ -1,94 +1,149 @@
 package kt.proj.authentication.filter;
 
-import com.nimbusds.jwt.JWT;
-import com.nimbusds.oauth2.sdk.ParseException;
-import com.nimbusds.oauth2.sdk.token.BearerAccessToken;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import java.security.Principal;
-import java.util.Set;
-import javax.annotation.Priority;
+import java.util.List;
+import java.util.Optional;
 import javax.inject.Inject;
 import javax.ws.rs.Priorities;
 import javax.ws.rs.container.ContainerRequestContext;
-import javax.ws.rs.container.ContainerRequestFilter;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.SecurityContext;
-import javax.ws.rs.ext.Provider;
+import kt.proj.authentication.IntrospectionResource;
+import kt.proj.authentication.JWKSetResource;
+import kt.proj.common.BlockingExecutor;
+import kt.proj.common.UserPrincipal;
 import kt.proj.common.UserTokenManager;
+import kt.proj.config.AuthServiceConfig;
+import org.jboss.resteasy.reactive.server.ServerRequestFilter;
+import org.jboss.resteasy.reactive.server.spi.ResteasyReactiveContainerRequestContext;
 
-@Provider
-@Priority(Priorities.AUTHENTICATION)
-public class SecurityFilter implements ContainerRequestFilter {
+/**
+ * Authenticates requests by their user token, according to the policy of the route of their path.
+ *
+ * <p>The filter runs on the event loop. Tokens are validated there too unless sessions are read
+ * from a remote store, in which case the request is suspended while its token is validated on the
+ * blocking executor. Rejections are counted by the counters registered with the filter.
+ */
+public class SecurityFilter {
   private static final String AUTHORIZATION_HEADER = "Authorization";
+  private static final String BEARER_PREFIX = "Bearer ";
+  private static final String REJECTED_METRIC = "auth.rejected";
 
-  private static final Set<String> publicURIs = Set.of("/authenticate", "/oauth/callback");
+  /* Introspection callers authenticate with their own credentials, checked by the resource. */
+  private static final List<String> PUBLIC_PATHS =
+      List.of("/authenticate", "/oauth/callback", JWKSetResource.PATH, IntrospectionResource.PATH);
 
-  @Inject UserTokenManager tokenManager;
+  private final UserTokenManager tokenManager;
+  private final BlockingExecutor blockingExecutor;
+  private final RouteTable routeTable;
 
-  @Override
-  public void filter(ContainerRequestContext requestContext) {
-    String authzHeader = requestContext.getHeaderString(AUTHORIZATION_HEADER);
-    Runnable errorResponse =
-        () -> requestContext.abortWith(Response.status(Response.Status.UNAUTHORIZED).build());
+  private final Counter missingToken;
+  private final Counter malformedToken;
+  private final Counter invalidToken;
+  private final Counter wrongProvider;
+
+  @Inject
+  public SecurityFilter(
+      AuthServiceConfig authServiceConfig,
+      UserTokenManager tokenManager,
+      BlockingExecutor blockingExecutor,
+      MeterRegistry meterRegistry) {
+    this.tokenManager = tokenManager;
+    this.blockingExecutor = blockingExecutor;
+    this.routeTable = RouteTable.compile(authServiceConfig.getRoutes(), PUBLIC_PATHS);
+    missingToken = meterRegistry.counter(REJECTED_METRIC, "reason", "missing_token");
+    malformedToken = meterRegistry.counter(REJECTED_METRIC, "reason", "malformed_token");
+    invalidToken = meterRegistry.counter(REJECTED_METRIC, "reason", "invalid_token");
+    wrongProvider = meterRegistry.counter(REJECTED_METRIC, "reason", "wrong_provider");
+  }
 
-    /* Skip authorization check for public URIs viz. login & OIDC callback. */
-    if (publicURIs.contains(requestContext.getUriInfo().getPath())) {
+  @ServerRequestFilter(priority = Priorities.AUTHENTICATION, nonBlocking = true)
+  public void filter(ResteasyReactiveContainerRequestContext requestContext) {
+    RouteTable.Route route = routeTable.match(requestContext.getUriInfo().getPath());
+    if (route.getPolicy() == RouteTable.Policy.PUBLIC) {
       return;
-    } else if (authzHeader == null) {
-      errorResponse.run();
+    }
+
+    String authzHeader = requestContext.getHeaderString(AUTHORIZATION_HEADER);
+    if (authzHeader == null) {
+      reject(requestContext, missingToken, Response.Status.UNAUTHORIZED);
+      return;
+    } else if (authzHeader.length() <= BEARER_PREFIX.length()
+        || !authzHeader.regionMatches(true, 0, BEARER_PREFIX, 0, BEARER_PREFIX.length())) {
+      reject(requestContext, malformedToken, Response.Status.UNAUTHORIZED);
       return;
     }
+    String userToken = authzHeader.substring(BEARER_PREFIX.length()).trim();
 
-    String userToken;
-    try {
-      userToken = BearerAccessToken.parse(authzHeader).getValue();
-    } catch (ParseException e) {
-      errorResponse.run();
+    if (!tokenManager.isValidationBlocking()) {
+      authenticate(requestContext, route, userToken);
       return;
     }
+    requestContext.suspend();
+    blockingExecutor.execute(
+        () -> {
+          try {
+            authenticate(requestContext, route, userToken);
+          } catch (RuntimeException e) {
+            requestContext.resume(e);
+            return;
+          }
+          requestContext.resume();
+        });
+  }
 
-    tokenManager
-        .getValidatedUserToken(userToken)
-        .ifPresentOrElse(
-            jwtToken ->
-                requestContext.setSecurityContext(
-                    new SecurityContext() {
-                      @Override
-                      public Principal getUserPrincipal() {
-                        return new UserTokenPrincipal(jwtToken);
-                      }
-
-                      @Override
-                      public boolean isUserInRole(String r) {
-                        return false;
-                      }
-
-                      @Override
-                      public boolean isSecure() {
-                        return true;
-                      }
-
-                      @Override
-                      public String getAuthenticationScheme() {
-                        return "Bearer";
-                      }
-                    }),
-            errorResponse);
+  /* Sets the security context of a valid token permitted by the route, rejects it otherwise. */
+  private void authenticate(
+      ContainerRequestContext requestContext, RouteTable.Route route, String userToken) {
+    Optional<UserPrincipal> principal = tokenManager.getValidatedUserToken(userToken);
+    if (principal.isEmpty()) {
+      reject(requestContext, invalidToken, Response.Status.UNAUTHORIZED);
+      return;
+    }
+    if (!route.permits(principal.get())) {
+      reject(requestContext, wrongProvider, Response.Status.FORBIDDEN);
+      return;
+    }
+    requestContext.setSecurityContext(new UserTokenSecurityContext(principal.get()));
+  }
+
+  /*
+   * Aborts the request, counting rejections by reason. Each rejection gets a response of its own,
+   * since response filters may add headers to it.
+   */
+  private static void reject(
+      ContainerRequestContext requestContext, Counter rejections, Response.Status status) {
+    rejections.increment();
+    requestContext.abortWith(Response.status(status).build());
   }
 
-  public static class UserTokenPrincipal implements Principal {
-    private final JWT userToken;
+  private static final class UserTokenSecurityContext implements SecurityContext {
+    private final UserPrincipal principal;
+
+    private UserTokenSecurityContext(UserPrincipal principal) {
+      this.principal = principal;
+    }
+
+    @Override
+    public Principal getUserPrincipal() {
+      return principal;
+    }
 
-    public UserTokenPrincipal(JWT userToken) {
-      this.userToken = userToken;
+    @Override
+    public boolean isUserInRole(String role) {
+      return false;
     }
 
     @Override
-    public String getName() {
-      return UserTokenManager.getTokenClaims(userToken).getSubject();
+    public boolean isSecure() {
+      return true;
     }
 
-    public JWT getUserToken() {
-      return userToken;
+    @Override
+    public String getAuthenticationScheme() {
+      return "Bearer";
     }
   }
 }
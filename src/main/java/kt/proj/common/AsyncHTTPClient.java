@@ -0,0 +1,294 @@
+package kt.proj.common;
+
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.nimbusds.oauth2.sdk.http.HTTPRequest;
+import com.nimbusds.oauth2.sdk.http.HTTPResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpVersion;
+import io.vertx.ext.web.client.WebClientOptions;
+import io.vertx.mutiny.core.MultiMap;
+import io.vertx.mutiny.core.Vertx;
+import io.vertx.mutiny.core.buffer.Buffer;
+import io.vertx.mutiny.ext.web.client.HttpRequest;
+import io.vertx.mutiny.ext.web.client.HttpResponse;
+import io.vertx.mutiny.ext.web.client.WebClient;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import kt.proj.config.AuthServiceConfig;
+import kt.proj.config.OIDCClientConfig;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Sends the requests built by the OAuth 2.0 SDK on the Vert.x event loop, so that waiting for a
+ * slow provider does not hold a worker thread.
+ *
+ * <p>Every configured provider has a connection pool of its own, with the connect timeout & pool
+ * size of its client configuration, so that a slow provider can't exhaust the connections to the
+ * others. Connections are kept alive between requests, sparing a TLS handshake per request, and
+ * HTTP/2 is negotiated with providers supporting it, multiplexing requests over few connections.
+ *
+ * <p>Requests to a provider also go through its {@link ProviderGuard}, which fails them fast with
+ * a {@link ProviderUnavailableException} while the provider is degraded or saturated.
+ */
+@ApplicationScoped
+public class AsyncHTTPClient {
+  /* Each exchange in flight holds a connection; waiting for a free one would serialize them. */
+  private static final int MAX_CONNECTIONS_PER_HOST = 1024;
+  /* Each HTTP/2 connection carries as many concurrent requests as the provider allows. */
+  private static final int MAX_HTTP2_CONNECTIONS_PER_HOST = 4;
+  private static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 2000;
+  private static final int SC_TOO_MANY_REQUESTS = 429;
+
+  /* Requests to unknown providers, or not made on behalf of a provider. */
+  private final WebClient webClient;
+  /* Connection pools & guards keyed by both the lower-cased & configured provider name. */
+  private final Map<String, ProviderPool> providerPools;
+
+  @Inject
+  public AsyncHTTPClient(
+      Vertx vertx, AuthServiceConfig authServiceConfig, MeterRegistry meterRegistry) {
+    this(vertx, authServiceConfig.getOidcClients(), new WebClientOptions(), meterRegistry);
+  }
+
+  /** Creates a client recording the metrics of its guards in a registry of its own. */
+  public AsyncHTTPClient(Vertx vertx, AuthServiceConfig authServiceConfig) {
+    this(vertx, authServiceConfig, new SimpleMeterRegistry());
+  }
+
+  /** Creates a client without provider pools, sending every request with the default pool. */
+  public AsyncHTTPClient(Vertx vertx) {
+    this(vertx, List.of(), new WebClientOptions(), new SimpleMeterRegistry());
+  }
+
+  /**
+   * @param vertx Vert.x instance running the requests.
+   * @param clients Registered OIDC clients, each getting a pool & guard of its own.
+   * @param baseOptions Options every pool starts from, like the TLS trust options.
+   * @param meterRegistry Registry of the metrics of the provider guards.
+   */
+  AsyncHTTPClient(
+      Vertx vertx,
+      List<OIDCClientConfig> clients,
+      WebClientOptions baseOptions,
+      MeterRegistry meterRegistry) {
+    this(vertx, clients, baseOptions, meterRegistry, Ticker.systemTicker());
+  }
+
+  /* Times the requests of the provider guards with the specified ticker, which tests advance. */
+  AsyncHTTPClient(
+      Vertx vertx,
+      List<OIDCClientConfig> clients,
+      WebClientOptions baseOptions,
+      MeterRegistry meterRegistry,
+      Ticker ticker) {
+    this.webClient =
+        WebClient.create(
+            vertx,
+            new WebClientOptions(baseOptions)
+                .setMaxPoolSize(MAX_CONNECTIONS_PER_HOST)
+                .setConnectTimeout(DEFAULT_CONNECT_TIMEOUT_MILLIS)
+                .setKeepAlive(true)
+                .setFollowRedirects(false));
+    Map<String, ProviderPool> providerPools = new HashMap<>();
+    for (OIDCClientConfig client : clients) {
+      WebClientOptions options = providerOptions(baseOptions, client);
+      ProviderPool pool =
+          new ProviderPool(
+              WebClient.create(vertx, options),
+              client.isHttp2() ? WebClient.create(vertx, http2Options(options)) : null,
+              new ProviderGuard(client, meterRegistry, ticker));
+      providerPools.put(client.getProviderName().toLowerCase(), pool);
+      providerPools.put(client.getProviderName(), pool);
+    }
+    this.providerPools = Map.copyOf(providerPools);
+  }
+
+  private static WebClientOptions providerOptions(
+      WebClientOptions baseOptions, OIDCClientConfig client) {
+    return new WebClientOptions(baseOptions)
+        .setMaxPoolSize(
+            client.getMaxConnections() > 0 ? client.getMaxConnections() : MAX_CONNECTIONS_PER_HOST)
+        .setConnectTimeout(
+            client.getConnectTimeout() > 0
+                ? (int) client.getConnectTimeout()
+                : DEFAULT_CONNECT_TIMEOUT_MILLIS)
+        .setKeepAlive(true)
+        .setFollowRedirects(false);
+  }
+
+  /*
+   * HTTP/2 is only offered through ALPN, which falls back to HTTP/1.1; a clear-text upgrade
+   * would hold every first request of a connection to a provider that doesn't support it, and
+   * prior knowledge would fail them. Each endpoint is matched by its own scheme, since a provider
+   * discovered over TLS may still publish plain HTTP endpoints, or the reverse.
+   */
+  private static WebClientOptions http2Options(WebClientOptions options) {
+    return new WebClientOptions(options)
+        .setProtocolVersion(HttpVersion.HTTP_2)
+        .setUseAlpn(true)
+        .setHttp2ClearTextUpgrade(false)
+        .setHttp2MaxPoolSize(MAX_HTTP2_CONNECTIONS_PER_HOST);
+  }
+
+  /**
+   * Sends the specified request with the default connection pool.
+   *
+   * @param request request built by the OAuth 2.0 SDK.
+   * @param timeout maximum time to wait for the response.
+   * @return response as expected by the OAuth 2.0 SDK parsers, or a failure if the request
+   *     couldn't be sent or timed out.
+   */
+  public Uni<HTTPResponse> send(@NotNull HTTPRequest request, @NotNull Duration timeout) {
+    return send(webClient, request, timeout);
+  }
+
+  /**
+   * Sends the specified request to a provider with its connection pool, unless its guard rejects
+   * it. Failed requests, 5xx & 429 responses count as failures of the provider.
+   *
+   * @param providerName Name of the configured provider.
+   * @param request request built by the OAuth 2.0 SDK.
+   * @param timeout maximum time to wait for the response.
+   * @return response as expected by the OAuth 2.0 SDK parsers, or a failure if the request
+   *     couldn't be sent or timed out, or a {@link ProviderUnavailableException} if the guard of
+   *     the provider rejected it.
+   */
+  public Uni<HTTPResponse> send(
+      @NotNull String providerName, @NotNull HTTPRequest request, @NotNull Duration timeout) {
+    ProviderPool pool = providerPools.get(providerName);
+    if (pool == null) {
+      pool = providerPools.get(providerName.toLowerCase());
+    }
+    if (pool == null) {
+      return send(webClient, request, timeout);
+    }
+    ProviderGuard guard = pool.guard;
+    WebClient providerClient = pool.webClient(request);
+    return Uni.createFrom()
+        .deferred(
+            () -> {
+              long start = guard.acquire();
+              Uni<HTTPResponse> sent;
+              try {
+                sent = send(providerClient, request, timeout);
+              } catch (RuntimeException e) {
+                /* Requests failing unsent, like on a closed client, free their permit. */
+                guard.release(start, ProviderGuard.Outcome.FAILURE);
+                throw e;
+              }
+              return sent
+                  .onTermination()
+                  .invoke(
+                      (response, failure, cancelled) ->
+                          guard.release(start, outcome(response, failure, cancelled)));
+            });
+  }
+
+  private static ProviderGuard.Outcome outcome(
+      HTTPResponse response, Throwable failure, boolean cancelled) {
+    if (cancelled) {
+      return ProviderGuard.Outcome.CANCELLED;
+    } else if (failure != null
+        || response.getStatusCode() >= HTTPResponse.SC_SERVER_ERROR
+        || response.getStatusCode() == SC_TOO_MANY_REQUESTS) {
+      return ProviderGuard.Outcome.FAILURE;
+    }
+    return ProviderGuard.Outcome.SUCCESS;
+  }
+
+  /**
+   * Returns the state of the circuit breaker of the specified provider.
+   *
+   * @param providerName Name of the configured provider.
+   * @return state of the circuit breaker, if the provider is configured.
+   */
+  public Optional<ProviderGuard.State> getCircuitState(@NotNull String providerName) {
+    ProviderPool pool = providerPools.get(providerName);
+    if (pool == null) {
+      pool = providerPools.get(providerName.toLowerCase());
+    }
+    return Optional.ofNullable(pool != null ? pool.guard.getState() : null);
+  }
+
+  private static Uni<HTTPResponse> send(
+      WebClient webClient, HTTPRequest request, Duration timeout) {
+    String url = request.getURL().toString();
+    String query = request.getQuery();
+    boolean hasBody =
+        request.getMethod() == HTTPRequest.Method.POST
+            || request.getMethod() == HTTPRequest.Method.PUT;
+    if (!hasBody && query != null && !query.isEmpty()) {
+      url = url + (url.indexOf('?') < 0 ? '?' : '&') + query;
+    }
+
+    HttpRequest<Buffer> httpRequest =
+        webClient
+            .requestAbs(HttpMethod.valueOf(request.getMethod().name()), url)
+            .timeout(timeout.toMillis());
+    for (Map.Entry<String, List<String>> header : request.getHeaderMap().entrySet()) {
+      httpRequest.putHeader(header.getKey(), header.getValue());
+    }
+    Uni<HttpResponse<Buffer>> response =
+        hasBody && query != null
+            ? httpRequest.sendBuffer(Buffer.buffer(query))
+            : httpRequest.send();
+    return response.map(AsyncHTTPClient::toHTTPResponse);
+  }
+
+  @PreDestroy
+  void close() {
+    webClient.close();
+    providerPools.values().stream().distinct().forEach(ProviderPool::close);
+  }
+
+  private static HTTPResponse toHTTPResponse(HttpResponse<Buffer> response) {
+    HTTPResponse httpResponse = new HTTPResponse(response.statusCode());
+    httpResponse.setStatusMessage(response.statusMessage());
+    MultiMap headers = response.headers();
+    for (String name : headers.names()) {
+      httpResponse.setHeader(name, headers.getAll(name).toArray(new String[0]));
+    }
+    Buffer body = response.body();
+    if (body != null) {
+      httpResponse.setContent(body.toString());
+    }
+    return httpResponse;
+  }
+
+  private static final class ProviderPool {
+    private final WebClient webClient;
+    /* Offers HTTP/2 to the HTTPS endpoints of the provider, if enabled. */
+    private final WebClient http2Client;
+    private final ProviderGuard guard;
+
+    private ProviderPool(
+        WebClient webClient, @Nullable WebClient http2Client, ProviderGuard guard) {
+      this.webClient = webClient;
+      this.http2Client = http2Client;
+      this.guard = guard;
+    }
+
+    private WebClient webClient(HTTPRequest request) {
+      return http2Client != null && "https".equalsIgnoreCase(request.getURL().getProtocol())
+          ? http2Client
+          : webClient;
+    }
+
+    private void close() {
+      webClient.close();
+      if (http2Client != null) {
+        http2Client.close();
+      }
+    }
+  }
+}
@@ -0,0 +1,87 @@
+package kt.proj.common;
+
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Logger;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import kt.proj.config.AuthServiceConfig;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Runs the blocking work of requests handled on the event loop, like signing user tokens & writing
+ * sessions to the session store once a provider answered.
+ *
+ * <p>By default the work runs on the worker pool, whose size bounds the logins completing at once.
+ * With {@code execution.virtual_threads} on a Java 21 runtime, every task runs on a virtual thread
+ * of its own instead, so a session store that is slow to answer only costs a parked virtual thread
+ * per login. Virtual threads are created through reflection, so that the service still builds &
+ * runs on Java 11.
+ *
+ * <p>A virtual thread blocking while it holds a monitor pins its carrier thread, so code running
+ * on this executor must guard blocking I/O with {@link java.util.concurrent.locks.Lock locks}
+ * rather than {@code synchronized}.
+ */
+@Singleton
+public class BlockingExecutor implements Executor {
+  private static final Logger LOGGER = Logger.getLogger(BlockingExecutor.class.getName());
+
+  private final Executor executor;
+  /* Executor of virtual threads, null when running on the worker pool. */
+  private final @Nullable ExecutorService virtualThreads;
+
+  @Inject
+  public BlockingExecutor(AuthServiceConfig authServiceConfig) {
+    this(authServiceConfig.getExecutionConfig().isVirtualThreads(), null);
+  }
+
+  /**
+   * @param virtualThreads whether to run tasks on virtual threads, if the runtime supports them.
+   * @param workerPool executor of the tasks otherwise, or null for the worker pool.
+   */
+  public BlockingExecutor(boolean virtualThreads, @Nullable Executor workerPool) {
+    this.virtualThreads = virtualThreads ? newVirtualThreadPerTaskExecutor() : null;
+    if (this.virtualThreads != null) {
+      LOGGER.info("Running blocking work on virtual threads");
+      this.executor = this.virtualThreads;
+    } else {
+      this.executor = workerPool != null ? workerPool : Infrastructure.getDefaultWorkerPool();
+    }
+  }
+
+  @Override
+  public void execute(@NotNull Runnable task) {
+    executor.execute(task);
+  }
+
+  /** Returns whether tasks run on virtual threads. */
+  public boolean isVirtual() {
+    return virtualThreads != null;
+  }
+
+  @PreDestroy
+  public void close() {
+    if (virtualThreads != null) {
+      virtualThreads.shutdown();
+    }
+  }
+
+  /* Returns an executor starting a virtual thread per task, or null before Java 21. */
+  private static @Nullable ExecutorService newVirtualThreadPerTaskExecutor() {
+    try {
+      return (ExecutorService)
+          Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (NoSuchMethodException e) {
+      LOGGER.warning(
+          "Virtual threads require Java 21, running blocking work on the worker pool instead");
+    } catch (IllegalAccessException | InvocationTargetException e) {
+      LOGGER.warning("Could not create virtual threads, running blocking work on the worker pool");
+    }
+    return null;
+  }
+}
@@ -2,5 +2,6 @@ package kt.proj.common;
 
 public enum ErrorCode {
   INVALID_INPUT,
-  SERVER_SIDE_ERROR;
+  SERVER_SIDE_ERROR,
+  PROVIDER_UNAVAILABLE;
 }
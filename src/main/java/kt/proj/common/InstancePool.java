@@ -0,0 +1,64 @@
+package kt.proj.common;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Lock-free pool of instances that aren't thread-safe but are costly to create, like initialized
+ * {@link java.security.Signature}s or encoding buffers. Unlike a {@link ThreadLocal}, pooled
+ * instances don't depend on the identity of the calling thread, so tasks running on a virtual
+ * thread each reuse an instance instead of creating one per task.
+ *
+ * <p>The pool never blocks: when it is empty, callers create a new instance, and an instance
+ * returned to a full pool is dropped. Its capacity is a few instances per processor, since
+ * instances are only held while a thread runs without blocking.
+ *
+ * @param <T> type of the pooled instances.
+ */
+public final class InstancePool<T> {
+  private final AtomicReferenceArray<T> slots;
+  private final int mask;
+
+  /** Creates a pool holding at least twice as many instances as there are processors. */
+  public InstancePool() {
+    /* A power of two, to start scanning the slots from a random one with a mask. */
+    int capacity = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 4 - 1);
+    this.slots = new AtomicReferenceArray<>(capacity);
+    this.mask = capacity - 1;
+  }
+
+  /**
+   * Takes an instance out of the pool.
+   *
+   * @return pooled instance, or null if the pool is empty and the caller must create one.
+   */
+  public @Nullable T poll() {
+    int start = ThreadLocalRandom.current().nextInt();
+    for (int i = 0; i <= mask; i++) {
+      int slot = (start + i) & mask;
+      T instance = slots.get(slot);
+      if (instance != null && slots.compareAndSet(slot, instance, null)) {
+        return instance;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns an instance to the pool once the caller is done with it. Instances left in an unknown
+   * state, like a {@link java.security.Signature} whose operation failed, must not be returned.
+   *
+   * @param instance instance taken from the pool or created by the caller.
+   */
+  public void offer(@NotNull T instance) {
+    int start = ThreadLocalRandom.current().nextInt();
+    for (int i = 0; i <= mask; i++) {
+      int slot = (start + i) & mask;
+      if (slots.get(slot) == null && slots.compareAndSet(slot, null, instance)) {
+        return;
+      }
+    }
+  }
+}
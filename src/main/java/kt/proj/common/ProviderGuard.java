@@ -0,0 +1,227 @@
+package kt.proj.common;
+
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import kt.proj.config.OIDCClientConfig;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Bulkhead & circuit breaker of the requests to one provider.
+ *
+ * <p>The bulkhead bounds the requests in flight to the provider, rejecting others right away, so
+ * that a slow provider can't take all the connections & pending callbacks of the service.
+ *
+ * <p>The circuit breaker tracks the outcome of the last {@link #WINDOW_SIZE} requests, counting
+ * failed requests, 5xx & 429 responses and requests slower than the slow call threshold as
+ * failures. Once at least {@link #MINIMUM_CALLS} requests were tracked and the failure rate reaches
+ * its threshold, the breaker opens and rejects every request for the open duration. It then lets
+ * {@link #PROBE_CALLS} probe requests through: if all of them succeed it closes again, otherwise
+ * it reopens for another open duration.
+ */
+public class ProviderGuard {
+  private static final Logger LOGGER = Logger.getLogger(ProviderGuard.class.getName());
+  static final int WINDOW_SIZE = 50;
+  static final int MINIMUM_CALLS = 20;
+  static final int PROBE_CALLS = 3;
+  private static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 256;
+  private static final int DEFAULT_FAILURE_RATE_THRESHOLD = 50;
+  private static final long DEFAULT_SLOW_CALL_THRESHOLD_MILLIS = 2000;
+  private static final long DEFAULT_OPEN_DURATION_MILLIS = 30_000;
+
+  /** State of the circuit breaker, published as its ordinal. */
+  public enum State {
+    CLOSED,
+    OPEN,
+    HALF_OPEN
+  }
+
+  /** Outcome of a request, as seen by the circuit breaker. */
+  enum Outcome {
+    SUCCESS,
+    FAILURE,
+    /* The caller gave up on the request, which tells nothing about the provider. */
+    CANCELLED
+  }
+
+  private final String providerName;
+  /* Source of the nanosecond times of requests & of the breaker opening. */
+  private final Ticker ticker;
+  private final Semaphore permits;
+  private final int failureRateThreshold;
+  private final long slowCallNanos;
+  private final long openNanos;
+  private final Counter bulkheadRejections;
+  private final Counter circuitRejections;
+
+  /* Outcomes of the last requests, as a ring of failure flags; guarded by this. */
+  private final boolean[] window = new boolean[WINDOW_SIZE];
+  private int windowCount;
+  private int windowFailures;
+  private int windowNext;
+  private State state = State.CLOSED;
+  private long openedAt;
+  private int probesStarted;
+  private int probesSucceeded;
+
+  ProviderGuard(@NotNull OIDCClientConfig client, @NotNull MeterRegistry meterRegistry) {
+    this(client, meterRegistry, Ticker.systemTicker());
+  }
+
+  ProviderGuard(
+      @NotNull OIDCClientConfig client,
+      @NotNull MeterRegistry meterRegistry,
+      @NotNull Ticker ticker) {
+    this.providerName = client.getProviderName().toLowerCase();
+    this.ticker = ticker;
+    this.permits =
+        new Semaphore(
+            client.getMaxConcurrentRequests() > 0
+                ? client.getMaxConcurrentRequests()
+                : DEFAULT_MAX_CONCURRENT_REQUESTS);
+    this.failureRateThreshold =
+        client.getFailureRateThreshold() > 0
+            ? client.getFailureRateThreshold()
+            : DEFAULT_FAILURE_RATE_THRESHOLD;
+    this.slowCallNanos =
+        TimeUnit.MILLISECONDS.toNanos(
+            client.getSlowCallThreshold() > 0
+                ? client.getSlowCallThreshold()
+                : DEFAULT_SLOW_CALL_THRESHOLD_MILLIS);
+    this.openNanos =
+        TimeUnit.MILLISECONDS.toNanos(
+            client.getOpenDuration() > 0
+                ? client.getOpenDuration()
+                : DEFAULT_OPEN_DURATION_MILLIS);
+
+    Gauge.builder("provider.circuit_breaker.state", this, guard -> guard.getState().ordinal())
+        .description("Circuit breaker of the provider: 0 closed, 1 open, 2 half-open")
+        .tag("provider", providerName)
+        .register(meterRegistry);
+    Gauge.builder("provider.requests.available", permits, Semaphore::availablePermits)
+        .description("Requests to the provider that may start before the bulkhead rejects any")
+        .tag("provider", providerName)
+        .register(meterRegistry);
+    this.bulkheadRejections = rejections(meterRegistry, "bulkhead");
+    this.circuitRejections = rejections(meterRegistry, "circuit_open");
+  }
+
+  private Counter rejections(MeterRegistry meterRegistry, String reason) {
+    return Counter.builder("provider.requests.rejected")
+        .description("Requests to the provider rejected without calling it")
+        .tags("provider", providerName, "reason", reason)
+        .register(meterRegistry);
+  }
+
+  /**
+   * Acquires a permit for a request to the provider, which must be released by {@link
+   * #release(long, Outcome)}.
+   *
+   * @return time of the ticker at the start of the request, in nanoseconds.
+   * @throws ProviderUnavailableException if the circuit breaker is open or too many requests are
+   *     in flight.
+   */
+  long acquire() throws ProviderUnavailableException {
+    long now = ticker.read();
+    boolean probe;
+    synchronized (this) {
+      if (state == State.OPEN && now - openedAt >= openNanos) {
+        state = State.HALF_OPEN;
+        probesStarted = 0;
+        probesSucceeded = 0;
+      }
+      probe = state == State.HALF_OPEN;
+      if (state == State.OPEN || (probe && probesStarted >= PROBE_CALLS)) {
+        circuitRejections.increment();
+        throw new ProviderUnavailableException(
+            providerName, "Provider " + providerName + " is unavailable");
+      }
+      if (probe) {
+        probesStarted++;
+      }
+    }
+    if (!permits.tryAcquire()) {
+      synchronized (this) {
+        if (probe && state == State.HALF_OPEN) {
+          probesStarted--;
+        }
+      }
+      bulkheadRejections.increment();
+      throw new ProviderUnavailableException(
+          providerName, "Too many concurrent requests to provider " + providerName);
+    }
+    return now;
+  }
+
+  /**
+   * Releases the permit of a request and records its outcome.
+   *
+   * @param startNanos start of the request, as returned by {@link #acquire()}.
+   * @param outcome outcome of the request; successful requests slower than the slow call
+   *     threshold count as failures.
+   */
+  void release(long startNanos, Outcome outcome) {
+    permits.release();
+    if (outcome == Outcome.SUCCESS && ticker.read() - startNanos > slowCallNanos) {
+      outcome = Outcome.FAILURE;
+    }
+    synchronized (this) {
+      switch (state) {
+        case CLOSED:
+          if (outcome != Outcome.CANCELLED) {
+            record(outcome == Outcome.FAILURE);
+          }
+          break;
+        case HALF_OPEN:
+          if (startNanos - openedAt < 0) {
+            /* Started before the breaker opened, so it isn't a probe. */
+            break;
+          } else if (outcome == Outcome.FAILURE) {
+            open("a probe request failed");
+          } else if (outcome == Outcome.CANCELLED) {
+            probesStarted--;
+          } else if (++probesSucceeded >= PROBE_CALLS) {
+            state = State.CLOSED;
+            windowCount = 0;
+            windowFailures = 0;
+            windowNext = 0;
+            LOGGER.info("Closed the circuit breaker of provider " + providerName);
+          }
+          break;
+        default:
+          /* Requests started before the breaker opened tell nothing more. */
+          break;
+      }
+    }
+  }
+
+  /* Records an outcome in the window, opening the breaker if the failure rate is too high. */
+  private void record(boolean failed) {
+    if (windowCount == WINDOW_SIZE) {
+      windowFailures -= window[windowNext] ? 1 : 0;
+    } else {
+      windowCount++;
+    }
+    window[windowNext] = failed;
+    windowFailures += failed ? 1 : 0;
+    windowNext = windowNext + 1 == WINDOW_SIZE ? 0 : windowNext + 1;
+    if (windowCount >= MINIMUM_CALLS
+        && windowFailures * 100 >= failureRateThreshold * windowCount) {
+      open(windowFailures + " of the last " + windowCount + " requests failed");
+    }
+  }
+
+  private void open(String reason) {
+    state = State.OPEN;
+    openedAt = ticker.read();
+    LOGGER.warning("Opened the circuit breaker of provider " + providerName + ": " + reason);
+  }
+
+  public synchronized @NotNull State getState() {
+    return state;
+  }
+}
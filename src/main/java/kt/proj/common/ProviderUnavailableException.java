@@ -0,0 +1,18 @@
+package kt.proj.common;
+
+/**
+ * Thrown without calling a provider when its circuit breaker is open or its concurrent requests
+ * are at their limit, so that callers fail fast instead of waiting for a degraded provider.
+ */
+public class ProviderUnavailableException extends AuthServiceException {
+  private final String providerName;
+
+  public ProviderUnavailableException(String providerName, String message) {
+    super(message);
+    this.providerName = providerName;
+  }
+
+  public String getProviderName() {
+    return providerName;
+  }
+}
@@ -0,0 +1,113 @@
+package kt.proj.common;
+
+import com.nimbusds.jose.EncryptionMethod;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWEAlgorithm;
+import com.nimbusds.jose.JWEHeader;
+import com.nimbusds.jose.JWEObject;
+import com.nimbusds.jose.Payload;
+import com.nimbusds.jose.crypto.DirectDecrypter;
+import com.nimbusds.jose.crypto.DirectEncrypter;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.OctetSequenceKey;
+import com.nimbusds.jwt.SignedJWT;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Seals signed user tokens into nested JWTs encrypted with a symmetric key held by the service
+ * ({@code dir} & {@code A256GCM}), so that stateless user tokens can carry the provider access
+ * token without disclosing it to clients. Also seals the refresh tokens kept by persistent session
+ * stores, so that they can't be read from the journal or from Redis.
+ */
+class TokenSealer {
+  private static final JWEHeader HEADER =
+      new JWEHeader.Builder(JWEAlgorithm.DIR, EncryptionMethod.A256GCM).contentType("JWT").build();
+  private static final JWEHeader SECRET_HEADER =
+      new JWEHeader(JWEAlgorithm.DIR, EncryptionMethod.A256GCM);
+
+  private final DirectEncrypter encrypter;
+  private final DirectDecrypter decrypter;
+
+  private TokenSealer(OctetSequenceKey key) throws JOSEException {
+    this.encrypter = new DirectEncrypter(key);
+    this.decrypter = new DirectDecrypter(key);
+  }
+
+  /**
+   * Creates a sealer with the configured encryption key.
+   *
+   * @param encryptionKey base64 decoded symmetric JWK of 256 bits.
+   * @return sealer of user tokens.
+   * @throws JOSEException if the key isn't a symmetric JWK of 256 bits.
+   */
+  static TokenSealer create(@NotNull byte[] encryptionKey) throws JOSEException {
+    JWK jwk;
+    try {
+      jwk = JWK.parse(new String(encryptionKey, StandardCharsets.UTF_8));
+    } catch (ParseException e) {
+      throw new JOSEException("User token encryption key is not a valid JWK", e);
+    }
+    if (!(jwk instanceof OctetSequenceKey) || jwk.size() != 256) {
+      throw new JOSEException("User token encryption key must be a 256-bit symmetric JWK");
+    }
+    return new TokenSealer((OctetSequenceKey) jwk);
+  }
+
+  /**
+   * Encrypts the specified signed user token.
+   *
+   * @param token signed user token.
+   * @return compact serialization of the sealed token.
+   */
+  String seal(@NotNull SignedJWT token) throws JOSEException {
+    JWEObject sealedToken = new JWEObject(HEADER, new Payload(token));
+    sealedToken.encrypt(encrypter);
+    return sealedToken.serialize();
+  }
+
+  /**
+   * Encrypts the specified secret, like a refresh token.
+   *
+   * @param secret secret to seal.
+   * @return compact serialization of the sealed secret.
+   */
+  String sealSecret(@NotNull String secret) throws JOSEException {
+    JWEObject sealedSecret = new JWEObject(SECRET_HEADER, new Payload(secret));
+    sealedSecret.encrypt(encrypter);
+    return sealedSecret.serialize();
+  }
+
+  /**
+   * Decrypts a secret sealed with {@link #sealSecret(String)}.
+   *
+   * @param sealedSecret compact serialization of the sealed secret.
+   * @return secret.
+   * @throws ParseException if the secret isn't a JWE object.
+   * @throws JOSEException if the secret wasn't sealed with the key of the sealer.
+   */
+  String unsealSecret(@NotNull String sealedSecret) throws ParseException, JOSEException {
+    JWEObject jweObject = JWEObject.parse(sealedSecret);
+    jweObject.decrypt(decrypter);
+    return jweObject.getPayload().toString();
+  }
+
+  /**
+   * Decrypts the specified sealed user token. The returned token still has to be verified.
+   *
+   * @param sealedToken compact serialization of the sealed token.
+   * @return signed user token.
+   * @throws ParseException if the token isn't a sealed JWT.
+   * @throws JOSEException if the token wasn't sealed with the key of the sealer.
+   */
+  SignedJWT unseal(@NotNull String sealedToken) throws ParseException, JOSEException {
+    JWEObject jweObject = JWEObject.parse(sealedToken);
+    jweObject.decrypt(decrypter);
+    SignedJWT token = jweObject.getPayload().toSignedJWT();
+    if (token == null) {
+      throw new ParseException("Sealed payload is not a signed JWT", 0);
+    }
+    return token;
+  }
+}
@@ -0,0 +1,75 @@
+package kt.proj.common;
+
+import com.nimbusds.oauth2.sdk.token.AccessToken;
+import java.security.Principal;
+import java.util.UUID;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * User authenticated by a validated user token, holding the claims the service needs once they
+ * are decoded. A principal is built when a token is verified & cached along with it, so requests
+ * carrying the same token share it and never parse the token again.
+ */
+public final class UserPrincipal implements Principal {
+  private final String subject;
+  private final @Nullable String provider;
+  private final UUID sessionId;
+  private final long expiresAt;
+  /* Access token carried by a stateless user token, null for tokens of the session store. */
+  private final @Nullable AccessToken sealedAccessToken;
+
+  public UserPrincipal(
+      @NotNull String subject,
+      @Nullable String provider,
+      @NotNull UUID sessionId,
+      long expiresAt,
+      @Nullable AccessToken sealedAccessToken) {
+    this.subject = subject;
+    this.provider = provider;
+    this.sessionId = sessionId;
+    this.expiresAt = expiresAt;
+    this.sealedAccessToken = sealedAccessToken;
+  }
+
+  /** Returns the {@code sub} claim, the user ID at the provider. */
+  @Override
+  public @NotNull String getName() {
+    return subject;
+  }
+
+  /** Returns the {@code prd} claim, the name of the provider the user logged in with. */
+  public @Nullable String getProvider() {
+    return provider;
+  }
+
+  /** Returns the {@code jti} claim, the ID of the session of the user token. */
+  public @NotNull UUID getSessionId() {
+    return sessionId;
+  }
+
+  /** Returns the {@code exp} claim in epoch milliseconds. */
+  public long getExpiresAt() {
+    return expiresAt;
+  }
+
+  @Nullable
+  AccessToken getSealedAccessToken() {
+    return sealedAccessToken;
+  }
+
+  @Override
+  public String toString() {
+    return "UserPrincipal{"
+        + "subject='"
+        + subject
+        + '\''
+        + ", provider="
+        + provider
+        + ", sessionId="
+        + sessionId
+        + ", expiresAt="
+        + expiresAt
+        + '}';
+  }
+}
@@ -1,71 +1,193 @@
 package kt.proj.common;
 
-import com.github.benmanes.caffeine.cache.Cache;
-import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import com.nimbusds.jose.*;
-import com.nimbusds.jose.crypto.RSASSASigner;
-import com.nimbusds.jose.crypto.RSASSAVerifier;
-import com.nimbusds.jose.jwk.KeyUse;
-import com.nimbusds.jose.jwk.RSAKey;
-import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
 import com.nimbusds.jwt.JWT;
 import com.nimbusds.jwt.JWTClaimsSet;
 import com.nimbusds.jwt.SignedJWT;
 import com.nimbusds.oauth2.sdk.token.AccessToken;
+import com.nimbusds.oauth2.sdk.token.RefreshToken;
+import com.nimbusds.oauth2.sdk.token.Tokens;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.text.ParseException;
 import java.time.Duration;
 import java.util.Date;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.logging.Logger;
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import kt.proj.common.session.ProviderTokens;
+import kt.proj.common.session.RenewalSchedule;
+import kt.proj.common.session.RevocationList;
+import kt.proj.common.session.SessionStore;
+import kt.proj.common.signing.SigningKeys;
 import kt.proj.config.AuthServiceConfig;
 import kt.proj.config.OIDCProviders;
+import kt.proj.config.SessionStoreConfig;
+import kt.proj.config.TokenRenewalConfig;
 import kt.proj.config.UserTokenConfig;
+import net.minidev.json.JSONObject;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 @Singleton
 public class UserTokenManager {
   private static final Logger LOGGER = Logger.getLogger(UserTokenManager.class.getName());
   public static final String PROVIDER_CLAIM = "prd";
+  /* Claim of stateless user tokens holding the provider access token. */
+  private static final String ACCESS_TOKEN_CLAIM = "pat";
+  private static final long DEFAULT_VERIFIED_TOKEN_CACHE_SIZE = 10_000;
+  private static final long DEFAULT_RENEW_BEFORE = 60;
 
   private final OIDCProviders oidcProviders;
   private final UserTokenConfig tokenConfig;
 
   /*
-   * Cache of Access tokens for authenticated users with jti of the user token issued
-   * by Auth service serving as the key.
+   * Store of Access tokens for authenticated users with jti of the user token issued
+   * by Auth service serving as the key, or null in stateless mode.
    */
-  private final Cache<String, AccessToken> userTokens;
+  private final @Nullable SessionStore userTokens;
 
-  /* JWT Signer & Verifier to sign & verify user tokens respectively. */
-  private final JWSSigner signer;
-  private final JWSVerifier verifier;
-  private final JWSHeader tokenHeader;
+  /* In stateless mode, user tokens carry the access token & are sealed; null otherwise. */
+  private final @Nullable TokenSealer sealer;
 
-  @Inject
+  /*
+   * User tokens revoked on logout, denied until they expire. Stateless tokens can only be revoked
+   * here; stateful ones are also removed from the store, which is then only read for tokens that
+   * weren't revoked on this node. Held in memory only, so revocations are lost on restart.
+   */
+  private final RevocationList revokedTokens;
+
+  /*
+   * Sessions whose provider access token is renewed with their refresh token before it expires,
+   * or null in stateless mode or if renewal is disabled.
+   */
+  private final @Nullable RenewalSchedule renewals;
+
+  /*
+   * Seals the refresh tokens kept by mapped & redis session stores, which persist them out of the
+   * process; null for other stores. Refresh tokens are only kept if renewal is enabled.
+   */
+  private final @Nullable TokenSealer refreshTokenSealer;
+
+  /*
+   * User tokens that were verified recently, to skip signature verification on every request.
+   * Package-private so that tests can replace it with a cache whose clock is stopped.
+   */
+  VerifiedTokenCache verifiedTokens;
+
+  /* Keys to sign user tokens & verify them by their kid, rotated if configured. */
+  private final SigningKeys signingKeys;
+
+  /* Writes & signs the claims of stateful user tokens without the generic JWT API. */
+  private final UserTokenMinter minter;
+
+  /* Time spent signing issued tokens & verifying the signature of tokens missing the cache. */
+  private final ProviderTimers signTimers;
+  private final ProviderTimers verifyTimers;
+
+  /** Creates a token manager recording its metrics in a registry of its own. */
   public UserTokenManager(AuthServiceConfig authServiceConfig, OIDCProviders providers)
       throws JOSEException {
+    this(authServiceConfig, providers, new SimpleMeterRegistry());
+  }
+
+  @Inject
+  public UserTokenManager(
+      AuthServiceConfig authServiceConfig, OIDCProviders providers, MeterRegistry meterRegistry)
+      throws JOSEException {
     this.tokenConfig = authServiceConfig.getTokenConfig();
     this.oidcProviders = providers;
-    userTokens =
-        Caffeine.newBuilder()
-            .maximumSize(10_000)
-            .expireAfterWrite(Duration.ofSeconds(tokenConfig.getTokenExpiry()))
-            .build();
+    /*
+     * Sessions restored after a restart or shared with other nodes are only usable if tokens are
+     * signed with the same key.
+     */
+    SessionStoreConfig sessionStoreConfig = tokenConfig.getSessionStoreConfig();
+    String sessionStoreType = sessionStoreConfig.getType();
+    if ((SessionStoreConfig.MAPPED.equals(sessionStoreType)
+            || SessionStoreConfig.REDIS.equals(sessionStoreType)
+            || SessionStoreConfig.STATELESS.equals(sessionStoreType))
+        && (tokenConfig.getPrivateKey() == null || tokenConfig.getPrivateKey().length == 0)) {
+      throw new AuthServiceException("Persistent user sessions require a configured private key");
+    }
+    if (SessionStoreConfig.STATELESS.equals(sessionStoreType)) {
+      if (tokenConfig.getEncryptionKey() == null || tokenConfig.getEncryptionKey().length == 0) {
+        throw new AuthServiceException("Stateless user tokens require a configured encryption key");
+      }
+      userTokens = null;
+      sealer = TokenSealer.create(tokenConfig.getEncryptionKey());
+    } else {
+      userTokens = SessionStore.create(sessionStoreConfig);
+      sealer = null;
+    }
+    revokedTokens =
+        new RevocationList(
+            sessionStoreConfig.getCapacity() > 0
+                ? sessionStoreConfig.getCapacity()
+                : SessionStore.DEFAULT_CAPACITY,
+            Duration.ofSeconds(Math.max(tokenConfig.getTokenExpiry(), 1)));
+    TokenRenewalConfig renewalConfig = authServiceConfig.getTokenRenewalConfig();
+    boolean persistsTokens =
+        SessionStoreConfig.MAPPED.equals(sessionStoreType)
+            || SessionStoreConfig.REDIS.equals(sessionStoreType);
+    boolean hasEncryptionKey =
+        tokenConfig.getEncryptionKey() != null && tokenConfig.getEncryptionKey().length > 0;
+    if (renewalConfig.isEnabled() && persistsTokens && !hasEncryptionKey) {
+      LOGGER.warning(
+          "Provider access tokens aren't renewed: "
+              + sessionStoreType
+              + " session stores only keep refresh tokens sealed with an encryption key");
+    }
+    renewals =
+        userTokens != null && renewalConfig.isEnabled() && (!persistsTokens || hasEncryptionKey)
+            ? new RenewalSchedule(
+                sessionStoreConfig.getCapacity() > 0
+                    ? sessionStoreConfig.getCapacity()
+                    : SessionStore.DEFAULT_CAPACITY,
+                Duration.ofSeconds(
+                    renewalConfig.getRenewBefore() > 0
+                        ? renewalConfig.getRenewBefore()
+                        : DEFAULT_RENEW_BEFORE))
+            : null;
+    refreshTokenSealer =
+        renewals != null && persistsTokens
+            ? TokenSealer.create(tokenConfig.getEncryptionKey())
+            : null;
+    verifiedTokens =
+        new VerifiedTokenCache(
+            tokenConfig.getVerifiedTokenCacheSize() > 0
+                ? tokenConfig.getVerifiedTokenCacheSize()
+                : DEFAULT_VERIFIED_TOKEN_CACHE_SIZE,
+            meterRegistry);
 
-    RSAKey userTokenJWK =
-        new RSAKeyGenerator(tokenConfig.getKeySize())
-            .keyIDFromThumbprint(true)
-            .keyUse(KeyUse.SIGNATURE)
-            .generate();
-    signer = new RSASSASigner(userTokenJWK);
-    verifier = new RSASSAVerifier(userTokenJWK.toPublicJWK());
-    tokenHeader =
-        new JWSHeader.Builder(JWSAlgorithm.parse(tokenConfig.getSignatureAlgorithm()))
-            .type(JOSEObjectType.JWT)
-            .build();
+    signingKeys = SigningKeys.create(tokenConfig);
+    minter = new UserTokenMinter(tokenConfig.getIssuer(), tokenConfig.getAudience());
+
+    signTimers =
+        ProviderTimers.local(meterRegistry, "user_token.sign", "Time to sign a user token");
+    verifyTimers =
+        ProviderTimers.local(
+            meterRegistry,
+            "user_token.verify",
+            "Time to verify a user token missing the verified token cache");
+    if (userTokens != null) {
+      Gauge.builder("user_token.sessions", userTokens, SessionStore::size)
+          .description("User sessions stored by this node, or near-cached for a Redis store")
+          .register(meterRegistry);
+    }
+    Gauge.builder("user_token.revoked", revokedTokens, RevocationList::size)
+        .description("Revoked user tokens that haven't expired yet")
+        .register(meterRegistry);
+    if (renewals != null) {
+      Gauge.builder("provider_token.renewals", renewals, RenewalSchedule::size)
+          .description("Sessions whose provider access token is scheduled for renewal")
+          .register(meterRegistry);
+    }
   }
 
   /**
@@ -78,83 +200,346 @@ public class UserTokenManager {
    */
   public @NotNull String issueToken(@NotNull JWT idToken, @NotNull AccessToken accessToken)
       throws AuthServiceException {
-    String jwtId = UUID.randomUUID().toString();
-    Date issueTime = new Date();
+    return issueToken(idToken, new Tokens(accessToken, null));
+  }
+
+  /**
+   * Issues a minted User token based on the specified identity token. The refresh token returned
+   * along with the access token is stored with the session, which is scheduled for the renewal of
+   * its access token. Stateless user tokens only carry the access token, which isn't renewed.
+   *
+   * @param idToken Id token to obtain user claims.
+   * @param tokens Access token to be managed for subsequent access to User info endpoint, along
+   *     with its refresh token if the provider returned one.
+   * @return User token minted corresponding to the identity token obtained from OIDC provider.
+   * @throws AuthServiceException if token issuance failed.
+   */
+  public @NotNull String issueToken(@NotNull JWT idToken, @NotNull Tokens tokens)
+      throws AuthServiceException {
+    AccessToken accessToken = tokens.getAccessToken();
+    UUID jwtId = minter.newSessionId();
+    long issueTime = System.currentTimeMillis();
+    long expirationTime = issueTime + tokenConfig.getTokenExpiry() * 1000;
     JWTClaimsSet idTokenClaims = getTokenClaims(idToken);
+    String subject = idTokenClaims.getSubject();
 
-    JWTClaimsSet userTokenClaims =
+    String providerClaim =
         oidcProviders
             .getProviderName(idTokenClaims.getIssuer())
-            .map(
-                providerClaim ->
-                    new JWTClaimsSet.Builder()
-                        .subject(idTokenClaims.getSubject())
-                        .jwtID(jwtId)
-                        .issuer(tokenConfig.getIssuer())
-                        .audience(tokenConfig.getAudience())
-                        .issueTime(issueTime)
-                        .expirationTime(
-                            new Date(issueTime.getTime() + tokenConfig.getTokenExpiry() * 1000))
-                        .claim(PROVIDER_CLAIM, providerClaim)
-                        .build())
             .orElseThrow(() -> new AuthServiceException("Unsupported identity token"));
+    if (subject == null) {
+      throw new AuthServiceException("Unsupported identity token");
+    }
 
-    SignedJWT userToken = new SignedJWT(tokenHeader, userTokenClaims);
+    long signStart = System.nanoTime();
+    SigningKeys.ActiveKey signingKey = signingKeys.getActiveKey();
+    String userToken;
     try {
-      userToken.sign(signer);
+      if (sealer != null) {
+        return sealer.seal(
+            signStatelessToken(
+                signingKey,
+                subject,
+                jwtId,
+                issueTime,
+                expirationTime,
+                providerClaim,
+                accessToken));
+      }
+      userToken =
+          minter.mint(
+              signingKey, subject, jwtId, issueTime / 1000, expirationTime / 1000, providerClaim);
     } catch (JOSEException e) {
       LOGGER.fine("Failed to sign user token: " + e.getMessage());
       throw new AuthServiceException("Failed to sign user token", e);
+    } finally {
+      signTimers.record(providerClaim, signStart);
+    }
+    ProviderTokens providerTokens =
+        new ProviderTokens(
+            accessToken,
+            renewals != null ? tokens.getRefreshToken() : null,
+            accessToken.getLifetime() > 0 ? issueTime + accessToken.getLifetime() * 1000 : 0);
+    userTokens.put(jwtId, toStoredTokens(providerTokens), expirationTime);
+    if (renewals != null) {
+      renewals.schedule(jwtId, providerClaim, providerTokens, expirationTime);
+    }
+    return userToken;
+  }
+
+  /* Stateless tokens also carry the access token, so they're built with the generic JWT API. */
+  private SignedJWT signStatelessToken(
+      SigningKeys.ActiveKey signingKey,
+      String subject,
+      UUID jwtId,
+      long issueTime,
+      long expirationTime,
+      String providerClaim,
+      AccessToken accessToken)
+      throws JOSEException {
+    JWTClaimsSet userTokenClaims =
+        new JWTClaimsSet.Builder()
+            .subject(subject)
+            .jwtID(jwtId.toString())
+            .issuer(tokenConfig.getIssuer())
+            .audience(tokenConfig.getAudience())
+            .issueTime(new Date(issueTime))
+            .expirationTime(new Date(expirationTime))
+            .claim(PROVIDER_CLAIM, providerClaim)
+            .claim(ACCESS_TOKEN_CLAIM, accessToken.toJSONObject())
+            .build();
+    SignedJWT userToken = new SignedJWT(signingKey.getHeader(), userTokenClaims);
+    userToken.sign(signingKey.getSigner());
+    return userToken;
+  }
+
+  /**
+   * Returns the access token of the session of the specified user, if the session is active.
+   *
+   * @param principal of a validated user token.
+   * @return AccessToken if the session of the user token is active.
+   */
+  public Optional<AccessToken> getAccessToken(@NotNull UserPrincipal principal)
+      throws AuthServiceException {
+    if (sealer != null) {
+      return isSessionActive(principal.getSessionId(), principal.getExpiresAt())
+          ? Optional.ofNullable(principal.getSealedAccessToken())
+          : Optional.empty();
+    }
+    ProviderTokens tokens = userTokens.getTokens(principal.getSessionId());
+    if (tokens == null) {
+      return Optional.empty();
+    }
+    /* Sessions this node didn't schedule, like restored ones, are scheduled once they're due. */
+    if (renewals != null && principal.getProvider() != null) {
+      renewals.scheduleIfDue(
+          principal.getSessionId(), principal.getProvider(), tokens, principal.getExpiresAt());
+    }
+    return Optional.of(tokens.getAccessToken());
+  }
+
+  /**
+   * Returns the provider tokens of the specified session, to renew its access token.
+   *
+   * @param sessionId jti of the user token.
+   * @return tokens of the session if it is active; always empty in stateless mode.
+   */
+  public Optional<ProviderTokens> getSessionTokens(@NotNull UUID sessionId) {
+    ProviderTokens tokens = userTokens != null ? userTokens.getTokens(sessionId) : null;
+    return Optional.ofNullable(tokens != null ? fromStoredTokens(tokens) : null);
+  }
+
+  /**
+   * Stores the renewed provider tokens of a session whose renewal is in flight, and schedules
+   * their own renewal.
+   *
+   * @param sessionId jti of the user token.
+   * @param provider name of the provider that renewed the tokens.
+   * @param tokens renewed provider tokens.
+   * @return true if the session is still active and its tokens were replaced.
+   * @throws AuthServiceException if the session could not be stored.
+   */
+  public boolean renewSessionTokens(
+      @NotNull UUID sessionId, @NotNull String provider, @NotNull ProviderTokens tokens)
+      throws AuthServiceException {
+    if (userTokens == null || renewals == null) {
+      return false;
+    }
+    long expiresAt = 0;
+    try {
+      expiresAt = userTokens.replace(sessionId, toStoredTokens(tokens));
+    } finally {
+      renewals.reschedule(sessionId, provider, tokens, expiresAt);
     }
-    userTokens.put(jwtId, accessToken);
-    return userToken.serialize();
+    return expiresAt != 0;
   }
 
   /**
-   * Validates the specified user token for signature, issuer & expiration and returns the
-   * corresponding access token if valid.
+   * Returns the schedule of the sessions whose provider access token is renewed in the
+   * background.
    *
-   * @param userToken for which the corresponding access token must be returned.
-   * @return AccessToken if the user token is valid.
+   * @return renewal schedule, or null in stateless mode or if renewal is disabled.
    */
-  public Optional<AccessToken> getAccessToken(@NotNull JWT userToken) throws AuthServiceException {
-    JWTClaimsSet userTokenClaims = getTokenClaims(userToken);
-    return Optional.ofNullable(userTokens.getIfPresent(userTokenClaims.getJWTID()));
+  public @Nullable RenewalSchedule getRenewalSchedule() {
+    return renewals;
+  }
+
+  /* Seals the refresh token of tokens about to be kept by a persistent session store. */
+  private ProviderTokens toStoredTokens(ProviderTokens tokens) throws AuthServiceException {
+    if (refreshTokenSealer == null || tokens.getRefreshToken() == null) {
+      return tokens;
+    }
+    try {
+      return new ProviderTokens(
+          tokens.getAccessToken(),
+          new RefreshToken(refreshTokenSealer.sealSecret(tokens.getRefreshToken().getValue())),
+          tokens.getExpiresAt());
+    } catch (JOSEException e) {
+      throw new AuthServiceException("Failed to seal refresh token", e);
+    }
+  }
+
+  /* Unseals the refresh token of stored tokens; tokens sealed with another key lose it. */
+  private ProviderTokens fromStoredTokens(ProviderTokens tokens) {
+    if (refreshTokenSealer == null || tokens.getRefreshToken() == null) {
+      return tokens;
+    }
+    RefreshToken refreshToken = null;
+    try {
+      refreshToken =
+          new RefreshToken(refreshTokenSealer.unsealSecret(tokens.getRefreshToken().getValue()));
+    } catch (ParseException | JOSEException e) {
+      LOGGER.fine("Stored refresh token could not be unsealed: " + e.getMessage());
+    }
+    return new ProviderTokens(tokens.getAccessToken(), refreshToken, tokens.getExpiresAt());
+  }
+
+  /* Returns the access token carried by a stateless user token, or null if it is invalid. */
+  private static @Nullable AccessToken getSealedAccessToken(JWTClaimsSet userTokenClaims) {
+    try {
+      Map<String, Object> accessToken = userTokenClaims.getJSONObjectClaim(ACCESS_TOKEN_CLAIM);
+      return accessToken != null ? AccessToken.parse(new JSONObject(accessToken)) : null;
+    } catch (ParseException | com.nimbusds.oauth2.sdk.ParseException e) {
+      LOGGER.fine("User token has an invalid access token: " + e.getMessage());
+      return null;
+    }
   }
 
   /**
-   * Validates and returns the parsed JWT user token.
+   * Validates the specified user token and returns the principal decoded from its claims.
    *
    * @param userToken to be validated.
-   * @return validated & parsed JWT user token.
+   * @return principal of the validated user token, shared by requests carrying the same token.
    */
-  public Optional<JWT> getValidatedUserToken(@NotNull String userToken) {
+  public Optional<UserPrincipal> getValidatedUserToken(@NotNull String userToken) {
+    /* Tokens verified earlier are only checked for expiration & revocation. */
+    UserPrincipal principal = verifiedTokens.get(userToken);
+    if (principal != null) {
+      if (System.currentTimeMillis() < principal.getExpiresAt()
+          && isSessionActive(principal.getSessionId(), principal.getExpiresAt())) {
+        return Optional.of(principal);
+      }
+      verifiedTokens.invalidate(userToken);
+      return Optional.empty();
+    }
+
+    /* Only tokens with a valid signature are timed under their provider claim. */
+    long verifyStart = System.nanoTime();
+    String provider = null;
     try {
       /* Verify the issuer & token expiration if the token signature is valid. */
-      SignedJWT signedJWT = SignedJWT.parse(userToken);
-      if (signedJWT.verify(verifier)) {
+      SignedJWT signedJWT = sealer != null ? sealer.unseal(userToken) : SignedJWT.parse(userToken);
+      JWSVerifier verifier = signingKeys.getVerifier(signedJWT.getHeader().getKeyID());
+      if (verifier != null && signedJWT.verify(verifier)) {
         JWTClaimsSet userTokenClaims = getTokenClaims(signedJWT);
+        provider = getProvider(userTokenClaims);
+        UUID sessionId = getSessionId(userTokenClaims);
+        Date expirationTime = userTokenClaims.getExpirationTime();
         if (tokenConfig.getIssuer().equals(userTokenClaims.getIssuer())
             && userTokenClaims.getAudience().contains(tokenConfig.getAudience())
-            && new Date().before(userTokenClaims.getExpirationTime())
-            && userTokens.getIfPresent(userTokenClaims.getJWTID()) != null) {
-          return Optional.of(signedJWT);
+            && userTokenClaims.getSubject() != null
+            && sessionId != null
+            && expirationTime != null
+            && System.currentTimeMillis() < expirationTime.getTime()
+            && isSessionActive(sessionId, expirationTime.getTime())) {
+          principal =
+              new UserPrincipal(
+                  userTokenClaims.getSubject(),
+                  provider,
+                  sessionId,
+                  expirationTime.getTime(),
+                  sealer != null ? getSealedAccessToken(userTokenClaims) : null);
+          verifiedTokens.put(userToken, principal);
+          return Optional.of(principal);
         }
       }
     } catch (JOSEException | ParseException e) {
       LOGGER.fine("Could not verify user token." + e.getMessage());
+    } finally {
+      verifyTimers.record(provider, verifyStart);
     }
     return Optional.empty();
   }
 
   /**
-   * Invalidates the specified user token so that subsequent call for validation would fail.
+   * Checks whether validating user tokens may block on I/O, which is the case when sessions are
+   * read from a remote store.
    *
-   * @param userToken that needs to be invalidated; called during user logout.
+   * @return true if {@link #getValidatedUserToken} must not be called on the event loop.
    */
-  public void invalidateToken(@NotNull JWT userToken) throws AuthServiceException {
-    JWTClaimsSet userTokenClaims = getTokenClaims(userToken);
-    userTokens.invalidate(userTokenClaims.getJWTID());
+  public boolean isValidationBlocking() {
+    return userTokens != null && userTokens.isBlocking();
+  }
+
+  /**
+   * Invalidates the user token of the specified user so that subsequent call for validation would
+   * fail; its verified token cache entry is dropped when the revoked token is next presented.
+   *
+   * @param principal of the user token that needs to be invalidated; called during user logout.
+   */
+  public void invalidateToken(@NotNull UserPrincipal principal) throws AuthServiceException {
+    if (userTokens != null) {
+      userTokens.remove(principal.getSessionId());
+    }
+    if (renewals != null) {
+      renewals.cancel(principal.getSessionId());
+    }
+    revokedTokens.revoke(principal.getSessionId(), principal.getExpiresAt());
+  }
+
+  /**
+   * Returns the JWK set of the keys verifying user tokens, for resource servers to verify them
+   * without calling this service.
+   *
+   * @return serialized JWK set along with its entity tag.
+   */
+  public SigningKeys.PublishedKeys getPublishedKeys() {
+    return signingKeys.getPublishedKeys();
+  }
+
+  /** Releases the session store, flushing persistent sessions to storage, & stops key rotation. */
+  @PreDestroy
+  void close() {
+    signingKeys.close();
+    if (userTokens != null) {
+      userTokens.close();
+    }
+  }
+
+  /**
+   * Returns hit & miss counters of the verified user token cache.
+   *
+   * @return statistics of the verified user token cache.
+   */
+  public CacheStats getVerifiedTokenCacheStats() {
+    return verifiedTokens.stats();
+  }
+
+  private boolean isSessionActive(UUID sessionId, long expiresAt) {
+    if (revokedTokens.isRevoked(sessionId, expiresAt)) {
+      return false;
+    }
+    return userTokens == null || userTokens.contains(sessionId);
+  }
+
+  /* Returns the provider claim, or null if it isn't a string. */
+  private static @Nullable String getProvider(JWTClaimsSet userTokenClaims) {
+    Object provider = userTokenClaims.getClaim(PROVIDER_CLAIM);
+    return provider instanceof String ? (String) provider : null;
+  }
+
+  /* Returns the session id held in the jti claim, or null if the claim is not a UUID. */
+  private static @Nullable UUID getSessionId(JWTClaimsSet userTokenClaims) {
+    String jwtId = userTokenClaims.getJWTID();
+    if (jwtId == null) {
+      return null;
+    }
+    try {
+      return UUID.fromString(jwtId);
+    } catch (IllegalArgumentException e) {
+      LOGGER.fine("User token has an invalid jti: " + jwtId);
+      return null;
+    }
   }
 
   /**
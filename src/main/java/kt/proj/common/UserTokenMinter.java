@@ -0,0 +1,296 @@
+package kt.proj.common;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.util.Base64URL;
+import java.nio.charset.StandardCharsets;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import kt.proj.common.signing.SigningKeys;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Mints the signed user tokens of {@link UserTokenManager}, whose claims always have the same
+ * layout: {@code sub}, {@code jti}, {@code iss}, {@code aud}, {@code iat}, {@code exp} & {@code
+ * prd}. The claims are written as JSON straight into a pooled buffer and base64url encoded
+ * after the header of the signing key, encoded once per key. Besides the signature, minting a
+ * token only allocates its session ID, the signing input handed to the signer & the token itself.
+ *
+ * <p>Session IDs are random (version 4) UUIDs drawn from a few DRBG {@link SecureRandom}s picked
+ * at random, so concurrent logins don't all wait for the lock of the one behind {@link
+ * UUID#randomUUID()}. The default {@code NativePRNG} instances would not do: they all share the
+ * state & lock of the native generator.
+ */
+final class UserTokenMinter {
+  private static final byte[] BASE64URL =
+      "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_"
+          .getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+  private static final byte[] SUB = ascii("{\"sub\":\"");
+  private static final byte[] JTI = ascii("\",\"jti\":\"");
+  private static final byte[] EXP = ascii(",\"exp\":");
+  private static final byte[] PRD = ascii(",\"prd\":\"");
+  private static final byte[] END = ascii("\"}");
+
+  /* Claims following the jti that are the same for every token, up to the iat value. */
+  private final byte[] issuerAndAudience;
+  private final SecureRandom[] randoms;
+  /* Pooled rather than per thread, so that tokens minted on virtual threads reuse them too. */
+  private final InstancePool<Buffers> buffersPool = new InstancePool<>();
+
+  UserTokenMinter(@NotNull String issuer, @NotNull String audience) {
+    Buffers constant = new Buffers();
+    constant.append(ascii("\",\"iss\":\""));
+    constant.appendString(issuer);
+    constant.append(ascii("\",\"aud\":\""));
+    constant.appendString(audience);
+    constant.append(ascii("\",\"iat\":"));
+    this.issuerAndAudience = Arrays.copyOf(constant.json, constant.jsonLength);
+
+    /* A power of two at least twice the number of processors, to pick one with a mask. */
+    int stripes = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 4 - 1);
+    this.randoms = new SecureRandom[stripes];
+    for (int i = 0; i < stripes; i++) {
+      randoms[i] = newRandom();
+    }
+  }
+
+  /* Each DRBG instance is seeded on its own and synchronizes on itself only. */
+  private static SecureRandom newRandom() {
+    try {
+      return SecureRandom.getInstance("DRBG");
+    } catch (NoSuchAlgorithmException e) {
+      return new SecureRandom();
+    }
+  }
+
+  /** Returns a new random session ID, like {@link UUID#randomUUID()}. */
+  @NotNull
+  UUID newSessionId() {
+    SecureRandom random = randoms[ThreadLocalRandom.current().nextInt() & (randoms.length - 1)];
+    long msb = random.nextLong();
+    long lsb = random.nextLong();
+    /* Version 4 & IETF variant bits. */
+    msb = (msb & ~0xF000L) | 0x4000L;
+    lsb = (lsb & ~(0xC000L << 48)) | (0x8000L << 48);
+    return new UUID(msb, lsb);
+  }
+
+  /**
+   * Mints a user token signed with the specified key.
+   *
+   * @param signingKey active key signing the token, along with its header.
+   * @param subject {@code sub} claim.
+   * @param sessionId {@code jti} claim.
+   * @param issuedAt {@code iat} claim in epoch seconds.
+   * @param expiresAt {@code exp} claim in epoch seconds.
+   * @param provider {@code prd} claim.
+   * @return compact serialization of the signed user token.
+   * @throws JOSEException if the token couldn't be signed.
+   */
+  @NotNull
+  String mint(
+      @NotNull SigningKeys.ActiveKey signingKey,
+      @NotNull String subject,
+      @NotNull UUID sessionId,
+      long issuedAt,
+      long expiresAt,
+      @NotNull String provider)
+      throws JOSEException {
+    Buffers buffers = buffersPool.poll();
+    if (buffers == null) {
+      buffers = new Buffers();
+    }
+    try {
+      return mint(buffers, signingKey, subject, sessionId, issuedAt, expiresAt, provider);
+    } finally {
+      buffersPool.offer(buffers);
+    }
+  }
+
+  private String mint(
+      Buffers buffers,
+      SigningKeys.ActiveKey signingKey,
+      String subject,
+      UUID sessionId,
+      long issuedAt,
+      long expiresAt,
+      String provider)
+      throws JOSEException {
+    buffers.jsonLength = 0;
+    buffers.append(SUB);
+    buffers.appendString(subject);
+    buffers.append(JTI);
+    buffers.appendUUID(sessionId);
+    buffers.append(issuerAndAudience);
+    buffers.appendLong(issuedAt);
+    buffers.append(EXP);
+    buffers.appendLong(expiresAt);
+    buffers.append(PRD);
+    buffers.appendString(provider);
+    buffers.append(END);
+
+    byte[] header = signingKey.getEncodedHeader();
+    int signingInputLength = buffers.encodePayload(header);
+    byte[] signingInput = Arrays.copyOf(buffers.token, signingInputLength);
+    Base64URL signature = signingKey.getSigner().sign(signingKey.getHeader(), signingInput);
+    return buffers.appendSignature(signingInputLength, signature.toString());
+  }
+
+  private static byte[] ascii(String value) {
+    return value.getBytes(StandardCharsets.US_ASCII);
+  }
+
+  /* Claims JSON & token being minted, grown when a claim doesn't fit. */
+  private static final class Buffers {
+    private byte[] json = new byte[512];
+    private int jsonLength;
+    private byte[] token = new byte[1024];
+
+    private void ensureJsonCapacity(int length) {
+      if (jsonLength + length > json.length) {
+        json = Arrays.copyOf(json, Math.max(2 * json.length, jsonLength + length));
+      }
+    }
+
+    private void append(byte[] bytes) {
+      ensureJsonCapacity(bytes.length);
+      System.arraycopy(bytes, 0, json, jsonLength, bytes.length);
+      jsonLength += bytes.length;
+    }
+
+    /* Appends the UTF-8 encoding of a string escaped as the content of a JSON string. */
+    private void appendString(String value) {
+      /* A char takes at most 6 bytes once escaped, and a surrogate pair 4 bytes. */
+      ensureJsonCapacity(6 * value.length());
+      byte[] json = this.json;
+      int position = jsonLength;
+      for (int i = 0; i < value.length(); i++) {
+        char c = value.charAt(i);
+        if (c == '"' || c == '\\') {
+          json[position++] = '\\';
+          json[position++] = (byte) c;
+        } else if (c < 0x20) {
+          json[position++] = '\\';
+          json[position++] = 'u';
+          json[position++] = '0';
+          json[position++] = '0';
+          json[position++] = HEX[c >> 4];
+          json[position++] = HEX[c & 0xF];
+        } else if (c < 0x80) {
+          json[position++] = (byte) c;
+        } else if (c < 0x800) {
+          json[position++] = (byte) (0xC0 | (c >> 6));
+          json[position++] = (byte) (0x80 | (c & 0x3F));
+        } else if (Character.isHighSurrogate(c)
+            && i + 1 < value.length()
+            && Character.isLowSurrogate(value.charAt(i + 1))) {
+          int codePoint = Character.toCodePoint(c, value.charAt(++i));
+          json[position++] = (byte) (0xF0 | (codePoint >> 18));
+          json[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+          json[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+          json[position++] = (byte) (0x80 | (codePoint & 0x3F));
+        } else if (Character.isSurrogate(c)) {
+          /* Unpaired surrogates are replaced, as String.getBytes does. */
+          json[position++] = '?';
+        } else {
+          json[position++] = (byte) (0xE0 | (c >> 12));
+          json[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+          json[position++] = (byte) (0x80 | (c & 0x3F));
+        }
+      }
+      jsonLength = position;
+    }
+
+    /* Appends the canonical 36-character form of a UUID, as UUID.toString returns it. */
+    private void appendUUID(UUID uuid) {
+      ensureJsonCapacity(36);
+      appendHex(uuid.getMostSignificantBits() >>> 32, 8);
+      json[jsonLength++] = '-';
+      appendHex(uuid.getMostSignificantBits() >>> 16, 4);
+      json[jsonLength++] = '-';
+      appendHex(uuid.getMostSignificantBits(), 4);
+      json[jsonLength++] = '-';
+      appendHex(uuid.getLeastSignificantBits() >>> 48, 4);
+      json[jsonLength++] = '-';
+      appendHex(uuid.getLeastSignificantBits(), 12);
+    }
+
+    private void appendHex(long value, int digits) {
+      for (int i = digits - 1; i >= 0; i--) {
+        json[jsonLength + i] = HEX[(int) (value & 0xF)];
+        value >>>= 4;
+      }
+      jsonLength += digits;
+    }
+
+    /* Appends a non-negative number. */
+    private void appendLong(long value) {
+      ensureJsonCapacity(20);
+      int digits = 1;
+      for (long remaining = value / 10; remaining > 0; remaining /= 10) {
+        digits++;
+      }
+      for (int i = digits - 1; i >= 0; i--) {
+        json[jsonLength + i] = (byte) ('0' + value % 10);
+        value /= 10;
+      }
+      jsonLength += digits;
+    }
+
+    /*
+     * Writes the header, a dot & the base64url encoded claims to the token buffer, leaving room
+     * for the signature, and returns the length of this signing input.
+     */
+    private int encodePayload(byte[] header) {
+      int payloadLength = (4 * jsonLength + 2) / 3;
+      /* The signature of the largest RSA keys takes less than 700 base64url characters. */
+      int capacity = header.length + payloadLength + 1024;
+      if (token.length < capacity) {
+        token = new byte[capacity];
+      }
+      byte[] token = this.token;
+      System.arraycopy(header, 0, token, 0, header.length);
+      int position = header.length;
+      token[position++] = '.';
+
+      int i = 0;
+      int end = jsonLength - jsonLength % 3;
+      for (; i < end; i += 3) {
+        int bits = (json[i] & 0xFF) << 16 | (json[i + 1] & 0xFF) << 8 | (json[i + 2] & 0xFF);
+        token[position++] = BASE64URL[bits >>> 18];
+        token[position++] = BASE64URL[(bits >>> 12) & 0x3F];
+        token[position++] = BASE64URL[(bits >>> 6) & 0x3F];
+        token[position++] = BASE64URL[bits & 0x3F];
+      }
+      if (jsonLength - end == 1) {
+        int bits = (json[i] & 0xFF) << 16;
+        token[position++] = BASE64URL[bits >>> 18];
+        token[position++] = BASE64URL[(bits >>> 12) & 0x3F];
+      } else if (jsonLength - end == 2) {
+        int bits = (json[i] & 0xFF) << 16 | (json[i + 1] & 0xFF) << 8;
+        token[position++] = BASE64URL[bits >>> 18];
+        token[position++] = BASE64URL[(bits >>> 12) & 0x3F];
+        token[position++] = BASE64URL[(bits >>> 6) & 0x3F];
+      }
+      return position;
+    }
+
+    /* Appends a dot & the encoded signature to the signing input and returns the token. */
+    private String appendSignature(int signingInputLength, String signature) {
+      int length = signingInputLength + 1 + signature.length();
+      if (token.length < length) {
+        token = Arrays.copyOf(token, length);
+      }
+      int position = signingInputLength;
+      token[position++] = '.';
+      for (int i = 0; i < signature.length(); i++) {
+        token[position++] = (byte) signature.charAt(i);
+      }
+      return new String(token, 0, length, StandardCharsets.US_ASCII);
+    }
+  }
+}
@@ -0,0 +1,155 @@
+package kt.proj.common;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineStatsCounter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Bounded cache of user tokens whose signature, issuer & audience have already been verified,
+ * holding the principal decoded from each token. The cache is keyed by the SHA-256 digest of the
+ * serialized token so that the token itself is not retained, and every entry expires no later
+ * than the token's own expiration time.
+ * Its size, hits, misses & evictions by cause are published as {@code cache.*} meters tagged with
+ * {@code cache=verified_user_tokens}.
+ */
+public class VerifiedTokenCache {
+  /* SHA-256 digests reused by any thread, virtual ones included. */
+  private static final InstancePool<MessageDigest> SHA_256 = new InstancePool<>();
+
+  static final String CACHE_NAME = "verified_user_tokens";
+
+  private final Cache<TokenDigest, UserPrincipal> verifiedTokens;
+
+  public VerifiedTokenCache(long maximumSize, @NotNull MeterRegistry meterRegistry) {
+    this(maximumSize, meterRegistry, Ticker.systemTicker());
+  }
+
+  /* Reads the time entries expire at from the specified ticker, which tests can stop. */
+  VerifiedTokenCache(long maximumSize, @NotNull MeterRegistry meterRegistry, Ticker ticker) {
+    CaffeineStatsCounter statsCounter = new CaffeineStatsCounter(meterRegistry, CACHE_NAME);
+    verifiedTokens =
+        Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfter(new TokenExpiry())
+            .ticker(ticker)
+            .recordStats(() -> statsCounter)
+            .build();
+    statsCounter.registerSizeMetric(verifiedTokens);
+  }
+
+  /**
+   * Returns the principal of the specified serialized user token, if it was verified before.
+   *
+   * @param serializedToken compact serialization of the user token.
+   * @return principal of the verified token if present in the cache, otherwise null.
+   */
+  public @Nullable UserPrincipal get(@NotNull String serializedToken) {
+    return verifiedTokens.getIfPresent(TokenDigest.of(serializedToken));
+  }
+
+  /**
+   * Caches the principal of the specified verified token until its expiration time.
+   *
+   * @param serializedToken compact serialization of the user token.
+   * @param principal principal decoded from the verified user token.
+   */
+  public void put(@NotNull String serializedToken, @NotNull UserPrincipal principal) {
+    verifiedTokens.put(TokenDigest.of(serializedToken), principal);
+  }
+
+  /**
+   * Evicts the specified user token from the cache.
+   *
+   * @param serializedToken compact serialization of the user token.
+   */
+  public void invalidate(@NotNull String serializedToken) {
+    verifiedTokens.invalidate(TokenDigest.of(serializedToken));
+  }
+
+  /** Returns hit, miss & eviction counters of the cache. */
+  public CacheStats stats() {
+    return verifiedTokens.stats();
+  }
+
+  /* Expires each cache entry at the expiration time of the cached token. */
+  private static class TokenExpiry implements Expiry<TokenDigest, UserPrincipal> {
+    @Override
+    public long expireAfterCreate(TokenDigest key, UserPrincipal value, long currentTime) {
+      long remainingMillis = value.getExpiresAt() - System.currentTimeMillis();
+      return TimeUnit.MILLISECONDS.toNanos(Math.max(remainingMillis, 0));
+    }
+
+    @Override
+    public long expireAfterUpdate(
+        TokenDigest key, UserPrincipal value, long currentTime, long currentDuration) {
+      return expireAfterCreate(key, value, currentTime);
+    }
+
+    @Override
+    public long expireAfterRead(
+        TokenDigest key, UserPrincipal value, long currentTime, long currentDuration) {
+      return currentDuration;
+    }
+  }
+
+  /* SHA-256 digest of a serialized token held as four primitive words. */
+  private static final class TokenDigest {
+    private final long w0;
+    private final long w1;
+    private final long w2;
+    private final long w3;
+
+    private TokenDigest(byte[] digest) {
+      ByteBuffer buffer = ByteBuffer.wrap(digest);
+      w0 = buffer.getLong();
+      w1 = buffer.getLong();
+      w2 = buffer.getLong();
+      w3 = buffer.getLong();
+    }
+
+    static TokenDigest of(String serializedToken) {
+      MessageDigest sha256 = SHA_256.poll();
+      if (sha256 == null) {
+        try {
+          sha256 = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+          throw new IllegalStateException("SHA-256 is not supported by the JVM", e);
+        }
+      }
+      /* digest() resets the MessageDigest, which can then be reused. */
+      TokenDigest digest =
+          new TokenDigest(sha256.digest(serializedToken.getBytes(StandardCharsets.US_ASCII)));
+      SHA_256.offer(sha256);
+      return digest;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof TokenDigest)) {
+        return false;
+      }
+      TokenDigest that = (TokenDigest) o;
+      return w0 == that.w0 && w1 == that.w1 && w2 == that.w2 && w3 == that.w3;
+    }
+
+    @Override
+    public int hashCode() {
+      /* The digest is uniformly distributed, so its leading bits are a sufficient hash. */
+      return (int) (w0 ^ (w0 >>> 32));
+    }
+  }
+}
@@ -0,0 +1,142 @@
+package kt.proj.common.session;
+
+import com.nimbusds.oauth2.sdk.Scope;
+import com.nimbusds.oauth2.sdk.token.AccessToken;
+import com.nimbusds.oauth2.sdk.token.AccessTokenType;
+import com.nimbusds.oauth2.sdk.token.BearerAccessToken;
+import com.nimbusds.oauth2.sdk.token.DPoPAccessToken;
+import com.nimbusds.oauth2.sdk.token.RefreshToken;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import kt.proj.common.AuthServiceException;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Encodes provider access tokens into a compact binary form for the session store. The layout is
+ * a one byte token type, the lifetime in seconds as an int, the length-prefixed scope and the token
+ * value, with strings encoded in UTF-8.
+ *
+ * <p>Tokens that can be renewed set a flag in the type byte and carry the expiration time of the
+ * access token as a long and the length-prefixed refresh token between the scope length & the
+ * scope. Records written without the flag decode as before. The codec writes the refresh token as
+ * given: for stores that persist it, it is sealed by {@code UserTokenManager} beforehand.
+ */
+public final class AccessTokenCodec {
+  private static final byte BEARER = 0;
+  private static final byte DPOP = 1;
+  private static final byte TYPE_MASK = 0x0F;
+  /* Set in the type byte of tokens carrying their expiration time & refresh token. */
+  private static final byte RENEWABLE = 0x40;
+  private static final int HEADER_LENGTH = Byte.BYTES + Integer.BYTES + Short.BYTES;
+  private static final int RENEWAL_LENGTH = Long.BYTES + Short.BYTES;
+
+  private AccessTokenCodec() {}
+
+  /**
+   * Encodes the specified access token.
+   *
+   * @param accessToken Bearer or DPoP access token issued by the OIDC provider.
+   * @return encoded access token.
+   */
+  public static byte[] encode(@NotNull AccessToken accessToken) {
+    return encode(new ProviderTokens(accessToken, null, 0));
+  }
+
+  /**
+   * Encodes the specified provider tokens, along with their refresh token & expiration time if
+   * they can be renewed.
+   *
+   * @param tokens tokens issued by the OIDC provider.
+   * @return encoded tokens.
+   */
+  public static byte[] encode(@NotNull ProviderTokens tokens) {
+    AccessToken accessToken = tokens.getAccessToken();
+    byte type;
+    if (AccessTokenType.BEARER.equals(accessToken.getType())) {
+      type = BEARER;
+    } else if (AccessTokenType.DPOP.equals(accessToken.getType())) {
+      type = DPOP;
+    } else {
+      throw new AuthServiceException("Unsupported access token type " + accessToken.getType());
+    }
+
+    byte[] scope =
+        accessToken.getScope() != null
+            ? accessToken.getScope().toString().getBytes(StandardCharsets.UTF_8)
+            : new byte[0];
+    byte[] value = accessToken.getValue().getBytes(StandardCharsets.UTF_8);
+    if (scope.length > Short.MAX_VALUE) {
+      throw new AuthServiceException("Access token scope is too long");
+    }
+    if (!tokens.isRenewable()) {
+      return ByteBuffer.allocate(HEADER_LENGTH + scope.length + value.length)
+          .put(type)
+          .putInt((int) Math.min(accessToken.getLifetime(), Integer.MAX_VALUE))
+          .putShort((short) scope.length)
+          .put(scope)
+          .put(value)
+          .array();
+    }
+
+    byte[] refreshToken = tokens.getRefreshToken().getValue().getBytes(StandardCharsets.UTF_8);
+    if (refreshToken.length > Short.MAX_VALUE) {
+      throw new AuthServiceException("Refresh token is too long");
+    }
+    return ByteBuffer.allocate(
+            HEADER_LENGTH + RENEWAL_LENGTH + refreshToken.length + scope.length + value.length)
+        .put((byte) (type | RENEWABLE))
+        .putInt((int) Math.min(accessToken.getLifetime(), Integer.MAX_VALUE))
+        .putShort((short) scope.length)
+        .putLong(tokens.getExpiresAt())
+        .putShort((short) refreshToken.length)
+        .put(refreshToken)
+        .put(scope)
+        .put(value)
+        .array();
+  }
+
+  /**
+   * Decodes the access token of tokens encoded with {@link #encode(ProviderTokens)}.
+   *
+   * @param encoded encoded tokens.
+   * @return decoded access token.
+   */
+  public static AccessToken decode(@NotNull byte[] encoded) {
+    return decodeTokens(encoded).getAccessToken();
+  }
+
+  /**
+   * Decodes tokens encoded with {@link #encode(ProviderTokens)} or {@link #encode(AccessToken)}.
+   *
+   * @param encoded encoded tokens.
+   * @return decoded tokens, without refresh token & expiration time unless they were encoded.
+   */
+  public static ProviderTokens decodeTokens(@NotNull byte[] encoded) {
+    ByteBuffer buffer = ByteBuffer.wrap(encoded);
+    byte flags = buffer.get();
+    long lifetime = buffer.getInt();
+    int scopeLength = buffer.getShort();
+    int offset = HEADER_LENGTH;
+    long expiresAt = 0;
+    RefreshToken refreshToken = null;
+    if ((flags & RENEWABLE) != 0) {
+      expiresAt = buffer.getLong();
+      int refreshTokenLength = buffer.getShort();
+      offset += RENEWAL_LENGTH;
+      refreshToken =
+          new RefreshToken(new String(encoded, offset, refreshTokenLength, StandardCharsets.UTF_8));
+      offset += refreshTokenLength;
+    }
+    Scope scope =
+        scopeLength > 0
+            ? Scope.parse(new String(encoded, offset, scopeLength, StandardCharsets.UTF_8))
+            : null;
+    offset += scopeLength;
+    String value = new String(encoded, offset, encoded.length - offset, StandardCharsets.UTF_8);
+    AccessToken accessToken =
+        (flags & TYPE_MASK) == DPOP
+            ? new DPoPAccessToken(value, lifetime, scope)
+            : new BearerAccessToken(value, lifetime, scope);
+    return new ProviderTokens(accessToken, refreshToken, expiresAt);
+  }
+}
@@ -0,0 +1,408 @@
+package kt.proj.common.session;
+
+import com.nimbusds.oauth2.sdk.token.AccessToken;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.StampedLock;
+import kt.proj.common.AuthServiceException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Store of authenticated user sessions, keyed by the UUID jti of the issued user token.
+ *
+ * <p>Sessions are kept in lock-striped, open addressing hash tables whose arrays are allocated up
+ * front for the configured capacity, so that heap usage does not grow with the number of sessions.
+ * Each session is stored as the two longs of its UUID, its expiration time in epoch milliseconds
+ * and the access token in the compact form of {@link AccessTokenCodec}.
+ *
+ * <p>Live sessions are never evicted. Expired sessions are purged when the store runs out of space,
+ * and a new session is rejected only if the store is still full after the purge. Each segment
+ * tracks the earliest expiration time of its sessions, so that it is only scanned once one of
+ * them expired rather than on every session added to a full store.
+ */
+public class CompactSessionStore implements SessionStore {
+  private static final int MAX_SEGMENTS = 64;
+  private static final double LOAD_FACTOR = 0.75;
+  /* Sessions are spread randomly, so segments get headroom above their share of the capacity. */
+  private static final double SEGMENT_HEADROOM = 1.25;
+
+  private final Segment[] segments;
+  private final int segmentShift;
+  private final int capacity;
+  private final AtomicInteger size = new AtomicInteger();
+
+  /**
+   * Creates a session store for the specified number of concurrent sessions.
+   *
+   * @param capacity maximum number of concurrent sessions.
+   */
+  public CompactSessionStore(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Session store capacity must be positive: " + capacity);
+    }
+    int segmentCount = Math.min(MAX_SEGMENTS, Integer.highestOneBit(Math.max(capacity / 1024, 1)));
+    int segmentCapacity =
+        segmentCount == 1
+            ? capacity
+            : (int) Math.ceil((double) capacity / segmentCount * SEGMENT_HEADROOM);
+    this.capacity = capacity;
+    this.segmentShift = 32 - Integer.numberOfTrailingZeros(segmentCount);
+    this.segments = new Segment[segmentCount];
+    for (int i = 0; i < segmentCount; i++) {
+      segments[i] = new Segment(segmentCapacity, this.size, capacity);
+    }
+  }
+
+  /**
+   * Stores the provider tokens of the session until the specified expiration time.
+   *
+   * @param sessionId jti of the user token.
+   * @param tokens access token issued by the OIDC provider for the session, with its refresh token.
+   * @param expiresAt expiration time of the session in epoch milliseconds.
+   * @throws AuthServiceException if the store has no space for the session.
+   */
+  @Override
+  public void put(@NotNull UUID sessionId, @NotNull ProviderTokens tokens, long expiresAt)
+      throws AuthServiceException {
+    put(sessionId, AccessTokenCodec.encode(tokens), expiresAt);
+  }
+
+  void put(@NotNull UUID sessionId, @NotNull byte[] encodedToken, long expiresAt) {
+    long msb = sessionId.getMostSignificantBits();
+    long lsb = sessionId.getLeastSignificantBits();
+    int hash = hash(msb, lsb);
+    Segment segment = segmentFor(hash);
+    if (!segment.put(msb, lsb, hash, encodedToken, expiresAt)) {
+      purgeExpired();
+      if (!segment.put(msb, lsb, hash, encodedToken, expiresAt)) {
+        throw new AuthServiceException("Session store capacity exhausted");
+      }
+    }
+  }
+
+  /**
+   * Returns the access token of the session if it has not expired.
+   *
+   * @param sessionId jti of the user token.
+   * @return access token of the session, or null if the session is unknown or expired.
+   */
+  @Override
+  public @Nullable AccessToken get(@NotNull UUID sessionId) {
+    byte[] encodedToken = getEncoded(sessionId);
+    return encodedToken != null ? AccessTokenCodec.decode(encodedToken) : null;
+  }
+
+  /**
+   * Returns the provider tokens of the session if it has not expired.
+   *
+   * @param sessionId jti of the user token.
+   * @return tokens of the session, or null if the session is unknown or expired.
+   */
+  @Override
+  public @Nullable ProviderTokens getTokens(@NotNull UUID sessionId) {
+    byte[] encodedToken = getEncoded(sessionId);
+    return encodedToken != null ? AccessTokenCodec.decodeTokens(encodedToken) : null;
+  }
+
+  /**
+   * Replaces the provider tokens of an active session, keeping its expiration time.
+   *
+   * @param sessionId jti of the user token.
+   * @param tokens renewed provider tokens of the session.
+   * @return expiration time of the session in epoch milliseconds, or 0 if it isn't active.
+   */
+  @Override
+  public long replace(@NotNull UUID sessionId, @NotNull ProviderTokens tokens) {
+    return replace(sessionId, AccessTokenCodec.encode(tokens));
+  }
+
+  long replace(@NotNull UUID sessionId, @NotNull byte[] encodedToken) {
+    long msb = sessionId.getMostSignificantBits();
+    long lsb = sessionId.getLeastSignificantBits();
+    int hash = hash(msb, lsb);
+    return segmentFor(hash).replace(msb, lsb, hash, encodedToken, System.currentTimeMillis());
+  }
+
+  @Nullable
+  byte[] getEncoded(@NotNull UUID sessionId) {
+    long msb = sessionId.getMostSignificantBits();
+    long lsb = sessionId.getLeastSignificantBits();
+    int hash = hash(msb, lsb);
+    return segmentFor(hash).get(msb, lsb, hash, System.currentTimeMillis());
+  }
+
+  /**
+   * Checks whether the session exists and has not expired, without decoding its access token.
+   *
+   * @param sessionId jti of the user token.
+   * @return true if the session is active.
+   */
+  @Override
+  public boolean contains(@NotNull UUID sessionId) {
+    return getEncoded(sessionId) != null;
+  }
+
+  /**
+   * Removes the session; called during user logout.
+   *
+   * @param sessionId jti of the user token.
+   */
+  @Override
+  public void remove(@NotNull UUID sessionId) {
+    long msb = sessionId.getMostSignificantBits();
+    long lsb = sessionId.getLeastSignificantBits();
+    int hash = hash(msb, lsb);
+    segmentFor(hash).remove(msb, lsb, hash);
+  }
+
+  /** Removes all expired sessions from the store. */
+  public void purgeExpired() {
+    long now = System.currentTimeMillis();
+    for (Segment segment : segments) {
+      segment.purgeExpired(now);
+    }
+  }
+
+  /** Returns the number of stored sessions, including expired sessions not purged yet. */
+  @Override
+  public int size() {
+    return size.get();
+  }
+
+  /**
+   * Visits every session that has not expired, one segment at a time.
+   *
+   * @param visitor visitor of the sessions.
+   */
+  void forEach(SessionVisitor visitor) {
+    long now = System.currentTimeMillis();
+    for (Segment segment : segments) {
+      segment.forEach(visitor, now);
+    }
+  }
+
+  /** Visitor of the sessions held by the store. */
+  interface SessionVisitor {
+    void visit(long mostSigBits, long leastSigBits, long expiresAt, byte[] encodedToken);
+  }
+
+  /** Returns the maximum number of concurrent sessions. */
+  public int capacity() {
+    return capacity;
+  }
+
+  private Segment segmentFor(int hash) {
+    return segmentShift == 32 ? segments[0] : segments[hash >>> segmentShift];
+  }
+
+  /* UUIDs are random, but version & variant bits are fixed, so mix all bits of both words. */
+  private static int hash(long msb, long lsb) {
+    long h = (msb ^ Long.rotateLeft(lsb, 32)) * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+
+  /* Open addressing hash table with linear probing and backward shift deletion. */
+  private static final class Segment {
+    private final StampedLock lock = new StampedLock();
+    private final long[] mostSigBits;
+    private final long[] leastSigBits;
+    private final long[] expiresAt;
+    private final byte[][] tokens;
+    private final int slots;
+    private final int maxSize;
+    private final AtomicInteger storeSize;
+    private final int storeCapacity;
+    private int size;
+    /*
+     * No session expires before this time, written under the write lock. Removals leave it lower
+     * than the actual earliest expiration time, until the next scan recomputes it.
+     */
+    private volatile long nextExpiry = Long.MAX_VALUE;
+
+    Segment(int maxSize, AtomicInteger storeSize, int storeCapacity) {
+      this.slots = (int) Math.ceil(maxSize / LOAD_FACTOR) + 1;
+      this.mostSigBits = new long[slots];
+      this.leastSigBits = new long[slots];
+      this.expiresAt = new long[slots];
+      this.tokens = new byte[slots][];
+      this.maxSize = maxSize;
+      this.storeSize = storeSize;
+      this.storeCapacity = storeCapacity;
+    }
+
+    byte[] get(long msb, long lsb, int hash, long now) {
+      long stamp = lock.tryOptimisticRead();
+      byte[] token = find(msb, lsb, hash, now);
+      if (!lock.validate(stamp)) {
+        stamp = lock.readLock();
+        try {
+          token = find(msb, lsb, hash, now);
+        } finally {
+          lock.unlockRead(stamp);
+        }
+      }
+      return token;
+    }
+
+    private byte[] find(long msb, long lsb, int hash, long now) {
+      for (int slot = home(hash); ; slot = next(slot)) {
+        byte[] token = tokens[slot];
+        if (token == null) {
+          return null;
+        }
+        if (mostSigBits[slot] == msb && leastSigBits[slot] == lsb) {
+          return expiresAt[slot] > now ? token : null;
+        }
+      }
+    }
+
+    /* Returns false if the session is new and there is no space left for it. */
+    boolean put(long msb, long lsb, int hash, byte[] token, long expiry) {
+      long stamp = lock.writeLock();
+      try {
+        int slot = home(hash);
+        for (; tokens[slot] != null; slot = next(slot)) {
+          if (mostSigBits[slot] == msb && leastSigBits[slot] == lsb) {
+            tokens[slot] = token;
+            expiresAt[slot] = expiry;
+            nextExpiry = Math.min(nextExpiry, expiry);
+            return true;
+          }
+        }
+        if (size == maxSize || !reserve()) {
+          return false;
+        }
+        mostSigBits[slot] = msb;
+        leastSigBits[slot] = lsb;
+        expiresAt[slot] = expiry;
+        tokens[slot] = token;
+        size++;
+        nextExpiry = Math.min(nextExpiry, expiry);
+        return true;
+      } finally {
+        lock.unlockWrite(stamp);
+      }
+    }
+
+    /* Returns the expiration time of the replaced session, or 0 if it is missing or expired. */
+    long replace(long msb, long lsb, int hash, byte[] token, long now) {
+      long stamp = lock.writeLock();
+      try {
+        for (int slot = home(hash); tokens[slot] != null; slot = next(slot)) {
+          if (mostSigBits[slot] == msb && leastSigBits[slot] == lsb) {
+            if (expiresAt[slot] <= now) {
+              return 0;
+            }
+            tokens[slot] = token;
+            return expiresAt[slot];
+          }
+        }
+        return 0;
+      } finally {
+        lock.unlockWrite(stamp);
+      }
+    }
+
+    void remove(long msb, long lsb, int hash) {
+      long stamp = lock.writeLock();
+      try {
+        for (int slot = home(hash); tokens[slot] != null; slot = next(slot)) {
+          if (mostSigBits[slot] == msb && leastSigBits[slot] == lsb) {
+            delete(slot);
+            return;
+          }
+        }
+      } finally {
+        lock.unlockWrite(stamp);
+      }
+    }
+
+    void forEach(SessionVisitor visitor, long now) {
+      long stamp = lock.readLock();
+      try {
+        for (int slot = 0; slot < slots; slot++) {
+          if (tokens[slot] != null && expiresAt[slot] > now) {
+            visitor.visit(mostSigBits[slot], leastSigBits[slot], expiresAt[slot], tokens[slot]);
+          }
+        }
+      } finally {
+        lock.unlockRead(stamp);
+      }
+    }
+
+    void purgeExpired(long now) {
+      if (nextExpiry > now) {
+        return;
+      }
+      long stamp = lock.writeLock();
+      try {
+        purgeExpiredLocked(now);
+      } finally {
+        lock.unlockWrite(stamp);
+      }
+    }
+
+    /* Reserves space for a new session within the capacity of the whole store. */
+    private boolean reserve() {
+      for (int current = storeSize.get(); current < storeCapacity; current = storeSize.get()) {
+        if (storeSize.compareAndSet(current, current + 1)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private void purgeExpiredLocked(long now) {
+      if (nextExpiry > now) {
+        return;
+      }
+      long earliest = Long.MAX_VALUE;
+      for (int slot = 0; slot < slots; ) {
+        /* Deletion shifts a later entry into the slot, so examine the slot again. */
+        if (tokens[slot] != null && expiresAt[slot] <= now) {
+          delete(slot);
+        } else {
+          if (tokens[slot] != null) {
+            earliest = Math.min(earliest, expiresAt[slot]);
+          }
+          slot++;
+        }
+      }
+      nextExpiry = earliest;
+    }
+
+    /*
+     * Maps the hash onto the table by multiply-shift, so the table need not be a power of two. The
+     * hash is first scrambled, as its leading bits select the segment and are the same for all of
+     * its sessions.
+     */
+    private int home(int hash) {
+      return (int) (((hash * 0x9E3779B9) & 0xFFFFFFFFL) * slots >>> 32);
+    }
+
+    private int next(int slot) {
+      return slot + 1 == slots ? 0 : slot + 1;
+    }
+
+    /* Backward shift deletion keeps probe sequences intact without tombstones. */
+    private void delete(int slot) {
+      int free = slot;
+      for (int next = next(free); tokens[next] != null; next = next(next)) {
+        int home = home(hash(mostSigBits[next], leastSigBits[next]));
+        boolean reachable =
+            free <= next ? free < home && home <= next : free < home || home <= next;
+        if (!reachable) {
+          mostSigBits[free] = mostSigBits[next];
+          leastSigBits[free] = leastSigBits[next];
+          expiresAt[free] = expiresAt[next];
+          tokens[free] = tokens[next];
+          free = next;
+        }
+      }
+      tokens[free] = null;
+      size--;
+      storeSize.decrementAndGet();
+    }
+  }
+}
@@ -0,0 +1,170 @@
+package kt.proj.common.session;
+
+import com.nimbusds.oauth2.sdk.token.AccessToken;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import kt.proj.common.AuthServiceException;
+import kt.proj.config.SessionStoreConfig;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Session store that survives restarts. Sessions are served from an in-memory {@link
+ * CompactSessionStore} index and every change is appended to a memory-mapped {@link
+ * SessionJournal}, which is replayed into the index on startup. Records of expired & removed
+ * sessions are compacted away in the background. The journal holds the provider tokens of the
+ * sessions in the clear, so its file must be protected like a credential store.
+ */
+public class MappedSessionStore implements SessionStore {
+  private static final Logger LOGGER = Logger.getLogger(MappedSessionStore.class.getName());
+  private static final long DEFAULT_FILE_SIZE = 64L << 20;
+  private static final long DEFAULT_COMPACTION_INTERVAL = 60;
+  private static final long CLOSE_TIMEOUT = 30;
+
+  private final CompactSessionStore index;
+  private final SessionJournal journal;
+  private final ScheduledExecutorService compactor;
+
+  private MappedSessionStore(CompactSessionStore index, SessionJournal journal, long interval) {
+    this.index = index;
+    this.journal = journal;
+    this.compactor =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "session-journal-compactor");
+              thread.setDaemon(true);
+              return thread;
+            });
+    compactor.scheduleWithFixedDelay(this::compactIfNeeded, interval, interval, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Opens the session store and restores the sessions from its journal.
+   *
+   * @param config configuration of the session store.
+   * @param capacity maximum number of concurrent sessions.
+   * @return opened session store.
+   * @throws AuthServiceException if the journal could not be opened.
+   */
+  static MappedSessionStore open(@NotNull SessionStoreConfig config, int capacity)
+      throws AuthServiceException {
+    Path file = config.getFile();
+    if (file == null) {
+      throw new AuthServiceException("Session store of type mapped requires a file");
+    }
+    CompactSessionStore index = new CompactSessionStore(capacity);
+    try {
+      SessionJournal journal =
+          SessionJournal.open(
+              file, config.getFileSize() > 0 ? config.getFileSize() : DEFAULT_FILE_SIZE, index);
+      return new MappedSessionStore(
+          index,
+          journal,
+          config.getCompactionInterval() > 0
+              ? config.getCompactionInterval()
+              : DEFAULT_COMPACTION_INTERVAL);
+    } catch (IOException e) {
+      throw new AuthServiceException("Could not open session journal " + file, e);
+    }
+  }
+
+  @Override
+  public void put(@NotNull UUID sessionId, @NotNull ProviderTokens tokens, long expiresAt)
+      throws AuthServiceException {
+    byte[] encodedToken = AccessTokenCodec.encode(tokens);
+    /* The journal lock keeps the order of journal records the same as that of index updates. */
+    journal.lock.lock();
+    try {
+      index.put(sessionId, encodedToken, expiresAt);
+      journal.appendPut(sessionId, expiresAt, encodedToken);
+    } catch (IOException e) {
+      index.remove(sessionId);
+      throw new AuthServiceException("Could not persist user session", e);
+    } finally {
+      journal.lock.unlock();
+    }
+  }
+
+  @Override
+  public @Nullable AccessToken get(@NotNull UUID sessionId) {
+    return index.get(sessionId);
+  }
+
+  @Override
+  public @Nullable ProviderTokens getTokens(@NotNull UUID sessionId) {
+    return index.getTokens(sessionId);
+  }
+
+  /* Renewed tokens are journaled as a put with the unchanged expiration time of the session. */
+  @Override
+  public long replace(@NotNull UUID sessionId, @NotNull ProviderTokens tokens)
+      throws AuthServiceException {
+    byte[] encodedToken = AccessTokenCodec.encode(tokens);
+    journal.lock.lock();
+    try {
+      long expiresAt = index.replace(sessionId, encodedToken);
+      if (expiresAt != 0) {
+        journal.appendPut(sessionId, expiresAt, encodedToken);
+      }
+      return expiresAt;
+    } catch (IOException e) {
+      throw new AuthServiceException("Could not persist renewed user session", e);
+    } finally {
+      journal.lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean contains(@NotNull UUID sessionId) {
+    return index.contains(sessionId);
+  }
+
+  @Override
+  public void remove(@NotNull UUID sessionId) {
+    journal.lock.lock();
+    try {
+      index.remove(sessionId);
+      journal.appendRemove(sessionId);
+    } catch (IOException e) {
+      throw new AuthServiceException("Could not persist user session removal", e);
+    } finally {
+      journal.lock.unlock();
+    }
+  }
+
+  @Override
+  public int size() {
+    return index.size();
+  }
+
+  @Override
+  public void close() {
+    compactor.shutdown();
+    try {
+      /* A compaction in progress remaps the journal, so it must end before the last flush. */
+      if (!compactor.awaitTermination(CLOSE_TIMEOUT, TimeUnit.SECONDS)) {
+        LOGGER.warning("Session journal compaction did not end within " + CLOSE_TIMEOUT + "s");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    journal.force();
+  }
+
+  private void compactIfNeeded() {
+    try {
+      index.purgeExpired();
+      if (journal.needsCompaction()) {
+        journal.compact();
+      }
+      journal.force();
+    } catch (IOException | RuntimeException e) {
+      LOGGER.warning("Could not compact session journal: " + e.getMessage());
+    }
+  }
+}
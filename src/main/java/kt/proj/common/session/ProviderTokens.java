@@ -0,0 +1,58 @@
+package kt.proj.common.session;
+
+import com.nimbusds.oauth2.sdk.token.AccessToken;
+import com.nimbusds.oauth2.sdk.token.RefreshToken;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Tokens issued by the OIDC provider for a user session: the access token, along with the refresh
+ * token renewing it and its expiration time when the provider returned them.
+ */
+public final class ProviderTokens {
+  private final AccessToken accessToken;
+  private final @Nullable RefreshToken refreshToken;
+  private final long expiresAt;
+
+  /**
+   * @param accessToken access token issued by the OIDC provider.
+   * @param refreshToken refresh token issued along with it, if any.
+   * @param expiresAt expiration time of the access token in epoch milliseconds, or 0 if unknown.
+   */
+  public ProviderTokens(
+      @NotNull AccessToken accessToken, @Nullable RefreshToken refreshToken, long expiresAt) {
+    this.accessToken = accessToken;
+    this.refreshToken = refreshToken;
+    this.expiresAt = expiresAt;
+  }
+
+  public @NotNull AccessToken getAccessToken() {
+    return accessToken;
+  }
+
+  public @Nullable RefreshToken getRefreshToken() {
+    return refreshToken;
+  }
+
+  /** Returns the expiration time of the access token in epoch milliseconds, or 0 if unknown. */
+  public long getExpiresAt() {
+    return expiresAt;
+  }
+
+  /** Checks whether the access token can be renewed before it expires. */
+  public boolean isRenewable() {
+    return refreshToken != null && expiresAt > 0;
+  }
+
+  @Override
+  public String toString() {
+    return "ProviderTokens{"
+        + "type="
+        + accessToken.getType()
+        + ", refreshable="
+        + (refreshToken != null)
+        + ", expiresAt="
+        + expiresAt
+        + '}';
+  }
+}
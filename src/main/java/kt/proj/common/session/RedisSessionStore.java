@@ -0,0 +1,269 @@
+package kt.proj.common.session;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.nimbusds.oauth2.sdk.token.AccessToken;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import kt.proj.common.AuthServiceException;
+import kt.proj.config.SessionStoreConfig;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import redis.clients.jedis.BinaryJedisPubSub;
+import redis.clients.jedis.JedisPooled;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.jedis.params.SetParams;
+
+/**
+ * Session store shared by all nodes through Redis, so that a user token issued by one node is
+ * accepted by every other node.
+ *
+ * <p>Each node keeps the sessions it recently read in a near-cache. Removing a session publishes
+ * its id on a revocation channel, and every node evicts it from its near-cache as soon as the
+ * message arrives. If a node misses messages while it is disconnected, it clears its near-cache on
+ * reconnection, and near-cache entries expire after {@code near_cache_ttl} seconds in any case,
+ * which bounds the delay for a revocation to take effect cluster-wide.
+ */
+public class RedisSessionStore implements SessionStore {
+  private static final Logger LOGGER = Logger.getLogger(RedisSessionStore.class.getName());
+  private static final byte[] REVOCATION_CHANNEL =
+      "kt-auth:session-revocations".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] KEY_PREFIX = "kt-auth:session:".getBytes(StandardCharsets.US_ASCII);
+  private static final long DEFAULT_NEAR_CACHE_SIZE = 10_000;
+  private static final long DEFAULT_NEAR_CACHE_TTL = 5;
+  private static final long RECONNECT_DELAY_MILLIS = 1000;
+
+  private final JedisPooled redis;
+  private final Cache<UUID, CachedSession> nearCache;
+  private final Thread subscriber;
+  private volatile RevocationListener revocationListener;
+  private volatile boolean closed;
+
+  RedisSessionStore(JedisPooled redis, long nearCacheSize, Duration nearCacheTtl) {
+    this.redis = redis;
+    this.nearCache =
+        Caffeine.newBuilder().maximumSize(nearCacheSize).expireAfterWrite(nearCacheTtl).build();
+    this.subscriber = new Thread(this::subscribe, "session-revocation-subscriber");
+    subscriber.setDaemon(true);
+    subscriber.start();
+  }
+
+  /**
+   * Connects to the configured Redis server.
+   *
+   * @param config configuration of the session store.
+   * @return session store backed by Redis.
+   * @throws AuthServiceException if no Redis URL is configured.
+   */
+  static RedisSessionStore open(@NotNull SessionStoreConfig config) throws AuthServiceException {
+    if (config.getRedisURI() == null) {
+      throw new AuthServiceException("Session store of type redis requires a redis_url");
+    }
+    return new RedisSessionStore(
+        new JedisPooled(config.getRedisURI()),
+        config.getNearCacheSize() > 0 ? config.getNearCacheSize() : DEFAULT_NEAR_CACHE_SIZE,
+        Duration.ofSeconds(
+            config.getNearCacheTtl() > 0 ? config.getNearCacheTtl() : DEFAULT_NEAR_CACHE_TTL));
+  }
+
+  @Override
+  public void put(@NotNull UUID sessionId, @NotNull ProviderTokens tokens, long expiresAt)
+      throws AuthServiceException {
+    byte[] encodedToken = AccessTokenCodec.encode(tokens);
+    long ttl = expiresAt - System.currentTimeMillis();
+    if (ttl <= 0) {
+      return;
+    }
+    try {
+      redis.set(key(sessionId), value(encodedToken, expiresAt), SetParams.setParams().px(ttl));
+    } catch (JedisException e) {
+      throw new AuthServiceException("Could not store user session", e);
+    }
+    nearCache.put(sessionId, new CachedSession(encodedToken, expiresAt));
+  }
+
+  @Override
+  public @Nullable AccessToken get(@NotNull UUID sessionId) {
+    CachedSession session = lookup(sessionId);
+    return session != null ? AccessTokenCodec.decode(session.encodedToken) : null;
+  }
+
+  @Override
+  public @Nullable ProviderTokens getTokens(@NotNull UUID sessionId) {
+    CachedSession session = lookup(sessionId);
+    return session != null ? AccessTokenCodec.decodeTokens(session.encodedToken) : null;
+  }
+
+  /*
+   * The expiration time of the session is read from Redis rather than the near-cache, and the
+   * renewed tokens are only written if the session still exists. Other nodes keep serving the
+   * tokens of their near-cache until it expires, which renewal ahead of expiry allows for.
+   */
+  @Override
+  public long replace(@NotNull UUID sessionId, @NotNull ProviderTokens tokens)
+      throws AuthServiceException {
+    byte[] encodedToken = AccessTokenCodec.encode(tokens);
+    try {
+      byte[] value = redis.get(key(sessionId));
+      if (value == null) {
+        return 0;
+      }
+      long expiresAt = ByteBuffer.wrap(value).getLong();
+      long ttl = expiresAt - System.currentTimeMillis();
+      if (ttl <= 0
+          || redis.set(
+                  key(sessionId),
+                  value(encodedToken, expiresAt),
+                  SetParams.setParams().xx().px(ttl))
+              == null) {
+        return 0;
+      }
+      nearCache.put(sessionId, new CachedSession(encodedToken, expiresAt));
+      return expiresAt;
+    } catch (JedisException e) {
+      throw new AuthServiceException("Could not store renewed user session", e);
+    }
+  }
+
+  @Override
+  public boolean contains(@NotNull UUID sessionId) {
+    return lookup(sessionId) != null;
+  }
+
+  @Override
+  public void remove(@NotNull UUID sessionId) {
+    nearCache.invalidate(sessionId);
+    try {
+      redis.del(key(sessionId));
+      redis.publish(REVOCATION_CHANNEL, toBytes(sessionId));
+    } catch (JedisException e) {
+      throw new AuthServiceException("Could not remove user session", e);
+    }
+  }
+
+  /* Sessions missing the near-cache are read from Redis. */
+  @Override
+  public boolean isBlocking() {
+    return true;
+  }
+
+  /**
+   * Returns the number of sessions in the near-cache of this node, not the number stored in Redis,
+   * which would take a SCAN of the key space.
+   */
+  @Override
+  public int size() {
+    return (int) nearCache.estimatedSize();
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    RevocationListener listener = revocationListener;
+    if (listener != null && listener.isSubscribed()) {
+      try {
+        listener.unsubscribe();
+      } catch (JedisException e) {
+        LOGGER.fine("Could not unsubscribe from session revocations: " + e.getMessage());
+      }
+    }
+    subscriber.interrupt();
+    redis.close();
+  }
+
+  /* Sessions are denied rather than trusted when Redis cannot be reached. */
+  private @Nullable CachedSession lookup(UUID sessionId) {
+    CachedSession session = nearCache.getIfPresent(sessionId);
+    if (session == null) {
+      byte[] value;
+      try {
+        value = redis.get(key(sessionId));
+      } catch (JedisException e) {
+        LOGGER.warning("Could not look up user session: " + e.getMessage());
+        return null;
+      }
+      if (value == null) {
+        return null;
+      }
+      ByteBuffer buffer = ByteBuffer.wrap(value);
+      long expiresAt = buffer.getLong();
+      byte[] encodedToken = new byte[buffer.remaining()];
+      buffer.get(encodedToken);
+      session = new CachedSession(encodedToken, expiresAt);
+      nearCache.put(sessionId, session);
+    }
+    return session.expiresAt > System.currentTimeMillis() ? session : null;
+  }
+
+  private void subscribe() {
+    while (!closed) {
+      try {
+        revocationListener = new RevocationListener();
+        redis.subscribe(revocationListener, REVOCATION_CHANNEL);
+      } catch (JedisException e) {
+        if (!closed) {
+          LOGGER.warning("Session revocation subscription failed: " + e.getMessage());
+        }
+      }
+      /* Revocations may have been missed while unsubscribed. */
+      nearCache.invalidateAll();
+      try {
+        TimeUnit.MILLISECONDS.sleep(RECONNECT_DELAY_MILLIS);
+      } catch (InterruptedException e) {
+        return;
+      }
+    }
+  }
+
+  private static byte[] key(UUID sessionId) {
+    return ByteBuffer.allocate(KEY_PREFIX.length + 2 * Long.BYTES)
+        .put(KEY_PREFIX)
+        .putLong(sessionId.getMostSignificantBits())
+        .putLong(sessionId.getLeastSignificantBits())
+        .array();
+  }
+
+  private static byte[] value(byte[] encodedToken, long expiresAt) {
+    return ByteBuffer.allocate(Long.BYTES + encodedToken.length)
+        .putLong(expiresAt)
+        .put(encodedToken)
+        .array();
+  }
+
+  private static byte[] toBytes(UUID sessionId) {
+    return ByteBuffer.allocate(2 * Long.BYTES)
+        .putLong(sessionId.getMostSignificantBits())
+        .putLong(sessionId.getLeastSignificantBits())
+        .array();
+  }
+
+  private static final class CachedSession {
+    private final byte[] encodedToken;
+    private final long expiresAt;
+
+    CachedSession(byte[] encodedToken, long expiresAt) {
+      this.encodedToken = encodedToken;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  private final class RevocationListener extends BinaryJedisPubSub {
+    @Override
+    public void onSubscribe(byte[] channel, int subscribedChannels) {
+      /* Sessions cached before the subscription started may have been revoked meanwhile. */
+      nearCache.invalidateAll();
+    }
+
+    @Override
+    public void onMessage(byte[] channel, byte[] message) {
+      if (message.length == 2 * Long.BYTES) {
+        ByteBuffer buffer = ByteBuffer.wrap(message);
+        nearCache.invalidate(new UUID(buffer.getLong(), buffer.getLong()));
+      }
+    }
+  }
+}
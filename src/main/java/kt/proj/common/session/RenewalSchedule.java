@@ -0,0 +1,204 @@
+package kt.proj.common.session;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Schedule of the sessions whose provider access token is due for renewal, ordered by renewal
+ * time in a queue per provider, so that due renewals are sent to each provider in batches.
+ *
+ * <p>A session is scheduled once: while it waits in a queue or its renewal is in flight, further
+ * attempts to schedule it are ignored. A renewal ends by rescheduling the session for its renewed
+ * tokens, retrying it later or dropping it. Sessions ended meanwhile are cancelled, and their
+ * queue entries are skipped once due.
+ */
+public class RenewalSchedule {
+  /* Renewal time of sessions whose renewal was polled & hasn't ended yet. */
+  private static final long IN_FLIGHT = Long.MAX_VALUE;
+  private static final Comparator<Entry> ORDER =
+      Comparator.comparingLong((Entry entry) -> entry.renewAt)
+          .thenComparingLong(entry -> entry.sessionId.getMostSignificantBits())
+          .thenComparingLong(entry -> entry.sessionId.getLeastSignificantBits());
+
+  private final int capacity;
+  private final long renewBeforeMillis;
+  /* Renewal time of every scheduled session, which queue entries must match to be polled. */
+  private final ConcurrentMap<UUID, Long> scheduled = new ConcurrentHashMap<>();
+  private final Map<String, ConcurrentSkipListSet<Entry>> queues = new ConcurrentHashMap<>();
+
+  /**
+   * Creates a schedule renewing access tokens ahead of their expiration.
+   *
+   * @param capacity maximum number of scheduled sessions; more sessions are left to be scheduled
+   *     again once they are requested.
+   * @param renewBefore how long before its expiration an access token is renewed.
+   */
+  public RenewalSchedule(int capacity, @NotNull Duration renewBefore) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Renewal schedule capacity must be positive: " + capacity);
+    }
+    this.capacity = capacity;
+    this.renewBeforeMillis = renewBefore.toMillis();
+  }
+
+  /**
+   * Schedules the renewal of the access token of a session, unless it can't be renewed or lives
+   * as long as the session.
+   *
+   * @param sessionId jti of the user token.
+   * @param provider name of the provider that issued the tokens.
+   * @param tokens provider tokens of the session.
+   * @param sessionExpiresAt expiration time of the session in epoch milliseconds.
+   * @return true if the session was scheduled by this call.
+   */
+  public boolean schedule(
+      @NotNull UUID sessionId,
+      @NotNull String provider,
+      @NotNull ProviderTokens tokens,
+      long sessionExpiresAt) {
+    if (!tokens.isRenewable() || tokens.getExpiresAt() >= sessionExpiresAt) {
+      return false;
+    }
+    long renewAt = tokens.getExpiresAt() - renewBeforeMillis;
+    if (scheduled.size() >= capacity || scheduled.putIfAbsent(sessionId, renewAt) != null) {
+      return false;
+    }
+    queue(provider).add(new Entry(sessionId, renewAt));
+    return true;
+  }
+
+  /**
+   * Schedules the renewal of the access token of a session if it is due, for sessions that
+   * weren't scheduled when they were created, like sessions restored after a restart.
+   *
+   * @param sessionId jti of the user token.
+   * @param provider name of the provider that issued the tokens.
+   * @param tokens provider tokens of the session.
+   * @param sessionExpiresAt expiration time of the session in epoch milliseconds.
+   */
+  public void scheduleIfDue(
+      @NotNull UUID sessionId,
+      @NotNull String provider,
+      @NotNull ProviderTokens tokens,
+      long sessionExpiresAt) {
+    if (tokens.isRenewable()
+        && System.currentTimeMillis() >= tokens.getExpiresAt() - renewBeforeMillis
+        && !scheduled.containsKey(sessionId)) {
+      schedule(sessionId, provider, tokens, sessionExpiresAt);
+    }
+  }
+
+  /**
+   * Takes the sessions of a provider due for renewal, marking their renewal in flight.
+   *
+   * @param provider name of the provider.
+   * @param now current time in epoch milliseconds.
+   * @param max maximum number of sessions to take.
+   * @return due sessions, the most overdue first.
+   */
+  public @NotNull List<UUID> pollDue(@NotNull String provider, long now, int max) {
+    ConcurrentSkipListSet<Entry> queue = queues.get(provider);
+    if (queue == null) {
+      return List.of();
+    }
+    List<UUID> due = new ArrayList<>();
+    while (due.size() < max) {
+      Entry entry = queue.pollFirst();
+      if (entry == null) {
+        break;
+      }
+      if (entry.renewAt > now) {
+        queue.add(entry);
+        break;
+      }
+      /* Entries of cancelled or rescheduled sessions no longer match their renewal time. */
+      if (scheduled.replace(entry.sessionId, entry.renewAt, IN_FLIGHT)) {
+        due.add(entry.sessionId);
+      }
+    }
+    return due;
+  }
+
+  /**
+   * Ends a renewal in flight by scheduling the next renewal of the renewed tokens.
+   *
+   * @param sessionId jti of the user token.
+   * @param provider name of the provider that issued the tokens.
+   * @param tokens renewed provider tokens of the session.
+   * @param sessionExpiresAt expiration time of the session in epoch milliseconds, or 0 if it
+   *     ended.
+   */
+  public void reschedule(
+      @NotNull UUID sessionId,
+      @NotNull String provider,
+      @NotNull ProviderTokens tokens,
+      long sessionExpiresAt) {
+    if (scheduled.remove(sessionId, IN_FLIGHT) && sessionExpiresAt != 0) {
+      schedule(sessionId, provider, tokens, sessionExpiresAt);
+    }
+  }
+
+  /**
+   * Ends a failed renewal in flight by retrying it at the specified time.
+   *
+   * @param sessionId jti of the user token.
+   * @param provider name of the provider that issued the tokens.
+   * @param retryAt time of the next attempt in epoch milliseconds.
+   */
+  public void retry(@NotNull UUID sessionId, @NotNull String provider, long retryAt) {
+    if (scheduled.replace(sessionId, IN_FLIGHT, retryAt)) {
+      queue(provider).add(new Entry(sessionId, retryAt));
+    }
+  }
+
+  /**
+   * Ends a renewal in flight without scheduling the session again.
+   *
+   * @param sessionId jti of the user token.
+   */
+  public void drop(@NotNull UUID sessionId) {
+    scheduled.remove(sessionId, IN_FLIGHT);
+  }
+
+  /**
+   * Cancels the renewals of a session; called during user logout.
+   *
+   * @param sessionId jti of the user token.
+   */
+  public void cancel(@NotNull UUID sessionId) {
+    scheduled.remove(sessionId);
+  }
+
+  /** Returns the names of the providers sessions were scheduled for. */
+  public @NotNull Set<String> getProviders() {
+    return queues.keySet();
+  }
+
+  /** Returns the number of scheduled sessions, including renewals in flight. */
+  public int size() {
+    return scheduled.size();
+  }
+
+  private ConcurrentSkipListSet<Entry> queue(String provider) {
+    return queues.computeIfAbsent(provider, p -> new ConcurrentSkipListSet<>(ORDER));
+  }
+
+  private static final class Entry {
+    private final UUID sessionId;
+    private final long renewAt;
+
+    Entry(UUID sessionId, long renewAt) {
+      this.sessionId = sessionId;
+      this.renewAt = renewAt;
+    }
+  }
+}
@@ -0,0 +1,231 @@
+package kt.proj.common.session;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Set of revoked user tokens, keyed by their UUID jti, checked for every validated user token. A
+ * revoked jti only has to be kept until its token expires, so the set is bound by the logouts
+ * within one token lifetime.
+ *
+ * <p>Revoked tokens are partitioned by expiration time into buckets, each with a Bloom filter in
+ * front of an exact set. Checking a token probes the filter of the one bucket its expiration time
+ * falls into, so tokens that weren't revoked are almost always accepted after reading a single
+ * word of an atomic bit array, without locking. Buckets live in a ring covering the maximum token
+ * lifetime: a bucket whose tokens all expired is dropped in O(1) by replacing it when its slot is
+ * reused. The few tokens that don't fit the ring, like ones issued before the lifetime was
+ * shortened, are kept in an exact overflow set until they expire.
+ */
+public class RevocationList {
+  private static final int BUCKETS_PER_LIFETIME = 16;
+  /* Filter bits per expected token & bits set per token, for a false positive rate of ~2%. */
+  private static final int BITS_PER_TOKEN = 10;
+  private static final int BITS_PER_PROBE = 7;
+
+  private final long bucketMillis;
+  private final long maxLifetimeMillis;
+  private final int bucketBits;
+  private final AtomicReferenceArray<Bucket> buckets;
+  /* Revoked tokens expiring beyond the ring, or in a bucket whose slot was already reused. */
+  private final ConcurrentMap<UUID, Long> overflow = new ConcurrentHashMap<>();
+
+  /**
+   * Creates a revocation list for tokens living at most the specified lifetime.
+   *
+   * @param capacity expected number of revoked tokens within one token lifetime, which sizes the
+   *     Bloom filters. More revocations are still kept, at the cost of more false positives.
+   * @param maxLifetime maximum lifetime of the revoked tokens.
+   */
+  public RevocationList(int capacity, @NotNull Duration maxLifetime) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Revocation list capacity must be positive: " + capacity);
+    }
+    this.maxLifetimeMillis = Math.max(maxLifetime.toMillis(), BUCKETS_PER_LIFETIME);
+    this.bucketMillis = maxLifetimeMillis / BUCKETS_PER_LIFETIME;
+    /* Two more buckets, so that the bucket being filled never reuses the slot of a live one. */
+    this.buckets = new AtomicReferenceArray<>(BUCKETS_PER_LIFETIME + 2);
+    long bits = (long) Math.ceil((double) capacity / BUCKETS_PER_LIFETIME) * BITS_PER_TOKEN;
+    this.bucketBits = (int) Math.min(1L << 30, Math.max(64, Long.highestOneBit(bits - 1) << 1));
+  }
+
+  /**
+   * Revokes the user token with the specified jti until it expires.
+   *
+   * @param sessionId jti of the user token.
+   * @param expiresAt expiration time of the user token in epoch milliseconds.
+   */
+  public void revoke(@NotNull UUID sessionId, long expiresAt) {
+    long now = System.currentTimeMillis();
+    if (expiresAt <= now) {
+      return;
+    }
+    if (expiresAt - now > maxLifetimeMillis + bucketMillis) {
+      revokeOverflow(sessionId, expiresAt, now);
+      return;
+    }
+    long epoch = expiresAt / bucketMillis;
+    int slot = (int) (epoch % buckets.length());
+    Bucket bucket = buckets.get(slot);
+    while (bucket == null || bucket.epoch != epoch) {
+      if (bucket != null && bucket.epoch > epoch) {
+        /* A revocation racing with the clock already reused the slot for a later bucket. */
+        revokeOverflow(sessionId, expiresAt, now);
+        return;
+      }
+      /* The slot is empty or holds a bucket whose tokens all expired, which is dropped. */
+      Bucket created = new Bucket(epoch, bucketBits);
+      if (buckets.compareAndSet(slot, bucket, created)) {
+        bucket = created;
+      } else {
+        bucket = buckets.get(slot);
+      }
+    }
+    bucket.add(sessionId.getMostSignificantBits(), sessionId.getLeastSignificantBits());
+  }
+
+  /**
+   * Checks whether the user token with the specified jti was revoked.
+   *
+   * @param sessionId jti of the user token.
+   * @param expiresAt expiration time of the user token in epoch milliseconds.
+   * @return true if the token was revoked and hasn't expired yet.
+   */
+  public boolean isRevoked(@NotNull UUID sessionId, long expiresAt) {
+    long epoch = expiresAt / bucketMillis;
+    Bucket bucket = buckets.get((int) (epoch % buckets.length()));
+    if (bucket != null && bucket.epoch == epoch) {
+      long msb = sessionId.getMostSignificantBits();
+      long lsb = sessionId.getLeastSignificantBits();
+      if (bucket.mightContain(msb, lsb) && bucket.contains(msb, lsb)) {
+        return true;
+      }
+    }
+    return !overflow.isEmpty() && overflow.containsKey(sessionId);
+  }
+
+  private void revokeOverflow(UUID sessionId, long expiresAt, long now) {
+    overflow.values().removeIf(expiry -> expiry <= now);
+    overflow.put(sessionId, expiresAt);
+  }
+
+  /** Returns the number of revoked tokens in the live buckets, including expired ones. */
+  public int size() {
+    long minEpoch = System.currentTimeMillis() / bucketMillis;
+    int size = 0;
+    for (int i = 0; i < buckets.length(); i++) {
+      Bucket bucket = buckets.get(i);
+      if (bucket != null && bucket.epoch >= minEpoch) {
+        size += bucket.size();
+      }
+    }
+    return size + overflow.size();
+  }
+
+  /* Mixes the bits of a jti half, so that filter bits don't depend on the UUID layout. */
+  private static long mix(long value) {
+    value = (value ^ (value >>> 33)) * 0xff51afd7ed558ccdL;
+    value = (value ^ (value >>> 33)) * 0xc4ceb9fe1a85ec53L;
+    return value ^ (value >>> 33);
+  }
+
+  /* Revoked tokens expiring within one bucket period: a Bloom filter and the exact jtis. */
+  private static final class Bucket {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final long epoch;
+    private final AtomicLongArray filter;
+    private final int wordMask;
+    /* Open addressing set of jtis as pairs of longs, guarded by the bucket. */
+    private long[] jtis = new long[2 * INITIAL_CAPACITY];
+    private boolean[] used = new boolean[INITIAL_CAPACITY];
+    private int size;
+
+    private Bucket(long epoch, int bits) {
+      this.epoch = epoch;
+      this.filter = new AtomicLongArray(bits >>> 6);
+      this.wordMask = (bits >>> 6) - 1;
+    }
+
+    /*
+     * Blocked filter: the hashes select one 64-bit word of the filter and the bits set within it,
+     * so that a probe reads a single word.
+     */
+    boolean mightContain(long msb, long lsb) {
+      long mask = bits(lsb);
+      return (filter.get(word(msb)) & mask) == mask;
+    }
+
+    private int word(long msb) {
+      return (int) (mix(msb) & wordMask);
+    }
+
+    private static long bits(long lsb) {
+      long hash = mix(lsb);
+      long mask = 0;
+      for (int i = 0; i < BITS_PER_PROBE; i++) {
+        mask |= 1L << (hash >>> (6 * i));
+      }
+      return mask;
+    }
+
+    synchronized void add(long msb, long lsb) {
+      if (contains(msb, lsb)) {
+        return;
+      }
+      if (2 * (size + 1) > used.length) {
+        grow();
+      }
+      insert(msb, lsb);
+      size++;
+      /* The filter is set last, so that a positive probe always finds the jti in the set. */
+      int word = word(msb);
+      long mask = bits(lsb);
+      long value;
+      do {
+        value = filter.get(word);
+      } while ((value & mask) != mask && !filter.compareAndSet(word, value, value | mask));
+    }
+
+    synchronized boolean contains(long msb, long lsb) {
+      int mask = used.length - 1;
+      for (int slot = (int) mix(msb ^ lsb) & mask; used[slot]; slot = (slot + 1) & mask) {
+        if (jtis[2 * slot] == msb && jtis[2 * slot + 1] == lsb) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    synchronized int size() {
+      return size;
+    }
+
+    private void insert(long msb, long lsb) {
+      int mask = used.length - 1;
+      int slot = (int) mix(msb ^ lsb) & mask;
+      while (used[slot]) {
+        slot = (slot + 1) & mask;
+      }
+      used[slot] = true;
+      jtis[2 * slot] = msb;
+      jtis[2 * slot + 1] = lsb;
+    }
+
+    private void grow() {
+      long[] oldJtis = jtis;
+      boolean[] oldUsed = used;
+      jtis = new long[2 * 2 * oldUsed.length];
+      used = new boolean[2 * oldUsed.length];
+      for (int slot = 0; slot < oldUsed.length; slot++) {
+        if (oldUsed[slot]) {
+          insert(oldJtis[2 * slot], oldJtis[2 * slot + 1]);
+        }
+      }
+    }
+  }
+}
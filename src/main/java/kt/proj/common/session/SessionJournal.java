@@ -0,0 +1,322 @@
+package kt.proj.common.session;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+import kt.proj.common.AuthServiceException;
+
+/**
+ * Append-only journal of session changes in a memory-mapped file.
+ *
+ * <p>The file starts with a magic number & version followed by PUT and REMOVE records. A record's
+ * type byte is written after its body, so a record torn by a crash reads as the zero-filled end of
+ * the journal. Compaction rewrites the live sessions of the in-memory index into a new file, which
+ * atomically replaces the journal.
+ *
+ * <p>Records hold the provider access & refresh tokens of the sessions, which are bearer
+ * credentials. The journal and its compacted copy are created readable by their owner only, and
+ * should be kept on storage that other users & backups cannot read.
+ *
+ * <p>Appends are guarded by a lock rather than a monitor, so that a virtual thread waiting for a
+ * compaction or a remapping of the file parks instead of pinning its carrier thread.
+ */
+final class SessionJournal {
+  private static final Logger LOGGER = Logger.getLogger(SessionJournal.class.getName());
+  private static final int MAGIC = 0x4B545353;
+  private static final int VERSION = 1;
+  private static final int HEADER_LENGTH = 2 * Integer.BYTES;
+  private static final byte END = 0;
+  private static final byte PUT = 1;
+  private static final byte REMOVE = 2;
+  private static final int PUT_LENGTH = 1 + 3 * Long.BYTES + Integer.BYTES;
+  private static final int REMOVE_LENGTH = 1 + 2 * Long.BYTES;
+  private static final int WRITE_BUFFER_SIZE = 1 << 16;
+  private static final Set<PosixFilePermission> OWNER_ONLY =
+      PosixFilePermissions.fromString("rw-------");
+
+  private final Path file;
+  private final long initialSize;
+  private final CompactSessionStore index;
+  /* Guards the fields below; also held by the store to order index updates & records. */
+  final ReentrantLock lock = new ReentrantLock();
+  private MappedByteBuffer buffer;
+  private int position;
+  /* Journal length right after the last compaction, to decide when to compact again. */
+  private int compactedLength;
+
+  private SessionJournal(Path file, long initialSize, CompactSessionStore index) {
+    this.file = file;
+    this.initialSize = initialSize;
+    this.index = index;
+  }
+
+  /**
+   * Opens the journal and restores the sessions that have not expired into the index.
+   *
+   * @param file path of the journal file, created if it does not exist.
+   * @param initialSize initial size of the mapped file in bytes.
+   * @param index in-memory index of the sessions to restore.
+   * @return opened journal.
+   */
+  static SessionJournal open(Path file, long initialSize, CompactSessionStore index)
+      throws IOException {
+    SessionJournal journal = new SessionJournal(file, initialSize, index);
+    if (Files.exists(file) && isPosix(file)) {
+      /* Journals created by earlier versions were readable according to the umask. */
+      Files.setPosixFilePermissions(file, OWNER_ONLY);
+    }
+    if (!Files.exists(file) || Files.size(file) < HEADER_LENGTH) {
+      try (FileChannel channel = journal.writeSnapshot(file)) {
+        channel.force(false);
+      }
+    }
+    journal.map(Math.max(initialSize, Files.size(file)));
+    int restored = journal.replay();
+    LOGGER.info("Restored " + restored + " sessions from " + file);
+    /* Start with a compacted journal, so that records of expired sessions do not pile up. */
+    journal.compact();
+    return journal;
+  }
+
+  void appendPut(UUID sessionId, long expiresAt, byte[] encodedToken) throws IOException {
+    lock.lock();
+    try {
+      ensureCapacity(PUT_LENGTH + encodedToken.length);
+      buffer.position(position + 1);
+      buffer.putLong(sessionId.getMostSignificantBits());
+      buffer.putLong(sessionId.getLeastSignificantBits());
+      buffer.putLong(expiresAt).putInt(encodedToken.length).put(encodedToken);
+      buffer.put(position, PUT);
+      position += PUT_LENGTH + encodedToken.length;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  void appendRemove(UUID sessionId) throws IOException {
+    lock.lock();
+    try {
+      ensureCapacity(REMOVE_LENGTH);
+      buffer.position(position + 1);
+      buffer.putLong(sessionId.getMostSignificantBits());
+      buffer.putLong(sessionId.getLeastSignificantBits());
+      buffer.put(position, REMOVE);
+      position += REMOVE_LENGTH;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Checks whether the journal has grown enough since the last compaction to compact it again.
+   *
+   * @return true if more bytes were appended since the last compaction than it retained.
+   */
+  boolean needsCompaction() {
+    lock.lock();
+    try {
+      return position - compactedLength
+          > Math.max(compactedLength - HEADER_LENGTH, WRITE_BUFFER_SIZE);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Rewrites the journal with the sessions of the index that have not expired. Sessions are copied
+   * without blocking appends; only the records appended meanwhile are copied under the lock. Must
+   * not be called concurrently.
+   */
+  void compact() throws IOException {
+    int snapshotEnd;
+    lock.lock();
+    try {
+      snapshotEnd = position;
+    } finally {
+      lock.unlock();
+    }
+    Path compacted = file.resolveSibling(file.getFileName() + ".compact");
+    try (FileChannel channel = writeSnapshot(compacted)) {
+      lock.lock();
+      try {
+        /* Records appended during the snapshot are replayed after it, which is idempotent. */
+        ByteBuffer tail = buffer.duplicate();
+        tail.limit(position).position(snapshotEnd);
+        while (tail.hasRemaining()) {
+          channel.write(tail);
+        }
+        channel.force(false);
+        long length = channel.size();
+        Files.move(
+            compacted, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        map(Math.max(initialSize, 2 * length));
+        position = (int) length;
+        compactedLength = position;
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  /** Flushes the journal to the storage device. */
+  void force() {
+    lock.lock();
+    try {
+      buffer.force();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /* Grows the mapped file before appending a record; it shrinks again on compaction. */
+  private void ensureCapacity(int recordLength) throws IOException {
+    if (position + recordLength >= buffer.capacity()) {
+      map(2L * (position + recordLength));
+    }
+  }
+
+  private void map(long size) throws IOException {
+    if (size > Integer.MAX_VALUE) {
+      throw new IOException("Session journal cannot grow beyond 2 GiB: " + file);
+    }
+    try (FileChannel channel =
+        FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+  }
+
+  /*
+   * Replays the journal into the index and positions the journal at its end. Once the index is
+   * full, as after lowering its capacity, sessions it doesn't hold yet are dropped.
+   */
+  private int replay() throws IOException {
+    if (buffer.getInt(0) != MAGIC || buffer.getInt(Integer.BYTES) != VERSION) {
+      throw new IOException("Unsupported session journal format: " + file);
+    }
+    long now = System.currentTimeMillis();
+    boolean full = false;
+    int dropped = 0;
+    int offset = HEADER_LENGTH;
+    int limit = buffer.capacity();
+    while (offset < limit) {
+      byte type = buffer.get(offset);
+      if (type == PUT && offset + PUT_LENGTH <= limit) {
+        long mostSigBits = buffer.getLong(offset + 1);
+        long leastSigBits = buffer.getLong(offset + 1 + Long.BYTES);
+        long expiresAt = buffer.getLong(offset + 1 + 2 * Long.BYTES);
+        int tokenLength = buffer.getInt(offset + 1 + 3 * Long.BYTES);
+        if (tokenLength < 0 || offset + PUT_LENGTH + tokenLength > limit) {
+          break;
+        }
+        UUID sessionId = new UUID(mostSigBits, leastSigBits);
+        if (expiresAt > now && full && !index.contains(sessionId)) {
+          dropped++;
+        } else if (expiresAt > now) {
+          byte[] encodedToken = new byte[tokenLength];
+          ByteBuffer record = buffer.duplicate();
+          record.position(offset + PUT_LENGTH);
+          record.get(encodedToken);
+          try {
+            index.put(sessionId, encodedToken, expiresAt);
+          } catch (AuthServiceException e) {
+            full = true;
+            dropped++;
+          }
+        }
+        offset += PUT_LENGTH + tokenLength;
+      } else if (type == REMOVE && offset + REMOVE_LENGTH <= limit) {
+        index.remove(new UUID(buffer.getLong(offset + 1), buffer.getLong(offset + 1 + Long.BYTES)));
+        offset += REMOVE_LENGTH;
+      } else {
+        if (type != END) {
+          LOGGER.warning("Ignoring corrupt session journal records after offset " + offset);
+        }
+        break;
+      }
+    }
+    if (dropped > 0) {
+      LOGGER.warning(
+          "Dropped "
+              + dropped
+              + " sessions of "
+              + file
+              + " beyond the session store capacity of "
+              + index.capacity());
+    }
+    position = offset;
+    return index.size();
+  }
+
+  /* Writes a new journal holding the sessions of the index, and returns its open channel. */
+  private FileChannel writeSnapshot(Path path) throws IOException {
+    /* A leftover file keeps its permissions when opened, so it is created again. */
+    Files.deleteIfExists(path);
+    FileChannel channel =
+        FileChannel.open(
+            path,
+            Set.of(StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE),
+            ownerOnly(path));
+    ByteBuffer out = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+    out.putInt(MAGIC).putInt(VERSION);
+    IOException[] failure = new IOException[1];
+    index.forEach(
+        (mostSigBits, leastSigBits, expiresAt, encodedToken) -> {
+          if (failure[0] != null) {
+            return;
+          }
+          try {
+            if (out.remaining() < PUT_LENGTH + encodedToken.length) {
+              flush(channel, out);
+            }
+            ByteBuffer record =
+                out.remaining() >= PUT_LENGTH + encodedToken.length
+                    ? out
+                    : ByteBuffer.allocate(PUT_LENGTH + encodedToken.length);
+            record.put(PUT).putLong(mostSigBits).putLong(leastSigBits).putLong(expiresAt);
+            record.putInt(encodedToken.length).put(encodedToken);
+            if (record != out) {
+              flush(channel, record);
+            }
+          } catch (IOException e) {
+            failure[0] = e;
+          }
+        });
+    if (failure[0] != null) {
+      channel.close();
+      throw failure[0];
+    }
+    flush(channel, out);
+    return channel;
+  }
+
+  /* Owner-only permissions for a new file, where the file system supports them. */
+  private static FileAttribute<?>[] ownerOnly(Path path) {
+    return isPosix(path)
+        ? new FileAttribute<?>[] {PosixFilePermissions.asFileAttribute(OWNER_ONLY)}
+        : new FileAttribute<?>[0];
+  }
+
+  private static boolean isPosix(Path path) {
+    return path.getFileSystem().supportedFileAttributeViews().contains("posix");
+  }
+
+  private static void flush(FileChannel channel, ByteBuffer out) throws IOException {
+    out.flip();
+    while (out.hasRemaining()) {
+      channel.write(out);
+    }
+    out.clear();
+  }
+}
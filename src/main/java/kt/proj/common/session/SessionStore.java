@@ -0,0 +1,127 @@
+package kt.proj.common.session;
+
+import com.nimbusds.oauth2.sdk.token.AccessToken;
+import java.util.UUID;
+import kt.proj.common.AuthServiceException;
+import kt.proj.config.SessionStoreConfig;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Store of authenticated user sessions, keyed by the UUID jti of the issued user token. Stores are
+ * selected by the {@code type} of the session store configuration: {@code memory} & {@code mapped}
+ * stores are local to a node, while a {@code redis} store shares sessions across all nodes.
+ */
+public interface SessionStore {
+  int DEFAULT_CAPACITY = 100_000;
+
+  /**
+   * Stores the access token of the session until the specified expiration time.
+   *
+   * @param sessionId jti of the user token.
+   * @param accessToken access token issued by the OIDC provider for the session.
+   * @param expiresAt expiration time of the session in epoch milliseconds.
+   * @throws AuthServiceException if the session could not be stored.
+   */
+  default void put(@NotNull UUID sessionId, @NotNull AccessToken accessToken, long expiresAt)
+      throws AuthServiceException {
+    put(sessionId, new ProviderTokens(accessToken, null, 0), expiresAt);
+  }
+
+  /**
+   * Stores the provider tokens of the session until the specified expiration time.
+   *
+   * @param sessionId jti of the user token.
+   * @param tokens access token issued by the OIDC provider for the session, with its refresh token.
+   * @param expiresAt expiration time of the session in epoch milliseconds.
+   * @throws AuthServiceException if the session could not be stored.
+   */
+  void put(@NotNull UUID sessionId, @NotNull ProviderTokens tokens, long expiresAt)
+      throws AuthServiceException;
+
+  /**
+   * Replaces the provider tokens of an active session once they are renewed, keeping its
+   * expiration time. Sessions removed or expired meanwhile are not restored.
+   *
+   * @param sessionId jti of the user token.
+   * @param tokens renewed provider tokens of the session.
+   * @return expiration time of the session in epoch milliseconds, or 0 if it isn't active.
+   * @throws AuthServiceException if the session could not be stored.
+   */
+  long replace(@NotNull UUID sessionId, @NotNull ProviderTokens tokens)
+      throws AuthServiceException;
+
+  /**
+   * Returns the access token of the session if it has not expired.
+   *
+   * @param sessionId jti of the user token.
+   * @return access token of the session, or null if the session is unknown or expired.
+   */
+  @Nullable
+  AccessToken get(@NotNull UUID sessionId);
+
+  /**
+   * Returns the provider tokens of the session if it has not expired.
+   *
+   * @param sessionId jti of the user token.
+   * @return tokens of the session, or null if the session is unknown or expired.
+   */
+  @Nullable
+  ProviderTokens getTokens(@NotNull UUID sessionId);
+
+  /**
+   * Checks whether the session exists and has not expired.
+   *
+   * @param sessionId jti of the user token.
+   * @return true if the session is active.
+   */
+  boolean contains(@NotNull UUID sessionId);
+
+  /**
+   * Removes the session; called during user logout.
+   *
+   * @param sessionId jti of the user token.
+   */
+  void remove(@NotNull UUID sessionId);
+
+  /**
+   * Checks whether lookups may block on I/O, in which case they must not run on the event loop.
+   *
+   * @return true if sessions may be read from a remote server; false if they are held in memory.
+   */
+  default boolean isBlocking() {
+    return false;
+  }
+
+  /**
+   * Returns the number of sessions held by this node, including expired sessions not purged yet:
+   * every stored session for a store local to the node, or the sessions it caches for a store
+   * shared between nodes, which isn't counted to keep this cheap enough for a gauge.
+   */
+  int size();
+
+  /** Releases the resources held by the store. */
+  default void close() {}
+
+  /**
+   * Creates the session store of the configured type.
+   *
+   * @param config configuration of the session store.
+   * @return session store for the configured type.
+   * @throws AuthServiceException if the store type is unknown or the store could not be opened.
+   */
+  static @NotNull SessionStore create(@NotNull SessionStoreConfig config)
+      throws AuthServiceException {
+    int capacity = config.getCapacity() > 0 ? config.getCapacity() : DEFAULT_CAPACITY;
+    switch (config.getType()) {
+      case SessionStoreConfig.MEMORY:
+        return new CompactSessionStore(capacity);
+      case SessionStoreConfig.MAPPED:
+        return MappedSessionStore.open(config, capacity);
+      case SessionStoreConfig.REDIS:
+        return RedisSessionStore.open(config);
+      default:
+        throw new AuthServiceException("Unsupported session store type: " + config.getType());
+    }
+  }
+}
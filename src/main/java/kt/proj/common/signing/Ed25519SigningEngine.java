@@ -0,0 +1,61 @@
+package kt.proj.common.signing;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSSigner;
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.crypto.Ed25519Signer;
+import com.nimbusds.jose.crypto.Ed25519Verifier;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.KeyUse;
+import com.nimbusds.jose.jwk.OctetKeyPair;
+import com.nimbusds.jose.jwk.gen.OctetKeyPairGenerator;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Signing engine for Ed25519 (EdDSA). The underlying Tink primitives are immutable & thread-safe,
+ * so a single signer & verifier pair is shared by all threads.
+ */
+class Ed25519SigningEngine implements SigningEngine {
+  private final JWK publicJWK;
+  private final JWSSigner signer;
+  private final JWSVerifier verifier;
+
+  Ed25519SigningEngine(OctetKeyPair jwk) throws JOSEException {
+    if (!Curve.Ed25519.equals(jwk.getCurve())) {
+      throw new JOSEException("Unsupported curve " + jwk.getCurve() + " for EdDSA");
+    }
+    this.publicJWK = jwk.toPublicJWK();
+    this.signer = new Ed25519Signer(jwk);
+    this.verifier = new Ed25519Verifier(jwk.toPublicJWK());
+  }
+
+  static Ed25519SigningEngine generate() throws JOSEException {
+    return new Ed25519SigningEngine(
+        new OctetKeyPairGenerator(Curve.Ed25519)
+            .keyIDFromThumbprint(true)
+            .keyUse(KeyUse.SIGNATURE)
+            .generate());
+  }
+
+  @Override
+  public @NotNull JWSAlgorithm getAlgorithm() {
+    return JWSAlgorithm.EdDSA;
+  }
+
+  @Override
+  public @NotNull JWSSigner getSigner() {
+    return signer;
+  }
+
+  @Override
+  public @NotNull JWSVerifier getVerifier() {
+    return verifier;
+  }
+
+  @Override
+  public @NotNull JWK getPublicJWK() {
+    return publicJWK;
+  }
+}
@@ -0,0 +1,262 @@
+package kt.proj.common.signing;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSSigner;
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.crypto.impl.BaseJWSProvider;
+import com.nimbusds.jose.crypto.impl.ECDSA;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.KeyUse;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.ECKeyGenerator;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jose.util.Base64URL;
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.security.spec.AlgorithmParameterSpec;
+import java.security.spec.MGF1ParameterSpec;
+import java.security.spec.PSSParameterSpec;
+import java.util.Set;
+import kt.proj.common.InstancePool;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Signing engine for RSA (RS* & PS*) & ECDSA (ES*, including ES256K) algorithms backed by the JCA.
+ * Nimbus signers & verifiers look up and initialize a new {@link Signature} on every call; this
+ * engine instead reuses initialized {@link Signature}s from a pool, which the JCA resets after
+ * every successful sign or verify operation and which are discarded after a failed one. The pool
+ * isn't tied to threads, so virtual threads reuse them too.
+ */
+class JcaSigningEngine implements SigningEngine {
+  private final JWSAlgorithm algorithm;
+  private final JWK publicJWK;
+  private final JWSSigner signer;
+  private final JWSVerifier verifier;
+
+  JcaSigningEngine(JWSAlgorithm algorithm, JWK jwk) throws JOSEException {
+    this.algorithm = algorithm;
+    this.publicJWK = jwk.toPublicJWK();
+
+    JcaAlgorithm jcaAlgorithm = JcaAlgorithm.of(algorithm);
+    /* Zero for RSA; ECDSA signatures are transcoded between DER & the JWS R|S format. */
+    int ecSignatureLength =
+        JWSAlgorithm.Family.EC.contains(algorithm)
+            ? ECDSA.getSignatureByteArrayLength(algorithm)
+            : 0;
+
+    PrivateKey privateKey;
+    PublicKey publicKey;
+    if (jwk instanceof RSAKey && JWSAlgorithm.Family.RSA.contains(algorithm)) {
+      privateKey = ((RSAKey) jwk).toPrivateKey();
+      publicKey = ((RSAKey) jwk).toPublicKey();
+    } else if (jwk instanceof ECKey
+        && Curve.forJWSAlgorithm(algorithm).contains(((ECKey) jwk).getCurve())) {
+      privateKey = ((ECKey) jwk).toPrivateKey();
+      publicKey = ((ECKey) jwk).toPublicKey();
+    } else {
+      throw new JOSEException("Unsupported key type " + jwk.getKeyType() + " for " + algorithm);
+    }
+    if (privateKey == null) {
+      throw new JOSEException("Signing key of type " + jwk.getKeyType() + " has no private part");
+    }
+
+    /* Fail early if the JCA provider cannot sign with the selected algorithm, curve & key. */
+    try {
+      jcaAlgorithm.newSignature().initSign(privateKey);
+      jcaAlgorithm.newSignature().initVerify(publicKey);
+    } catch (GeneralSecurityException e) {
+      throw new JOSEException(
+          "JCA provider cannot sign with " + algorithm + ": " + e.getMessage(), e);
+    }
+    this.signer = new PooledSigner(algorithm, jcaAlgorithm, privateKey, ecSignatureLength);
+    this.verifier = new PooledVerifier(algorithm, jcaAlgorithm, publicKey, ecSignatureLength);
+  }
+
+  static JcaSigningEngine generate(JWSAlgorithm algorithm, int keySize) throws JOSEException {
+    JWK jwk;
+    if (JWSAlgorithm.Family.RSA.contains(algorithm)) {
+      jwk =
+          new RSAKeyGenerator(keySize)
+              .keyIDFromThumbprint(true)
+              .keyUse(KeyUse.SIGNATURE)
+              .generate();
+    } else {
+      jwk =
+          new ECKeyGenerator(Curve.forJWSAlgorithm(algorithm).iterator().next())
+              .keyIDFromThumbprint(true)
+              .keyUse(KeyUse.SIGNATURE)
+              .generate();
+    }
+    return new JcaSigningEngine(algorithm, jwk);
+  }
+
+  @Override
+  public @NotNull JWSAlgorithm getAlgorithm() {
+    return algorithm;
+  }
+
+  @Override
+  public @NotNull JWSSigner getSigner() {
+    return signer;
+  }
+
+  @Override
+  public @NotNull JWSVerifier getVerifier() {
+    return verifier;
+  }
+
+  @Override
+  public @NotNull JWK getPublicJWK() {
+    return publicJWK;
+  }
+
+  /* JCA algorithm & parameters of a JWS algorithm, mapped as the Nimbus signers do. */
+  private static final class JcaAlgorithm {
+    private final String name;
+    private final @Nullable AlgorithmParameterSpec parameters;
+
+    private JcaAlgorithm(String name, @Nullable AlgorithmParameterSpec parameters) {
+      this.name = name;
+      this.parameters = parameters;
+    }
+
+    static JcaAlgorithm of(JWSAlgorithm algorithm) throws JOSEException {
+      if (JWSAlgorithm.RS256.equals(algorithm)) {
+        return new JcaAlgorithm("SHA256withRSA", null);
+      } else if (JWSAlgorithm.RS384.equals(algorithm)) {
+        return new JcaAlgorithm("SHA384withRSA", null);
+      } else if (JWSAlgorithm.RS512.equals(algorithm)) {
+        return new JcaAlgorithm("SHA512withRSA", null);
+      } else if (JWSAlgorithm.PS256.equals(algorithm)) {
+        return pss("SHA-256", MGF1ParameterSpec.SHA256, 32);
+      } else if (JWSAlgorithm.PS384.equals(algorithm)) {
+        return pss("SHA-384", MGF1ParameterSpec.SHA384, 48);
+      } else if (JWSAlgorithm.PS512.equals(algorithm)) {
+        return pss("SHA-512", MGF1ParameterSpec.SHA512, 64);
+      } else if (JWSAlgorithm.ES256.equals(algorithm) || JWSAlgorithm.ES256K.equals(algorithm)) {
+        /* ES256K only differs by its curve, secp256k1, which not every JCA provider supports. */
+        return new JcaAlgorithm("SHA256withECDSA", null);
+      } else if (JWSAlgorithm.ES384.equals(algorithm)) {
+        return new JcaAlgorithm("SHA384withECDSA", null);
+      } else if (JWSAlgorithm.ES512.equals(algorithm)) {
+        return new JcaAlgorithm("SHA512withECDSA", null);
+      }
+      throw new JOSEException("Unsupported JCA signature algorithm: " + algorithm);
+    }
+
+    /* RSASSA-PSS with MGF1 over the same digest and a salt as long as the digest. */
+    private static JcaAlgorithm pss(String digest, MGF1ParameterSpec mgf1, int saltLength) {
+      return new JcaAlgorithm(
+          "RSASSA-PSS", new PSSParameterSpec(digest, "MGF1", mgf1, saltLength, 1));
+    }
+
+    Signature newSignature() throws GeneralSecurityException {
+      Signature signature = Signature.getInstance(name);
+      if (parameters != null) {
+        signature.setParameter(parameters);
+      }
+      return signature;
+    }
+  }
+
+  private static final class PooledSigner extends BaseJWSProvider implements JWSSigner {
+    private final InstancePool<Signature> signatures = new InstancePool<>();
+    private final JcaAlgorithm jcaAlgorithm;
+    private final PrivateKey privateKey;
+    private final int ecSignatureLength;
+
+    PooledSigner(
+        JWSAlgorithm algorithm,
+        JcaAlgorithm jcaAlgorithm,
+        PrivateKey privateKey,
+        int ecSignatureLength) {
+      super(Set.of(algorithm));
+      this.jcaAlgorithm = jcaAlgorithm;
+      this.privateKey = privateKey;
+      this.ecSignatureLength = ecSignatureLength;
+    }
+
+    @Override
+    public Base64URL sign(JWSHeader header, byte[] signingInput) throws JOSEException {
+      if (!supportedJWSAlgorithms().contains(header.getAlgorithm())) {
+        throw new JOSEException("Unsupported JWS algorithm: " + header.getAlgorithm());
+      }
+      try {
+        Signature signature = signatures.poll();
+        if (signature == null) {
+          signature = jcaAlgorithm.newSignature();
+          signature.initSign(privateKey);
+        }
+        signature.update(signingInput);
+        byte[] signatureBytes = signature.sign();
+        /* A failed operation leaves the Signature in an unknown state, so it isn't returned. */
+        signatures.offer(signature);
+        return Base64URL.encode(
+            ecSignatureLength > 0
+                ? ECDSA.transcodeSignatureToConcat(signatureBytes, ecSignatureLength)
+                : signatureBytes);
+      } catch (GeneralSecurityException e) {
+        throw new JOSEException("Could not sign user token: " + e.getMessage(), e);
+      }
+    }
+  }
+
+  private static final class PooledVerifier extends BaseJWSProvider implements JWSVerifier {
+    private final InstancePool<Signature> signatures = new InstancePool<>();
+    private final JcaAlgorithm jcaAlgorithm;
+    private final PublicKey publicKey;
+    private final int ecSignatureLength;
+
+    PooledVerifier(
+        JWSAlgorithm algorithm,
+        JcaAlgorithm jcaAlgorithm,
+        PublicKey publicKey,
+        int ecSignatureLength) {
+      super(Set.of(algorithm));
+      this.jcaAlgorithm = jcaAlgorithm;
+      this.publicKey = publicKey;
+      this.ecSignatureLength = ecSignatureLength;
+    }
+
+    @Override
+    public boolean verify(JWSHeader header, byte[] signingInput, Base64URL signature)
+        throws JOSEException {
+      /* Reject tokens signed with any algorithm other than the configured one. */
+      if (!supportedJWSAlgorithms().contains(header.getAlgorithm())) {
+        return false;
+      }
+      byte[] signatureBytes = signature.decode();
+      if (ecSignatureLength > 0) {
+        if (signatureBytes.length != ecSignatureLength) {
+          return false;
+        }
+        signatureBytes = ECDSA.transcodeSignatureToDER(signatureBytes);
+      }
+
+      Signature jcaSignature = signatures.poll();
+      try {
+        if (jcaSignature == null) {
+          jcaSignature = jcaAlgorithm.newSignature();
+          jcaSignature.initVerify(publicKey);
+        }
+        jcaSignature.update(signingInput);
+        boolean verified = jcaSignature.verify(signatureBytes);
+        /* A failed verification leaves the Signature in an unknown state, so it isn't returned. */
+        signatures.offer(jcaSignature);
+        return verified;
+      } catch (SignatureException e) {
+        return false;
+      } catch (GeneralSecurityException e) {
+        throw new JOSEException("Could not verify user token: " + e.getMessage(), e);
+      }
+    }
+  }
+}
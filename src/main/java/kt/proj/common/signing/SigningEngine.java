@@ -0,0 +1,124 @@
+package kt.proj.common.signing;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSSigner;
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.OctetKeyPair;
+import com.nimbusds.jose.jwk.RSAKey;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import kt.proj.config.UserTokenConfig;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Signing engine used to sign & verify user tokens with the key and JWS algorithm selected by the
+ * {@code signature_algorithm} of the user token configuration.
+ */
+public interface SigningEngine {
+
+  /** Returns the JWS algorithm used to sign user tokens. */
+  @NotNull
+  JWSAlgorithm getAlgorithm();
+
+  /** Returns the thread-safe signer for user tokens. */
+  @NotNull
+  JWSSigner getSigner();
+
+  /** Returns the thread-safe verifier for user tokens. */
+  @NotNull
+  JWSVerifier getVerifier();
+
+  /** Returns the public key used to verify user tokens, which always has a key ID. */
+  @NotNull
+  JWK getPublicJWK();
+
+  /** Returns the ID of the key, set as the {@code kid} of user token headers. */
+  default @NotNull String getKeyID() {
+    return getPublicJWK().getKeyID();
+  }
+
+  /**
+   * Creates the signing engine for the configured signature algorithm. RSA (RS256/384/512 &
+   * PS256/384/512), ECDSA (ES256/384/512 & ES256K, if the JCA provider supports secp256k1) &
+   * Ed25519 (EdDSA) algorithms are supported. The key is loaded from the
+   * configured private key, the base64 encoding of a private JWK, or generated if none is set. A
+   * configured key without key ID is identified by its JWK thumbprint.
+   *
+   * @param tokenConfig configuration of user tokens.
+   * @return signing engine with the configured or a newly generated key.
+   * @throws JOSEException if the algorithm is unsupported or the key is invalid for it.
+   */
+  static @NotNull SigningEngine create(@NotNull UserTokenConfig tokenConfig)
+      throws JOSEException {
+    byte[] privateKey = tokenConfig.getPrivateKey();
+    if (privateKey != null && privateKey.length > 0) {
+      return load(tokenConfig, privateKey);
+    }
+    return generate(tokenConfig);
+  }
+
+  /**
+   * Creates a signing engine with the specified key for the configured signature algorithm, like
+   * the configured private key or one of the verification keys. A key without key ID is
+   * identified by its JWK thumbprint.
+   *
+   * @param tokenConfig configuration of user tokens.
+   * @param privateKey UTF-8 encoded private JWK, as decoded from its base64 configuration.
+   * @return signing engine with the specified key.
+   * @throws JOSEException if the algorithm is unsupported or the key is invalid for it.
+   */
+  static @NotNull SigningEngine load(
+      @NotNull UserTokenConfig tokenConfig, @NotNull byte[] privateKey) throws JOSEException {
+    JWSAlgorithm algorithm = JWSAlgorithm.parse(tokenConfig.getSignatureAlgorithm());
+    JWK jwk;
+    try {
+      jwk = JWK.parse(new String(privateKey, StandardCharsets.UTF_8));
+    } catch (ParseException e) {
+      throw new JOSEException("User token private key is not a valid JWK", e);
+    }
+    jwk = withKeyID(jwk);
+    if (jwk instanceof OctetKeyPair && JWSAlgorithm.EdDSA.equals(algorithm)) {
+      return new Ed25519SigningEngine((OctetKeyPair) jwk);
+    } else if (JWSAlgorithm.Family.RSA.contains(algorithm)
+        || JWSAlgorithm.Family.EC.contains(algorithm)) {
+      return new JcaSigningEngine(algorithm, jwk);
+    }
+    throw new JOSEException("Unsupported user token signature algorithm: " + algorithm);
+  }
+
+  /**
+   * Creates a signing engine with a new key for the configured signature algorithm, regardless of
+   * any configured private key.
+   *
+   * @param tokenConfig configuration of user tokens.
+   * @return signing engine with a newly generated key.
+   * @throws JOSEException if the algorithm is unsupported.
+   */
+  static @NotNull SigningEngine generate(@NotNull UserTokenConfig tokenConfig)
+      throws JOSEException {
+    JWSAlgorithm algorithm = JWSAlgorithm.parse(tokenConfig.getSignatureAlgorithm());
+    if (JWSAlgorithm.Family.RSA.contains(algorithm)
+        || JWSAlgorithm.Family.EC.contains(algorithm)) {
+      return JcaSigningEngine.generate(algorithm, tokenConfig.getKeySize());
+    } else if (JWSAlgorithm.EdDSA.equals(algorithm)) {
+      return Ed25519SigningEngine.generate();
+    }
+    throw new JOSEException("Unsupported user token signature algorithm: " + algorithm);
+  }
+
+  private static JWK withKeyID(JWK jwk) throws JOSEException {
+    if (jwk.getKeyID() != null) {
+      return jwk;
+    } else if (jwk instanceof RSAKey) {
+      return new RSAKey.Builder((RSAKey) jwk).keyIDFromThumbprint().build();
+    } else if (jwk instanceof ECKey) {
+      return new ECKey.Builder((ECKey) jwk).keyIDFromThumbprint().build();
+    } else if (jwk instanceof OctetKeyPair) {
+      return new OctetKeyPair.Builder((OctetKeyPair) jwk).keyIDFromThumbprint().build();
+    }
+    return jwk;
+  }
+}
@@ -0,0 +1,329 @@
+package kt.proj.common.signing;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JOSEObjectType;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSSigner;
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import kt.proj.config.UserTokenConfig;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Keys signing & verifying user tokens. User tokens are signed with the active key and carry its
+ * ID as {@code kid}, which selects the verifier of a token in a map.
+ *
+ * <p>With a {@code key_rotation_interval}, the keys are generated and rotated on schedule. The key
+ * that becomes active on the next rotation is published one interval ahead, so that resource
+ * servers caching the JWK set already hold it when the first token signed with it arrives. A
+ * retired key still verifies tokens until the last token it signed expires, one token lifetime
+ * after its retirement. Scheduled rotation requires generated keys.
+ *
+ * <p>The configured {@code verification_keys} verify tokens & are published, but never sign. They
+ * rotate a configured private key shared by several nodes or persisted sessions: the next key is
+ * deployed as a verification key first, then as the private key along with the former one as a
+ * verification key, until the last token it signed expired.
+ */
+public class SigningKeys implements AutoCloseable {
+  private static final Logger LOGGER = Logger.getLogger(SigningKeys.class.getName());
+  private static final long MAX_JWK_SET_AGE = 3600;
+
+  private final UserTokenConfig tokenConfig;
+  private final long rotationMillis;
+  private final long retentionMillis;
+  private final @Nullable ScheduledExecutorService rotator;
+  private volatile KeyRing keyRing;
+
+  private SigningKeys(UserTokenConfig tokenConfig, KeyRing keyRing) {
+    this.tokenConfig = tokenConfig;
+    this.rotationMillis = tokenConfig.getKeyRotationInterval() * 1000;
+    this.retentionMillis = tokenConfig.getTokenExpiry() * 1000;
+    this.keyRing = keyRing;
+    if (rotationMillis > 0) {
+      this.rotator =
+          Executors.newSingleThreadScheduledExecutor(
+              runnable -> {
+                Thread thread = new Thread(runnable, "user-token-key-rotator");
+                thread.setDaemon(true);
+                return thread;
+              });
+      rotator.scheduleAtFixedRate(
+          this::rotateOrLog, rotationMillis, rotationMillis, TimeUnit.MILLISECONDS);
+    } else {
+      this.rotator = null;
+    }
+  }
+
+  /**
+   * Loads or generates the keys of user tokens and schedules their rotation, if configured.
+   *
+   * @param tokenConfig configuration of user tokens.
+   * @return keys of user tokens.
+   * @throws JOSEException if a key could not be loaded or generated, if two configured keys have
+   *     the same key ID, or if rotation is configured along with a private key.
+   */
+  public static @NotNull SigningKeys create(@NotNull UserTokenConfig tokenConfig)
+      throws JOSEException {
+    if (tokenConfig.getKeyRotationInterval() <= 0) {
+      SigningEngine engine = SigningEngine.create(tokenConfig);
+      return new SigningKeys(
+          tokenConfig,
+          new KeyRing(
+              engine,
+              null,
+              List.of(),
+              loadVerificationKeys(tokenConfig, engine),
+              MAX_JWK_SET_AGE));
+    }
+    if (tokenConfig.getPrivateKey() != null && tokenConfig.getPrivateKey().length > 0) {
+      throw new JOSEException(
+          "User token key rotation requires generated keys; unset private_key, or rotate it with"
+              + " verification_keys");
+    }
+    SigningEngine active = SigningEngine.generate(tokenConfig);
+    return new SigningKeys(
+        tokenConfig,
+        new KeyRing(
+            active,
+            SigningEngine.generate(tokenConfig),
+            List.of(),
+            loadVerificationKeys(tokenConfig, active),
+            jwkSetMaxAge(tokenConfig.getKeyRotationInterval())));
+  }
+
+  /* Loads the configured verification keys, whose key IDs must differ from the active one's. */
+  private static List<SigningEngine> loadVerificationKeys(
+      UserTokenConfig tokenConfig, SigningEngine active) throws JOSEException {
+    List<byte[]> configuredKeys = tokenConfig.getVerificationKeys();
+    if (configuredKeys == null) {
+      return List.of();
+    }
+    Set<String> keyIds = new HashSet<>();
+    keyIds.add(active.getKeyID());
+    List<SigningEngine> verificationKeys = new ArrayList<>();
+    for (byte[] configuredKey : configuredKeys) {
+      SigningEngine key = SigningEngine.load(tokenConfig, configuredKey);
+      if (!keyIds.add(key.getKeyID())) {
+        throw new JOSEException("User token key " + key.getKeyID() + " is configured twice");
+      }
+      verificationKeys.add(key);
+    }
+    return verificationKeys;
+  }
+
+  /**
+   * Returns the active key along with the header of the tokens it signs, which identifies it. Both
+   * are read from the one returned object, since a rotation may happen in between.
+   */
+  public @NotNull ActiveKey getActiveKey() {
+    return keyRing;
+  }
+
+  /**
+   * Returns the verifier of user tokens signed with the specified key.
+   *
+   * @param keyId {@code kid} of the user token header; tokens without it, issued before key IDs
+   *     were set, are only verified while there is a single key.
+   * @return verifier, or null if the key is unknown or has been retired for a token lifetime.
+   */
+  public @Nullable JWSVerifier getVerifier(@Nullable String keyId) {
+    KeyRing current = keyRing;
+    if (keyId == null) {
+      return current.verifiers.size() == 1 ? current.active.getVerifier() : null;
+    }
+    return current.verifiers.get(keyId);
+  }
+
+  /** Returns the JWK set of the public keys verifying user tokens, serialized once per rotation. */
+  public @NotNull PublishedKeys getPublishedKeys() {
+    return keyRing.published;
+  }
+
+  /**
+   * Activates the published next key, publishes a new next key and drops the retired keys whose
+   * tokens have all expired.
+   *
+   * @throws JOSEException if the new key could not be generated.
+   */
+  public synchronized void rotate() throws JOSEException {
+    KeyRing current = keyRing;
+    if (current.next == null) {
+      throw new JOSEException("User token key rotation is not configured");
+    }
+    long now = System.currentTimeMillis();
+    List<RetiredKey> retired = new ArrayList<>();
+    for (RetiredKey key : current.retired) {
+      if (key.verifiableUntil > now) {
+        retired.add(key);
+      }
+    }
+    retired.add(new RetiredKey(current.active, now + retentionMillis));
+    SigningEngine active = current.next;
+    keyRing =
+        new KeyRing(
+            active,
+            SigningEngine.generate(tokenConfig),
+            retired,
+            current.verificationKeys,
+            current.published.maxAge);
+    LOGGER.info("Rotated user token signing key to " + active.getKeyID());
+  }
+
+  private void rotateOrLog() {
+    try {
+      rotate();
+    } catch (JOSEException | RuntimeException e) {
+      LOGGER.log(Level.WARNING, "Could not rotate user token signing key", e);
+    }
+  }
+
+  @Override
+  public void close() {
+    if (rotator != null) {
+      rotator.shutdownNow();
+    }
+  }
+
+  /* Resource servers refetch the JWK set at least twice per rotation, and at least hourly. */
+  private static long jwkSetMaxAge(long rotationInterval) {
+    return Math.max(1, Math.min(MAX_JWK_SET_AGE, rotationInterval / 2));
+  }
+
+  /** Key signing new user tokens, with the header identifying it. */
+  public interface ActiveKey {
+    @NotNull
+    JWSSigner getSigner();
+
+    @NotNull
+    JWSHeader getHeader();
+
+    /** Returns the ASCII bytes of the base64url encoded header; the array must not be modified. */
+    byte[] getEncodedHeader();
+  }
+
+  /** Serialized JWK set of the keys verifying user tokens, with its entity tag. */
+  public static final class PublishedKeys {
+    private final byte[] content;
+    private final String eTag;
+    private final long maxAge;
+
+    private PublishedKeys(byte[] content, long maxAge) {
+      this.content = content;
+      this.maxAge = maxAge;
+      try {
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+        this.eTag = Base64.getUrlEncoder().withoutPadding().encodeToString(digest).substring(0, 22);
+      } catch (NoSuchAlgorithmException e) {
+        throw new IllegalStateException("SHA-256 is not supported by the JVM", e);
+      }
+    }
+
+    /** Returns the UTF-8 encoded JWK set; the array must not be modified. */
+    public byte[] getContent() {
+      return content;
+    }
+
+    /** Returns the entity tag of the JWK set, without quotes. */
+    public String getETag() {
+      return eTag;
+    }
+
+    /** Returns the number of seconds the JWK set may be cached for. */
+    public long getMaxAge() {
+      return maxAge;
+    }
+  }
+
+  private static final class RetiredKey {
+    private final SigningEngine engine;
+    private final long verifiableUntil;
+
+    private RetiredKey(SigningEngine engine, long verifiableUntil) {
+      this.engine = engine;
+      this.verifiableUntil = verifiableUntil;
+    }
+  }
+
+  /* Immutable keys replaced as a whole on rotation, so readers never see a partial rotation. */
+  private static final class KeyRing implements ActiveKey {
+    private final SigningEngine active;
+    private final @Nullable SigningEngine next;
+    private final List<RetiredKey> retired;
+    /* Configured keys verifying tokens, kept across rotations. */
+    private final List<SigningEngine> verificationKeys;
+    private final JWSHeader header;
+    private final byte[] encodedHeader;
+    private final Map<String, JWSVerifier> verifiers;
+    private final PublishedKeys published;
+
+    private KeyRing(
+        SigningEngine active,
+        @Nullable SigningEngine next,
+        List<RetiredKey> retired,
+        List<SigningEngine> verificationKeys,
+        long maxAge) {
+      this.active = active;
+      this.next = next;
+      this.retired = List.copyOf(retired);
+      this.verificationKeys = List.copyOf(verificationKeys);
+      this.header =
+          new JWSHeader.Builder(active.getAlgorithm())
+              .type(JOSEObjectType.JWT)
+              .keyID(active.getKeyID())
+              .build();
+      this.encodedHeader = header.toBase64URL().toString().getBytes(StandardCharsets.US_ASCII);
+
+      Map<String, JWSVerifier> verifiers = new HashMap<>();
+      List<JWK> publicKeys = new ArrayList<>();
+      verifiers.put(active.getKeyID(), active.getVerifier());
+      publicKeys.add(active.getPublicJWK());
+      if (next != null) {
+        publicKeys.add(next.getPublicJWK());
+      }
+      for (RetiredKey key : retired) {
+        verifiers.put(key.engine.getKeyID(), key.engine.getVerifier());
+        publicKeys.add(key.engine.getPublicJWK());
+      }
+      for (SigningEngine key : verificationKeys) {
+        verifiers.put(key.getKeyID(), key.getVerifier());
+        publicKeys.add(key.getPublicJWK());
+      }
+      this.verifiers = Map.copyOf(verifiers);
+      this.published =
+          new PublishedKeys(
+              new JWKSet(publicKeys).toString(true).getBytes(StandardCharsets.UTF_8), maxAge);
+    }
+
+    @Override
+    public @NotNull JWSSigner getSigner() {
+      return active.getSigner();
+    }
+
+    @Override
+    public @NotNull JWSHeader getHeader() {
+      return header;
+    }
+
+    @Override
+    public byte[] getEncodedHeader() {
+      return encodedHeader;
+    }
+  }
+}
@@ -1,12 +1,18 @@
 package kt.proj.config;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.ArrayList;
 import java.util.List;
 
 /** This class represents the Authentication service configuration. */
 public class AuthServiceConfig {
   private List<OIDCClientConfig> oidcClients;
   private UserTokenConfig tokenConfig;
+  private DiscoveryConfig discoveryConfig = new DiscoveryConfig();
+  private IntrospectionConfig introspectionConfig = new IntrospectionConfig();
+  private ExecutionConfig executionConfig = new ExecutionConfig();
+  private TokenRenewalConfig tokenRenewalConfig = new TokenRenewalConfig();
+  private List<RouteConfig> routes = new ArrayList<>();
 
   public AuthServiceConfig() {}
 
@@ -20,6 +26,31 @@ public class AuthServiceConfig {
     return tokenConfig;
   }
 
+  @JsonProperty("discovery")
+  public DiscoveryConfig getDiscoveryConfig() {
+    return discoveryConfig;
+  }
+
+  @JsonProperty("introspection")
+  public IntrospectionConfig getIntrospectionConfig() {
+    return introspectionConfig;
+  }
+
+  @JsonProperty("execution")
+  public ExecutionConfig getExecutionConfig() {
+    return executionConfig;
+  }
+
+  @JsonProperty("token_renewal")
+  public TokenRenewalConfig getTokenRenewalConfig() {
+    return tokenRenewalConfig;
+  }
+
+  @JsonProperty("routes")
+  public List<RouteConfig> getRoutes() {
+    return routes;
+  }
+
   @Override
   public String toString() {
     return "AuthServiceConfig{"
@@ -27,6 +58,16 @@ public class AuthServiceConfig {
         + oidcClients
         + ", tokenConfig="
         + tokenConfig
+        + ", discoveryConfig="
+        + discoveryConfig
+        + ", introspectionConfig="
+        + introspectionConfig
+        + ", executionConfig="
+        + executionConfig
+        + ", tokenRenewalConfig="
+        + tokenRenewalConfig
+        + ", routes="
+        + routes
         + '}';
   }
 }
@@ -0,0 +1,77 @@
+package kt.proj.config;
+
+import com.nimbusds.oauth2.sdk.ParseException;
+import com.nimbusds.oauth2.sdk.util.JSONObjectUtils;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+import net.minidev.json.JSONObject;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Local copy of the discovery documents last fetched from the OIDC providers, so that the service
+ * can start with them without waiting for the providers. The file holds a JSON object mapping each
+ * lower-cased provider name to its discovery document, as returned by the provider.
+ */
+class DiscoveryCache {
+  private static final Logger LOGGER = Logger.getLogger(DiscoveryCache.class.getName());
+
+  private final Path file;
+  private final Map<String, JSONObject> documents = new HashMap<>();
+
+  DiscoveryCache(@NotNull Path file) {
+    this.file = file;
+  }
+
+  /**
+   * Reads the cached discovery documents. A missing or unreadable file is treated as empty, since
+   * the documents are fetched from the providers anyway.
+   *
+   * @return cached discovery documents keyed by the lower-cased provider name.
+   */
+  synchronized Map<String, JSONObject> load() {
+    documents.clear();
+    try {
+      JSONObject cache = JSONObjectUtils.parse(Files.readString(file, StandardCharsets.UTF_8));
+      for (Map.Entry<String, Object> entry : cache.entrySet()) {
+        if (entry.getValue() instanceof JSONObject) {
+          documents.put(entry.getKey(), (JSONObject) entry.getValue());
+        }
+      }
+    } catch (NoSuchFileException e) {
+      LOGGER.info("No cached discovery documents in " + file);
+    } catch (IOException | ParseException e) {
+      LOGGER.warning("Ignoring unreadable discovery cache " + file + ": " + e.getMessage());
+    }
+    return Map.copyOf(documents);
+  }
+
+  /**
+   * Replaces the cached discovery document of the specified provider. The file is rewritten
+   * atomically, so that a crash never leaves a partially written cache.
+   *
+   * @param provider Lower-cased name of the provider.
+   * @param document Discovery document returned by the provider.
+   */
+  synchronized void put(@NotNull String provider, @NotNull JSONObject document) {
+    if (document.equals(documents.get(provider))) {
+      return;
+    }
+    documents.put(provider, document);
+    try {
+      Path directory = file.toAbsolutePath().getParent();
+      Path tempFile = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+      Files.writeString(tempFile, new JSONObject(documents).toJSONString(), StandardCharsets.UTF_8);
+      Files.move(
+          tempFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      LOGGER.warning("Could not write discovery cache " + file + ": " + e.getMessage());
+    }
+  }
+}
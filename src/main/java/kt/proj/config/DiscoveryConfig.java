@@ -0,0 +1,30 @@
+package kt.proj.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.nio.file.Path;
+
+/** Class that represents the configuration of the discovery of OIDC provider metadata. */
+public class DiscoveryConfig {
+  private Path cacheFile;
+  private long refreshInterval;
+
+  @JsonProperty("cache_file")
+  public Path getCacheFile() {
+    return cacheFile;
+  }
+
+  @JsonProperty("refresh_interval")
+  public long getRefreshInterval() {
+    return refreshInterval;
+  }
+
+  @Override
+  public String toString() {
+    return "DiscoveryConfig{"
+        + "cacheFile="
+        + cacheFile
+        + ", refreshInterval="
+        + refreshInterval
+        + '}';
+  }
+}
@@ -0,0 +1,22 @@
+package kt.proj.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/** Class that represents the configuration of the threads running blocking work of requests. */
+public class ExecutionConfig {
+  private boolean virtualThreads;
+
+  /**
+   * Returns whether blocking work runs on a virtual thread per task rather than on the worker
+   * pool. Requires a Java 21 runtime; the worker pool is used otherwise.
+   */
+  @JsonProperty("virtual_threads")
+  public boolean isVirtualThreads() {
+    return virtualThreads;
+  }
+
+  @Override
+  public String toString() {
+    return "ExecutionConfig{" + "virtualThreads=" + virtualThreads + '}';
+  }
+}
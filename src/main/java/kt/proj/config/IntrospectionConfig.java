@@ -0,0 +1,30 @@
+package kt.proj.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/** Class that represents the configuration of the token introspection endpoint. */
+public class IntrospectionConfig {
+  private String bearerToken;
+  private int maxBatchSize;
+
+  /** Returns the token API gateways present to introspect user tokens, or null if disabled. */
+  @JsonProperty("bearer_token")
+  public String getBearerToken() {
+    return bearerToken;
+  }
+
+  @JsonProperty("max_batch_size")
+  public int getMaxBatchSize() {
+    return maxBatchSize;
+  }
+
+  @Override
+  public String toString() {
+    return "IntrospectionConfig{"
+        + "bearerToken="
+        + (bearerToken != null ? "****" : null)
+        + ", maxBatchSize="
+        + maxBatchSize
+        + '}';
+  }
+}
@@ -14,6 +14,16 @@ public class OIDCClientConfig {
   private String clientId;
   private String clientSecret;
   private Set<String> scopes;
+  private long requestTimeout;
+  private long connectTimeout;
+  private int maxConnections;
+  private Boolean http2;
+  private int maxConcurrentRequests;
+  private int failureRateThreshold;
+  private long slowCallThreshold;
+  private long openDuration;
+  private long profileRefreshAfter;
+  private long profileStaleIfError;
 
   @JsonProperty("provider_name")
   public String getProviderName() {
@@ -40,6 +50,90 @@ public class OIDCClientConfig {
     return scopes;
   }
 
+  /**
+   * Returns how long in milliseconds a request to the provider waits for its response, and for
+   * every chunk of it, or 0 for the default.
+   */
+  @JsonProperty("request_timeout")
+  public long getRequestTimeout() {
+    return requestTimeout;
+  }
+
+  /** Returns the timeout of connecting to the provider in milliseconds, or 0 for the default. */
+  @JsonProperty("connect_timeout")
+  public long getConnectTimeout() {
+    return connectTimeout;
+  }
+
+  /**
+   * Returns the maximum number of HTTP/1.1 connections kept open to the provider, or 0 for the
+   * default.
+   */
+  @JsonProperty("max_connections")
+  public int getMaxConnections() {
+    return maxConnections;
+  }
+
+  /**
+   * Returns whether HTTP/2 is offered to the provider over TLS, falling back to HTTP/1.1 if it
+   * doesn't negotiate it; true unless set otherwise.
+   */
+  @JsonProperty("http2")
+  public boolean isHttp2() {
+    return http2 == null || http2;
+  }
+
+  /** Returns the maximum number of requests in flight to the provider, or 0 for the default. */
+  @JsonProperty("max_concurrent_requests")
+  public int getMaxConcurrentRequests() {
+    return maxConcurrentRequests;
+  }
+
+  /**
+   * Returns the percentage of failed or slow requests opening the circuit breaker of the
+   * provider, or 0 for the default.
+   */
+  @JsonProperty("failure_rate_threshold")
+  public int getFailureRateThreshold() {
+    return failureRateThreshold;
+  }
+
+  /**
+   * Returns the duration in milliseconds after which a request counts as failed for the circuit
+   * breaker, or 0 for the default.
+   */
+  @JsonProperty("slow_call_threshold")
+  public long getSlowCallThreshold() {
+    return slowCallThreshold;
+  }
+
+  /**
+   * Returns how long in milliseconds an open circuit breaker rejects requests before probing the
+   * provider, or 0 for the default.
+   */
+  @JsonProperty("open_duration")
+  public long getOpenDuration() {
+    return openDuration;
+  }
+
+  /**
+   * Returns the age in seconds after which a cached user profile is reloaded in the background,
+   * or 0 for the default.
+   */
+  @JsonProperty("profile_refresh_after")
+  public long getProfileRefreshAfter() {
+    return profileRefreshAfter;
+  }
+
+  /**
+   * Returns how long in seconds a user profile is still served once due for refresh while the
+   * provider fails to return a fresh one, or 0 for the default.
+   */
+  @JsonProperty("profile_stale_if_error")
+  public long getProfileStaleIfError() {
+    return profileStaleIfError;
+  }
+
   @Override
   public String toString() {
     return "OIDCClientConfig{"
@@ -56,6 +150,26 @@ public class OIDCClientConfig {
         + '\''
         + ", scopes="
         + scopes
+        + ", requestTimeout="
+        + requestTimeout
+        + ", connectTimeout="
+        + connectTimeout
+        + ", maxConnections="
+        + maxConnections
+        + ", http2="
+        + http2
+        + ", maxConcurrentRequests="
+        + maxConcurrentRequests
+        + ", failureRateThreshold="
+        + failureRateThreshold
+        + ", slowCallThreshold="
+        + slowCallThreshold
+        + ", openDuration="
+        + openDuration
+        + ", profileRefreshAfter="
+        + profileRefreshAfter
+        + ", profileStaleIfError="
+        + profileStaleIfError
         + '}';
   }
 }
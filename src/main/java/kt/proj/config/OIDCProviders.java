@@ -1,56 +1,483 @@
 package kt.proj.config;
 
+import com.nimbusds.jose.jwk.JWKSet;
 import com.nimbusds.oauth2.sdk.GeneralException;
+import com.nimbusds.oauth2.sdk.http.HTTPRequest;
+import com.nimbusds.oauth2.sdk.http.HTTPResponse;
 import com.nimbusds.oauth2.sdk.id.Issuer;
+import com.nimbusds.openid.connect.sdk.op.OIDCProviderConfigurationRequest;
 import com.nimbusds.openid.connect.sdk.op.OIDCProviderMetadata;
+import io.quarkus.runtime.Startup;
 import java.io.IOException;
 import java.net.URI;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.function.Function;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import kt.proj.common.AsyncHTTPClient;
+import net.minidev.json.JSONObject;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * This class represents the configured OIDC providers and uses the OIDC discovery endpoint to
  * retrieve authorization, token & userinfo endpoints used in various OIDC flows.
+ *
+ * <p>Providers are discovered in parallel on startup. Discovery documents are kept in a local
+ * cache file, so that providers cached by an earlier run are available immediately and only
+ * revalidated in the background. A provider that can't be discovered doesn't prevent the service
+ * from starting: it is unavailable until a background retry succeeds.
+ *
+ * <p>The metadata & JWK set of every provider are then refreshed periodically with conditional
+ * requests, and swapped in as an immutable {@link ProviderSnapshot}, so that rotated endpoints &
+ * keys are picked up without a restart and readers never take a lock.
+ *
+ * <p>Discovery requests go through the connection pool of each provider, shared with the token &
+ * userinfo requests. Providers are created on startup, so that the discovery threads waiting for
+ * the event loop are never waited for on the event loop.
  */
+@Startup
 @Singleton
 public class OIDCProviders {
   private static final Logger LOGGER = Logger.getLogger(OIDCProviders.class.getName());
-  private final Map<String, OIDCProviderMetadata> providerConfig;
+  private static final Duration DEFAULT_REQUEST_TIMEOUT = Duration.ofSeconds(5);
+  private static final Duration DEFAULT_PROFILE_REFRESH_AFTER = Duration.ofMinutes(5);
+  private static final Duration DEFAULT_PROFILE_STALE_IF_ERROR = Duration.ofHours(1);
+  private static final Duration DEFAULT_REFRESH_INTERVAL = Duration.ofHours(1);
+  private static final Duration DISCOVERY_RETRY_DELAY = Duration.ofSeconds(30);
+  private static final int MAX_DISCOVERY_THREADS = 8;
+  private static final int SC_NOT_MODIFIED = 304;
+  /* Minimum delay between refetches of the keys of a provider triggered by unknown key IDs. */
+  private static final Duration KEY_REFETCH_INTERVAL = Duration.ofMinutes(1);
 
+  /* Provider snapshots keyed by the lower-cased provider name, replaced as a whole on updates. */
+  private volatile Map<String, ProviderSnapshot> providerSnapshots;
+  /*
+   * Contexts of the discovered providers keyed by both the lower-cased & configured provider name,
+   * so that lookups with either don't lower-case it, and keyed by issuer. Both are rebuilt along
+   * with the snapshots.
+   */
+  private volatile Map<String, ProviderContext> providerContexts = Map.of();
+  private volatile Map<String, ProviderContext> issuerIndex = Map.of();
+
+  private final List<OIDCClientConfig> clients;
+  /* Registered clients keyed by both the lower-cased & configured provider name. */
   private final Map<String, OIDCClientConfig> clientConfig;
+  private final Duration refreshInterval;
+  private final @Nullable DiscoveryCache discoveryCache;
+  private final @Nullable ScheduledExecutorService discoveryExecutor;
+  private final @Nullable AsyncHTTPClient httpClient;
+  /* Last refetch of the keys of every provider, keyed by the lower-cased provider name. */
+  private final Map<String, KeyRefetch> keyRefetches = new ConcurrentHashMap<>();
 
   @Inject
-  public OIDCProviders(@NotNull AuthServiceConfig authServiceConfig) {
-    providerConfig =
-        authServiceConfig.getOidcClients().stream()
-            .collect(
-                Collectors.toUnmodifiableMap(
-                    clientConfig -> clientConfig.getProviderName().toLowerCase(),
-                    clientConfig -> {
-                      try {
-                        return OIDCProviderMetadata.resolve(
-                            new Issuer(clientConfig.getDiscoveryURI()));
-                      } catch (IOException | GeneralException e) {
-                        LOGGER.severe("Could not initialize OIDC provider.");
-                        throw new RuntimeException(
-                            "Unable to load IdP configuration for OIDC provider: "
-                                + clientConfig.getProviderName(),
-                            e);
-                      }
-                    }));
-
-    clientConfig =
-        authServiceConfig.getOidcClients().stream()
-            .collect(
-                Collectors.toUnmodifiableMap(
-                    clientConfig -> clientConfig.getProviderName().toLowerCase(),
-                    Function.identity()));
+  public OIDCProviders(
+      @NotNull AuthServiceConfig authServiceConfig, @NotNull AsyncHTTPClient httpClient) {
+    this.httpClient = httpClient;
+    this.clients = List.copyOf(authServiceConfig.getOidcClients());
+    this.clientConfig = getClientConfig(clients);
+    DiscoveryConfig discoveryConfig = authServiceConfig.getDiscoveryConfig();
+    this.refreshInterval =
+        discoveryConfig.getRefreshInterval() > 0
+            ? Duration.ofSeconds(discoveryConfig.getRefreshInterval())
+            : DEFAULT_REFRESH_INTERVAL;
+    Path cacheFile = discoveryConfig.getCacheFile();
+    this.discoveryCache = cacheFile != null ? new DiscoveryCache(cacheFile) : null;
+    this.discoveryExecutor =
+        Executors.newScheduledThreadPool(
+            Math.max(1, Math.min(clients.size(), MAX_DISCOVERY_THREADS)),
+            runnable -> {
+              Thread thread = new Thread(runnable, "oidc-discovery");
+              thread.setDaemon(true);
+              return thread;
+            });
+
+    Map<String, ProviderSnapshot> cachedSnapshots = new HashMap<>();
+    Map<String, JSONObject> cachedDocuments =
+        discoveryCache != null ? discoveryCache.load() : Map.of();
+    for (OIDCClientConfig client : clients) {
+      String providerName = client.getProviderName().toLowerCase();
+      JSONObject document = cachedDocuments.get(providerName);
+      if (document != null) {
+        try {
+          cachedSnapshots.put(providerName, ProviderSnapshot.of(parseMetadata(client, document)));
+        } catch (GeneralException e) {
+          LOGGER.warning("Ignoring cached metadata of " + providerName + ": " + e.getMessage());
+        }
+      }
+    }
+    this.providerSnapshots = Map.copyOf(cachedSnapshots);
+    indexContexts();
+
+    /* Cached providers are revalidated in the background, others are waited for. */
+    Map<OIDCClientConfig, CompletableFuture<Void>> discoveries = new HashMap<>();
+    for (OIDCClientConfig client : clients) {
+      discoveries.put(client, CompletableFuture.runAsync(() -> refresh(client), discoveryExecutor));
+    }
+    discoveries.forEach(
+        (client, discovery) -> {
+          String providerName = client.getProviderName().toLowerCase();
+          if (cachedSnapshots.containsKey(providerName)) {
+            return;
+          }
+          try {
+            discovery.get(4 * getRequestTimeout(providerName).toMillis(), TimeUnit.MILLISECONDS);
+          } catch (Exception e) {
+            LOGGER.severe("OIDC provider " + providerName + " is unavailable until discovered.");
+          }
+        });
+  }
+
+  /**
+   * Creates OIDC providers from already resolved provider metadata & keys, without using the
+   * discovery endpoints.
+   *
+   * @param authServiceConfig Auth service configuration with the registered OIDC clients.
+   * @param providerSnapshots Provider snapshots keyed by the lower-cased provider name.
+   */
+  OIDCProviders(
+      @NotNull AuthServiceConfig authServiceConfig,
+      @NotNull Map<String, ProviderSnapshot> providerSnapshots) {
+    this.providerSnapshots = Map.copyOf(providerSnapshots);
+    this.clients = List.copyOf(authServiceConfig.getOidcClients());
+    this.clientConfig = getClientConfig(clients);
+    this.refreshInterval = DEFAULT_REFRESH_INTERVAL;
+    this.discoveryCache = null;
+    this.discoveryExecutor = null;
+    this.httpClient = null;
+    indexContexts();
+  }
+
+  private static Map<String, OIDCClientConfig> getClientConfig(List<OIDCClientConfig> clients) {
+    Map<String, OIDCClientConfig> clientConfig = new HashMap<>();
+    for (OIDCClientConfig client : clients) {
+      clientConfig.put(client.getProviderName().toLowerCase(), client);
+      clientConfig.put(client.getProviderName(), client);
+    }
+    return Map.copyOf(clientConfig);
+  }
+
+  /* Looks up a provider by name, lower-casing it only if it isn't lower-case or as configured. */
+  private static <T> @Nullable T lookup(Map<String, T> byName, String providerName) {
+    T value = byName.get(providerName);
+    return value != null ? value : byName.get(providerName.toLowerCase());
+  }
+
+  /**
+   * Fetches the metadata & JWK set of the specified provider, revalidating the current snapshot
+   * if any, and schedules the next refresh: after the refresh interval if it succeeded, or after a
+   * shorter retry delay otherwise.
+   *
+   * @param client Registered client of the provider.
+   * @throws IllegalStateException if the refresh failed.
+   */
+  private void refresh(OIDCClientConfig client) throws IllegalStateException {
+    String providerName = client.getProviderName().toLowerCase();
+    Duration nextRefresh = refreshInterval;
+    try {
+      ProviderSnapshot current = providerSnapshots.get(providerName);
+      /* The endpoints are usable as soon as the metadata is fetched, even if the keys can't be. */
+      ProviderSnapshot withMetadata = fetchMetadata(client, current);
+      updateSnapshot(providerName, withMetadata);
+      updateSnapshot(providerName, fetchJWKSet(providerName, withMetadata));
+      if (current == null || current.getRefreshedAt() == null) {
+        LOGGER.info("Discovered OIDC provider " + providerName);
+      }
+    } catch (IOException | GeneralException e) {
+      LOGGER.warning("Could not refresh OIDC provider " + providerName + ": " + e);
+      if (DISCOVERY_RETRY_DELAY.compareTo(refreshInterval) < 0) {
+        nextRefresh = DISCOVERY_RETRY_DELAY;
+      }
+      throw new IllegalStateException("Refresh of " + providerName + " failed", e);
+    } finally {
+      if (!discoveryExecutor.isShutdown()) {
+        discoveryExecutor.schedule(
+            () -> {
+              try {
+                refresh(client);
+              } catch (IllegalStateException e) {
+                /* Already logged, and the next attempt is scheduled. */
+              }
+            },
+            nextRefresh.toMillis(),
+            TimeUnit.MILLISECONDS);
+      }
+    }
+  }
+
+  /**
+   * Fetches the metadata of the specified provider, revalidating the current one if any.
+   *
+   * @param client Registered client of the provider.
+   * @param current Current snapshot of the provider, if any.
+   * @return snapshot with the fetched metadata, and the current keys if they are still published
+   *     at the same URI.
+   */
+  private ProviderSnapshot fetchMetadata(
+      OIDCClientConfig client, @Nullable ProviderSnapshot current)
+      throws IOException, GeneralException {
+    String providerName = client.getProviderName().toLowerCase();
+    HTTPRequest request =
+        new OIDCProviderConfigurationRequest(new Issuer(client.getDiscoveryURI())).toHTTPRequest();
+    HTTPResponse response =
+        send(
+            providerName,
+            request,
+            current != null ? current.getMetadataETag() : null,
+            current != null ? current.getMetadataLastModified() : null);
+
+    OIDCProviderMetadata metadata;
+    if (response.getStatusCode() == SC_NOT_MODIFIED && current != null) {
+      metadata = current.getMetadata();
+    } else {
+      response.ensureStatusCode(HTTPResponse.SC_OK);
+      JSONObject document = response.getContentAsJSONObject();
+      metadata = parseMetadata(client, document);
+      if (discoveryCache != null) {
+        discoveryCache.put(providerName, document);
+      }
+    }
+
+    /* Keys fetched from another URI can't be revalidated. */
+    boolean sameJWKSetURI =
+        current != null
+            && metadata.getJWKSetURI() != null
+            && metadata.getJWKSetURI().equals(current.getMetadata().getJWKSetURI());
+    return new ProviderSnapshot(
+        metadata,
+        sameJWKSetURI ? current.getJWKSet() : null,
+        current != null ? current.getRefreshedAt() : null,
+        validator(response, "ETag", current != null ? current.getMetadataETag() : null),
+        validator(
+            response, "Last-Modified", current != null ? current.getMetadataLastModified() : null),
+        sameJWKSetURI ? current.getJWKSetETag() : null,
+        sameJWKSetURI ? current.getJWKSetLastModified() : null);
+  }
+
+  /**
+   * Fetches the keys published by the specified provider, revalidating the current ones if any.
+   *
+   * @param providerName Lower-cased name of the provider.
+   * @param current Snapshot of the provider with its current metadata.
+   * @return refreshed snapshot of the provider.
+   */
+  private ProviderSnapshot fetchJWKSet(String providerName, ProviderSnapshot current)
+      throws IOException, GeneralException {
+    URI jwkSetURI = current.getMetadata().getJWKSetURI();
+    if (jwkSetURI == null) {
+      throw new GeneralException("No jwks_uri in the metadata");
+    }
+    HTTPRequest request = new HTTPRequest(HTTPRequest.Method.GET, jwkSetURI.toURL());
+    boolean cached = current.getJWKSet() != null;
+    HTTPResponse response =
+        send(
+            providerName,
+            request,
+            cached ? current.getJWKSetETag() : null,
+            cached ? current.getJWKSetLastModified() : null);
+
+    JWKSet jwkSet;
+    if (response.getStatusCode() == SC_NOT_MODIFIED && cached) {
+      jwkSet = current.getJWKSet();
+    } else {
+      response.ensureStatusCode(HTTPResponse.SC_OK);
+      try {
+        jwkSet = JWKSet.parse(response.getContent());
+      } catch (ParseException e) {
+        throw new GeneralException("Invalid JWK set: " + e.getMessage(), e);
+      }
+    }
+    return new ProviderSnapshot(
+        current.getMetadata(),
+        jwkSet,
+        Instant.now(),
+        current.getMetadataETag(),
+        current.getMetadataLastModified(),
+        validator(response, "ETag", current.getJWKSetETag()),
+        validator(response, "Last-Modified", current.getJWKSetLastModified()));
+  }
+
+  /**
+   * Sends the specified request to a provider, conditional on the specified validators if any,
+   * blocking the discovery thread until the response.
+   */
+  private HTTPResponse send(
+      String providerName,
+      HTTPRequest request,
+      @Nullable String eTag,
+      @Nullable String lastModified)
+      throws IOException {
+    if (eTag != null) {
+      request.setHeader("If-None-Match", eTag);
+    }
+    if (lastModified != null) {
+      request.setHeader("If-Modified-Since", lastModified);
+    }
+    Duration timeout = getRequestTimeout(providerName);
+    try {
+      /* The request times out on its own; the wait only bounds a stalled event loop. */
+      return httpClient
+          .send(providerName, request, timeout)
+          .await()
+          .atMost(timeout.multipliedBy(2));
+    } catch (RuntimeException e) {
+      Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+      throw new IOException("Request to " + request.getURL() + " failed: " + cause, cause);
+    }
+  }
+
+  /**
+   * Returns the validator to revalidate the specified response with: the one it carries, or the
+   * previous one if the response is a 304 without it.
+   */
+  private static @Nullable String validator(
+      HTTPResponse response, String header, @Nullable String previous) {
+    String value = response.getHeaderValue(header);
+    return value != null || response.getStatusCode() != SC_NOT_MODIFIED
+        ? value
+        : previous;
+  }
+
+  private static OIDCProviderMetadata parseMetadata(OIDCClientConfig client, JSONObject document)
+      throws GeneralException {
+    OIDCProviderMetadata metadata = OIDCProviderMetadata.parse(document);
+    Issuer issuer = new Issuer(client.getDiscoveryURI());
+    if (!issuer.equals(metadata.getIssuer())) {
+      throw new GeneralException(
+          "The returned issuer doesn't match the expected: " + metadata.getIssuer());
+    }
+    return metadata;
+  }
+
+  private synchronized void updateSnapshot(String providerName, ProviderSnapshot snapshot) {
+    Map<String, ProviderSnapshot> updatedSnapshots = new HashMap<>(providerSnapshots);
+    updatedSnapshots.put(providerName, snapshot);
+    providerSnapshots = Map.copyOf(updatedSnapshots);
+    indexContexts();
+  }
+
+  /* Rebuilds the context indexes from the snapshots, reusing the contexts of unchanged ones. */
+  private synchronized void indexContexts() {
+    Map<String, ProviderContext> contexts = new HashMap<>();
+    Map<String, ProviderContext> issuers = new HashMap<>();
+    providerSnapshots.forEach(
+        (providerName, snapshot) -> {
+          OIDCClientConfig client = clientConfig.get(providerName);
+          if (client == null) {
+            return;
+          }
+          ProviderContext context = providerContexts.get(providerName);
+          if (context == null || context.getSnapshot() != snapshot) {
+            context = new ProviderContext(providerName, client, snapshot);
+          }
+          contexts.put(providerName, context);
+          contexts.put(client.getProviderName(), context);
+          issuers.put(snapshot.getMetadata().getIssuer().getValue(), context);
+        });
+    providerContexts = Map.copyOf(contexts);
+    issuerIndex = Map.copyOf(issuers);
+  }
+
+  /**
+   * Refetches the keys of the specified provider, after a token was signed with a key it didn't
+   * publish yet. Concurrent callers share the same request, and the keys are refetched at most
+   * once per {@link #KEY_REFETCH_INTERVAL}, so that tokens with made-up key IDs can't flood the
+   * provider.
+   *
+   * @param providerName Name of the configured provider.
+   * @return completes with the current snapshot of the provider once the keys are refetched, or
+   *     right away if they were refetched recently. A failed refetch is logged and completes
+   *     with the snapshot as it was.
+   */
+  public CompletableFuture<ProviderSnapshot> refetchKeys(@NotNull String providerName) {
+    String name = providerName.toLowerCase();
+    if (discoveryExecutor == null || !providerSnapshots.containsKey(name)) {
+      return CompletableFuture.completedFuture(providerSnapshots.get(name));
+    }
+    long now = System.nanoTime();
+    KeyRefetch refetch =
+        keyRefetches.compute(
+            name,
+            (key, last) ->
+                last != null && now - last.startedAt < KEY_REFETCH_INTERVAL.toNanos()
+                    ? last
+                    : new KeyRefetch(
+                        now, CompletableFuture.runAsync(() -> fetchKeys(name), discoveryExecutor)));
+    return refetch.done.thenApply(ignored -> providerSnapshots.get(name));
+  }
+
+  private void fetchKeys(String providerName) {
+    try {
+      ProviderSnapshot current = providerSnapshots.get(providerName);
+      updateSnapshot(providerName, fetchJWKSet(providerName, current));
+      LOGGER.info("Refetched keys of OIDC provider " + providerName);
+    } catch (IOException | GeneralException e) {
+      LOGGER.warning("Could not refetch keys of OIDC provider " + providerName + ": " + e);
+    }
+  }
+
+  /* Refetch of the keys of a provider, started at a System#nanoTime() stamp. */
+  private static final class KeyRefetch {
+    private final long startedAt;
+    private final CompletableFuture<Void> done;
+
+    private KeyRefetch(long startedAt, CompletableFuture<Void> done) {
+      this.startedAt = startedAt;
+      this.done = done;
+    }
+  }
+
+  /** Stops refreshing the providers in the background. */
+  @PreDestroy
+  public void close() {
+    if (discoveryExecutor != null) {
+      discoveryExecutor.shutdownNow();
+    }
+  }
+
+  /**
+   * Returns the context of the specified provider.
+   *
+   * @param providerName Name of the configured provider.
+   * @return prebuilt client context of the provider, if it was discovered.
+   */
+  public Optional<ProviderContext> getContext(@NotNull String providerName) {
+    return Optional.ofNullable(lookup(providerContexts, providerName));
+  }
+
+  /**
+   * Returns the current snapshot of the specified provider.
+   *
+   * @param providerName Name of the configured provider.
+   * @return metadata & keys of the provider, if it was discovered.
+   */
+  public Optional<ProviderSnapshot> getSnapshot(@NotNull String providerName) {
+    ProviderContext context = lookup(providerContexts, providerName);
+    return Optional.ofNullable(context != null ? context.getSnapshot() : null);
+  }
+
+  /**
+   * Returns when the metadata & keys of the specified provider were last fetched or revalidated.
+   *
+   * @param providerName Name of the configured provider.
+   * @return time of the last successful refresh, if any since startup.
+   */
+  public Optional<Instant> getLastRefreshed(@NotNull String providerName) {
+    return getSnapshot(providerName).map(ProviderSnapshot::getRefreshedAt);
   }
 
   /**
@@ -60,8 +487,8 @@ public class OIDCProviders {
    * @return Authorization endpoint URI if the provider is configured.
    */
   public Optional<URI> getAuthorizationEndpoint(@NotNull String providerName) {
-    OIDCProviderMetadata metadata = providerConfig.get(providerName.toLowerCase());
-    return Optional.ofNullable(metadata != null ? metadata.getAuthorizationEndpointURI() : null);
+    ProviderContext context = lookup(providerContexts, providerName);
+    return Optional.ofNullable(context).map(c -> c.getMetadata().getAuthorizationEndpointURI());
   }
 
   /**
@@ -71,8 +498,8 @@ public class OIDCProviders {
    * @return Token endpoint URI if the provider is configured.
    */
   public Optional<URI> getTokenEndpoint(@NotNull String providerName) {
-    OIDCProviderMetadata metadata = providerConfig.get(providerName.toLowerCase());
-    return Optional.ofNullable(metadata != null ? metadata.getTokenEndpointURI() : null);
+    ProviderContext context = lookup(providerContexts, providerName);
+    return Optional.ofNullable(context).map(c -> c.getMetadata().getTokenEndpointURI());
   }
 
   /**
@@ -82,8 +509,8 @@ public class OIDCProviders {
    * @return Userinfo endpoint URI if the provider is configured.
    */
   public Optional<URI> getUserInfoEndpoint(@NotNull String providerName) {
-    OIDCProviderMetadata metadata = providerConfig.get(providerName.toLowerCase());
-    return Optional.ofNullable(metadata != null ? metadata.getUserInfoEndpointURI() : null);
+    ProviderContext context = lookup(providerContexts, providerName);
+    return Optional.ofNullable(context).map(c -> c.getMetadata().getUserInfoEndpointURI());
   }
 
   /**
@@ -93,14 +520,51 @@ public class OIDCProviders {
    * @return Configured provider name associated with the issuer URI.
    */
   public Optional<String> getProviderName(@NotNull String issuer) {
-    return providerConfig.entrySet().stream()
-        .filter(entry -> entry.getValue().getIssuer().getValue().equals(issuer))
-        .map(Map.Entry::getKey)
-        .findFirst();
+    ProviderContext context = issuerIndex.get(issuer);
+    return Optional.ofNullable(context != null ? context.getProviderName() : null);
   }
 
   public Optional<OIDCClientConfig> getOIDCClient(@NotNull String providerName) {
-    OIDCClientConfig metadata = clientConfig.get(providerName.toLowerCase());
-    return Optional.ofNullable(metadata);
+    return Optional.ofNullable(lookup(clientConfig, providerName));
+  }
+
+  /**
+   * Returns the timeout of requests to the specified provider.
+   *
+   * @param providerName Name of the configured provider.
+   * @return configured request timeout, or the default one if the provider doesn't set any.
+   */
+  public Duration getRequestTimeout(@NotNull String providerName) {
+    OIDCClientConfig client = lookup(clientConfig, providerName);
+    return client != null && client.getRequestTimeout() > 0
+        ? Duration.ofMillis(client.getRequestTimeout())
+        : DEFAULT_REQUEST_TIMEOUT;
+  }
+
+  /**
+   * Returns the age after which cached user profiles of the specified provider are refreshed.
+   *
+   * @param providerName Name of the configured provider.
+   * @return configured refresh age, or the default one if the provider doesn't set any.
+   */
+  public Duration getProfileRefreshAfter(@NotNull String providerName) {
+    OIDCClientConfig client = lookup(clientConfig, providerName);
+    return client != null && client.getProfileRefreshAfter() > 0
+        ? Duration.ofSeconds(client.getProfileRefreshAfter())
+        : DEFAULT_PROFILE_REFRESH_AFTER;
+  }
+
+  /**
+   * Returns how long user profiles of the specified provider are still served past their refresh
+   * age while the provider fails.
+   *
+   * @param providerName Name of the configured provider.
+   * @return configured stale-if-error window, or the default one if the provider doesn't set any.
+   */
+  public Duration getProfileStaleIfError(@NotNull String providerName) {
+    OIDCClientConfig client = lookup(clientConfig, providerName);
+    return client != null && client.getProfileStaleIfError() > 0
+        ? Duration.ofSeconds(client.getProfileStaleIfError())
+        : DEFAULT_PROFILE_STALE_IF_ERROR;
   }
 }
@@ -0,0 +1,115 @@
+package kt.proj.config;
+
+import com.nimbusds.oauth2.sdk.ResponseType;
+import com.nimbusds.oauth2.sdk.Scope;
+import com.nimbusds.oauth2.sdk.auth.ClientAuthentication;
+import com.nimbusds.oauth2.sdk.auth.ClientSecretBasic;
+import com.nimbusds.oauth2.sdk.auth.Secret;
+import com.nimbusds.oauth2.sdk.id.ClientID;
+import com.nimbusds.oauth2.sdk.id.State;
+import com.nimbusds.openid.connect.sdk.AuthenticationRequest;
+import com.nimbusds.openid.connect.sdk.Nonce;
+import com.nimbusds.openid.connect.sdk.op.OIDCProviderMetadata;
+import java.net.URI;
+import kt.proj.common.AppConfig;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Immutable context of a discovered provider along with its registered client, holding everything
+ * the login flow needs that doesn't change between requests: client ID & authentication, callback
+ * URI, and the authentication request URI without its per-request parameters. A context is built
+ * whenever the snapshot of its provider is replaced, so that logins don't rebuild them.
+ */
+public final class ProviderContext {
+  private static final URI CALLBACK_URI = URI.create(AppConfig.CALLBACK_URL);
+
+  private final String providerName;
+  private final OIDCClientConfig client;
+  private final ProviderSnapshot snapshot;
+  private final ClientID clientID;
+  private final ClientAuthentication clientAuthentication;
+  /* Authentication request URI up to the state & nonce parameters, or null without endpoint. */
+  private final @Nullable String authorizationURIPrefix;
+
+  /**
+   * @param providerName Lower-cased name of the provider.
+   * @param client Registered client of the provider.
+   * @param snapshot Current metadata & keys of the provider.
+   */
+  ProviderContext(
+      @NotNull String providerName,
+      @NotNull OIDCClientConfig client,
+      @NotNull ProviderSnapshot snapshot) {
+    this.providerName = providerName;
+    this.client = client;
+    this.snapshot = snapshot;
+    this.clientID = new ClientID(client.getClientId());
+    this.clientAuthentication =
+        new ClientSecretBasic(clientID, new Secret(client.getClientSecret()));
+
+    URI authorizationEndpoint = snapshot.getMetadata().getAuthorizationEndpointURI();
+    if (authorizationEndpoint != null) {
+      Scope scope = new Scope();
+      for (String scopeValue : client.getScopes()) {
+        scope.add(scopeValue);
+      }
+      this.authorizationURIPrefix =
+          new AuthenticationRequest.Builder(
+                  new ResponseType(ResponseType.Value.CODE), scope, clientID, CALLBACK_URI)
+              .endpointURI(authorizationEndpoint)
+              .build()
+              .toURI()
+              .toString();
+    } else {
+      this.authorizationURIPrefix = null;
+    }
+  }
+
+  /** Returns the lower-cased name of the provider. */
+  public @NotNull String getProviderName() {
+    return providerName;
+  }
+
+  public @NotNull OIDCClientConfig getClient() {
+    return client;
+  }
+
+  public @NotNull ProviderSnapshot getSnapshot() {
+    return snapshot;
+  }
+
+  public @NotNull OIDCProviderMetadata getMetadata() {
+    return snapshot.getMetadata();
+  }
+
+  public @NotNull ClientID getClientID() {
+    return clientID;
+  }
+
+  /** Returns the credentials of the client at the token endpoint of the provider. */
+  public @NotNull ClientAuthentication getClientAuthentication() {
+    return clientAuthentication;
+  }
+
+  /** Returns the URI the provider redirects to with the authorization code. */
+  public @NotNull URI getCallbackURI() {
+    return CALLBACK_URI;
+  }
+
+  /**
+   * Returns the URI of an authentication request to the provider with the specified state & nonce.
+   * Both are URL-safe, so they are appended to the prebuilt request without further encoding.
+   *
+   * @param state State of the request.
+   * @param nonce Nonce of the request.
+   * @return authentication request URI, or null if the provider has no authorization endpoint.
+   */
+  public @Nullable URI getAuthorizationURI(@NotNull State state, @NotNull Nonce nonce) {
+    if (authorizationURIPrefix == null) {
+      return null;
+    }
+    return URI.create(
+        authorizationURIPrefix + "&state=" + state.getValue() + "&nonce=" + nonce.getValue());
+  }
+}
@@ -0,0 +1,141 @@
+package kt.proj.config;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.crypto.ECDSAVerifier;
+import com.nimbusds.jose.crypto.Ed25519Verifier;
+import com.nimbusds.jose.crypto.RSASSAVerifier;
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.KeyUse;
+import com.nimbusds.jose.jwk.OctetKeyPair;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.openid.connect.sdk.op.OIDCProviderMetadata;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Immutable view of an OIDC provider as last fetched: its discovery metadata & JWK set, along with
+ * the validators needed to revalidate them with conditional requests. A refresh replaces the
+ * snapshot as a whole, so that readers always see a consistent metadata & key set.
+ *
+ * <p>Signature verifiers for the published keys are built along with the snapshot and indexed by
+ * key ID, so that verifying an ID token doesn't convert any key on the login path.
+ */
+public final class ProviderSnapshot {
+  private static final Logger LOGGER = Logger.getLogger(ProviderSnapshot.class.getName());
+  /* Index of the verifier of a key published without key ID. */
+  private static final String NO_KEY_ID = "";
+
+  private final OIDCProviderMetadata metadata;
+  private final @Nullable JWKSet jwkSet;
+  private final Map<String, JWSVerifier> verifiers;
+  private final @Nullable Instant refreshedAt;
+  private final @Nullable String metadataETag;
+  private final @Nullable String metadataLastModified;
+  private final @Nullable String jwkSetETag;
+  private final @Nullable String jwkSetLastModified;
+
+  ProviderSnapshot(
+      @NotNull OIDCProviderMetadata metadata,
+      @Nullable JWKSet jwkSet,
+      @Nullable Instant refreshedAt,
+      @Nullable String metadataETag,
+      @Nullable String metadataLastModified,
+      @Nullable String jwkSetETag,
+      @Nullable String jwkSetLastModified) {
+    this.metadata = metadata;
+    this.jwkSet = jwkSet;
+    this.verifiers = jwkSet != null ? buildVerifiers(jwkSet) : Map.of();
+    this.refreshedAt = refreshedAt;
+    this.metadataETag = metadataETag;
+    this.metadataLastModified = metadataLastModified;
+    this.jwkSetETag = jwkSetETag;
+    this.jwkSetLastModified = jwkSetLastModified;
+  }
+
+  /** Creates a snapshot of metadata that wasn't fetched from the provider, e.g. cached on disk. */
+  static ProviderSnapshot of(@NotNull OIDCProviderMetadata metadata) {
+    return of(metadata, null);
+  }
+
+  /** Creates a snapshot of metadata & keys that weren't fetched from the provider. */
+  static ProviderSnapshot of(@NotNull OIDCProviderMetadata metadata, @Nullable JWKSet jwkSet) {
+    return new ProviderSnapshot(metadata, jwkSet, null, null, null, null, null);
+  }
+
+  /* Builds a verifier for every signing key of the set, skipping keys of unsupported types. */
+  private static Map<String, JWSVerifier> buildVerifiers(JWKSet jwkSet) {
+    Map<String, JWSVerifier> verifiers = new HashMap<>();
+    for (JWK key : jwkSet.getKeys()) {
+      if (key.getKeyUse() != null && !KeyUse.SIGNATURE.equals(key.getKeyUse())) {
+        continue;
+      }
+      try {
+        JWSVerifier verifier;
+        if (key instanceof RSAKey) {
+          verifier = new RSASSAVerifier((RSAKey) key);
+        } else if (key instanceof ECKey) {
+          verifier = new ECDSAVerifier((ECKey) key);
+        } else if (key instanceof OctetKeyPair) {
+          verifier = new Ed25519Verifier((OctetKeyPair) key);
+        } else {
+          continue;
+        }
+        verifiers.put(key.getKeyID() != null ? key.getKeyID() : NO_KEY_ID, verifier);
+      } catch (JOSEException e) {
+        LOGGER.warning("Ignoring unusable key " + key.getKeyID() + ": " + e.getMessage());
+      }
+    }
+    return Map.copyOf(verifiers);
+  }
+
+  public @NotNull OIDCProviderMetadata getMetadata() {
+    return metadata;
+  }
+
+  /** Returns the public keys of the provider, or null if they couldn't be fetched yet. */
+  public @Nullable JWKSet getJWKSet() {
+    return jwkSet;
+  }
+
+  /**
+   * Returns the verifier of the specified published key.
+   *
+   * @param keyId ID of the key, as set in the header of a signed token, or null if not set.
+   * @return verifier of the key, or null if the provider doesn't publish it as a signing key. A
+   *     token without key ID is verified with the only key of the provider, if it has one.
+   */
+  public @Nullable JWSVerifier getVerifier(@Nullable String keyId) {
+    if (keyId == null && verifiers.size() == 1) {
+      return verifiers.values().iterator().next();
+    }
+    return verifiers.get(keyId != null ? keyId : NO_KEY_ID);
+  }
+
+  /** Returns when the snapshot was last fetched or revalidated from the provider, if ever. */
+  public @Nullable Instant getRefreshedAt() {
+    return refreshedAt;
+  }
+
+  @Nullable String getMetadataETag() {
+    return metadataETag;
+  }
+
+  @Nullable String getMetadataLastModified() {
+    return metadataLastModified;
+  }
+
+  @Nullable String getJWKSetETag() {
+    return jwkSetETag;
+  }
+
+  @Nullable String getJWKSetLastModified() {
+    return jwkSetLastModified;
+  }
+}
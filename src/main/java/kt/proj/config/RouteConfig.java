@@ -0,0 +1,67 @@
+package kt.proj.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/** Class that represents the access policy of requests to a path of the service. */
+public class RouteConfig {
+  public static final String EXACT = "exact";
+  public static final String PREFIX = "prefix";
+  public static final String PATTERN = "pattern";
+
+  public static final String PUBLIC = "public";
+  public static final String AUTHENTICATED = "authenticated";
+  public static final String PROVIDER = "provider";
+
+  private String path;
+  private String match = EXACT;
+  private String policy = AUTHENTICATED;
+  private String provider;
+
+  public RouteConfig() {}
+
+  public RouteConfig(String path, String match, String policy, String provider) {
+    this.path = path;
+    this.match = match;
+    this.policy = policy;
+    this.provider = provider;
+  }
+
+  /** Returns the path, path prefix or regular expression matching the request path. */
+  @JsonProperty("path")
+  public String getPath() {
+    return path;
+  }
+
+  /** Returns how the path is matched: {@code exact}, {@code prefix} or {@code pattern}. */
+  @JsonProperty("match")
+  public String getMatch() {
+    return match;
+  }
+
+  /** Returns the policy of the route: {@code public}, {@code authenticated} or {@code provider}. */
+  @JsonProperty("policy")
+  public String getPolicy() {
+    return policy;
+  }
+
+  /** Returns the provider user tokens must be issued for with the {@code provider} policy. */
+  @JsonProperty("provider")
+  public String getProvider() {
+    return provider;
+  }
+
+  @Override
+  public String toString() {
+    return "RouteConfig{"
+        + "path='"
+        + path
+        + '\''
+        + ", match="
+        + match
+        + ", policy="
+        + policy
+        + ", provider="
+        + provider
+        + '}';
+  }
+}
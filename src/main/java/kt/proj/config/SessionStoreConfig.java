@@ -0,0 +1,113 @@
+package kt.proj.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+
+/** Class that represents the configuration of the store of authenticated user sessions. */
+public class SessionStoreConfig {
+  /* Sessions are kept in memory only and are lost on restart. */
+  public static final String MEMORY = "memory";
+  /* Sessions are also appended to a memory-mapped file and restored on restart. */
+  public static final String MAPPED = "mapped";
+  /* Sessions are shared by all nodes through Redis and cached near each node. */
+  public static final String REDIS = "redis";
+  /*
+   * Sessions aren't stored: the access token is sealed in the user token itself, and only revoked
+   * tokens are kept in a deny-list until they expire.
+   */
+  public static final String STATELESS = "stateless";
+
+  private String type = MEMORY;
+  private int capacity;
+  private Path file;
+  private long fileSize;
+  private long compactionInterval;
+  private URI redisURI;
+  private long nearCacheSize;
+  private long nearCacheTtl;
+
+  @JsonProperty("type")
+  public String getType() {
+    return type;
+  }
+
+  @JsonProperty("capacity")
+  public int getCapacity() {
+    return capacity;
+  }
+
+  @JsonProperty("file")
+  public Path getFile() {
+    return file;
+  }
+
+  @JsonProperty("file_size")
+  public long getFileSize() {
+    return fileSize;
+  }
+
+  @JsonProperty("compaction_interval")
+  public long getCompactionInterval() {
+    return compactionInterval;
+  }
+
+  @JsonProperty("redis_url")
+  public URI getRedisURI() {
+    return redisURI;
+  }
+
+  @JsonProperty("near_cache_size")
+  public long getNearCacheSize() {
+    return nearCacheSize;
+  }
+
+  @JsonProperty("near_cache_ttl")
+  public long getNearCacheTtl() {
+    return nearCacheTtl;
+  }
+
+  @Override
+  public String toString() {
+    return "SessionStoreConfig{"
+        + "type='"
+        + type
+        + '\''
+        + ", capacity="
+        + capacity
+        + ", file="
+        + file
+        + ", fileSize="
+        + fileSize
+        + ", compactionInterval="
+        + compactionInterval
+        + ", redisURI="
+        + withoutUserInfo(redisURI)
+        + ", nearCacheSize="
+        + nearCacheSize
+        + ", nearCacheTtl="
+        + nearCacheTtl
+        + '}';
+  }
+
+  /* The user info of the Redis URI may hold its password, which mustn't be logged. */
+  private static String withoutUserInfo(URI uri) {
+    if (uri == null || uri.getRawUserInfo() == null) {
+      return String.valueOf(uri);
+    }
+    try {
+      return new URI(
+              uri.getScheme(),
+              null,
+              uri.getHost(),
+              uri.getPort(),
+              uri.getPath(),
+              uri.getQuery(),
+              uri.getFragment())
+          .toString();
+    } catch (URISyntaxException e) {
+      return "****";
+    }
+  }
+}
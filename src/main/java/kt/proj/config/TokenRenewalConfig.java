@@ -0,0 +1,64 @@
+package kt.proj.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Class that represents the configuration of the background renewal of provider access tokens
+ * with the refresh tokens of user sessions.
+ */
+public class TokenRenewalConfig {
+  private Boolean enabled;
+  private long renewBefore;
+  private long interval;
+  private int maxRate;
+  private long retryDelay;
+
+  /** Returns whether access tokens are renewed in the background; true unless set otherwise. */
+  @JsonProperty("enabled")
+  public boolean isEnabled() {
+    return enabled == null || enabled;
+  }
+
+  /**
+   * Returns how long in seconds before its expiration an access token is renewed, or 0 for the
+   * default.
+   */
+  @JsonProperty("renew_before")
+  public long getRenewBefore() {
+    return renewBefore;
+  }
+
+  /** Returns how often in seconds due renewals are sent, or 0 for the default. */
+  @JsonProperty("interval")
+  public long getInterval() {
+    return interval;
+  }
+
+  /** Returns the maximum number of renewals per second sent to a provider, or 0 for the default. */
+  @JsonProperty("max_rate")
+  public int getMaxRate() {
+    return maxRate;
+  }
+
+  /** Returns the delay in seconds before a failed renewal is retried, or 0 for the default. */
+  @JsonProperty("retry_delay")
+  public long getRetryDelay() {
+    return retryDelay;
+  }
+
+  @Override
+  public String toString() {
+    return "TokenRenewalConfig{"
+        + "enabled="
+        + enabled
+        + ", renewBefore="
+        + renewBefore
+        + ", interval="
+        + interval
+        + ", maxRate="
+        + maxRate
+        + ", retryDelay="
+        + retryDelay
+        + '}';
+  }
+}
@@ -1,7 +1,7 @@
 package kt.proj.config;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
-import java.util.Arrays;
+import java.util.List;
 import javax.inject.Singleton;
 
 /** Class that represents the configuration to issue User tokens for authenticated clients. */
@@ -10,9 +10,14 @@ public class UserTokenConfig {
   private String issuer;
   private String audience;
   private byte[] privateKey;
+  private List<byte[]> verificationKeys = List.of();
+  private byte[] encryptionKey;
   private long tokenExpiry;
   private String signatureAlgorithm;
   private int keySize;
+  private long keyRotationInterval;
+  private long verifiedTokenCacheSize;
+  private SessionStoreConfig sessionStoreConfig = new SessionStoreConfig();
 
   @JsonProperty("issuer")
   public String getIssuer() {
@@ -29,6 +34,22 @@ public class UserTokenConfig {
     return privateKey;
   }
 
+  /**
+   * Returns the base64 encoded private JWKs that verify user tokens & are published along with
+   * the signing key, but never sign: the key to be configured as {@code private_key} next, or
+   * the one it replaced, until its last token expired.
+   */
+  @JsonProperty("verification_keys")
+  public List<byte[]> getVerificationKeys() {
+    return verificationKeys;
+  }
+
+  /** Returns the base64 encoded symmetric JWK sealing user tokens in stateless mode. */
+  @JsonProperty("encryption_key")
+  public byte[] getEncryptionKey() {
+    return encryptionKey;
+  }
+
   @JsonProperty("expiry")
   public long getTokenExpiry() {
     return tokenExpiry;
@@ -44,6 +65,22 @@ public class UserTokenConfig {
     return keySize;
   }
 
+  /** Returns the number of seconds between rotations of generated signing keys, or 0 if none. */
+  @JsonProperty("key_rotation_interval")
+  public long getKeyRotationInterval() {
+    return keyRotationInterval;
+  }
+
+  @JsonProperty("verified_token_cache_size")
+  public long getVerifiedTokenCacheSize() {
+    return verifiedTokenCacheSize;
+  }
+
+  @JsonProperty("session_store")
+  public SessionStoreConfig getSessionStoreConfig() {
+    return sessionStoreConfig;
+  }
+
   @Override
   public String toString() {
     return "UserTokenConfig{"
@@ -54,7 +91,11 @@ public class UserTokenConfig {
         + audience
         + '\''
         + ", privateKey="
-        + Arrays.toString(privateKey)
+        + (privateKey != null ? "****" : null)
+        + ", verificationKeyCount="
+        + (verificationKeys != null ? verificationKeys.size() : 0)
+        + ", encryptionKey="
+        + (encryptionKey != null ? "****" : null)
         + ", tokenExpiry="
         + tokenExpiry
         + ", signatureAlgorithm='"
@@ -62,6 +103,12 @@ public class UserTokenConfig {
         + '\''
         + ", keySize="
         + keySize
+        + ", keyRotationInterval="
+        + keyRotationInterval
+        + ", verifiedTokenCacheSize="
+        + verifiedTokenCacheSize
+        + ", sessionStoreConfig="
+        + sessionStoreConfig
         + '}';
   }
 }
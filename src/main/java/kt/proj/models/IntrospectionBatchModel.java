@@ -0,0 +1,25 @@
+package kt.proj.models;
+
+import java.util.List;
+
+/** Batch of user tokens to introspect, or of their introspection responses in the same order. */
+public class IntrospectionBatchModel {
+  List<String> tokens;
+  List<IntrospectionModel> results;
+
+  public List<String> getTokens() {
+    return tokens;
+  }
+
+  public void setTokens(List<String> tokens) {
+    this.tokens = tokens;
+  }
+
+  public List<IntrospectionModel> getResults() {
+    return results;
+  }
+
+  public void setResults(List<IntrospectionModel> results) {
+    this.results = results;
+  }
+}
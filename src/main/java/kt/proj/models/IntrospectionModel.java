@@ -0,0 +1,60 @@
+package kt.proj.models;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Introspection response for a user token (RFC 7662). Inactive tokens only carry {@code active},
+ * so that nothing is disclosed about tokens that are invalid, expired or revoked.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class IntrospectionModel {
+  public static final IntrospectionModel INACTIVE = new IntrospectionModel(false, null, null, null);
+
+  boolean active;
+  String sub;
+  String prd;
+  Long exp;
+
+  public IntrospectionModel() {}
+
+  public IntrospectionModel(boolean active, String sub, String prd, Long exp) {
+    this.active = active;
+    this.sub = sub;
+    this.prd = prd;
+    this.exp = exp;
+  }
+
+  public boolean isActive() {
+    return active;
+  }
+
+  public void setActive(boolean active) {
+    this.active = active;
+  }
+
+  public String getSub() {
+    return sub;
+  }
+
+  public void setSub(String sub) {
+    this.sub = sub;
+  }
+
+  /** Returns the name of the provider the user authenticated with. */
+  public String getPrd() {
+    return prd;
+  }
+
+  public void setPrd(String prd) {
+    this.prd = prd;
+  }
+
+  /** Returns the expiration time of the token in seconds since the epoch. */
+  public Long getExp() {
+    return exp;
+  }
+
+  public void setExp(Long exp) {
+    this.exp = exp;
+  }
+}
@@ -0,0 +1,67 @@
+package kt.proj.profile;
+
+import com.nimbusds.openid.connect.sdk.claims.UserInfo;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * User profile cached along with its refresh schedule. Times are nanosecond stamps of the ticker
+ * the cache expires entries with.
+ */
+final class CachedProfile {
+  /* Delay before retrying a failed refresh, so that a failing provider isn't called per request. */
+  private static final long RETRY_DELAY = Duration.ofSeconds(10).toNanos();
+  private static final long REFRESHING = Long.MAX_VALUE;
+
+  private final UserInfo userInfo;
+  private final long expiresAt;
+  /* Time after which the profile is refreshed, or REFRESHING while a refresh is in flight. */
+  private final AtomicLong refreshAt;
+
+  /**
+   * @param userInfo Profile returned by the provider.
+   * @param refreshAfter Age after which the profile is refreshed in the background.
+   * @param staleIfError Time the profile is still served past its refresh age if refreshes fail.
+   * @param now Time the profile was loaded at.
+   */
+  CachedProfile(
+      @NotNull UserInfo userInfo,
+      @NotNull Duration refreshAfter,
+      @NotNull Duration staleIfError,
+      long now) {
+    this.userInfo = userInfo;
+    this.refreshAt = new AtomicLong(now + refreshAfter.toNanos());
+    this.expiresAt = now + refreshAfter.toNanos() + staleIfError.toNanos();
+  }
+
+  UserInfo getUserInfo() {
+    return userInfo;
+  }
+
+  /** Returns the time after which the profile must not be served anymore. */
+  long getExpiresAt() {
+    return expiresAt;
+  }
+
+  /**
+   * Claims the refresh of the profile if it is due, so that concurrent requests for a stale
+   * profile trigger a single refresh.
+   *
+   * @param now Current time.
+   * @return true if the caller must refresh the profile.
+   */
+  boolean startRefresh(long now) {
+    long at = refreshAt.get();
+    return at != REFRESHING && now - at >= 0 && refreshAt.compareAndSet(at, REFRESHING);
+  }
+
+  /**
+   * Schedules another refresh attempt after a failed one.
+   *
+   * @param now Current time.
+   */
+  void refreshFailed(long now) {
+    refreshAt.set(now + RETRY_DELAY);
+  }
+}
@@ -0,0 +1,57 @@
+package kt.proj.profile;
+
+import com.nimbusds.oauth2.sdk.token.AccessToken;
+import java.util.Objects;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Key of a cached user profile. The provider & subject identify the profile, since the same subject
+ * may be present across multiple OIDC providers. The access token of the requesting session is only
+ * carried along to load the profile, and is not part of the identity of the key, so that concurrent
+ * requests for the same user share a single load.
+ */
+final class ProfileKey {
+  private final String provider;
+  private final String subject;
+  private final AccessToken accessToken;
+
+  ProfileKey(@NotNull String provider, @NotNull String subject, @NotNull AccessToken accessToken) {
+    this.provider = provider;
+    this.subject = subject;
+    this.accessToken = accessToken;
+  }
+
+  String getProvider() {
+    return provider;
+  }
+
+  String getSubject() {
+    return subject;
+  }
+
+  AccessToken getAccessToken() {
+    return accessToken;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof ProfileKey)) {
+      return false;
+    }
+    ProfileKey that = (ProfileKey) o;
+    return provider.equals(that.provider) && subject.equals(that.subject);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(provider, subject);
+  }
+
+  @Override
+  public String toString() {
+    return provider + "#" + subject;
+  }
+}
@@ -1,6 +1,7 @@
 package kt.proj.profile;
 
 import com.nimbusds.openid.connect.sdk.claims.UserInfo;
+import io.smallrye.mutiny.Uni;
 import java.util.logging.Logger;
 import javax.inject.Inject;
 import javax.ws.rs.GET;
@@ -8,9 +9,10 @@ import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.SecurityContext;
-import kt.proj.authentication.filter.SecurityFilter;
 import kt.proj.common.ErrorCode;
 import kt.proj.common.ErrorResponseHandler;
+import kt.proj.common.ProviderUnavailableException;
+import kt.proj.common.UserPrincipal;
 import kt.proj.common.UserTokenManager;
 import kt.proj.config.OIDCProviders;
 import kt.proj.models.UserProfileModel;
@@ -27,21 +29,32 @@ public class UserProfileResource {
 
   @GET
   @Produces(MediaType.APPLICATION_JSON)
-  public RestResponse getUserProfile() {
-    SecurityFilter.UserTokenPrincipal tokenPrincipal =
-        (SecurityFilter.UserTokenPrincipal) securityContext.getUserPrincipal();
-    UserInfo userInfo = userProfileService.getMyProfile(tokenPrincipal.getUserToken());
-    if (userInfo == null) {
-      LOGGER.fine("Unable to fetch profile for user " + tokenPrincipal.getName());
-      return ErrorResponseHandler.buildErrorResponse(
-          RestResponse.Status.INTERNAL_SERVER_ERROR,
-          ErrorCode.SERVER_SIDE_ERROR,
-          "Unable to fetch profile for user " + tokenPrincipal.getName());
-    }
-
-    return RestResponse.ResponseBuilder.create(RestResponse.Status.OK)
-        .entity(createUserProfileModel(userInfo))
-        .build();
+  public Uni<RestResponse> getUserProfile() {
+    UserPrincipal tokenPrincipal = (UserPrincipal) securityContext.getUserPrincipal();
+    return userProfileService
+        .getMyProfile(tokenPrincipal)
+        .map(
+            userInfo ->
+                RestResponse.ResponseBuilder.create(RestResponse.Status.OK)
+                    .entity(createUserProfileModel(userInfo))
+                    .build())
+        .onFailure()
+        .recoverWithItem(
+            e -> {
+              LOGGER.fine("Unable to fetch profile for user " + tokenPrincipal.getName());
+              if (e instanceof ProviderUnavailableException) {
+                return ErrorResponseHandler.buildErrorResponse(
+                    RestResponse.Status.SERVICE_UNAVAILABLE,
+                    ErrorCode.PROVIDER_UNAVAILABLE,
+                    "Provider of user "
+                        + tokenPrincipal.getName()
+                        + " is unavailable, try again later");
+              }
+              return ErrorResponseHandler.buildErrorResponse(
+                  RestResponse.Status.INTERNAL_SERVER_ERROR,
+                  ErrorCode.SERVER_SIDE_ERROR,
+                  "Unable to fetch profile for user " + tokenPrincipal.getName());
+            });
   }
 
   /**
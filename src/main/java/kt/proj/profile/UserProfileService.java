@@ -1,105 +1,258 @@
 package kt.proj.profile;
 
-import static kt.proj.common.UserTokenManager.PROVIDER_CLAIM;
-
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
 import com.github.benmanes.caffeine.cache.Caffeine;
-import com.github.benmanes.caffeine.cache.LoadingCache;
-import com.nimbusds.jwt.JWT;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
 import com.nimbusds.oauth2.sdk.ErrorObject;
 import com.nimbusds.oauth2.sdk.ParseException;
 import com.nimbusds.oauth2.sdk.http.HTTPResponse;
 import com.nimbusds.openid.connect.sdk.UserInfoRequest;
 import com.nimbusds.openid.connect.sdk.UserInfoResponse;
 import com.nimbusds.openid.connect.sdk.claims.UserInfo;
-import java.io.IOException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineStatsCounter;
+import io.smallrye.mutiny.Uni;
 import java.net.URI;
-import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.logging.Logger;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
-import javax.ws.rs.core.SecurityContext;
-import kt.proj.authentication.filter.SecurityFilter;
+import kt.proj.common.AsyncHTTPClient;
 import kt.proj.common.AuthServiceException;
+import kt.proj.common.BlockingExecutor;
+import kt.proj.common.ProviderTimers;
+import kt.proj.common.UserPrincipal;
 import kt.proj.common.UserTokenManager;
 import kt.proj.config.OIDCProviders;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 @ApplicationScoped
 public class UserProfileService {
   private static final Logger LOGGER = Logger.getLogger(UserProfileService.class.getName());
   private final OIDCProviders oidcProviders;
   private final UserTokenManager tokenManager;
+  private static final String REFRESH_METRIC = "userinfo.refresh";
+  private static final String CACHE_NAME = "user_profiles";
+
+  private final AsyncHTTPClient httpClient;
+  private final MeterRegistry meterRegistry;
+  /* Source of the nanosecond times profiles are refreshed & expired at. */
+  private final Ticker ticker;
+
+  /* Time spent on userinfo requests, including failed ones & background reloads. */
+  private final ProviderTimers userInfoTimers;
 
-  @Inject SecurityContext securityContext;
   /*
    * User information cache to avoid fetching user profile from OIDC provider frequently. The cache
    * uses provider & user id as key to resolve conflicts for the same user id present across
-   * multiple OIDC providers.
+   * multiple OIDC providers. Concurrent misses for the same user share the pending load, and
+   * failed loads are not cached.
+   *
+   * Profiles past their refresh age are still served while they are reloaded in the background,
+   * and for as long as the provider's stale-if-error window if the reload fails. Its size, hits,
+   * misses, loads & evictions by cause are published as cache meters.
+   */
+  private final AsyncLoadingCache<ProfileKey, CachedProfile> userInfoCache;
+
+  /*
+   * Runs session store lookups off the event loop when they may block, like near-cache misses of
+   * the Redis store, on the worker pool or on virtual threads. In-memory lookups run on the calling
+   * thread.
    */
-  private final LoadingCache<String, UserInfo> userInfoCache;
+  private @Nullable Executor sessionExecutor;
 
   @Inject
-  public UserProfileService(OIDCProviders providers, UserTokenManager tokenManager) {
+  public UserProfileService(
+      OIDCProviders providers,
+      UserTokenManager tokenManager,
+      AsyncHTTPClient httpClient,
+      MeterRegistry meterRegistry) {
+    this(providers, tokenManager, httpClient, meterRegistry, Ticker.systemTicker());
+  }
+
+  /* Refreshes & expires profiles by the specified ticker, which tests advance. */
+  UserProfileService(
+      OIDCProviders providers,
+      UserTokenManager tokenManager,
+      AsyncHTTPClient httpClient,
+      MeterRegistry meterRegistry,
+      Ticker ticker) {
     this.oidcProviders = providers;
     this.tokenManager = tokenManager;
+    this.httpClient = httpClient;
+    this.meterRegistry = meterRegistry;
+    this.ticker = ticker;
+    this.userInfoTimers =
+        ProviderTimers.remote(meterRegistry, "userinfo.request", "Time to fetch a user profile");
+    CaffeineStatsCounter statsCounter = new CaffeineStatsCounter(meterRegistry, CACHE_NAME);
     userInfoCache =
         Caffeine.newBuilder()
             .maximumSize(10_000)
-            .expireAfterWrite(Duration.ofMinutes(5))
-            .build(this::getUserInfo);
+            .ticker(ticker)
+            .recordStats(() -> statsCounter)
+            .expireAfter(
+                new Expiry<ProfileKey, CachedProfile>() {
+                  @Override
+                  public long expireAfterCreate(
+                      ProfileKey key, CachedProfile profile, long currentTime) {
+                    return Math.max(0, profile.getExpiresAt() - currentTime);
+                  }
+
+                  @Override
+                  public long expireAfterUpdate(
+                      ProfileKey key, CachedProfile profile, long currentTime, long duration) {
+                    return Math.max(0, profile.getExpiresAt() - currentTime);
+                  }
+
+                  @Override
+                  public long expireAfterRead(
+                      ProfileKey key, CachedProfile profile, long currentTime, long duration) {
+                    return duration;
+                  }
+                })
+            .buildAsync(
+                (key, executor) -> {
+                  /*
+                   * Mutiny completion stages are context propagation wrappers, for which the
+                   * cache never schedules the expiry of the loaded entry, so loads complete a
+                   * plain future instead.
+                   */
+                  CompletableFuture<CachedProfile> profile = new CompletableFuture<>();
+                  loadProfile(key)
+                      .subscribe()
+                      .with(profile::complete, profile::completeExceptionally);
+                  return profile;
+                });
+    statsCounter.registerSizeMetric(userInfoCache.synchronous());
+  }
+
+  @Inject
+  void setExecutor(BlockingExecutor blockingExecutor) {
+    sessionExecutor = tokenManager.isValidationBlocking() ? blockingExecutor : null;
+  }
+
+  private Uni<CachedProfile> loadProfile(ProfileKey key) {
+    return getUserInfo(key)
+        .map(
+            userInfo ->
+                new CachedProfile(
+                    userInfo,
+                    oidcProviders.getProfileRefreshAfter(key.getProvider()),
+                    oidcProviders.getProfileStaleIfError(key.getProvider()),
+                    ticker.read()));
+  }
+
+  /**
+   * Reloads the specified profile in the background if it is due for refresh, keeping the cached
+   * one if the reload fails.
+   *
+   * @param key Provider & subject of the profile, with the access token of the requesting session.
+   * @param profile Cached profile served to the request.
+   */
+  private void refreshIfStale(ProfileKey key, CachedProfile profile) {
+    if (!profile.startRefresh(ticker.read())) {
+      return;
+    }
+    loadProfile(key)
+        .subscribe()
+        .with(
+            refreshedProfile -> {
+              userInfoCache.put(key, CompletableFuture.completedFuture(refreshedProfile));
+              meterRegistry
+                  .counter(REFRESH_METRIC, "provider", key.getProvider(), "result", "success")
+                  .increment();
+            },
+            e -> {
+              LOGGER.fine("Failed to refresh profile " + key + ": " + e.getMessage());
+              profile.refreshFailed(ticker.read());
+              meterRegistry
+                  .counter(REFRESH_METRIC, "provider", key.getProvider(), "result", "failure")
+                  .increment();
+            });
   }
 
   /**
    * Retrieves user profile information for the specified subject from OIDC provider using userinfo
    * endpoint.
    *
-   * @param userId Subject for which user profile is requested.
+   * @param key Provider & subject for which user profile is requested, with the access token of
+   *     the requesting session.
    * @return UserInfo if the request to OIDC provider is successful.
    */
-  private @NotNull UserInfo getUserInfo(String userId) throws AuthServiceException {
-    SecurityFilter.UserTokenPrincipal tokenPrincipal =
-        (SecurityFilter.UserTokenPrincipal) securityContext.getUserPrincipal();
-    JWT userToken = tokenPrincipal.getUserToken();
+  private @NotNull Uni<UserInfo> getUserInfo(ProfileKey key) {
+    URI userInfoEndpoint =
+        oidcProviders
+            .getUserInfoEndpoint(key.getProvider())
+            .orElseThrow(
+                () ->
+                    new AuthServiceException(
+                        "Userinfo endpoint not available for provider " + key.getProvider()));
+    UserInfoRequest userInfoRequest = new UserInfoRequest(userInfoEndpoint, key.getAccessToken());
 
-    String providerName =
-        (String) UserTokenManager.getTokenClaims(userToken).getClaim(PROVIDER_CLAIM);
-    URI userInfoEndpoint = oidcProviders.getUserInfoEndpoint(providerName).orElse(null);
+    long start = System.nanoTime();
+    return httpClient
+        .send(
+            key.getProvider(),
+            userInfoRequest.toHTTPRequest(),
+            oidcProviders.getRequestTimeout(key.getProvider()))
+        .onTermination()
+        .invoke(() -> userInfoTimers.record(key.getProvider(), start))
+        .map(UserProfileService::parseUserInfo);
+  }
 
-    return tokenManager
-        .getAccessToken(userToken)
-        .map(
-            accessToken -> {
-              UserInfoRequest userInfoRequest = new UserInfoRequest(userInfoEndpoint, accessToken);
-              UserInfoResponse userInfoResponse;
-              try {
-                HTTPResponse httpResponse = userInfoRequest.toHTTPRequest().send();
-                userInfoResponse = UserInfoResponse.parse(httpResponse);
-              } catch (IOException | ParseException e) {
-                throw new AuthServiceException("Failed to retrieve user profile", e);
-              }
-
-              /* The request failed due to invalid or expired token. */
-              if (!userInfoResponse.indicatesSuccess()) {
-                ErrorObject error = userInfoResponse.toErrorResponse().getErrorObject();
-                String errorMessage = "UserInfo request failed with error: " + error;
-                LOGGER.fine(errorMessage);
-                throw new AuthServiceException(errorMessage);
-              }
-              return userInfoResponse.toSuccessResponse().getUserInfo();
-            })
-        .orElseThrow(() -> new AuthServiceException("Invalid user profile request"));
+  private static UserInfo parseUserInfo(HTTPResponse httpResponse) throws AuthServiceException {
+    UserInfoResponse userInfoResponse;
+    try {
+      userInfoResponse = UserInfoResponse.parse(httpResponse);
+    } catch (ParseException e) {
+      throw new AuthServiceException("Failed to retrieve user profile", e);
+    }
+
+    /* The request failed due to invalid or expired token. */
+    if (!userInfoResponse.indicatesSuccess()) {
+      ErrorObject error = userInfoResponse.toErrorResponse().getErrorObject();
+      String errorMessage = "UserInfo request failed with error: " + error;
+      LOGGER.fine(errorMessage);
+      throw new AuthServiceException(errorMessage);
+    }
+    return userInfoResponse.toSuccessResponse().getUserInfo();
   }
 
   /**
    * Retrieves profile information for the authenticated user represented in token
    *
-   * @param userToken
-   * @return
+   * @param principal User of the validated user token of the request.
+   * @return profile of the user, or a failure if it couldn't be retrieved from the provider.
    */
-  public UserInfo getMyProfile(JWT userToken) {
-    String providerName =
-        (String) UserTokenManager.getTokenClaims(userToken).getClaim(PROVIDER_CLAIM);
-    String userId = UserTokenManager.getTokenClaims(userToken).getSubject();
-    return userInfoCache.get(providerName + "#" + userId);
+  public Uni<UserInfo> getMyProfile(UserPrincipal principal) {
+    Uni<ProfileKey> profileKey =
+        Uni.createFrom()
+            .item(
+                () ->
+                    tokenManager
+                        .getAccessToken(principal)
+                        .map(
+                            accessToken ->
+                                new ProfileKey(
+                                    principal.getProvider(), principal.getName(), accessToken))
+                        .orElseThrow(
+                            () -> new AuthServiceException("Invalid user profile request")));
+    if (sessionExecutor != null) {
+      profileKey = profileKey.runSubscriptionOn(sessionExecutor);
+    }
+    return profileKey
+        .onItem()
+        .transformToUni(
+            key ->
+                Uni.createFrom()
+                    .completionStage(userInfoCache.get(key))
+                    .map(
+                        profile -> {
+                          refreshIfStale(key, profile);
+                          return profile.getUserInfo();
+                        }));
   }
 }
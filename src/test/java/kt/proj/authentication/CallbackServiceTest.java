@@ -7,6 +7,9 @@ import io.quarkus.test.common.http.TestHTTPEndpoint;
 import io.quarkus.test.junit.QuarkusMock;
 import io.quarkus.test.junit.QuarkusTest;
 import io.restassured.http.Cookie;
+import io.smallrye.mutiny.Uni;
+import kt.proj.common.ErrorCode;
+import kt.proj.common.ProviderUnavailableException;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 
@@ -16,10 +19,13 @@ public class CallbackServiceTest {
   @Test
   public void testTokenEndpoint() {
     CallbackService cbSrvMock = Mockito.mock(CallbackService.class);
+    Mockito.when(
+            cbSrvMock.handleCallback(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any()))
+        .thenReturn(Uni.createFrom().item("userToken"));
     QuarkusMock.installMockForType(cbSrvMock, CallbackService.class);
 
     Cookie socialCookie =
-        new Cookie.Builder(AuthenticationResource.COOKIE_NAME, "Google:abcstate").build();
+        new Cookie.Builder(AuthenticationResource.COOKIE_NAME, "Google:abcstate:abcnonce").build();
     given()
         .redirects()
         .follow(false)
@@ -32,10 +38,34 @@ public class CallbackServiceTest {
         .statusCode(200);
   }
 
+  @Test
+  public void testUnavailableProviderIsReportedAs503() {
+    CallbackService cbSrvMock = Mockito.mock(CallbackService.class);
+    Mockito.when(
+            cbSrvMock.handleCallback(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any()))
+        .thenReturn(
+            Uni.createFrom().failure(new ProviderUnavailableException("Google", "Circuit open")));
+    QuarkusMock.installMockForType(cbSrvMock, CallbackService.class);
+
+    Cookie socialCookie =
+        new Cookie.Builder(AuthenticationResource.COOKIE_NAME, "Google:abcstate:abcnonce").build();
+    given()
+        .redirects()
+        .follow(false)
+        .cookie(socialCookie)
+        .queryParam("code", "abc")
+        .queryParam("state", "abcstate")
+        .when()
+        .get()
+        .then()
+        .statusCode(503)
+        .body(containsString(ErrorCode.PROVIDER_UNAVAILABLE.name()));
+  }
+
   @Test
   public void testTokenEndpointNoCode() {
     Cookie socialCookie =
-        new Cookie.Builder(AuthenticationResource.COOKIE_NAME, "Google:abcstate").build();
+        new Cookie.Builder(AuthenticationResource.COOKIE_NAME, "Google:abcstate:abcnonce").build();
     given()
         .redirects()
         .follow(false)
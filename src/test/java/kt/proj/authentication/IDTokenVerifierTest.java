@@ -0,0 +1,168 @@
+package kt.proj.authentication;
+
+import static kt.proj.common.MockProvider.respond;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWT;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.PlainJWT;
+import com.nimbusds.jwt.SignedJWT;
+import com.sun.net.httpserver.HttpExchange;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.core.Vertx;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import kt.proj.common.AsyncHTTPClient;
+import kt.proj.common.AuthServiceException;
+import kt.proj.common.MockProvider;
+import kt.proj.config.AuthServiceConfig;
+import kt.proj.config.OIDCProviders;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class IDTokenVerifierTest {
+  private static RSAKey key1;
+  private static RSAKey key2;
+
+  private final AtomicInteger jwkSetRequests = new AtomicInteger();
+  private volatile JWKSet publishedKeys;
+
+  private MockProvider provider;
+  private String issuer;
+  private Vertx vertx;
+  private OIDCProviders providers;
+  private IDTokenVerifier verifier;
+
+  @BeforeAll
+  public static void generateKeys() throws JOSEException {
+    key1 = new RSAKeyGenerator(2048).keyID("key1").generate();
+    key2 = new RSAKeyGenerator(2048).keyID("key2").generate();
+  }
+
+  @BeforeEach
+  public void setUp() throws IOException {
+    publishedKeys = new JWKSet(key1.toPublicJWK());
+    provider = MockProvider.start().handle("/certs", this::certs);
+    issuer = provider.getIssuer();
+
+    String yaml =
+        "oidc_clients:\n"
+            + "  - provider_name: Local\n"
+            + "    discovery_url: "
+            + issuer
+            + "\n    client_id: client\n"
+            + "    client_secret: secret\n"
+            + "    request_scopes: [openid]\n";
+    AuthServiceConfig config =
+        new ObjectMapper(new YAMLFactory()).readValue(yaml, AuthServiceConfig.class);
+    vertx = Vertx.vertx();
+    providers = new OIDCProviders(config, new AsyncHTTPClient(vertx, config));
+    verifier = new IDTokenVerifier();
+    verifier.oidcProviders = providers;
+    jwkSetRequests.set(0);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    providers.close();
+    vertx.closeAndAwait();
+    provider.close();
+  }
+
+  @Test
+  public void testValidTokenIsVerifiedWithCachedKeys() throws JOSEException {
+    JWTClaimsSet claims = verify(idToken(key1, "client", "nonce"), "nonce");
+
+    assertEquals("subject", claims.getSubject());
+    assertEquals(0, jwkSetRequests.get());
+  }
+
+  @Test
+  public void testInvalidTokensAreRejected() throws JOSEException {
+    JWT otherNonce = idToken(key1, "client", "other");
+    assertThrows(AuthServiceException.class, () -> verify(otherNonce, "nonce"));
+    JWT otherAudience = idToken(key1, "other", "nonce");
+    assertThrows(AuthServiceException.class, () -> verify(otherAudience, "nonce"));
+    JWT unsigned = new PlainJWT(claims("client", "nonce"));
+    assertThrows(AuthServiceException.class, () -> verify(unsigned, "nonce"));
+
+    /* A token signed with another key under a published key ID. */
+    JWT forged = idToken(new RSAKeyGenerator(2048).keyID("key1").generate(), "client", "nonce");
+    assertThrows(AuthServiceException.class, () -> verify(forged, "nonce"));
+  }
+
+  @Test
+  public void testRotatedKeyIsRefetchedOnceForConcurrentLogins() throws JOSEException {
+    publishedKeys = new JWKSet(List.of(key1.toPublicJWK(), key2.toPublicJWK()));
+    JWT idToken = idToken(key2, "client", "nonce");
+
+    List<Uni<JWTClaimsSet>> logins = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      logins.add(verifier.verify(idToken, "local", "nonce"));
+    }
+    List<JWTClaimsSet> claims = Uni.join().all(logins).andFailFast().await().indefinitely();
+
+    assertEquals(20, claims.size());
+    assertEquals(1, jwkSetRequests.get());
+  }
+
+  @Test
+  public void testUnknownKeyRefetchesAreRateLimited() throws JOSEException {
+    JWT idToken = idToken(key2, "client", "nonce");
+
+    assertThrows(AuthServiceException.class, () -> verify(idToken, "nonce"));
+    assertThrows(AuthServiceException.class, () -> verify(idToken, "nonce"));
+    assertEquals(1, jwkSetRequests.get());
+  }
+
+  private JWTClaimsSet verify(JWT idToken, String nonce) {
+    return verifier.verify(idToken, "local", nonce).await().indefinitely();
+  }
+
+  private JWT idToken(RSAKey key, String audience, String nonce) throws JOSEException {
+    SignedJWT idToken =
+        new SignedJWT(
+            new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(key.getKeyID()).build(),
+            claims(audience, nonce));
+    idToken.sign(new RSASSASigner(key));
+    return idToken;
+  }
+
+  private JWTClaimsSet claims(String audience, String nonce) {
+    Date now = new Date();
+    return new JWTClaimsSet.Builder()
+        .issuer(issuer)
+        .subject("subject")
+        .audience(audience)
+        .issueTime(now)
+        .expirationTime(new Date(now.getTime() + 60_000))
+        .claim("nonce", nonce)
+        .build();
+  }
+
+  private void certs(HttpExchange exchange) throws IOException {
+    jwkSetRequests.incrementAndGet();
+    try {
+      /* Keep the refetch in flight while the concurrent logins arrive. */
+      Thread.sleep(100);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    respond(exchange, 200, publishedKeys.toString());
+  }
+}
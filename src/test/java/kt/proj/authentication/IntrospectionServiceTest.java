@@ -0,0 +1,102 @@
+package kt.proj.authentication;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.PlainJWT;
+import com.nimbusds.oauth2.sdk.token.BearerAccessToken;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import kt.proj.common.UserTokenManager;
+import kt.proj.config.AuthServiceConfig;
+import kt.proj.config.OIDCProviders;
+import kt.proj.models.IntrospectionModel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+public class IntrospectionServiceTest {
+  private static final String ISSUER = "https://idp.example.com";
+
+  private IntrospectionService introspectionService;
+  private UserTokenManager tokenManager;
+  private ExecutorService executor;
+
+  @BeforeEach
+  public void setUp() throws Exception {
+    OIDCProviders providers = Mockito.mock(OIDCProviders.class);
+    Mockito.when(providers.getProviderName(ISSUER)).thenReturn(Optional.of("local"));
+    String yaml =
+        "oidc_clients: []\n"
+            + "user_token:\n"
+            + "  issuer: http://www.example.com\n"
+            + "  audience: http://www.example.com\n"
+            + "  signature_algorithm: ES256\n"
+            + "  expiry: 600\n";
+    AuthServiceConfig config =
+        new ObjectMapper(new YAMLFactory()).readValue(yaml, AuthServiceConfig.class);
+    tokenManager = new UserTokenManager(config, providers);
+    executor = Executors.newFixedThreadPool(4);
+    introspectionService = new IntrospectionService();
+    introspectionService.tokenManager = tokenManager;
+    introspectionService.executor = executor;
+  }
+
+  @AfterEach
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testActiveTokenCarriesClaims() throws Exception {
+    String userToken = issueToken("subject");
+
+    IntrospectionModel result = introspectionService.introspect(userToken);
+    assertTrue(result.isActive());
+    assertEquals("subject", result.getSub());
+    assertEquals("local", result.getPrd());
+    long expiry = System.currentTimeMillis() / 1000 + 600;
+    assertTrue(Math.abs(result.getExp() - expiry) <= 1);
+  }
+
+  @Test
+  public void testRevokedTokenDisclosesNothing() throws Exception {
+    String userToken = issueToken("subject");
+    tokenManager.invalidateToken(tokenManager.getValidatedUserToken(userToken).orElseThrow());
+
+    IntrospectionModel result = introspectionService.introspect(userToken);
+    assertFalse(result.isActive());
+    assertNull(result.getSub());
+    assertNull(result.getExp());
+  }
+
+  @Test
+  public void testBatchResultsKeepTokenOrder() throws Exception {
+    List<String> userTokens = new ArrayList<>();
+    for (int i = 0; i < 5 * IntrospectionService.CHUNK_SIZE + 3; i++) {
+      userTokens.add(i % 3 == 0 ? "invalid.user.token" : issueToken("subject" + i));
+    }
+
+    IntrospectionModel[] results = introspectionService.introspect(userTokens);
+    assertEquals(userTokens.size(), results.length);
+    for (int i = 0; i < results.length; i++) {
+      assertEquals(i % 3 != 0, results[i].isActive());
+      assertEquals(i % 3 != 0 ? "subject" + i : null, results[i].getSub());
+    }
+  }
+
+  private String issueToken(String subject) {
+    return tokenManager.issueToken(
+        new PlainJWT(new JWTClaimsSet.Builder().issuer(ISSUER).subject(subject).build()),
+        new BearerAccessToken());
+  }
+}
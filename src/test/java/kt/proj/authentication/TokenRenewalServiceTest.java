@@ -0,0 +1,268 @@
+package kt.proj.authentication;
+
+import static kt.proj.common.MockProvider.awaitTrue;
+import static kt.proj.common.MockProvider.respond;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import com.nimbusds.jwt.JWT;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.PlainJWT;
+import com.nimbusds.oauth2.sdk.token.BearerAccessToken;
+import com.nimbusds.oauth2.sdk.token.RefreshToken;
+import com.nimbusds.oauth2.sdk.token.Tokens;
+import com.sun.net.httpserver.HttpExchange;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.vertx.mutiny.core.Vertx;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import kt.proj.common.AsyncHTTPClient;
+import kt.proj.common.BlockingExecutor;
+import kt.proj.common.MockProvider;
+import kt.proj.common.UserTokenManager;
+import kt.proj.common.session.ProviderTokens;
+import kt.proj.config.AuthServiceConfig;
+import kt.proj.config.OIDCProviders;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class TokenRenewalServiceTest {
+  private static final String PROVIDER = "local";
+
+  private final AtomicInteger tokenRequests = new AtomicInteger();
+  /* Refresh tokens received by the token endpoint, in order. */
+  private final Queue<String> refreshTokens = new ConcurrentLinkedQueue<>();
+  private volatile Response response = Response.SUCCESS;
+  /* Held by the token endpoint before it answers a slow response. */
+  private final CountDownLatch slowRelease = new CountDownLatch(1);
+  /* Time the renewal service is ahead of the wall clock, advanced by the tests. */
+  private final AtomicLong clockOffsetMillis = new AtomicLong();
+
+  private MockProvider provider;
+  private String issuer;
+  private Vertx vertx;
+  private OIDCProviders providers;
+  private UserTokenManager tokenManager;
+  private SimpleMeterRegistry meterRegistry;
+  private TokenRenewalService renewalService;
+
+  private enum Response {
+    SUCCESS,
+    INVALID_GRANT,
+    UNAVAILABLE,
+    SLOW
+  }
+
+  @BeforeEach
+  public void setUp() throws Exception {
+    provider = MockProvider.start().handle("/token", this::token);
+    issuer = provider.getIssuer();
+
+    String yaml =
+        "oidc_clients:\n"
+            + "  - provider_name: Local\n"
+            + "    discovery_url: "
+            + issuer
+            + "\n    client_id: client\n"
+            + "    client_secret: secret\n"
+            + "    request_scopes: [openid]\n"
+            + "    request_timeout: 300\n"
+            + "user_token:\n"
+            + "  issuer: http://www.example.com\n"
+            + "  audience: http://www.example.com\n"
+            + "  signature_algorithm: ES256\n"
+            + "  expiry: 600\n"
+            + "token_renewal:\n"
+            + "  renew_before: 60\n"
+            + "  interval: 1\n"
+            + "  max_rate: 2\n"
+            + "  retry_delay: 1\n";
+    AuthServiceConfig config =
+        new ObjectMapper(new YAMLFactory()).readValue(yaml, AuthServiceConfig.class);
+    vertx = Vertx.vertx();
+    AsyncHTTPClient httpClient = new AsyncHTTPClient(vertx, config);
+    providers = new OIDCProviders(config, httpClient);
+    tokenManager = new UserTokenManager(config, providers);
+    meterRegistry = new SimpleMeterRegistry();
+    renewalService =
+        new TokenRenewalService(
+            config,
+            providers,
+            tokenManager,
+            httpClient,
+            new BlockingExecutor(false, Executors.newCachedThreadPool()),
+            meterRegistry,
+            () -> System.currentTimeMillis() + clockOffsetMillis.get());
+    /* Renewals are run by the tests rather than by the scheduler. */
+    renewalService.close();
+  }
+
+  @AfterEach
+  public void tearDown() {
+    slowRelease.countDown();
+    providers.close();
+    vertx.closeAndAwait();
+    provider.close();
+  }
+
+  @Test
+  public void testRenewedTokensReplaceThoseOfTheSession() throws InterruptedException {
+    UUID sessionId = login("refresh-token");
+
+    assertEquals(1, renewalService.renewDue());
+
+    awaitTrue(() -> renewalCount("success") == 1);
+    ProviderTokens tokens = tokenManager.getSessionTokens(sessionId).orElseThrow();
+    assertEquals("renewed-access-token", tokens.getAccessToken().getValue());
+    assertEquals("renewed-refresh-token", tokens.getRefreshToken().getValue());
+    assertEquals(List.of("refresh-token"), new ArrayList<>(refreshTokens));
+    /* The renewed access token lives for an hour, so it is scheduled but not due. */
+    assertEquals(1, tokenManager.getRenewalSchedule().size());
+    assertEquals(0, renewalService.renewDue());
+  }
+
+  @Test
+  public void testRejectedRefreshTokenIsNoLongerRenewed() throws InterruptedException {
+    UUID sessionId = login("refresh-token");
+    response = Response.INVALID_GRANT;
+
+    assertEquals(1, renewalService.renewDue());
+
+    awaitTrue(() -> renewalCount("rejected") == 1);
+    assertEquals(0, tokenManager.getRenewalSchedule().size());
+    assertEquals(
+        "access-token",
+        tokenManager.getSessionTokens(sessionId).orElseThrow().getAccessToken().getValue());
+    assertEquals(0, renewalService.renewDue());
+    assertEquals(1, tokenRequests.get());
+  }
+
+  @Test
+  public void testUnavailableProviderIsRetriedAfterRetryDelay() throws InterruptedException {
+    UUID sessionId = login("refresh-token");
+    response = Response.UNAVAILABLE;
+
+    assertEquals(1, renewalService.renewDue());
+    awaitTrue(() -> renewalCount("failure") == 1);
+    assertEquals(1, tokenManager.getRenewalSchedule().size());
+
+    /* The retry isn't due before the retry delay. */
+    response = Response.SUCCESS;
+    assertEquals(0, renewalService.renewDue());
+    assertEquals(1, tokenRequests.get());
+
+    clockOffsetMillis.addAndGet(TimeUnit.SECONDS.toMillis(1));
+    assertEquals(1, renewalService.renewDue());
+    awaitTrue(() -> renewalCount("success") == 1);
+    assertEquals(2, tokenRequests.get());
+    assertEquals(
+        "renewed-access-token",
+        tokenManager.getSessionTokens(sessionId).orElseThrow().getAccessToken().getValue());
+  }
+
+  @Test
+  public void testTimedOutRenewalIsRetriedAfterRetryDelay() throws InterruptedException {
+    login("refresh-token");
+    response = Response.SLOW;
+
+    assertEquals(1, renewalService.renewDue());
+    awaitTrue(() -> renewalCount("failure") == 1);
+    assertEquals(0, renewalCount("success"));
+
+    response = Response.SUCCESS;
+    assertEquals(0, renewalService.renewDue());
+    clockOffsetMillis.addAndGet(TimeUnit.SECONDS.toMillis(1));
+    assertEquals(1, renewalService.renewDue());
+    awaitTrue(() -> renewalCount("success") == 1);
+    assertEquals(2, tokenRequests.get());
+  }
+
+  @Test
+  public void testRenewalsPerRunAreCappedByMaxRate() throws InterruptedException {
+    for (int i = 0; i < 5; i++) {
+      login("refresh-token" + i);
+    }
+
+    /* max_rate 2 per second over an interval of 1 second: 2 renewals per run. */
+    assertEquals(2, renewalService.renewDue());
+    awaitTrue(() -> renewalCount("success") == 2);
+    assertEquals(2, tokenRequests.get());
+
+    assertEquals(2, renewalService.renewDue());
+    awaitTrue(() -> renewalCount("success") == 4);
+    assertEquals(4, tokenRequests.get());
+
+    assertEquals(1, renewalService.renewDue());
+    awaitTrue(() -> renewalCount("success") == 5);
+    assertEquals(5, tokenRequests.get());
+    assertEquals(5, tokenManager.getRenewalSchedule().size());
+  }
+
+  /* Logs in with an access token due for renewal, since it expires within renew_before. */
+  private UUID login(String refreshToken) {
+    JWT idToken =
+        new PlainJWT(new JWTClaimsSet.Builder().issuer(issuer).subject("subject").build());
+    String userToken =
+        tokenManager.issueToken(
+            idToken,
+            new Tokens(
+                new BearerAccessToken("access-token", 30, null), new RefreshToken(refreshToken)));
+    return tokenManager.getValidatedUserToken(userToken).orElseThrow().getSessionId();
+  }
+
+  private double renewalCount(String result) {
+    return meterRegistry
+        .counter("provider_token.renewal", "provider", PROVIDER, "result", result)
+        .count();
+  }
+
+  private void token(HttpExchange exchange) throws IOException {
+    tokenRequests.incrementAndGet();
+    String form;
+    try (InputStream in = exchange.getRequestBody()) {
+      form = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    }
+    for (String parameter : form.split("&")) {
+      if (parameter.startsWith("refresh_token=")) {
+        refreshTokens.add(parameter.substring("refresh_token=".length()));
+      }
+    }
+
+    switch (response) {
+      case INVALID_GRANT:
+        respond(exchange, 400, "{\"error\":\"invalid_grant\"}");
+        return;
+      case UNAVAILABLE:
+        respond(exchange, 503, "{\"error\":\"temporarily_unavailable\"}");
+        return;
+      case SLOW:
+        try {
+          /* Outlasts the request timeout of the provider, until the test ends. */
+          slowRelease.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        break;
+      default:
+        break;
+    }
+    respond(
+        exchange,
+        200,
+        "{\"access_token\":\"renewed-access-token\",\"token_type\":\"Bearer\","
+            + "\"expires_in\":3600,\"refresh_token\":\"renewed-refresh-token\"}");
+  }
+}
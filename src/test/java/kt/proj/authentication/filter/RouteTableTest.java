@@ -0,0 +1,114 @@
+package kt.proj.authentication.filter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.UUID;
+import kt.proj.common.AuthServiceException;
+import kt.proj.common.UserPrincipal;
+import kt.proj.config.RouteConfig;
+import org.junit.jupiter.api.Test;
+
+public class RouteTableTest {
+
+  @Test
+  public void testExactRoutesMatchTrailingSlash() {
+    RouteTable routes = RouteTable.compile(List.of(), List.of("/oauth/callback"));
+
+    assertEquals(RouteTable.Policy.PUBLIC, routes.match("/oauth/callback").getPolicy());
+    assertEquals(RouteTable.Policy.PUBLIC, routes.match("/oauth/callback/").getPolicy());
+    assertEquals(RouteTable.Policy.AUTHENTICATED, routes.match("/oauth/callback/x").getPolicy());
+    assertEquals(RouteTable.Policy.AUTHENTICATED, routes.match("/oauth/callbacks").getPolicy());
+  }
+
+  @Test
+  public void testLongestPrefixMatchesWholeSegments() {
+    RouteTable routes =
+        RouteTable.compile(
+            List.of(
+                new RouteConfig("/docs", RouteConfig.PREFIX, RouteConfig.PUBLIC, null),
+                new RouteConfig(
+                    "/docs/private/", RouteConfig.PREFIX, RouteConfig.AUTHENTICATED, null)),
+            List.of());
+
+    assertEquals(RouteTable.Policy.PUBLIC, routes.match("/docs").getPolicy());
+    assertEquals(RouteTable.Policy.PUBLIC, routes.match("/docs/api").getPolicy());
+    assertEquals(RouteTable.Policy.AUTHENTICATED, routes.match("/docs/private").getPolicy());
+    assertEquals(RouteTable.Policy.AUTHENTICATED, routes.match("/docs/private/a").getPolicy());
+    assertEquals(RouteTable.Policy.AUTHENTICATED, routes.match("/documents").getPolicy());
+  }
+
+  @Test
+  public void testPatternsAreTriedAfterPrefixes() {
+    RouteTable routes =
+        RouteTable.compile(
+            List.of(
+                new RouteConfig("/status/[a-z]+", RouteConfig.PATTERN, RouteConfig.PUBLIC, null),
+                new RouteConfig("/status", RouteConfig.PREFIX, RouteConfig.AUTHENTICATED, null)),
+            List.of());
+
+    assertEquals(RouteTable.Policy.AUTHENTICATED, routes.match("/status/live").getPolicy());
+    RouteTable patterns =
+        RouteTable.compile(
+            List.of(
+                new RouteConfig("/status/[a-z]+", RouteConfig.PATTERN, RouteConfig.PUBLIC, null)),
+            List.of());
+    assertEquals(RouteTable.Policy.PUBLIC, patterns.match("/status/live").getPolicy());
+    assertEquals(RouteTable.Policy.AUTHENTICATED, patterns.match("/status/42").getPolicy());
+  }
+
+  @Test
+  public void testConfiguredRoutesOverrideBuiltInRoutes() {
+    RouteTable routes =
+        RouteTable.compile(
+            List.of(
+                new RouteConfig(
+                    "/introspect", RouteConfig.EXACT, RouteConfig.AUTHENTICATED, null)),
+            List.of("/introspect"));
+
+    assertEquals(RouteTable.Policy.AUTHENTICATED, routes.match("/introspect").getPolicy());
+  }
+
+  @Test
+  public void testProviderRoutesOnlyPermitTokensOfTheirProvider() {
+    RouteTable.Route route =
+        RouteTable.compile(
+                List.of(
+                    new RouteConfig("/google", RouteConfig.PREFIX, RouteConfig.PROVIDER, "Google")),
+                List.of())
+            .match("/google/drive");
+
+    assertEquals(RouteTable.Policy.PROVIDER, route.getPolicy());
+    assertTrue(route.permits(principal("google")));
+    assertFalse(route.permits(principal("Facebook")));
+    assertFalse(route.permits(principal(null)));
+  }
+
+  @Test
+  public void testInvalidRoutesAreRejected() {
+    assertThrows(
+        AuthServiceException.class,
+        () ->
+            RouteTable.compile(
+                List.of(new RouteConfig("/a", RouteConfig.EXACT, RouteConfig.PROVIDER, null)),
+                List.of()));
+    assertThrows(
+        AuthServiceException.class,
+        () ->
+            RouteTable.compile(
+                List.of(new RouteConfig("/a", "glob", RouteConfig.PUBLIC, null)), List.of()));
+    assertThrows(
+        AuthServiceException.class,
+        () ->
+            RouteTable.compile(
+                List.of(new RouteConfig("/a[", RouteConfig.PATTERN, RouteConfig.PUBLIC, null)),
+                List.of()));
+  }
+
+  private static UserPrincipal principal(String provider) {
+    return new UserPrincipal("subject", provider, UUID.randomUUID(), Long.MAX_VALUE, null);
+  }
+}
@@ -0,0 +1,216 @@
+package kt.proj.authentication.filter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.SecurityContext;
+import javax.ws.rs.core.UriInfo;
+import kt.proj.common.BlockingExecutor;
+import kt.proj.common.UserPrincipal;
+import kt.proj.common.UserTokenManager;
+import kt.proj.config.AuthServiceConfig;
+import org.jboss.resteasy.reactive.server.spi.ResteasyReactiveContainerRequestContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+
+public class SecurityFilterTest {
+  private static final String GOOGLE_TOKEN = "google.user.token";
+  private static final String GITHUB_TOKEN = "github.user.token";
+
+  /* Tasks handed to the blocking executor, run by the tests. */
+  private final List<Runnable> blockingTasks = new ArrayList<>();
+  private UserTokenManager tokenManager;
+  private SimpleMeterRegistry meterRegistry;
+  private SecurityFilter securityFilter;
+
+  @BeforeEach
+  public void setUp() throws Exception {
+    String yaml =
+        "oidc_clients: []\n"
+            + "routes:\n"
+            + "  - path: /myprofile\n"
+            + "    policy: provider\n"
+            + "    provider: Google\n";
+    AuthServiceConfig config =
+        new ObjectMapper(new YAMLFactory()).readValue(yaml, AuthServiceConfig.class);
+    tokenManager = mock(UserTokenManager.class);
+    when(tokenManager.getValidatedUserToken(any())).thenReturn(Optional.empty());
+    when(tokenManager.getValidatedUserToken(GOOGLE_TOKEN))
+        .thenReturn(Optional.of(principal("Google")));
+    when(tokenManager.getValidatedUserToken(GITHUB_TOKEN))
+        .thenReturn(Optional.of(principal("GitHub")));
+    meterRegistry = new SimpleMeterRegistry();
+    securityFilter =
+        new SecurityFilter(
+            config, tokenManager, new BlockingExecutor(false, blockingTasks::add), meterRegistry);
+  }
+
+  @Test
+  public void testValidTokenSetsSecurityContext() {
+    ResteasyReactiveContainerRequestContext request = request("/other", "Bearer " + GOOGLE_TOKEN);
+
+    securityFilter.filter(request);
+
+    assertEquals("subject", securityContext(request).getUserPrincipal().getName());
+    verify(request, never()).abortWith(any());
+    verify(request, never()).suspend();
+  }
+
+  @Test
+  public void testTokenOfAnotherProviderIsForbidden() {
+    ResteasyReactiveContainerRequestContext request =
+        request("/myprofile", "Bearer " + GITHUB_TOKEN);
+
+    securityFilter.filter(request);
+
+    assertEquals(403, abortedWith(request).getStatus());
+    assertEquals(1, rejections("wrong_provider"));
+    verify(request, never()).setSecurityContext(any());
+  }
+
+  @Test
+  public void testMalformedAuthorizationHeadersAreRejected() {
+    for (String header : List.of("Basic dXNlcjpwYXNz", "Bearer ", "Bearer", "Token abc")) {
+      ResteasyReactiveContainerRequestContext request = request("/myprofile", header);
+
+      securityFilter.filter(request);
+
+      assertEquals(401, abortedWith(request).getStatus(), header);
+    }
+    assertEquals(4, rejections("malformed_token"));
+    verify(tokenManager, never()).getValidatedUserToken(any());
+  }
+
+  @Test
+  public void testBearerSchemeIsCaseInsensitive() {
+    ResteasyReactiveContainerRequestContext request = request("/other", "bearer " + GOOGLE_TOKEN);
+
+    securityFilter.filter(request);
+
+    assertEquals("subject", securityContext(request).getUserPrincipal().getName());
+  }
+
+  @Test
+  public void testMissingAndInvalidTokensAreUnauthorized() {
+    ResteasyReactiveContainerRequestContext missing = request("/other", null);
+    ResteasyReactiveContainerRequestContext invalid = request("/other", "Bearer invalid");
+
+    securityFilter.filter(missing);
+    securityFilter.filter(invalid);
+
+    assertEquals(401, abortedWith(missing).getStatus());
+    assertEquals(401, abortedWith(invalid).getStatus());
+    /* Responses are mutable, so rejected requests mustn't share one. */
+    assertNotSame(abortedWith(missing), abortedWith(invalid));
+    assertEquals(1, rejections("missing_token"));
+    assertEquals(1, rejections("invalid_token"));
+  }
+
+  @Test
+  public void testPublicPathIsNotAuthenticated() {
+    ResteasyReactiveContainerRequestContext request = request("/authenticate", null);
+
+    securityFilter.filter(request);
+
+    verify(request, never()).abortWith(any());
+    verify(request, never()).getHeaderString(any());
+  }
+
+  @Test
+  public void testBlockingValidationSuspendsAndResumesRequest() {
+    when(tokenManager.isValidationBlocking()).thenReturn(true);
+    ResteasyReactiveContainerRequestContext request = request("/other", "Bearer " + GOOGLE_TOKEN);
+
+    securityFilter.filter(request);
+
+    /* The token is only validated once the request is suspended & off the event loop. */
+    verify(request).suspend();
+    verify(tokenManager, never()).getValidatedUserToken(any());
+    assertEquals(1, blockingTasks.size());
+    blockingTasks.get(0).run();
+
+    InOrder order = inOrder(request);
+    order.verify(request).suspend();
+    order.verify(request).setSecurityContext(any());
+    order.verify(request).resume();
+  }
+
+  @Test
+  public void testBlockingRejectionResumesAbortedRequest() {
+    when(tokenManager.isValidationBlocking()).thenReturn(true);
+    ResteasyReactiveContainerRequestContext request =
+        request("/myprofile", "Bearer " + GITHUB_TOKEN);
+
+    securityFilter.filter(request);
+    blockingTasks.get(0).run();
+
+    assertEquals(403, abortedWith(request).getStatus());
+    verify(request).resume();
+  }
+
+  @Test
+  public void testBlockingFailureResumesRequestWithIt() {
+    when(tokenManager.isValidationBlocking()).thenReturn(true);
+    IllegalStateException failure = new IllegalStateException("Session store unavailable");
+    when(tokenManager.getValidatedUserToken(GOOGLE_TOKEN)).thenThrow(failure);
+    ResteasyReactiveContainerRequestContext request = request("/other", "Bearer " + GOOGLE_TOKEN);
+
+    securityFilter.filter(request);
+    blockingTasks.get(0).run();
+
+    ArgumentCaptor<Throwable> resumedWith = ArgumentCaptor.forClass(Throwable.class);
+    verify(request).resume(resumedWith.capture());
+    assertSame(failure, resumedWith.getValue());
+    verify(request, never()).resume();
+  }
+
+  private static UserPrincipal principal(String provider) {
+    return new UserPrincipal(
+        "subject", provider, UUID.randomUUID(), System.currentTimeMillis() + 60_000, null);
+  }
+
+  private double rejections(String reason) {
+    return meterRegistry.counter("auth.rejected", "reason", reason).count();
+  }
+
+  private static ResteasyReactiveContainerRequestContext request(
+      String path, String authorization) {
+    UriInfo uriInfo = mock(UriInfo.class);
+    when(uriInfo.getPath()).thenReturn(path);
+    ResteasyReactiveContainerRequestContext requestContext =
+        mock(ResteasyReactiveContainerRequestContext.class);
+    when(requestContext.getUriInfo()).thenReturn(uriInfo);
+    when(requestContext.getHeaderString("Authorization")).thenReturn(authorization);
+    return requestContext;
+  }
+
+  private static Response abortedWith(ResteasyReactiveContainerRequestContext request) {
+    ArgumentCaptor<Response> response = ArgumentCaptor.forClass(Response.class);
+    verify(request).abortWith(response.capture());
+    return response.getValue();
+  }
+
+  private static SecurityContext securityContext(ResteasyReactiveContainerRequestContext request) {
+    ArgumentCaptor<SecurityContext> securityContext =
+        ArgumentCaptor.forClass(SecurityContext.class);
+    verify(request).setSecurityContext(securityContext.capture());
+    return securityContext.getValue();
+  }
+}
@@ -0,0 +1,221 @@
+package kt.proj.common;
+
+import static kt.proj.common.MockProvider.respond;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import com.nimbusds.oauth2.sdk.http.HTTPRequest;
+import com.nimbusds.oauth2.sdk.http.HTTPResponse;
+import com.sun.net.httpserver.HttpExchange;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.smallrye.mutiny.Uni;
+import io.vertx.ext.web.client.WebClientOptions;
+import io.vertx.mutiny.core.Vertx;
+import java.io.IOException;
+import java.net.URL;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import kt.proj.config.AuthServiceConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Isolation of providers by their guards, against a local provider whose slow endpoint advances
+ * the clock of the guards by the time it takes to respond, instead of waiting for it.
+ */
+public class AsyncHTTPClientTest {
+  private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+  /* Time read by the guards in nanoseconds, advanced by the tests & the slow provider. */
+  private final AtomicLong nanos = new AtomicLong();
+  /* Time the slow provider takes to respond, as seen by the guards, & its response status. */
+  private volatile long slowDelayMillis;
+  private volatile int slowStatus = 200;
+  /* Held by the slow provider before responding, if set. */
+  private volatile CountDownLatch slowRelease;
+  private MockProvider provider;
+  private String baseURL;
+  private Vertx vertx;
+  private SimpleMeterRegistry meterRegistry;
+  private AsyncHTTPClient httpClient;
+
+  @BeforeEach
+  public void setUp() throws IOException {
+    provider =
+        MockProvider.start()
+            .handle("/slow", this::respondSlowly)
+            .handle("/fast", exchange -> respond(exchange, 200, "{}"));
+    baseURL = provider.getIssuer();
+    vertx = Vertx.vertx();
+    meterRegistry = new SimpleMeterRegistry();
+  }
+
+  @AfterEach
+  public void tearDown() {
+    httpClient.close();
+    vertx.closeAndAwait();
+    provider.close();
+  }
+
+  @Test
+  public void testBulkheadIsolatesSlowProvider() throws Exception {
+    httpClient = client("    max_concurrent_requests: 4\n    slow_call_threshold: 5000\n");
+    slowRelease = new CountDownLatch(1);
+
+    List<CompletableFuture<HTTPResponse>> slowResponses = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      slowResponses.add(send("slow").subscribeAsCompletionStage());
+    }
+    /* The slow provider holds its responses until the fast one answered. */
+    assertEquals(200, send("fast").await().atMost(TIMEOUT).getStatusCode());
+    slowRelease.countDown();
+
+    int rejected = 0;
+    for (CompletableFuture<HTTPResponse> response : slowResponses) {
+      try {
+        assertEquals(200, response.get().getStatusCode());
+      } catch (ExecutionException e) {
+        assertTrue(e.getCause() instanceof ProviderUnavailableException);
+        rejected++;
+      }
+    }
+    assertEquals(6, rejected);
+    assertEquals(6, rejections("slow", "bulkhead"));
+  }
+
+  @Test
+  public void testCircuitBreakerOpensOnSlowCallsAndProbesRestoreTraffic() throws Exception {
+    httpClient = client("    slow_call_threshold: 50\n    open_duration: 300\n");
+    slowDelayMillis = 51;
+
+    List<Uni<HTTPResponse>> slowCalls = new ArrayList<>();
+    for (int i = 0; i < ProviderGuard.MINIMUM_CALLS; i++) {
+      slowCalls.add(send("slow"));
+    }
+    Uni.join().all(slowCalls).andCollectFailures().await().atMost(TIMEOUT);
+    assertEquals(ProviderGuard.State.OPEN, httpClient.getCircuitState("slow").orElseThrow());
+    assertEquals(1, meterRegistry.get("provider.circuit_breaker.state").tag("provider", "slow")
+        .gauge().value());
+    assertThrows(ProviderUnavailableException.class, () -> send("slow").await().atMost(TIMEOUT));
+    assertEquals(1, rejections("slow", "circuit_open"));
+    assertEquals(200, send("fast").await().atMost(TIMEOUT).getStatusCode());
+
+    slowDelayMillis = 0;
+    nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(300));
+    for (int i = 0; i < ProviderGuard.PROBE_CALLS; i++) {
+      assertEquals(200, send("slow").await().atMost(TIMEOUT).getStatusCode());
+    }
+    assertEquals(ProviderGuard.State.CLOSED, httpClient.getCircuitState("slow").orElseThrow());
+  }
+
+  @Test
+  public void testFailedProbeReopensCircuitBreaker() throws Exception {
+    httpClient = client("    open_duration: 300\n");
+    slowStatus = 503;
+
+    for (int i = 0; i < ProviderGuard.MINIMUM_CALLS; i++) {
+      assertEquals(503, send("slow").await().atMost(TIMEOUT).getStatusCode());
+    }
+    assertEquals(ProviderGuard.State.OPEN, httpClient.getCircuitState("slow").orElseThrow());
+
+    nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(300));
+    assertEquals(503, send("slow").await().atMost(TIMEOUT).getStatusCode());
+    assertEquals(ProviderGuard.State.OPEN, httpClient.getCircuitState("slow").orElseThrow());
+    assertThrows(ProviderUnavailableException.class, () -> send("slow").await().atMost(TIMEOUT));
+  }
+
+  @Test
+  public void testRequestFailingBeforeItIsSentReleasesItsPermit() throws Exception {
+    httpClient = client("    max_concurrent_requests: 4\n");
+    /* The web client refuses the scheme, or fails to connect to the port if it accepts it. */
+    HTTPRequest request =
+        new HTTPRequest(HTTPRequest.Method.GET, new URL("ftp://127.0.0.1:1/"));
+
+    for (int i = 0; i < 8; i++) {
+      Uni<HTTPResponse> response = httpClient.send("slow", request, TIMEOUT);
+      assertThrows(RuntimeException.class, () -> response.await().atMost(TIMEOUT));
+    }
+    assertEquals(
+        4,
+        meterRegistry.get("provider.requests.available").tag("provider", "slow").gauge().value());
+    assertEquals(0, rejections("slow", "bulkhead"));
+  }
+
+  @Test
+  public void testPlainHttpEndpointOfProviderDiscoveredOverTlsUsesHttp11() throws Exception {
+    String yaml =
+        "oidc_clients:\n"
+            + "  - provider_name: tls\n"
+            + "    discovery_url: https://idp.example.com\n"
+            + "    http2: true\n";
+    AuthServiceConfig config =
+        new ObjectMapper(new YAMLFactory()).readValue(yaml, AuthServiceConfig.class);
+    httpClient =
+        new AsyncHTTPClient(vertx, config.getOidcClients(), new WebClientOptions(), meterRegistry);
+
+    HTTPRequest request = new HTTPRequest(HTTPRequest.Method.GET, new URL(baseURL + "/fast"));
+    /* The local provider speaks neither TLS nor clear-text HTTP/2. */
+    HTTPResponse response = httpClient.send("tls", request, TIMEOUT).await().atMost(TIMEOUT);
+    assertEquals(200, response.getStatusCode());
+  }
+
+  private Uni<HTTPResponse> send(String providerName) throws IOException {
+    return send(providerName, TIMEOUT);
+  }
+
+  private Uni<HTTPResponse> send(String providerName, Duration timeout) throws IOException {
+    HTTPRequest request =
+        new HTTPRequest(HTTPRequest.Method.GET, new URL(baseURL + "/" + providerName));
+    return httpClient.send(providerName, request, timeout);
+  }
+
+  private double rejections(String providerName, String reason) {
+    return meterRegistry
+        .get("provider.requests.rejected")
+        .tags("provider", providerName, "reason", reason)
+        .counter()
+        .count();
+  }
+
+  /* Builds a client for the slow provider with the specified settings and a default fast one. */
+  private AsyncHTTPClient client(String slowSettings) throws IOException {
+    String yaml =
+        "oidc_clients:\n"
+            + "  - provider_name: slow\n"
+            + "    discovery_url: "
+            + baseURL
+            + "/slow\n"
+            + slowSettings
+            + "  - provider_name: fast\n"
+            + "    discovery_url: "
+            + baseURL
+            + "/fast\n";
+    AuthServiceConfig config =
+        new ObjectMapper(new YAMLFactory()).readValue(yaml, AuthServiceConfig.class);
+    return new AsyncHTTPClient(
+        vertx, config.getOidcClients(), new WebClientOptions(), meterRegistry, nanos::get);
+  }
+
+  private void respondSlowly(HttpExchange exchange) throws IOException {
+    CountDownLatch release = slowRelease;
+    if (release != null) {
+      try {
+        release.await(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(slowDelayMillis));
+    respond(exchange, slowStatus, "{}");
+  }
+}
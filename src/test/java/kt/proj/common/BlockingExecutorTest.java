@@ -0,0 +1,51 @@
+package kt.proj.common;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.jupiter.api.Test;
+
+public class BlockingExecutorTest {
+
+  @Test
+  public void testVirtualThreadsRunTasksWhenSupported() throws Exception {
+    boolean supported =
+        Arrays.stream(Executors.class.getMethods())
+            .anyMatch(method -> method.getName().equals("newVirtualThreadPerTaskExecutor"));
+    ExecutorService workerPool = Executors.newSingleThreadExecutor();
+    Thread worker = workerPool.submit(Thread::currentThread).get();
+    BlockingExecutor executor = new BlockingExecutor(true, workerPool);
+
+    assertEquals(supported, executor.isVirtual());
+    CompletableFuture<Thread> thread = new CompletableFuture<>();
+    executor.execute(() -> thread.complete(Thread.currentThread()));
+    if (supported) {
+      assertTrue((Boolean) Thread.class.getMethod("isVirtual").invoke(thread.get(5, SECONDS)));
+    } else {
+      /* Falls back to the worker pool before Java 21. */
+      assertSame(worker, thread.get(5, SECONDS));
+    }
+    executor.close();
+    workerPool.shutdown();
+  }
+
+  @Test
+  public void testWorkerPoolRunsTasksByDefault() throws Exception {
+    ExecutorService workerPool = Executors.newSingleThreadExecutor();
+    Thread worker = workerPool.submit(Thread::currentThread).get();
+    BlockingExecutor executor = new BlockingExecutor(false, workerPool);
+
+    assertFalse(executor.isVirtual());
+    CompletableFuture<Thread> thread = new CompletableFuture<>();
+    executor.execute(() -> thread.complete(Thread.currentThread()));
+    assertSame(worker, thread.get(5, SECONDS));
+    workerPool.shutdown();
+  }
+}
@@ -0,0 +1,122 @@
+package kt.proj.common;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Local OpenID provider for tests, on a JDK HTTP server serving its discovery document and the
+ * endpoints each test adds. Also holds the helpers shared by tests of remote calls.
+ */
+public final class MockProvider implements AutoCloseable {
+  private final HttpServer server;
+  private final ExecutorService executor;
+  private final String issuer;
+
+  private MockProvider(HttpServer server, ExecutorService executor) {
+    this.server = server;
+    this.executor = executor;
+    this.issuer = "http://127.0.0.1:" + server.getAddress().getPort();
+  }
+
+  /**
+   * Starts a provider on a free local port, serving its discovery document.
+   *
+   * @return started provider, to be closed by the test.
+   */
+  public static MockProvider start() throws IOException {
+    HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    ExecutorService executor = Executors.newCachedThreadPool();
+    server.setExecutor(executor);
+    MockProvider provider = new MockProvider(server, executor);
+    server.createContext(
+        "/.well-known/openid-configuration",
+        exchange -> respond(exchange, 200, discoveryDocument(provider.issuer)));
+    server.start();
+    return provider;
+  }
+
+  /** Returns the issuer of the provider, its base URL, which is also its discovery URL. */
+  public String getIssuer() {
+    return issuer;
+  }
+
+  /**
+   * Serves the requests of the specified path, and of the paths below it, with a handler.
+   *
+   * @param path path relative to the issuer, like {@code /token}.
+   * @param handler handler of the requests, run on a thread of its own.
+   * @return this provider.
+   */
+  public MockProvider handle(String path, HttpHandler handler) {
+    server.createContext(path, handler);
+    return this;
+  }
+
+  /** Stops the server and interrupts the handlers still running. */
+  @Override
+  public void close() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+
+  /**
+   * Returns the discovery document of a provider serving its endpoints below its issuer: {@code
+   * /auth}, {@code /token}, {@code /userinfo} & {@code /certs}.
+   */
+  public static String discoveryDocument(String issuer) {
+    return "{\"issuer\":\""
+        + issuer
+        + "\",\"authorization_endpoint\":\""
+        + issuer
+        + "/auth\",\"token_endpoint\":\""
+        + issuer
+        + "/token\",\"userinfo_endpoint\":\""
+        + issuer
+        + "/userinfo\",\"jwks_uri\":\""
+        + issuer
+        + "/certs\",\"response_types_supported\":[\"code\"],"
+        + "\"subject_types_supported\":[\"public\"],"
+        + "\"id_token_signing_alg_values_supported\":[\"RS256\"]}";
+  }
+
+  /**
+   * Responds to an exchange with a JSON body.
+   *
+   * @param exchange exchange to respond to.
+   * @param status HTTP status of the response.
+   * @param body JSON body of the response.
+   */
+  public static void respond(HttpExchange exchange, int status, String body) throws IOException {
+    byte[] content = body.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "application/json");
+    exchange.sendResponseHeaders(status, content.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(content);
+    }
+  }
+
+  /**
+   * Waits for a condition met by work running in the background, like a response handled on the
+   * event loop, polling it for at most 5 seconds.
+   *
+   * @param condition condition to wait for.
+   * @throws AssertionError if the condition isn't met in time.
+   */
+  public static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (!condition.getAsBoolean()) {
+      if (System.currentTimeMillis() > deadline) {
+        throw new AssertionError("Condition not met within 5 seconds");
+      }
+      Thread.sleep(20);
+    }
+  }
+}
@@ -0,0 +1,255 @@
+package kt.proj.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import com.nimbusds.jose.JWEObject;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.gen.ECKeyGenerator;
+import com.nimbusds.jose.jwk.gen.OctetSequenceKeyGenerator;
+import com.nimbusds.jwt.JWT;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.PlainJWT;
+import com.nimbusds.oauth2.sdk.Scope;
+import com.nimbusds.oauth2.sdk.token.AccessToken;
+import com.nimbusds.oauth2.sdk.token.BearerAccessToken;
+import com.nimbusds.oauth2.sdk.token.RefreshToken;
+import com.nimbusds.oauth2.sdk.token.Tokens;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.UUID;
+import kt.proj.common.session.ProviderTokens;
+import kt.proj.config.AuthServiceConfig;
+import kt.proj.config.OIDCProviders;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+
+public class UserTokenManagerTest {
+  private static final String ISSUER = "https://idp.example.com";
+
+  @TempDir Path directory;
+
+  private String privateKey;
+  private OIDCProviders providers;
+
+  @BeforeEach
+  public void setUp() throws Exception {
+    privateKey = new ECKeyGenerator(Curve.P_256).generate().toJSONString();
+    providers = Mockito.mock(OIDCProviders.class);
+    Mockito.when(providers.getProviderName(ISSUER)).thenReturn(Optional.of("local"));
+  }
+
+  @Test
+  public void testStatelessTokenCarriesSealedAccessToken() throws Exception {
+    UserTokenManager tokenManager = new UserTokenManager(config(encryptionKey()), providers);
+    AccessToken accessToken = new BearerAccessToken("access-token", 3600, new Scope("openid"));
+
+    String userToken = tokenManager.issueToken(idToken("subject"), accessToken);
+    assertFalse(userToken.contains("access-token"));
+    JWEObject.parse(userToken);
+
+    UserPrincipal validatedToken = tokenManager.getValidatedUserToken(userToken).orElseThrow();
+    assertEquals("subject", validatedToken.getName());
+    assertEquals("local", validatedToken.getProvider());
+    AccessToken sealedToken = tokenManager.getAccessToken(validatedToken).orElseThrow();
+    assertEquals(accessToken.getValue(), sealedToken.getValue());
+    assertEquals(accessToken.getScope(), sealedToken.getScope());
+  }
+
+  @Test
+  public void testRevokedStatelessTokenIsDenied() throws Exception {
+    UserTokenManager tokenManager = new UserTokenManager(config(encryptionKey()), providers);
+    String userToken = tokenManager.issueToken(idToken("subject"), new BearerAccessToken());
+    String otherToken = tokenManager.issueToken(idToken("subject"), new BearerAccessToken());
+    UserPrincipal validatedToken = tokenManager.getValidatedUserToken(userToken).orElseThrow();
+
+    tokenManager.invalidateToken(validatedToken);
+    assertFalse(tokenManager.getValidatedUserToken(userToken).isPresent());
+    assertFalse(tokenManager.getAccessToken(validatedToken).isPresent());
+    assertTrue(tokenManager.getValidatedUserToken(otherToken).isPresent());
+  }
+
+  @Test
+  public void testTokenSealedWithAnotherKeyIsRejected() throws Exception {
+    String userToken =
+        new UserTokenManager(config(encryptionKey()), providers)
+            .issueToken(idToken("subject"), new BearerAccessToken());
+
+    UserTokenManager tokenManager = new UserTokenManager(config(encryptionKey()), providers);
+    assertFalse(tokenManager.getValidatedUserToken(userToken).isPresent());
+  }
+
+  @Test
+  public void testMetricsTimeSigningVerificationAndCountCacheHits() throws Exception {
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    UserTokenManager tokenManager =
+        new UserTokenManager(config(encryptionKey()), providers, meterRegistry);
+    String userToken = tokenManager.issueToken(idToken("subject"), new BearerAccessToken());
+    tokenManager.getValidatedUserToken(userToken).orElseThrow();
+    tokenManager.getValidatedUserToken(userToken).orElseThrow();
+    assertFalse(tokenManager.getValidatedUserToken("invalid.user.token").isPresent());
+
+    assertEquals(1, meterRegistry.timer("user_token.sign", "provider", "local").count());
+    assertEquals(1, meterRegistry.timer("user_token.verify", "provider", "local").count());
+    assertEquals(1, meterRegistry.timer("user_token.verify", "provider", "unknown").count());
+    assertEquals(
+        1,
+        meterRegistry
+            .get("cache.gets")
+            .tags("cache", "verified_user_tokens", "result", "hit")
+            .counter()
+            .count());
+    assertEquals(0, meterRegistry.get("user_token.revoked").gauge().value());
+  }
+
+  @Test
+  public void testCachedTokenIsDeniedOnceItExpires() throws Exception {
+    UserTokenManager tokenManager = new UserTokenManager(config(encryptionKey()), providers);
+    /* Entries of a cache whose clock is stopped outlive the tokens they hold. */
+    tokenManager.verifiedTokens = new VerifiedTokenCache(100, new SimpleMeterRegistry(), () -> 0L);
+    String userToken = tokenManager.issueToken(idToken("subject"), new BearerAccessToken());
+    UserPrincipal principal = tokenManager.getValidatedUserToken(userToken).orElseThrow();
+    tokenManager.verifiedTokens.put(
+        userToken,
+        new UserPrincipal(
+            principal.getName(),
+            principal.getProvider(),
+            principal.getSessionId(),
+            System.currentTimeMillis() + 50,
+            principal.getSealedAccessToken()));
+    Thread.sleep(100);
+
+    assertFalse(tokenManager.getValidatedUserToken(userToken).isPresent());
+    assertNull(tokenManager.verifiedTokens.get(userToken));
+    assertTrue(tokenManager.getValidatedUserToken(userToken).isPresent());
+  }
+
+  @Test
+  public void testCachedTokenOfRevokedSessionIsDenied() throws Exception {
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    UserTokenManager tokenManager =
+        new UserTokenManager(mappedConfig(null), providers, meterRegistry);
+    String userToken = tokenManager.issueToken(idToken("subject"), new BearerAccessToken());
+    String otherToken = tokenManager.issueToken(idToken("subject"), new BearerAccessToken());
+    UserPrincipal principal = tokenManager.getValidatedUserToken(userToken).orElseThrow();
+    tokenManager.getValidatedUserToken(otherToken).orElseThrow();
+
+    tokenManager.invalidateToken(principal);
+    assertFalse(tokenManager.getValidatedUserToken(userToken).isPresent());
+    assertTrue(tokenManager.getValidatedUserToken(otherToken).isPresent());
+    assertEquals(2, cacheGets(meterRegistry, "hit"));
+    /* The revoked token was evicted when it was denied, so it misses the cache from then on. */
+    assertFalse(tokenManager.getValidatedUserToken(userToken).isPresent());
+    assertEquals(2, cacheGets(meterRegistry, "hit"));
+    assertEquals(3, cacheGets(meterRegistry, "miss"));
+    tokenManager.close();
+  }
+
+  @Test
+  public void testStatelessModeRequiresEncryptionKey() {
+    assertThrows(
+        AuthServiceException.class, () -> new UserTokenManager(config(null), providers));
+  }
+
+  @Test
+  public void testPersistedRefreshTokenIsSealed() throws Exception {
+    UserTokenManager tokenManager = new UserTokenManager(mappedConfig(encryptionKey()), providers);
+    UUID sessionId = issueRenewableToken(tokenManager);
+    tokenManager.close();
+
+    byte[] journal = Files.readAllBytes(directory.resolve("sessions.journal"));
+    assertFalse(new String(journal, StandardCharsets.ISO_8859_1).contains("refresh-token"));
+    ProviderTokens tokens = tokenManager.getSessionTokens(sessionId).orElseThrow();
+    assertEquals("refresh-token", tokens.getRefreshToken().getValue());
+  }
+
+  @Test
+  public void testRefreshTokenIsNotPersistedWithoutEncryptionKey() throws Exception {
+    UserTokenManager tokenManager = new UserTokenManager(mappedConfig(null), providers);
+    UUID sessionId = issueRenewableToken(tokenManager);
+    tokenManager.close();
+
+    assertNull(tokenManager.getRenewalSchedule());
+    byte[] journal = Files.readAllBytes(directory.resolve("sessions.journal"));
+    assertFalse(new String(journal, StandardCharsets.ISO_8859_1).contains("refresh-token"));
+    assertNull(tokenManager.getSessionTokens(sessionId).orElseThrow().getRefreshToken());
+  }
+
+  private static UUID issueRenewableToken(UserTokenManager tokenManager) {
+    String userToken =
+        tokenManager.issueToken(
+            idToken("subject"),
+            new Tokens(
+                new BearerAccessToken("access-token", 300, null),
+                new RefreshToken("refresh-token")));
+    return tokenManager.getValidatedUserToken(userToken).orElseThrow().getSessionId();
+  }
+
+  private static double cacheGets(SimpleMeterRegistry meterRegistry, String result) {
+    return meterRegistry
+        .get("cache.gets")
+        .tags("cache", "verified_user_tokens", "result", result)
+        .counter()
+        .count();
+  }
+
+  private static String encryptionKey() throws Exception {
+    return new OctetSequenceKeyGenerator(256).generate().toJSONString();
+  }
+
+  private static JWT idToken(String subject) {
+    return new PlainJWT(new JWTClaimsSet.Builder().issuer(ISSUER).subject(subject).build());
+  }
+
+  private AuthServiceConfig config(String encryptionKey) throws Exception {
+    String yaml =
+        "oidc_clients: []\n"
+            + "user_token:\n"
+            + "  issuer: http://www.example.com\n"
+            + "  audience: http://www.example.com\n"
+            + "  signature_algorithm: ES256\n"
+            + "  private_key: "
+            + base64(privateKey)
+            + "\n  expiry: 600\n"
+            + (encryptionKey != null ? "  encryption_key: " + base64(encryptionKey) + "\n" : "")
+            + "  session_store:\n"
+            + "    type: stateless\n"
+            + "    capacity: 1000\n";
+    return new ObjectMapper(new YAMLFactory()).readValue(yaml, AuthServiceConfig.class);
+  }
+
+  private AuthServiceConfig mappedConfig(String encryptionKey) throws Exception {
+    String yaml =
+        "oidc_clients: []\n"
+            + "user_token:\n"
+            + "  issuer: http://www.example.com\n"
+            + "  audience: http://www.example.com\n"
+            + "  signature_algorithm: ES256\n"
+            + "  private_key: "
+            + base64(privateKey)
+            + "\n  expiry: 600\n"
+            + (encryptionKey != null ? "  encryption_key: " + base64(encryptionKey) + "\n" : "")
+            + "  session_store:\n"
+            + "    type: mapped\n"
+            + "    capacity: 1000\n"
+            + "    file: "
+            + directory.resolve("sessions.journal")
+            + "\n    file_size: 4096\n";
+    return new ObjectMapper(new YAMLFactory()).readValue(yaml, AuthServiceConfig.class);
+  }
+
+  private static String base64(String value) {
+    return Base64.getEncoder().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,86 @@
+package kt.proj.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.crypto.Ed25519Verifier;
+import com.nimbusds.jose.crypto.factories.DefaultJWSVerifierFactory;
+import com.nimbusds.jose.jwk.AsymmetricJWK;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.OctetKeyPair;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+import kt.proj.common.signing.SigningKeys;
+import kt.proj.config.UserTokenConfig;
+import org.junit.jupiter.api.Test;
+
+public class UserTokenMinterTest {
+  private static final String ISSUER = "http://www.example.com/\"issuer\"";
+  private static final String AUDIENCE = "http://www.example.com";
+
+  @Test
+  public void testMintedTokensAreVerifiedByNimbus() throws Exception {
+    UserTokenMinter minter = new UserTokenMinter(ISSUER, AUDIENCE);
+    for (String algorithm : List.of("RS256", "ES256", "EdDSA")) {
+      SigningKeys signingKeys = SigningKeys.create(config(algorithm));
+      /* Quotes, backslashes, control & non-ASCII characters are escaped or UTF-8 encoded. */
+      String subject = "sub\"ject\\ \u0001\t é € 😀 \uD800";
+      UUID sessionId = minter.newSessionId();
+
+      SignedJWT token =
+          SignedJWT.parse(
+              minter.mint(
+                  signingKeys.getActiveKey(), subject, sessionId, 1_600_000_000L, 1_600_000_600L,
+                  "Goo\"gle"));
+
+      assertTrue(token.verify(verifier(signingKeys)), algorithm);
+      assertEquals(signingKeys.getActiveKey().getHeader().getKeyID(), token.getHeader().getKeyID());
+      JWTClaimsSet claims = token.getJWTClaimsSet();
+      assertEquals(subject.replace('\uD800', '?'), claims.getSubject());
+      assertEquals(sessionId.toString(), claims.getJWTID());
+      assertEquals(ISSUER, claims.getIssuer());
+      assertEquals(List.of(AUDIENCE), claims.getAudience());
+      assertEquals(1_600_000_000_000L, claims.getIssueTime().getTime());
+      assertEquals(1_600_000_600_000L, claims.getExpirationTime().getTime());
+      assertEquals("Goo\"gle", claims.getStringClaim(UserTokenManager.PROVIDER_CLAIM));
+    }
+  }
+
+  @Test
+  public void testSessionIdsAreRandomUUIDs() {
+    UserTokenMinter minter = new UserTokenMinter(ISSUER, AUDIENCE);
+    UUID sessionId = minter.newSessionId();
+
+    assertEquals(4, sessionId.version());
+    assertEquals(2, sessionId.variant());
+    assertEquals(sessionId, UUID.fromString(sessionId.toString()));
+    assertNotEquals(sessionId, minter.newSessionId());
+  }
+
+  /* Verifies with the published key & the verifiers of Nimbus, rather than those of the service. */
+  private static JWSVerifier verifier(SigningKeys signingKeys) throws Exception {
+    JWK key =
+        JWKSet.parse(
+                new String(signingKeys.getPublishedKeys().getContent(), StandardCharsets.UTF_8))
+            .getKeyByKeyId(signingKeys.getActiveKey().getHeader().getKeyID());
+    if (key instanceof OctetKeyPair) {
+      return new Ed25519Verifier((OctetKeyPair) key);
+    }
+    return new DefaultJWSVerifierFactory()
+        .createJWSVerifier(
+            signingKeys.getActiveKey().getHeader(), ((AsymmetricJWK) key).toPublicKey());
+  }
+
+  private static UserTokenConfig config(String algorithm) throws Exception {
+    String yaml = "signature_algorithm: " + algorithm + "\nkey_size: 2048\nexpiry: 600\n";
+    return new ObjectMapper(new YAMLFactory()).readValue(yaml, UserTokenConfig.class);
+  }
+}
@@ -0,0 +1,59 @@
+package kt.proj.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class VerifiedTokenCacheTest {
+  private static final String USER_TOKEN = "header.claims.signature";
+
+  /* Time read by the cache in nanoseconds, advanced by the tests. */
+  private final AtomicLong nanos = new AtomicLong();
+  private VerifiedTokenCache cache;
+
+  @BeforeEach
+  public void setUp() {
+    cache = new VerifiedTokenCache(100, new SimpleMeterRegistry(), nanos::get);
+  }
+
+  @Test
+  public void testEntryExpiresWithItsToken() {
+    UserPrincipal principal = principal(System.currentTimeMillis() + 60_000);
+    cache.put(USER_TOKEN, principal);
+
+    nanos.addAndGet(TimeUnit.SECONDS.toNanos(55));
+    assertSame(principal, cache.get(USER_TOKEN));
+    nanos.addAndGet(TimeUnit.SECONDS.toNanos(5));
+    assertNull(cache.get(USER_TOKEN));
+  }
+
+  @Test
+  public void testExpiredTokenIsNotCached() {
+    cache.put(USER_TOKEN, principal(System.currentTimeMillis() - 1));
+
+    assertNull(cache.get(USER_TOKEN));
+  }
+
+  @Test
+  public void testInvalidatedTokenIsEvicted() {
+    UserPrincipal principal = principal(System.currentTimeMillis() + 60_000);
+    cache.put(USER_TOKEN, principal);
+    cache.put(USER_TOKEN + "2", principal);
+
+    cache.invalidate(USER_TOKEN);
+    assertNull(cache.get(USER_TOKEN));
+    assertSame(principal, cache.get(USER_TOKEN + "2"));
+    assertEquals(1, cache.stats().missCount());
+  }
+
+  private static UserPrincipal principal(long expiresAt) {
+    return new UserPrincipal("subject", "local", UUID.randomUUID(), expiresAt, null);
+  }
+}
@@ -0,0 +1,107 @@
+package kt.proj.common;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.gen.ECKeyGenerator;
+import com.nimbusds.jwt.JWT;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.PlainJWT;
+import com.nimbusds.oauth2.sdk.token.BearerAccessToken;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordingFile;
+import kt.proj.config.AuthServiceConfig;
+import kt.proj.config.OIDCProviders;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+
+/**
+ * Runs the token & session paths taken by blocking work on virtual threads, and fails if any of
+ * them pinned its carrier thread while blocked, as JFR reports it from Java 21.
+ */
+public class VirtualThreadPinningTest {
+  private static final String ISSUER = "https://idp.example.com";
+  private static final int TASKS = 500;
+
+  @TempDir Path directory;
+
+  @Test
+  public void testTokenAndSessionPathsDontPinCarrierThreads() throws Exception {
+    BlockingExecutor executor = new BlockingExecutor(true, null);
+    assumeTrue(executor.isVirtual());
+    OIDCProviders providers = Mockito.mock(OIDCProviders.class);
+    Mockito.when(providers.getProviderName(ISSUER)).thenReturn(Optional.of("local"));
+    UserTokenManager tokenManager = new UserTokenManager(config(), providers);
+    JWT idToken = new PlainJWT(new JWTClaimsSet.Builder().issuer(ISSUER).subject("sub").build());
+    /* Load & initialize the classes on this thread first, since class initialization may pin. */
+    session(tokenManager, idToken);
+
+    List<String> pinnedStacks;
+    try (Recording recording = new Recording()) {
+      recording.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ZERO).withStackTrace();
+      recording.start();
+      List<CompletableFuture<Boolean>> sessions = new ArrayList<>();
+      for (int i = 0; i < TASKS; i++) {
+        sessions.add(CompletableFuture.supplyAsync(() -> session(tokenManager, idToken), executor));
+      }
+      for (CompletableFuture<Boolean> session : sessions) {
+        assertTrue(session.get(30, SECONDS));
+      }
+      recording.stop();
+      Path file = directory.resolve("pinning.jfr");
+      recording.dump(file);
+      pinnedStacks =
+          RecordingFile.readAllEvents(file).stream()
+              .map(event -> String.valueOf(event.getStackTrace()))
+              .collect(Collectors.toList());
+    } finally {
+      tokenManager.close();
+      executor.close();
+    }
+    assertEquals(List.of(), pinnedStacks);
+  }
+
+  /* Logs in, reads the session & logs out, contending with other tasks for the journal lock. */
+  private static boolean session(UserTokenManager tokenManager, JWT idToken) {
+    String userToken = tokenManager.issueToken(idToken, new BearerAccessToken());
+    UserPrincipal principal = tokenManager.getValidatedUserToken(userToken).orElseThrow();
+    boolean active = tokenManager.getAccessToken(principal).isPresent();
+    tokenManager.invalidateToken(principal);
+    return active && tokenManager.getValidatedUserToken(userToken).isEmpty();
+  }
+
+  private AuthServiceConfig config() throws Exception {
+    String privateKey = new ECKeyGenerator(Curve.P_256).generate().toJSONString();
+    String yaml =
+        "oidc_clients: []\n"
+            + "user_token:\n"
+            + "  issuer: http://www.example.com\n"
+            + "  audience: http://www.example.com\n"
+            + "  signature_algorithm: ES256\n"
+            + "  private_key: "
+            + Base64.getEncoder().encodeToString(privateKey.getBytes(StandardCharsets.UTF_8))
+            + "\n  expiry: 600\n"
+            + "  session_store:\n"
+            + "    type: mapped\n"
+            + "    capacity: 10000\n"
+            + "    file: "
+            + directory.resolve("sessions.journal")
+            + "\n    file_size: 4096\n";
+    return new ObjectMapper(new YAMLFactory()).readValue(yaml, AuthServiceConfig.class);
+  }
+}
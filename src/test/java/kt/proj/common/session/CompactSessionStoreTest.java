@@ -0,0 +1,161 @@
+package kt.proj.common.session;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.nimbusds.oauth2.sdk.Scope;
+import com.nimbusds.oauth2.sdk.token.AccessToken;
+import com.nimbusds.oauth2.sdk.token.BearerAccessToken;
+import com.nimbusds.oauth2.sdk.token.RefreshToken;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import kt.proj.common.AuthServiceException;
+import org.junit.jupiter.api.Test;
+
+public class CompactSessionStoreTest {
+  private static final long HOUR = 3_600_000;
+
+  @Test
+  public void testPutAndGet() {
+    CompactSessionStore store = new CompactSessionStore(100);
+    UUID sessionId = UUID.randomUUID();
+    BearerAccessToken accessToken = new BearerAccessToken("ya29.token", 3600, Scope.parse("openid email"));
+    store.put(sessionId, accessToken, System.currentTimeMillis() + HOUR);
+
+    AccessToken stored = store.get(sessionId);
+    assertEquals(accessToken.getValue(), stored.getValue());
+    assertEquals(accessToken.getType(), stored.getType());
+    assertEquals(accessToken.getLifetime(), stored.getLifetime());
+    assertEquals(accessToken.getScope(), stored.getScope());
+    assertTrue(store.contains(sessionId));
+    assertNull(store.get(UUID.randomUUID()));
+  }
+
+  @Test
+  public void testRefreshTokenIsStoredWithTheSession() {
+    CompactSessionStore store = new CompactSessionStore(100);
+    UUID sessionId = UUID.randomUUID();
+    long sessionExpiresAt = System.currentTimeMillis() + HOUR;
+    BearerAccessToken accessToken = new BearerAccessToken("ya29.token", 600, Scope.parse("openid"));
+    store.put(
+        sessionId,
+        new ProviderTokens(accessToken, new RefreshToken("1//refresh"), sessionExpiresAt - 1000),
+        sessionExpiresAt);
+
+    ProviderTokens stored = store.getTokens(sessionId);
+    assertEquals("ya29.token", stored.getAccessToken().getValue());
+    assertEquals(accessToken.getScope(), stored.getAccessToken().getScope());
+    assertEquals("1//refresh", stored.getRefreshToken().getValue());
+    assertEquals(sessionExpiresAt - 1000, stored.getExpiresAt());
+    assertEquals("ya29.token", store.get(sessionId).getValue());
+
+    /* Tokens stored without refresh token are read back as before. */
+    UUID otherId = UUID.randomUUID();
+    store.put(otherId, accessToken, sessionExpiresAt);
+    assertNull(store.getTokens(otherId).getRefreshToken());
+    assertFalse(store.getTokens(otherId).isRenewable());
+  }
+
+  @Test
+  public void testReplaceKeepsSessionExpiry() {
+    CompactSessionStore store = new CompactSessionStore(100);
+    UUID sessionId = UUID.randomUUID();
+    long sessionExpiresAt = System.currentTimeMillis() + HOUR;
+    store.put(sessionId, new BearerAccessToken("old"), sessionExpiresAt);
+
+    ProviderTokens renewed =
+        new ProviderTokens(new BearerAccessToken("new"), new RefreshToken("refresh"), 1);
+    assertEquals(sessionExpiresAt, store.replace(sessionId, renewed));
+    assertEquals("new", store.get(sessionId).getValue());
+
+    store.remove(sessionId);
+    assertEquals(0, store.replace(sessionId, renewed));
+    assertFalse(store.contains(sessionId));
+    assertEquals(0, store.size());
+  }
+
+  @Test
+  public void testExpiredSessionIsNotReturned() {
+    CompactSessionStore store = new CompactSessionStore(100);
+    UUID sessionId = UUID.randomUUID();
+    store.put(sessionId, new BearerAccessToken(), System.currentTimeMillis() - 1);
+
+    assertFalse(store.contains(sessionId));
+    store.purgeExpired();
+    assertEquals(0, store.size());
+  }
+
+  @Test
+  public void testRemoveKeepsOtherSessionsReachable() {
+    CompactSessionStore store = new CompactSessionStore(10_000);
+    List<UUID> sessionIds = new ArrayList<>();
+    for (int i = 0; i < store.capacity(); i++) {
+      UUID sessionId = UUID.randomUUID();
+      sessionIds.add(sessionId);
+      store.put(sessionId, new BearerAccessToken("token" + i), System.currentTimeMillis() + HOUR);
+    }
+    for (int i = 0; i < sessionIds.size(); i += 2) {
+      store.remove(sessionIds.get(i));
+    }
+
+    for (int i = 0; i < sessionIds.size(); i++) {
+      AccessToken accessToken = store.get(sessionIds.get(i));
+      if (i % 2 == 0) {
+        assertNull(accessToken);
+      } else {
+        assertEquals("token" + i, accessToken.getValue());
+      }
+    }
+    assertEquals(store.capacity() / 2, store.size());
+  }
+
+  @Test
+  public void testLiveSessionsAreNotEvicted() {
+    CompactSessionStore store = new CompactSessionStore(100);
+    long now = System.currentTimeMillis();
+    for (int i = 0; i < store.capacity(); i++) {
+      store.put(UUID.randomUUID(), new BearerAccessToken(), now + HOUR);
+    }
+
+    assertThrows(
+        AuthServiceException.class,
+        () -> store.put(UUID.randomUUID(), new BearerAccessToken(), now + HOUR));
+    assertEquals(store.capacity(), store.size());
+  }
+
+  @Test
+  public void testExpiredSessionsArePurgedWhenFull() {
+    CompactSessionStore store = new CompactSessionStore(100);
+    long now = System.currentTimeMillis();
+    for (int i = 0; i < store.capacity(); i++) {
+      store.put(UUID.randomUUID(), new BearerAccessToken(), now - 1);
+    }
+
+    UUID sessionId = UUID.randomUUID();
+    store.put(sessionId, new BearerAccessToken(), now + HOUR);
+    assertTrue(store.contains(sessionId));
+    assertEquals(1, store.size());
+  }
+
+  @Test
+  public void testSessionsExpiringAfterAFailedPurgeArePurgedLater() throws InterruptedException {
+    CompactSessionStore store = new CompactSessionStore(10_000);
+    long now = System.currentTimeMillis();
+    for (int i = 0; i < store.capacity(); i++) {
+      store.put(UUID.randomUUID(), new BearerAccessToken(), now + (i % 2 == 0 ? 200 : HOUR));
+    }
+    assertThrows(
+        AuthServiceException.class,
+        () -> store.put(UUID.randomUUID(), new BearerAccessToken(), now + HOUR));
+
+    Thread.sleep(300);
+    UUID sessionId = UUID.randomUUID();
+    store.put(sessionId, new BearerAccessToken(), now + HOUR);
+    assertTrue(store.contains(sessionId));
+    assertEquals(store.capacity() / 2 + 1, store.size());
+  }
+}
@@ -0,0 +1,245 @@
+package kt.proj.common.session;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * In-process stand-in for a Redis server speaking RESP, implementing only the commands used by
+ * {@link RedisSessionStore}: PING, SET with PX, GET, EXISTS, DEL, PUBLISH, SUBSCRIBE &
+ * UNSUBSCRIBE.
+ */
+class FakeRedisServer implements AutoCloseable {
+  private final ServerSocket serverSocket;
+  private final Map<ByteBuffer, byte[]> values = new ConcurrentHashMap<>();
+  private final Map<ByteBuffer, Long> expiries = new ConcurrentHashMap<>();
+  private final Map<ByteBuffer, Set<Client>> subscribers = new ConcurrentHashMap<>();
+  private final Set<Socket> sockets = ConcurrentHashMap.newKeySet();
+
+  FakeRedisServer() throws IOException {
+    serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+    Thread acceptor = new Thread(this::accept, "fake-redis-acceptor");
+    acceptor.setDaemon(true);
+    acceptor.start();
+  }
+
+  URI getURI() {
+    return URI.create("redis://127.0.0.1:" + serverSocket.getLocalPort());
+  }
+
+  /** Drops all client connections, as a server restart or network partition would. */
+  void disconnectClients() throws IOException {
+    for (Socket socket : sockets) {
+      socket.close();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    serverSocket.close();
+    disconnectClients();
+  }
+
+  private void accept() {
+    while (!serverSocket.isClosed()) {
+      try {
+        Socket socket = serverSocket.accept();
+        sockets.add(socket);
+        Thread handler = new Thread(() -> serve(new Client(socket)), "fake-redis-client");
+        handler.setDaemon(true);
+        handler.start();
+      } catch (IOException e) {
+        return;
+      }
+    }
+  }
+
+  private void serve(Client client) {
+    try {
+      for (List<byte[]> command = client.read(); command != null; command = client.read()) {
+        execute(client, command);
+      }
+    } catch (IOException e) {
+      /* Client disconnected. */
+    } finally {
+      subscribers.values().forEach(clients -> clients.remove(client));
+      sockets.remove(client.socket);
+    }
+  }
+
+  private void execute(Client client, List<byte[]> command) throws IOException {
+    String name = new String(command.get(0), StandardCharsets.US_ASCII).toUpperCase();
+    ByteBuffer key = command.size() > 1 ? ByteBuffer.wrap(command.get(1)) : null;
+    switch (name) {
+      case "PING":
+        client.writeSimple("PONG");
+        break;
+      case "SET":
+        values.put(key, command.get(2));
+        expiries.remove(key);
+        for (int i = 3; i + 1 < command.size(); i += 2) {
+          if ("PX".equalsIgnoreCase(new String(command.get(i), StandardCharsets.US_ASCII))) {
+            long ttl = Long.parseLong(new String(command.get(i + 1), StandardCharsets.US_ASCII));
+            expiries.put(key, System.currentTimeMillis() + ttl);
+          }
+        }
+        client.writeSimple("OK");
+        break;
+      case "GET":
+        client.writeBulk(get(key));
+        break;
+      case "EXISTS":
+        client.writeInteger(get(key) != null ? 1 : 0);
+        break;
+      case "DEL":
+        expiries.remove(key);
+        client.writeInteger(values.remove(key) != null ? 1 : 0);
+        break;
+      case "PUBLISH":
+        Set<Client> receivers = subscribers.getOrDefault(key, Set.of());
+        for (Client receiver : receivers) {
+          receiver.writeArray(
+              "message".getBytes(StandardCharsets.US_ASCII), command.get(1), command.get(2));
+        }
+        client.writeInteger(receivers.size());
+        break;
+      case "SUBSCRIBE":
+        for (int i = 1; i < command.size(); i++) {
+          subscribers
+              .computeIfAbsent(ByteBuffer.wrap(command.get(i)), k -> new CopyOnWriteArraySet<>())
+              .add(client);
+          client.writeSubscription("subscribe", command.get(i), i);
+        }
+        break;
+      case "UNSUBSCRIBE":
+        int remaining = 0;
+        for (Map.Entry<ByteBuffer, Set<Client>> entry : subscribers.entrySet()) {
+          if (entry.getValue().remove(client)) {
+            client.writeSubscription("unsubscribe", entry.getKey().array(), remaining);
+          }
+        }
+        break;
+      default:
+        client.writeError("ERR unknown command '" + name + "'");
+    }
+  }
+
+  private byte[] get(ByteBuffer key) {
+    Long expiresAt = expiries.get(key);
+    if (expiresAt != null && expiresAt <= System.currentTimeMillis()) {
+      values.remove(key);
+      expiries.remove(key);
+    }
+    return values.get(key);
+  }
+
+  private static final class Client {
+    private final Socket socket;
+    private final InputStream in;
+    private final OutputStream out;
+
+    Client(Socket socket) {
+      this.socket = socket;
+      try {
+        this.in = new BufferedInputStream(socket.getInputStream());
+        this.out = new BufferedOutputStream(socket.getOutputStream());
+      } catch (IOException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    List<byte[]> read() throws IOException {
+      int marker = in.read();
+      if (marker == -1) {
+        return null;
+      }
+      if (marker != '*') {
+        throw new IOException("Unsupported RESP request type " + (char) marker);
+      }
+      int count = Integer.parseInt(readLine());
+      List<byte[]> command = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        if (in.read() != '$') {
+          throw new IOException("Expected a bulk string");
+        }
+        int length = Integer.parseInt(readLine());
+        command.add(in.readNBytes(length));
+        readLine();
+      }
+      return command;
+    }
+
+    private String readLine() throws IOException {
+      StringBuilder line = new StringBuilder();
+      for (int c = in.read(); c != '\r'; c = in.read()) {
+        if (c == -1) {
+          throw new IOException("Connection closed");
+        }
+        line.append((char) c);
+      }
+      in.read();
+      return line.toString();
+    }
+
+    synchronized void writeSimple(String value) throws IOException {
+      out.write(('+' + value + "\r\n").getBytes(StandardCharsets.US_ASCII));
+      out.flush();
+    }
+
+    synchronized void writeError(String value) throws IOException {
+      out.write(('-' + value + "\r\n").getBytes(StandardCharsets.US_ASCII));
+      out.flush();
+    }
+
+    synchronized void writeInteger(long value) throws IOException {
+      out.write((":" + value + "\r\n").getBytes(StandardCharsets.US_ASCII));
+      out.flush();
+    }
+
+    synchronized void writeBulk(byte[] value) throws IOException {
+      writeBulkUnflushed(value);
+      out.flush();
+    }
+
+    synchronized void writeArray(byte[]... values) throws IOException {
+      out.write(("*" + values.length + "\r\n").getBytes(StandardCharsets.US_ASCII));
+      for (byte[] value : values) {
+        writeBulkUnflushed(value);
+      }
+      out.flush();
+    }
+
+    synchronized void writeSubscription(String kind, byte[] channel, int count)
+        throws IOException {
+      out.write("*3\r\n".getBytes(StandardCharsets.US_ASCII));
+      writeBulkUnflushed(kind.getBytes(StandardCharsets.US_ASCII));
+      writeBulkUnflushed(channel);
+      out.write((":" + count + "\r\n").getBytes(StandardCharsets.US_ASCII));
+      out.flush();
+    }
+
+    private void writeBulkUnflushed(byte[] value) throws IOException {
+      if (value == null) {
+        out.write("$-1\r\n".getBytes(StandardCharsets.US_ASCII));
+        return;
+      }
+      out.write(("$" + value.length + "\r\n").getBytes(StandardCharsets.US_ASCII));
+      out.write(value);
+      out.write("\r\n".getBytes(StandardCharsets.US_ASCII));
+    }
+  }
+}
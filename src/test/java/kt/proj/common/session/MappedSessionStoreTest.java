@@ -0,0 +1,125 @@
+package kt.proj.common.session;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import com.nimbusds.oauth2.sdk.token.BearerAccessToken;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import kt.proj.config.SessionStoreConfig;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class MappedSessionStoreTest {
+  private static final long HOUR = 3_600_000;
+
+  @TempDir Path directory;
+
+  @Test
+  public void testSessionsSurviveRestart() throws Exception {
+    SessionStoreConfig config = config(4096);
+    long now = System.currentTimeMillis();
+    UUID active = UUID.randomUUID();
+    UUID removed = UUID.randomUUID();
+    UUID expired = UUID.randomUUID();
+
+    SessionStore store = SessionStore.create(config);
+    store.put(active, new BearerAccessToken("active"), now + HOUR);
+    store.put(removed, new BearerAccessToken("removed"), now + HOUR);
+    store.put(expired, new BearerAccessToken("expired"), now + 50);
+    store.remove(removed);
+    store.close();
+    Thread.sleep(100);
+
+    SessionStore restored = SessionStore.create(config);
+    assertEquals("active", restored.get(active).getValue());
+    assertFalse(restored.contains(removed));
+    assertFalse(restored.contains(expired));
+    assertEquals(1, restored.size());
+    restored.close();
+  }
+
+  @Test
+  public void testJournalGrowsAndIsCompactedOnRestart() throws Exception {
+    SessionStoreConfig config = config(4096);
+    long now = System.currentTimeMillis();
+    List<UUID> sessionIds = new ArrayList<>();
+
+    SessionStore store = SessionStore.create(config);
+    for (int i = 0; i < 1000; i++) {
+      UUID sessionId = UUID.randomUUID();
+      sessionIds.add(sessionId);
+      store.put(sessionId, new BearerAccessToken("token" + i), now + HOUR);
+    }
+    for (int i = 0; i < sessionIds.size() - 1; i++) {
+      store.remove(sessionIds.get(i));
+    }
+    store.close();
+    long journalSize = Files.size(config.getFile());
+
+    SessionStore restored = SessionStore.create(config);
+    assertEquals(1, restored.size());
+    assertTrue(restored.contains(sessionIds.get(sessionIds.size() - 1)));
+    assertTrue(Files.size(config.getFile()) < journalSize);
+    restored.close();
+  }
+
+  @Test
+  public void testSessionsBeyondLoweredCapacityAreDroppedOnRestart() throws Exception {
+    long now = System.currentTimeMillis();
+    List<UUID> sessionIds = new ArrayList<>();
+    SessionStore store = SessionStore.create(config(4096, 10));
+    for (int i = 0; i < 10; i++) {
+      UUID sessionId = UUID.randomUUID();
+      sessionIds.add(sessionId);
+      store.put(sessionId, new BearerAccessToken("token" + i), now + HOUR);
+    }
+    store.close();
+
+    SessionStore restored = SessionStore.create(config(4096, 5));
+    assertEquals(5, restored.size());
+    assertEquals(5, sessionIds.stream().filter(restored::contains).count());
+    restored.close();
+  }
+
+  @Test
+  public void testJournalIsReadableByOwnerOnly() throws Exception {
+    assumeTrue(directory.getFileSystem().supportedFileAttributeViews().contains("posix"));
+    SessionStoreConfig config = config(4096);
+    Files.createFile(
+        config.getFile(),
+        PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-r--r--")));
+
+    SessionStore store = SessionStore.create(config);
+    store.put(UUID.randomUUID(), new BearerAccessToken("token"), System.currentTimeMillis() + HOUR);
+    store.close();
+
+    assertEquals(
+        "rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(config.getFile())));
+  }
+
+  private SessionStoreConfig config(long fileSize) throws Exception {
+    return config(fileSize, 10000);
+  }
+
+  private SessionStoreConfig config(long fileSize, int capacity) throws Exception {
+    String yaml =
+        "type: mapped\n"
+            + "capacity: "
+            + capacity
+            + "\nfile: "
+            + directory.resolve("sessions.journal")
+            + "\nfile_size: "
+            + fileSize
+            + "\n";
+    return new ObjectMapper(new YAMLFactory()).readValue(yaml, SessionStoreConfig.class);
+  }
+}
@@ -0,0 +1,89 @@
+package kt.proj.common.session;
+
+import static kt.proj.common.MockProvider.awaitTrue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.nimbusds.oauth2.sdk.token.BearerAccessToken;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.JedisPooled;
+
+public class RedisSessionStoreTest {
+  private static final long HOUR = 3_600_000;
+
+  private FakeRedisServer redisServer;
+  private RedisSessionStore nodeA;
+  private RedisSessionStore nodeB;
+
+  @BeforeEach
+  public void setUp() throws Exception {
+    redisServer = new FakeRedisServer();
+    nodeA = newNode(Duration.ofMinutes(5));
+    nodeB = newNode(Duration.ofMinutes(5));
+  }
+
+  @AfterEach
+  public void tearDown() throws Exception {
+    nodeA.close();
+    nodeB.close();
+    redisServer.close();
+  }
+
+  @Test
+  public void testSessionIssuedOnOneNodeIsValidOnAnother() {
+    UUID sessionId = UUID.randomUUID();
+    nodeA.put(sessionId, new BearerAccessToken("token"), System.currentTimeMillis() + HOUR);
+
+    assertTrue(nodeB.contains(sessionId));
+    assertEquals("token", nodeB.get(sessionId).getValue());
+  }
+
+  @Test
+  public void testRevocationEvictsNearCacheOfOtherNodes() throws Exception {
+    UUID sessionId = UUID.randomUUID();
+    nodeA.put(sessionId, new BearerAccessToken("token"), System.currentTimeMillis() + HOUR);
+    assertTrue(nodeB.contains(sessionId));
+
+    nodeA.remove(sessionId);
+    assertFalse(nodeA.contains(sessionId));
+    awaitTrue(() -> !nodeB.contains(sessionId));
+  }
+
+  @Test
+  public void testNearCacheTtlBoundsStalenessWithoutRevocationMessages() throws Exception {
+    RedisSessionStore nodeC = newNode(Duration.ofMillis(200));
+    try {
+      UUID sessionId = UUID.randomUUID();
+      nodeA.put(sessionId, new BearerAccessToken("token"), System.currentTimeMillis() + HOUR);
+      assertTrue(nodeC.contains(sessionId));
+
+      /* Delete the session behind the store's back, so no revocation message is published. */
+      try (JedisPooled redis = new JedisPooled(redisServer.getURI())) {
+        redis.del(
+            ByteBuffer.allocate(32)
+                .put("kt-auth:session:".getBytes(StandardCharsets.US_ASCII))
+                .putLong(sessionId.getMostSignificantBits())
+                .putLong(sessionId.getLeastSignificantBits())
+                .array());
+      }
+      awaitTrue(() -> !nodeC.contains(sessionId));
+    } finally {
+      nodeC.close();
+    }
+  }
+
+  private RedisSessionStore newNode(Duration nearCacheTtl) throws InterruptedException {
+    RedisSessionStore node =
+        new RedisSessionStore(new JedisPooled(redisServer.getURI()), 1000, nearCacheTtl);
+    /* Wait for the revocation subscription, which clears the near-cache when it starts. */
+    Thread.sleep(200);
+    return node;
+  }
+}
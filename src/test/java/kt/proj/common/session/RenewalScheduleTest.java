@@ -0,0 +1,103 @@
+package kt.proj.common.session;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.nimbusds.oauth2.sdk.token.BearerAccessToken;
+import com.nimbusds.oauth2.sdk.token.RefreshToken;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+public class RenewalScheduleTest {
+  private static final long MINUTE = 60_000;
+  private static final long HOUR = 3_600_000;
+
+  @Test
+  public void testDueSessionsArePolledPerProviderInOrder() {
+    RenewalSchedule renewals = new RenewalSchedule(100, Duration.ofMinutes(1));
+    long now = System.currentTimeMillis();
+    UUID later = UUID.randomUUID();
+    UUID first = UUID.randomUUID();
+    UUID second = UUID.randomUUID();
+    UUID other = UUID.randomUUID();
+    assertTrue(renewals.schedule(later, "google", tokens(now + 10 * MINUTE), now + HOUR));
+    assertTrue(renewals.schedule(second, "google", tokens(now + MINUTE / 2), now + HOUR));
+    assertTrue(renewals.schedule(first, "google", tokens(now), now + HOUR));
+    assertTrue(renewals.schedule(other, "apple", tokens(now), now + HOUR));
+
+    assertEquals(List.of(first), renewals.pollDue("google", now, 1));
+    assertEquals(List.of(second), renewals.pollDue("google", now + MINUTE / 2, 10));
+    assertEquals(List.of(other), renewals.pollDue("apple", now, 10));
+    assertEquals(List.of(later), renewals.pollDue("google", now + 10 * MINUTE, 10));
+    assertEquals(4, renewals.size());
+  }
+
+  @Test
+  public void testSessionsAreScheduledOnce() {
+    RenewalSchedule renewals = new RenewalSchedule(100, Duration.ofMinutes(1));
+    long now = System.currentTimeMillis();
+    UUID sessionId = UUID.randomUUID();
+    assertTrue(renewals.schedule(sessionId, "google", tokens(now), now + HOUR));
+    assertFalse(renewals.schedule(sessionId, "google", tokens(now), now + HOUR));
+
+    assertEquals(List.of(sessionId), renewals.pollDue("google", now, 10));
+    /* A request for the session while its renewal is in flight doesn't schedule it again. */
+    renewals.scheduleIfDue(sessionId, "google", tokens(now), now + HOUR);
+    assertEquals(List.of(), renewals.pollDue("google", now, 10));
+
+    renewals.reschedule(sessionId, "google", tokens(now + 10 * MINUTE), now + HOUR);
+    assertEquals(List.of(), renewals.pollDue("google", now, 10));
+    assertEquals(List.of(sessionId), renewals.pollDue("google", now + 10 * MINUTE, 10));
+  }
+
+  @Test
+  public void testFailedRenewalsAreRetried() {
+    RenewalSchedule renewals = new RenewalSchedule(100, Duration.ofMinutes(1));
+    long now = System.currentTimeMillis();
+    UUID sessionId = UUID.randomUUID();
+    renewals.schedule(sessionId, "google", tokens(now), now + HOUR);
+    renewals.pollDue("google", now, 10);
+
+    renewals.retry(sessionId, "google", now + MINUTE);
+    assertEquals(List.of(), renewals.pollDue("google", now, 10));
+    assertEquals(List.of(sessionId), renewals.pollDue("google", now + MINUTE, 10));
+
+    renewals.drop(sessionId);
+    assertEquals(0, renewals.size());
+  }
+
+  @Test
+  public void testCancelledAndUnrenewableSessionsAreNotPolled() {
+    RenewalSchedule renewals = new RenewalSchedule(100, Duration.ofMinutes(1));
+    long now = System.currentTimeMillis();
+    UUID cancelled = UUID.randomUUID();
+    renewals.schedule(cancelled, "google", tokens(now), now + HOUR);
+    renewals.cancel(cancelled);
+
+    /* Access tokens without refresh token or outliving the session aren't renewed. */
+    ProviderTokens withoutRefreshToken = new ProviderTokens(new BearerAccessToken(), null, now);
+    assertFalse(renewals.schedule(UUID.randomUUID(), "google", withoutRefreshToken, now + HOUR));
+    assertFalse(renewals.schedule(UUID.randomUUID(), "google", tokens(now + HOUR), now + HOUR));
+
+    assertEquals(List.of(), renewals.pollDue("google", now, 10));
+    assertEquals(0, renewals.size());
+  }
+
+  @Test
+  public void testSessionsBeyondCapacityAreNotScheduled() {
+    RenewalSchedule renewals = new RenewalSchedule(2, Duration.ofMinutes(1));
+    long now = System.currentTimeMillis();
+    assertTrue(renewals.schedule(UUID.randomUUID(), "google", tokens(now), now + HOUR));
+    assertTrue(renewals.schedule(UUID.randomUUID(), "google", tokens(now), now + HOUR));
+    assertFalse(renewals.schedule(UUID.randomUUID(), "google", tokens(now), now + HOUR));
+  }
+
+  /* Tokens whose access token expires at the specified time plus the renewal lead time. */
+  private static ProviderTokens tokens(long renewAt) {
+    return new ProviderTokens(
+        new BearerAccessToken(), new RefreshToken(), renewAt + Duration.ofMinutes(1).toMillis());
+  }
+}
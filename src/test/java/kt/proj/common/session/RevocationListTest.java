@@ -0,0 +1,72 @@
+package kt.proj.common.session;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+public class RevocationListTest {
+  private static final long HOUR = 3_600_000;
+
+  @Test
+  public void testRevokedTokensAreFound() throws Exception {
+    RevocationList revokedTokens = new RevocationList(100, Duration.ofHours(1));
+    long expiresAt = System.currentTimeMillis() + HOUR / 2;
+    List<UUID> revoked = new ArrayList<>();
+    /* More revocations than the capacity still make it to the exact sets. */
+    for (int i = 0; i < 1000; i++) {
+      UUID sessionId = UUID.randomUUID();
+      revokedTokens.revoke(sessionId, expiresAt + i * 1000);
+      revoked.add(sessionId);
+    }
+
+    for (int i = 0; i < revoked.size(); i++) {
+      assertTrue(revokedTokens.isRevoked(revoked.get(i), expiresAt + i * 1000));
+    }
+    assertFalse(revokedTokens.isRevoked(UUID.randomUUID(), expiresAt));
+    assertEquals(1000, revokedTokens.size());
+  }
+
+  @Test
+  public void testTokenIsOnlyRevokedUntilItExpires() throws Exception {
+    RevocationList revokedTokens = new RevocationList(100, Duration.ofHours(1));
+    UUID sessionId = UUID.randomUUID();
+    revokedTokens.revoke(sessionId, System.currentTimeMillis() - 1);
+    assertFalse(revokedTokens.isRevoked(sessionId, System.currentTimeMillis() - 1));
+    assertEquals(0, revokedTokens.size());
+  }
+
+  @Test
+  public void testBucketsOfExpiredTokensAreDropped() throws Exception {
+    RevocationList revokedTokens = new RevocationList(100, Duration.ofMillis(160));
+    long expiresAt = System.currentTimeMillis() + 100;
+    UUID sessionId = UUID.randomUUID();
+    revokedTokens.revoke(sessionId, expiresAt);
+
+    /* Revocations one ring later reuse the slot of the expired bucket. */
+    Thread.sleep(200);
+    long laterExpiresAt = expiresAt + 18 * 10;
+    UUID laterSessionId = UUID.randomUUID();
+    revokedTokens.revoke(laterSessionId, laterExpiresAt);
+    assertTrue(revokedTokens.isRevoked(laterSessionId, laterExpiresAt));
+    assertFalse(revokedTokens.isRevoked(sessionId, expiresAt));
+    assertEquals(1, revokedTokens.size());
+  }
+
+  @Test
+  public void testTokenOutlivingMaximumLifetimeIsRevoked() {
+    RevocationList revokedTokens = new RevocationList(100, Duration.ofHours(1));
+    UUID sessionId = UUID.randomUUID();
+    long expiresAt = System.currentTimeMillis() + 2 * HOUR;
+
+    revokedTokens.revoke(sessionId, expiresAt);
+    assertTrue(revokedTokens.isRevoked(sessionId, expiresAt));
+    assertFalse(revokedTokens.isRevoked(UUID.randomUUID(), expiresAt));
+    assertEquals(1, revokedTokens.size());
+  }
+}
@@ -0,0 +1,56 @@
+package kt.proj.common.signing;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSObject;
+import com.nimbusds.jose.Payload;
+import com.nimbusds.jose.crypto.Ed25519Signer;
+import com.nimbusds.jose.crypto.Ed25519Verifier;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.OctetKeyPair;
+import com.nimbusds.jose.jwk.gen.OctetKeyPairGenerator;
+import org.junit.jupiter.api.Test;
+
+public class Ed25519SigningEngineTest {
+
+  @Test
+  public void testSignaturesAreVerifiedByNimbus() throws Exception {
+    Ed25519SigningEngine engine = Ed25519SigningEngine.generate();
+    JWSObject token = sign(engine);
+
+    assertTrue(token.verify(new Ed25519Verifier((OctetKeyPair) engine.getPublicJWK())));
+    assertTrue(token.verify(engine.getVerifier()));
+    assertFalse(engine.getPublicJWK().isPrivate());
+  }
+
+  @Test
+  public void testSignatureOfAnotherKeyIsRejected() throws Exception {
+    Ed25519SigningEngine engine = Ed25519SigningEngine.generate();
+    OctetKeyPair otherKey = new OctetKeyPairGenerator(Curve.Ed25519).keyID("other").generate();
+    JWSObject token = new JWSObject(new JWSHeader(JWSAlgorithm.EdDSA), new Payload("payload"));
+    token.sign(new Ed25519Signer(otherKey));
+
+    assertFalse(token.verify(engine.getVerifier()));
+  }
+
+  @Test
+  public void testKeyOfAnotherCurveIsRejected() throws Exception {
+    OctetKeyPair x25519Key = new OctetKeyPairGenerator(Curve.X25519).keyID("x25519").generate();
+
+    assertThrows(JOSEException.class, () -> new Ed25519SigningEngine(x25519Key));
+  }
+
+  private static JWSObject sign(SigningEngine engine) throws JOSEException {
+    JWSObject token =
+        new JWSObject(
+            new JWSHeader.Builder(engine.getAlgorithm()).keyID(engine.getKeyID()).build(),
+            new Payload("payload"));
+    token.sign(engine.getSigner());
+    return token;
+  }
+}
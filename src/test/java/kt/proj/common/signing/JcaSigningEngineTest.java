@@ -0,0 +1,128 @@
+package kt.proj.common.signing;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSObject;
+import com.nimbusds.jose.Payload;
+import com.nimbusds.jose.crypto.ECDSASigner;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.crypto.factories.DefaultJWSVerifierFactory;
+import com.nimbusds.jose.jwk.AsymmetricJWK;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.ECKeyGenerator;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jose.util.Base64URL;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class JcaSigningEngineTest {
+  private static final List<JWSAlgorithm> ALGORITHMS =
+      List.of(
+          JWSAlgorithm.RS256,
+          JWSAlgorithm.RS384,
+          JWSAlgorithm.RS512,
+          JWSAlgorithm.PS256,
+          JWSAlgorithm.PS384,
+          JWSAlgorithm.PS512,
+          JWSAlgorithm.ES256,
+          JWSAlgorithm.ES384,
+          JWSAlgorithm.ES512);
+
+  @Test
+  public void testSignaturesAreVerifiedByNimbus() throws Exception {
+    for (JWSAlgorithm algorithm : ALGORITHMS) {
+      JcaSigningEngine engine = JcaSigningEngine.generate(algorithm, 2048);
+      JWSObject token = sign(engine, "payload");
+
+      assertTrue(
+          token.verify(
+              new DefaultJWSVerifierFactory()
+                  .createJWSVerifier(
+                      token.getHeader(), ((AsymmetricJWK) engine.getPublicJWK()).toPublicKey())),
+          algorithm.getName());
+      assertTrue(token.verify(engine.getVerifier()), algorithm.getName());
+    }
+  }
+
+  @Test
+  public void testNimbusSignaturesAreVerified() throws Exception {
+    RSAKey rsaKey = new RSAKeyGenerator(2048).keyIDFromThumbprint(true).generate();
+    ECKey ecKey = new ECKeyGenerator(Curve.P_256).keyIDFromThumbprint(true).generate();
+    for (JWSAlgorithm algorithm : List.of(JWSAlgorithm.RS256, JWSAlgorithm.PS256)) {
+      JWSObject token = new JWSObject(new JWSHeader(algorithm), new Payload("payload"));
+      token.sign(new RSASSASigner(rsaKey));
+      assertTrue(token.verify(new JcaSigningEngine(algorithm, rsaKey).getVerifier()));
+    }
+    JWSObject token = new JWSObject(new JWSHeader(JWSAlgorithm.ES256), new Payload("payload"));
+    token.sign(new ECDSASigner(ecKey));
+    assertTrue(token.verify(new JcaSigningEngine(JWSAlgorithm.ES256, ecKey).getVerifier()));
+  }
+
+  @Test
+  public void testSignatureOfAnotherAlgorithmOrKeyIsRejected() throws Exception {
+    JcaSigningEngine engine = JcaSigningEngine.generate(JWSAlgorithm.RS256, 2048);
+    JcaSigningEngine pssEngine = JcaSigningEngine.generate(JWSAlgorithm.PS256, 2048);
+    JcaSigningEngine otherEngine = JcaSigningEngine.generate(JWSAlgorithm.RS256, 2048);
+
+    assertFalse(sign(pssEngine, "payload").verify(engine.getVerifier()));
+    assertFalse(sign(otherEngine, "payload").verify(engine.getVerifier()));
+    assertThrows(
+        JOSEException.class,
+        () -> engine.getSigner().sign(new JWSHeader(JWSAlgorithm.RS512), new byte[] {1}));
+  }
+
+  @Test
+  public void testVerifierRecoversFromMalformedSignature() throws Exception {
+    JcaSigningEngine engine = JcaSigningEngine.generate(JWSAlgorithm.RS256, 2048);
+    JWSObject token = sign(engine, "payload");
+    JWSHeader header = token.getHeader();
+    byte[] signingInput = token.getSigningInput();
+
+    /* The JCA throws on a signature shorter than the modulus, failing the operation. */
+    assertFalse(engine.getVerifier().verify(header, signingInput, Base64URL.encode(new byte[64])));
+    assertTrue(engine.getVerifier().verify(header, signingInput, token.getSignature()));
+  }
+
+  @Test
+  public void testSecp256k1IsSignedWhenTheJcaProviderSupportsIt() throws Exception {
+    JcaSigningEngine engine;
+    try {
+      engine = JcaSigningEngine.generate(JWSAlgorithm.ES256K, 0);
+    } catch (JOSEException e) {
+      /* SunEC dropped secp256k1 in Java 16; the engine then fails when it is created. */
+      engine = null;
+    }
+    assumeTrue(engine != null);
+
+    assertTrue(sign(engine, "payload").verify(engine.getVerifier()));
+  }
+
+  @Test
+  public void testKeyOfAnotherFamilyIsRejected() throws Exception {
+    ECKey ecKey = new ECKeyGenerator(Curve.P_256).keyIDFromThumbprint(true).generate();
+    RSAKey rsaKey = new RSAKeyGenerator(2048).keyIDFromThumbprint(true).generate();
+
+    assertThrows(JOSEException.class, () -> new JcaSigningEngine(JWSAlgorithm.PS256, ecKey));
+    assertThrows(JOSEException.class, () -> new JcaSigningEngine(JWSAlgorithm.ES384, ecKey));
+    assertThrows(JOSEException.class, () -> new JcaSigningEngine(JWSAlgorithm.ES256, rsaKey));
+    assertThrows(
+        JOSEException.class, () -> new JcaSigningEngine(JWSAlgorithm.RS256, rsaKey.toPublicJWK()));
+  }
+
+  private static JWSObject sign(SigningEngine engine, String payload) throws JOSEException {
+    JWSObject token =
+        new JWSObject(
+            new JWSHeader.Builder(engine.getAlgorithm()).keyID(engine.getKeyID()).build(),
+            new Payload(payload));
+    token.sign(engine.getSigner());
+    return token;
+  }
+}
@@ -0,0 +1,153 @@
+package kt.proj.common.signing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.gen.ECKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import kt.proj.config.UserTokenConfig;
+import org.junit.jupiter.api.Test;
+
+public class SigningKeysTest {
+
+  @Test
+  public void testTokensCarryKeyIDOfConfiguredKey() throws Exception {
+    String privateKey = new ECKeyGenerator(Curve.P_256).generate().toJSONString();
+    SigningKeys signingKeys = SigningKeys.create(config(privateKey, 0));
+
+    SignedJWT token = sign(signingKeys);
+    String keyId = token.getHeader().getKeyID();
+    assertNotNull(keyId);
+    assertTrue(token.verify(signingKeys.getVerifier(keyId)));
+    assertNotNull(publishedKeys(signingKeys).getKeyByKeyId(keyId));
+    assertNull(signingKeys.getVerifier("unknown"));
+  }
+
+  @Test
+  public void testRotatedKeysVerifyTokensOfRetiredKey() throws Exception {
+    SigningKeys signingKeys = SigningKeys.create(config(null, 3600));
+    SignedJWT oldToken = sign(signingKeys);
+    String oldKeyId = oldToken.getHeader().getKeyID();
+    JWKSet oldKeys = publishedKeys(signingKeys);
+    String oldETag = signingKeys.getPublishedKeys().getETag();
+    assertEquals(2, oldKeys.getKeys().size());
+
+    signingKeys.rotate();
+    SignedJWT newToken = sign(signingKeys);
+    String newKeyId = newToken.getHeader().getKeyID();
+    assertNotEquals(oldKeyId, newKeyId);
+    /* The new key was published ahead of its activation. */
+    assertNotNull(oldKeys.getKeyByKeyId(newKeyId));
+    assertTrue(oldToken.verify(signingKeys.getVerifier(oldKeyId)));
+    assertTrue(newToken.verify(signingKeys.getVerifier(newKeyId)));
+    assertEquals(3, publishedKeys(signingKeys).getKeys().size());
+    assertNotEquals(oldETag, signingKeys.getPublishedKeys().getETag());
+    assertEquals(1800, signingKeys.getPublishedKeys().getMaxAge());
+    signingKeys.close();
+  }
+
+  @Test
+  public void testRetiredKeyIsDroppedAfterTokenLifetime() throws Exception {
+    SigningKeys signingKeys = SigningKeys.create(config(null, 3600, 0));
+    String oldKeyId = sign(signingKeys).getHeader().getKeyID();
+
+    signingKeys.rotate();
+    assertNotNull(signingKeys.getVerifier(oldKeyId));
+    signingKeys.rotate();
+    assertNull(signingKeys.getVerifier(oldKeyId));
+    signingKeys.close();
+  }
+
+  @Test
+  public void testConfiguredKeyIsRotatedWithVerificationKeys() throws Exception {
+    String oldKey = new ECKeyGenerator(Curve.P_256).keyID("old").generate().toJSONString();
+    String newKey = new ECKeyGenerator(Curve.P_256).keyID("new").generate().toJSONString();
+    /* The new key is published ahead, then signs while the old one verifies its tokens. */
+    SigningKeys before = SigningKeys.create(config(oldKey, List.of(newKey)));
+    SigningKeys after = SigningKeys.create(config(newKey, List.of(oldKey)));
+
+    SignedJWT oldToken = sign(before);
+    SignedJWT newToken = sign(after);
+    assertEquals("new", newToken.getHeader().getKeyID());
+    assertNotNull(publishedKeys(before).getKeyByKeyId("new"));
+    assertTrue(oldToken.verify(after.getVerifier("old")));
+    assertTrue(newToken.verify(before.getVerifier("new")));
+    assertEquals(2, publishedKeys(after).getKeys().size());
+  }
+
+  @Test
+  public void testKeyConfiguredTwiceIsRejected() throws Exception {
+    String privateKey = new ECKeyGenerator(Curve.P_256).keyID("key").generate().toJSONString();
+    assertThrows(
+        JOSEException.class, () -> SigningKeys.create(config(privateKey, List.of(privateKey))));
+  }
+
+  @Test
+  public void testRotationRequiresGeneratedKeys() throws Exception {
+    String privateKey = new ECKeyGenerator(Curve.P_256).generate().toJSONString();
+    assertThrows(JOSEException.class, () -> SigningKeys.create(config(privateKey, 3600)));
+  }
+
+  private static SignedJWT sign(SigningKeys signingKeys) throws JOSEException {
+    SigningKeys.ActiveKey activeKey = signingKeys.getActiveKey();
+    SignedJWT token =
+        new SignedJWT(activeKey.getHeader(), new JWTClaimsSet.Builder().subject("subject").build());
+    token.sign(activeKey.getSigner());
+    return token;
+  }
+
+  private static JWKSet publishedKeys(SigningKeys signingKeys) throws Exception {
+    return JWKSet.parse(
+        new String(signingKeys.getPublishedKeys().getContent(), StandardCharsets.UTF_8));
+  }
+
+  private static UserTokenConfig config(String privateKey, List<String> verificationKeys)
+      throws Exception {
+    StringBuilder yaml = new StringBuilder("signature_algorithm: ES256\n");
+    yaml.append("private_key: ").append(base64(privateKey)).append("\nverification_keys:\n");
+    for (String verificationKey : verificationKeys) {
+      yaml.append("  - ").append(base64(verificationKey)).append('\n');
+    }
+    return new ObjectMapper(new YAMLFactory()).readValue(yaml.toString(), UserTokenConfig.class);
+  }
+
+  private static String base64(String value) {
+    return Base64.getEncoder().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static UserTokenConfig config(String privateKey, long rotationInterval)
+      throws Exception {
+    return config(privateKey, rotationInterval, 600);
+  }
+
+  private static UserTokenConfig config(String privateKey, long rotationInterval, long expiry)
+      throws Exception {
+    String yaml =
+        "signature_algorithm: ES256\n"
+            + (privateKey != null
+                ? "private_key: "
+                    + Base64.getEncoder()
+                        .encodeToString(privateKey.getBytes(StandardCharsets.UTF_8))
+                    + "\n"
+                : "")
+            + "expiry: "
+            + expiry
+            + "\nkey_rotation_interval: "
+            + rotationInterval
+            + "\n";
+    return new ObjectMapper(new YAMLFactory()).readValue(yaml, UserTokenConfig.class);
+  }
+}
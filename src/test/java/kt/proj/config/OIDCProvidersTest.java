@@ -0,0 +1,255 @@
+package kt.proj.config;
+
+import static kt.proj.common.MockProvider.awaitTrue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import com.nimbusds.oauth2.sdk.id.State;
+import com.nimbusds.openid.connect.sdk.AuthenticationRequest;
+import com.nimbusds.openid.connect.sdk.Nonce;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.vertx.mutiny.core.Vertx;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import kt.proj.common.AsyncHTTPClient;
+import kt.proj.common.MockProvider;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class OIDCProvidersTest {
+  private final AtomicInteger discoveryRequests = new AtomicInteger();
+  private final AtomicInteger notModifiedResponses = new AtomicInteger();
+  private final AtomicInteger discoveriesInFlight = new AtomicInteger();
+  private final AtomicInteger maxDiscoveriesInFlight = new AtomicInteger();
+  private final AtomicInteger discoveryResponses = new AtomicInteger();
+  private volatile boolean available = true;
+  private volatile String keyId = "key1";
+  /* Discovery requests wait for the barrier to open, if set. */
+  private volatile CountDownLatch discoveryBarrier;
+  /* Discovery requests wait for the release, if set. */
+  private volatile CountDownLatch discoveryRelease;
+
+  @TempDir Path tempDir;
+  private HttpServer server;
+  private String baseURL;
+  private Vertx vertx;
+
+  @BeforeEach
+  public void setUp() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    baseURL = "http://127.0.0.1:" + server.getAddress().getPort();
+    server.createContext("/", this::handle);
+    server.setExecutor(Executors.newCachedThreadPool());
+    server.start();
+    vertx = Vertx.vertx();
+  }
+
+  @AfterEach
+  public void tearDown() {
+    vertx.closeAndAwait();
+    server.stop(0);
+  }
+
+  private OIDCProviders providers(AuthServiceConfig config) {
+    return new OIDCProviders(config, new AsyncHTTPClient(vertx, config));
+  }
+
+  @Test
+  public void testProvidersAreDiscoveredInParallel() throws IOException {
+    /* Each discovery request is held until all four are in flight, or for at most 2 seconds. */
+    discoveryBarrier = new CountDownLatch(4);
+    OIDCProviders providers = providers(config(null, "idp0", "idp1", "idp2", "idp3"));
+
+    for (int i = 0; i < 4; i++) {
+      assertEquals(
+          URI.create(baseURL + "/idp" + i + "/token"),
+          providers.getTokenEndpoint("idp" + i).orElseThrow());
+    }
+    assertEquals(4, maxDiscoveriesInFlight.get());
+    providers.close();
+  }
+
+  @Test
+  public void testUnavailableProviderDoesNotPreventStartup() throws IOException {
+    AuthServiceConfig config = config(null, "idp0", "http://127.0.0.1:" + unusedPort() + "/down");
+    OIDCProviders providers = providers(config);
+
+    assertTrue(providers.getTokenEndpoint("idp0").isPresent());
+    assertFalse(providers.getTokenEndpoint("down").isPresent());
+    providers.close();
+  }
+
+  @Test
+  public void testCachedMetadataIsUsedOnStartupAndRevalidated() throws Exception {
+    Path cacheFile = tempDir.resolve("discovery-cache.json");
+    providers(config(cacheFile, "idp0")).close();
+    assertTrue(Files.exists(cacheFile));
+
+    /* A provider that doesn't answer no longer delays startup once its metadata is cached. */
+    discoveryRelease = new CountDownLatch(1);
+    OIDCProviders providers = providers(config(cacheFile, "idp0"));
+
+    assertTrue(providers.getTokenEndpoint("idp0").isPresent());
+    assertEquals(1, discoveryResponses.get());
+    discoveryRelease.countDown();
+    awaitTrue(() -> discoveryRequests.get() >= 2);
+    assertEquals(2, discoveryRequests.get());
+    providers.close();
+  }
+
+  @Test
+  public void testCachedMetadataIsUsedWhileProviderIsDown() throws IOException {
+    Path cacheFile = tempDir.resolve("discovery-cache.json");
+    providers(config(cacheFile, "idp0")).close();
+
+    available = false;
+    OIDCProviders providers = providers(config(cacheFile, "idp0"));
+    assertEquals(
+        URI.create(baseURL + "/idp0/token"), providers.getTokenEndpoint("idp0").orElseThrow());
+    providers.close();
+  }
+
+  @Test
+  public void testMetadataAndKeysAreRevalidatedConditionally() throws Exception {
+    OIDCProviders providers = providers(config(null, 1, "idp0"));
+    ProviderSnapshot snapshot = providers.getSnapshot("idp0").orElseThrow();
+    assertEquals("key1", snapshot.getJWKSet().getKeys().get(0).getKeyID());
+
+    awaitTrue(
+        () -> providers.getLastRefreshed("idp0").orElseThrow().isAfter(snapshot.getRefreshedAt()));
+    ProviderSnapshot revalidated = providers.getSnapshot("idp0").orElseThrow();
+    /* Both conditional requests of a refresh got a 304; later refreshes may have started since. */
+    assertTrue(notModifiedResponses.get() >= 2, notModifiedResponses + " 304 responses");
+    assertSame(snapshot.getMetadata(), revalidated.getMetadata());
+    assertSame(snapshot.getJWKSet(), revalidated.getJWKSet());
+    providers.close();
+  }
+
+  @Test
+  public void testRotatedKeysAreSwappedIn() throws Exception {
+    OIDCProviders providers = providers(config(null, 1, "idp0"));
+    keyId = "key2";
+
+    awaitTrue(() -> "key2".equals(getKeyId(providers.getSnapshot("idp0").orElseThrow())));
+    providers.close();
+  }
+
+  @Test
+  public void testProviderContextsAreIndexedByNameAndIssuer() throws Exception {
+    OIDCProviders providers = providers(config(null, "Idp0", "idp1"));
+    ProviderContext context = providers.getContext("Idp0").orElseThrow();
+
+    assertSame(context, providers.getContext("idp0").orElseThrow());
+    assertSame(context, providers.getContext("IDP0").orElseThrow());
+    assertEquals("idp0", providers.getProviderName(baseURL + "/Idp0").orElseThrow());
+    assertEquals("idp1", providers.getProviderName(baseURL + "/idp1").orElseThrow());
+    assertFalse(providers.getProviderName(baseURL + "/idp2").isPresent());
+
+    URI authorizationURI = context.getAuthorizationURI(new State("state"), new Nonce("nonce"));
+    assertTrue(authorizationURI.toString().startsWith(baseURL + "/Idp0/auth?"));
+    AuthenticationRequest request = AuthenticationRequest.parse(authorizationURI);
+    assertEquals("client", request.getClientID().getValue());
+    assertEquals("state", request.getState().getValue());
+    assertEquals("nonce", request.getNonce().getValue());
+    providers.close();
+  }
+
+  private static String getKeyId(ProviderSnapshot snapshot) {
+    return snapshot.getJWKSet().getKeys().get(0).getKeyID();
+  }
+
+  private AuthServiceConfig config(Path cacheFile, String... issuers) throws IOException {
+    return config(cacheFile, 0, issuers);
+  }
+
+  /**
+   * Builds a configuration with one provider per specified issuer, either a path on the local
+   * discovery server or an absolute URL.
+   */
+  private AuthServiceConfig config(Path cacheFile, long refreshInterval, String... issuers)
+      throws IOException {
+    StringBuilder yaml = new StringBuilder("oidc_clients:\n");
+    for (String issuer : issuers) {
+      String url = issuer.startsWith("http") ? issuer : baseURL + "/" + issuer;
+      yaml.append("  - provider_name: ")
+          .append(url.substring(url.lastIndexOf('/') + 1))
+          .append("\n    discovery_url: ")
+          .append(url)
+          .append("\n    client_id: client\n    client_secret: secret\n")
+          .append("    request_scopes: [openid]\n    request_timeout: 3000\n");
+    }
+    yaml.append("discovery:\n  refresh_interval: ").append(refreshInterval).append('\n');
+    if (cacheFile != null) {
+      yaml.append("  cache_file: ").append(cacheFile).append('\n');
+    }
+    return new ObjectMapper(new YAMLFactory()).readValue(yaml.toString(), AuthServiceConfig.class);
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    String path = exchange.getRequestURI().getPath();
+    if (path.endsWith("/certs")) {
+      respond(exchange, "{\"keys\":[{\"kty\":\"oct\",\"kid\":\"" + keyId + "\",\"k\":\"AA\"}]}");
+      return;
+    }
+    discoveryRequests.incrementAndGet();
+    String issuer = baseURL + path.substring(0, path.indexOf("/.well-known"));
+    int inFlight = discoveriesInFlight.incrementAndGet();
+    maxDiscoveriesInFlight.accumulateAndGet(inFlight, Math::max);
+    try {
+      CountDownLatch barrier = discoveryBarrier;
+      if (barrier != null) {
+        barrier.countDown();
+        barrier.await(2, TimeUnit.SECONDS);
+      }
+      CountDownLatch release = discoveryRelease;
+      if (release != null) {
+        release.await(5, TimeUnit.SECONDS);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      discoveriesInFlight.decrementAndGet();
+    }
+    discoveryResponses.incrementAndGet();
+    if (!available) {
+      exchange.sendResponseHeaders(503, -1);
+      exchange.close();
+      return;
+    }
+    respond(exchange, MockProvider.discoveryDocument(issuer));
+  }
+
+  /** Responds with the specified JSON, or with a 304 if the client already has it. */
+  private void respond(HttpExchange exchange, String body) throws IOException {
+    String eTag = "\"" + Integer.toHexString(body.hashCode()) + "\"";
+    exchange.getResponseHeaders().set("ETag", eTag);
+    if (eTag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+      notModifiedResponses.incrementAndGet();
+      exchange.sendResponseHeaders(304, -1);
+      exchange.close();
+      return;
+    }
+    MockProvider.respond(exchange, 200, body);
+  }
+
+  private static int unusedPort() throws IOException {
+    try (ServerSocket socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+}
@@ -0,0 +1,36 @@
+package kt.proj.profile;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import io.smallrye.mutiny.Uni;
+import java.util.UUID;
+import javax.ws.rs.core.SecurityContext;
+import kt.proj.common.ErrorCode;
+import kt.proj.common.ProviderUnavailableException;
+import kt.proj.common.UserPrincipal;
+import kt.proj.models.ErrorModel;
+import org.jboss.resteasy.reactive.RestResponse;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+public class UserProfileResourceTest {
+
+  @Test
+  public void testUnavailableProviderIsReportedAs503() {
+    UserPrincipal principal =
+        new UserPrincipal(
+            "subject", "local", UUID.randomUUID(), System.currentTimeMillis() + 60_000, null);
+    UserProfileResource resource = new UserProfileResource(null, null);
+    resource.securityContext = Mockito.mock(SecurityContext.class);
+    Mockito.when(resource.securityContext.getUserPrincipal()).thenReturn(principal);
+    resource.userProfileService = Mockito.mock(UserProfileService.class);
+    Mockito.when(resource.userProfileService.getMyProfile(principal))
+        .thenReturn(
+            Uni.createFrom().failure(new ProviderUnavailableException("local", "Circuit open")));
+
+    RestResponse<?> response = resource.getUserProfile().await().indefinitely();
+
+    assertEquals(503, response.getStatus());
+    assertEquals(ErrorCode.PROVIDER_UNAVAILABLE, ((ErrorModel) response.getEntity()).getCode());
+  }
+}
@@ -0,0 +1,185 @@
+package kt.proj.profile;
+
+import static kt.proj.common.MockProvider.awaitTrue;
+import static kt.proj.common.MockProvider.respond;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import com.nimbusds.jwt.JWT;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.PlainJWT;
+import com.nimbusds.oauth2.sdk.token.BearerAccessToken;
+import com.nimbusds.openid.connect.sdk.claims.UserInfo;
+import com.sun.net.httpserver.HttpExchange;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.core.Vertx;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import kt.proj.common.AsyncHTTPClient;
+import kt.proj.common.MockProvider;
+import kt.proj.common.UserPrincipal;
+import kt.proj.common.UserTokenManager;
+import kt.proj.config.AuthServiceConfig;
+import kt.proj.config.OIDCProviders;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class UserProfileServiceTest {
+  /* Time read by the profile cache in nanoseconds, advanced by the tests. */
+  private final AtomicLong nanos = new AtomicLong();
+  private final AtomicInteger userInfoRequests = new AtomicInteger();
+  private final Set<String> authorizations = ConcurrentHashMap.newKeySet();
+  /* Subjects of the access tokens accepted by the userinfo endpoint. */
+  private final Map<String, String> subjects = new ConcurrentHashMap<>();
+  private volatile String name = "Jane Doe";
+
+  private MockProvider provider;
+  private String issuer;
+  private Vertx vertx;
+  private UserTokenManager tokenManager;
+  private UserProfileService profileService;
+  private SimpleMeterRegistry meterRegistry;
+
+  @BeforeEach
+  public void setUp() throws Exception {
+    provider = MockProvider.start().handle("/userinfo", this::userInfo);
+    issuer = provider.getIssuer();
+
+    String yaml =
+        "oidc_clients:\n"
+            + "  - provider_name: Local\n"
+            + "    discovery_url: "
+            + issuer
+            + "\n    client_id: client\n"
+            + "    client_secret: secret\n"
+            + "    request_scopes: [openid]\n"
+            + "    profile_refresh_after: 1\n"
+            + "    profile_stale_if_error: 1\n"
+            + "user_token:\n"
+            + "  issuer: http://www.example.com\n"
+            + "  audience: http://www.example.com\n"
+            + "  signature_algorithm: ES256\n"
+            + "  expiry: 600\n";
+    AuthServiceConfig config =
+        new ObjectMapper(new YAMLFactory()).readValue(yaml, AuthServiceConfig.class);
+    vertx = Vertx.vertx();
+    AsyncHTTPClient httpClient = new AsyncHTTPClient(vertx, config);
+    OIDCProviders providers = new OIDCProviders(config, httpClient);
+    tokenManager = new UserTokenManager(config, providers);
+    meterRegistry = new SimpleMeterRegistry();
+    profileService =
+        new UserProfileService(providers, tokenManager, httpClient, meterRegistry, nanos::get);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    vertx.closeAndAwait();
+    provider.close();
+  }
+
+  @Test
+  public void testConcurrentMissesForSameUserAreCoalesced() {
+    List<Uni<UserInfo>> profiles = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      profiles.add(profileService.getMyProfile(login("subject", "access-token" + i)));
+    }
+
+    List<UserInfo> userInfos = Uni.join().all(profiles).andFailFast().await().indefinitely();
+    userInfos.forEach(userInfo -> assertEquals("subject", userInfo.getSubject().getValue()));
+    assertEquals(1, userInfoRequests.get());
+  }
+
+  @Test
+  public void testProfileIsLoadedWithTheRequestingSessionToken() {
+    getProfile(login("subject1", "access-token1"));
+    getProfile(login("subject2", "access-token2"));
+
+    assertEquals(2, userInfoRequests.get());
+    assertEquals(Set.of("Bearer access-token1", "Bearer access-token2"), authorizations);
+  }
+
+  @Test
+  public void testFailedLoadIsNotCached() throws InterruptedException {
+    UserPrincipal userToken = login("subject", "access-token");
+    subjects.clear();
+    assertThrows(RuntimeException.class, () -> getProfile(userToken));
+    /* The cache drops the failed load once its own completion callback has run. */
+    awaitTrue(
+        () -> meterRegistry.get("cache.size").tag("cache", "user_profiles").gauge().value() == 0);
+    assertThrows(RuntimeException.class, () -> getProfile(userToken));
+    assertEquals(2, userInfoRequests.get());
+  }
+
+  @Test
+  public void testStaleProfileIsServedWhileRefreshing() throws InterruptedException {
+    UserPrincipal userToken = login("subject", "access-token");
+    getProfile(userToken);
+    name = "John Doe";
+    nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(1100));
+
+    assertEquals("Jane Doe", getProfile(userToken).getName());
+    awaitTrue(() -> refreshCount("success") == 1);
+    assertEquals("John Doe", getProfile(userToken).getName());
+    assertEquals(2, userInfoRequests.get());
+  }
+
+  @Test
+  public void testStaleProfileIsServedWhileProviderFails() throws InterruptedException {
+    UserPrincipal userToken = login("subject", "access-token");
+    getProfile(userToken);
+    subjects.clear();
+    nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(1100));
+
+    assertEquals("Jane Doe", getProfile(userToken).getName());
+    awaitTrue(() -> refreshCount("failure") == 1);
+    assertEquals("Jane Doe", getProfile(userToken).getName());
+
+    /* Past the stale-if-error window, the profile is loaded again and the failure surfaces. */
+    nanos.addAndGet(TimeUnit.SECONDS.toNanos(1));
+    assertThrows(RuntimeException.class, () -> getProfile(userToken));
+  }
+
+  private UserInfo getProfile(UserPrincipal userToken) {
+    return profileService.getMyProfile(userToken).await().indefinitely();
+  }
+
+  private double refreshCount(String result) {
+    return meterRegistry.counter("userinfo.refresh", "provider", "local", "result", result).count();
+  }
+
+  private UserPrincipal login(String subject, String accessToken) {
+    subjects.put(accessToken, subject);
+    JWT idToken = new PlainJWT(new JWTClaimsSet.Builder().issuer(issuer).subject(subject).build());
+    String userToken = tokenManager.issueToken(idToken, new BearerAccessToken(accessToken));
+    return tokenManager.getValidatedUserToken(userToken).orElseThrow();
+  }
+
+  private void userInfo(HttpExchange exchange) throws IOException {
+    userInfoRequests.incrementAndGet();
+    String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+    authorizations.add(authorization);
+    try {
+      /* Keep the first load in flight while the concurrent requests arrive. */
+      Thread.sleep(200);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    String subject = subjects.get(authorization.substring("Bearer ".length()));
+    if (subject == null) {
+      respond(exchange, 401, "{\"error\":\"invalid_token\"}");
+      return;
+    }
+    respond(exchange, 200, "{\"sub\":\"" + subject + "\",\"name\":\"" + name + "\"}");
+  }
+}